@@ -0,0 +1,65 @@
+package com.okx.trading.benchmark;
+
+import com.okx.trading.model.dto.BacktestResultDTO;
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.service.impl.Ta4jBacktestService;
+import com.okx.trading.strategy.BacktestMetricsCalculator;
+import com.okx.trading.strategy.StrategyRegisterCenter;
+import org.openjdk.jmh.annotations.*;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.Trade;
+import org.ta4j.core.TradingRecord;
+import org.ta4j.core.analysis.cost.ZeroCostModel;
+import org.ta4j.core.backtest.BarSeriesManager;
+import org.ta4j.core.backtest.TradeOnCurrentCloseModel;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回测：Ta4jBacktestService.backtest 端到端，以及单独的 BacktestMetricsCalculator 指标计算
+ * 不启动 Spring 容器，指标计算器取不到权重和分布服务时跳过综合评分，与单元测试环境一致
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BacktestBenchmark {
+
+    private static final BigDecimal INITIAL_AMOUNT = new BigDecimal("100000");
+    private static final BigDecimal FEE_RATIO = new BigDecimal("0.001");
+
+    @Param({"SMA", "MACD", "RSI", "BOLLINGER_BANDS", "SUPERTREND"})
+    public String strategyType;
+
+    @Param({"2000"})
+    public int barCount;
+
+    private final Ta4jBacktestService backtestService = new Ta4jBacktestService();
+    private BarSeries series;
+    private List<CandlestickEntity> benchmarkCandles;
+    private TradingRecord tradingRecord;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.initBacktestParameters();
+        benchmarkCandles = BenchmarkData.candles(barCount);
+        series = BenchmarkData.series(barCount);
+        BarSeriesManager seriesManager = new BarSeriesManager(series, new ZeroCostModel(), new ZeroCostModel(), new TradeOnCurrentCloseModel());
+        tradingRecord = seriesManager.run(StrategyRegisterCenter.createStrategy(series, strategyType), Trade.TradeType.BUY);
+    }
+
+    @Benchmark
+    public BacktestResultDTO backtest() {
+        return backtestService.backtest(series, benchmarkCandles, strategyType, INITIAL_AMOUNT, FEE_RATIO, BenchmarkData.INTERVAL);
+    }
+
+    @Benchmark
+    public BacktestResultDTO metrics() {
+        return new BacktestMetricsCalculator(series, tradingRecord, INITIAL_AMOUNT, strategyType, "",
+                FEE_RATIO, BenchmarkData.INTERVAL, benchmarkCandles).getResult();
+    }
+}
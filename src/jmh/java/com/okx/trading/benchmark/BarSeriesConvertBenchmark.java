@@ -0,0 +1,37 @@
+package com.okx.trading.benchmark;
+
+import com.okx.trading.adapter.CandlestickBarSeriesConverter;
+import com.okx.trading.model.entity.CandlestickEntity;
+import org.openjdk.jmh.annotations.*;
+import org.ta4j.core.BarSeries;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * K线转换为 BarSeries
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BarSeriesConvertBenchmark {
+
+    @Param({"500", "5000"})
+    public int barCount;
+
+    private final CandlestickBarSeriesConverter converter = new CandlestickBarSeriesConverter();
+    private List<CandlestickEntity> candles;
+
+    @Setup
+    public void setUp() {
+        candles = BenchmarkData.candles(barCount);
+    }
+
+    @Benchmark
+    public BarSeries convert() {
+        return converter.convert(candles, BenchmarkData.SYMBOL + "_" + BenchmarkData.INTERVAL);
+    }
+}
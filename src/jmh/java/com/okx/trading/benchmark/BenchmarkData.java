@@ -0,0 +1,66 @@
+package com.okx.trading.benchmark;
+
+import com.okx.trading.adapter.CandlestickBarSeriesConverter;
+import com.okx.trading.config.BacktestParameterConfig;
+import com.okx.trading.config.BeanHolder;
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.util.BacktestDataGenerator;
+import com.okx.trading.util.BacktestDataGenerator.TrendType;
+import org.ta4j.core.BarSeries;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试数据
+ * 由 BacktestDataGenerator 以固定种子生成，每次运行、每个提交使用相同的K线，结果可以直接对比
+ */
+final class BenchmarkData {
+
+    static final String SYMBOL = "BTC-USDT";
+    static final String INTERVAL = "1H";
+    private static final long SEED = 20240601L;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 不启动 Spring 容器时 BeanHolder 中没有回测参数，StrategyRegisterCenter 加载时取到 null，
+     * 构建策略在 addExtraStopRule 中空指针。在首次使用 StrategyRegisterCenter 之前放入默认参数（止损、移动止盈均为5%）
+     */
+    static void initBacktestParameters() {
+        if (BeanHolder.getBacktestParameterConfig() == null) {
+            new BeanHolder(new BacktestParameterConfig());
+        }
+    }
+
+    /**
+     * 生成指定根数的1小时K线，趋势在上涨、下跌、震荡、剧烈波动之间轮换，保证大部分策略会产生交易
+     */
+    static synchronized List<CandlestickEntity> candles(int barCount) {
+        BacktestDataGenerator.setSeed(SEED);
+        TrendType[] trends = TrendType.values();
+        int segment = Math.max(1, barCount / trends.length);
+        List<CandlestickEntity> candles = new ArrayList<>(barCount);
+        BigDecimal price = new BigDecimal("40000");
+        LocalDateTime time = START;
+        for (int i = 0; candles.size() < barCount; i++) {
+            int count = Math.min(segment, barCount - candles.size());
+            LocalDateTime end = time.plusHours(count - 1);
+            List<CandlestickEntity> part = BacktestDataGenerator.generateCandlestickData(
+                    SYMBOL, INTERVAL, time, end, trends[i % trends.length], price);
+            candles.addAll(part);
+            CandlestickEntity last = part.get(part.size() - 1);
+            price = last.getClose();
+            time = last.getOpenTime().plusHours(1);
+        }
+        return candles;
+    }
+
+    static BarSeries series(int barCount) {
+        return new CandlestickBarSeriesConverter().convert(candles(barCount), SYMBOL + "_" + INTERVAL);
+    }
+}
@@ -0,0 +1,28 @@
+package com.okx.trading.benchmark;
+
+import com.okx.trading.strategy.StrategyRegisterCenter;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.TreeSet;
+
+/**
+ * 基准测试入口
+ * <p>
+ * 参数与 JMH 命令行相同。未通过 -p strategyCode=... 指定策略时，
+ * {@link StrategySignalBenchmark} 覆盖 StrategyRegisterCenter 中注册的全部策略。
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        if (!commandLine.getParameter("strategyCode").hasValue()) {
+            String[] strategyCodes = new TreeSet<>(StrategyRegisterCenter.strategyCreators.keySet()).toArray(new String[0]);
+            options.param("strategyCode", strategyCodes);
+        }
+        new Runner(options.build()).run();
+    }
+}
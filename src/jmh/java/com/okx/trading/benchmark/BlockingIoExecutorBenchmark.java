@@ -0,0 +1,87 @@
+package com.okx.trading.benchmark;
+
+import com.okx.trading.util.BoundedVirtualThreadExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 阻塞I/O线程池压测：固定平台线程池和限制并发的虚拟线程执行器
+ * <p>
+ * 每次调用提交一批任务，每个任务模拟一次阻塞在 OkHttp/JDBC 上的调用（休眠 ioMillis 毫秒）加少量计算，
+ * 全部完成后返回，吞吐为每秒完成的批次数。concurrency 对平台线程池是线程数，对虚拟线程是信号量上限。
+ * 每轮测量结束输出线程数和堆/非堆内存用量，平台线程的栈不在堆内，线程数较大时差异体现在进程常驻内存上，
+ * 可配合 -prof gc 对比分配速率。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockingIoExecutorBenchmark {
+
+    private static final int TASKS_PER_BATCH = 1000;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"20", "200", "1000"})
+    public int concurrency;
+
+    @Param({"5"})
+    public int ioMillis;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        executor = "virtual".equals(mode)
+                ? new BoundedVirtualThreadExecutor("bench-io", concurrency)
+                : Executors.newFixedThreadPool(concurrency);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportMemory() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        System.out.printf("%n[%s x%d] threads=%d peakThreads=%d heapUsedMb=%d nonHeapUsedMb=%d%n",
+                mode, concurrency,
+                ManagementFactory.getThreadMXBean().getThreadCount(),
+                ManagementFactory.getThreadMXBean().getPeakThreadCount(),
+                heap.getUsed() >> 20, nonHeap.getUsed() >> 20);
+    }
+
+    @Benchmark
+    public long blockingBatch() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS_PER_BATCH);
+        LongAdder checksum = new LongAdder();
+        for (int i = 0; i < TASKS_PER_BATCH; i++) {
+            int seed = i;
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(ioMillis);
+                    checksum.add(Long.rotateLeft(seed * 0x9E3779B97F4A7C15L, seed & 63));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return checksum.sum();
+    }
+}
@@ -0,0 +1,147 @@
+package com.okx.trading.benchmark;
+
+import com.okx.trading.model.entity.IndicatorDistributionEntity;
+import com.okx.trading.model.entity.IndicatorDistributionEntity.IndicatorType;
+import com.okx.trading.repository.IndicatorDistributionRepository;
+import com.okx.trading.service.impl.IndicatorDistributionServiceImpl;
+import com.okx.trading.service.impl.IndicatorDistributionSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单次回测的指标评分：对一次回测的全部指标值逐个评分
+ * <p>
+ * 分布由固定的分位数生成，回测指标值以固定种子生成。
+ * snapshot 直接使用 IndicatorDistributionSnapshot，service 走 IndicatorDistributionServiceImpl.calculateIndicatorScores，
+ * entity 为按实体逐个评分的原有方式，作为对照。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndicatorScoringBenchmark {
+
+    private static final int BACKTEST_COUNT = 256;
+    private static final long SEED = 20240601L;
+
+    /**
+     * 与 IndicatorDistributionServiceImpl 中的指标配置一致
+     */
+    private static final Map<String, IndicatorType> INDICATORS = new LinkedHashMap<>();
+
+    static {
+        for (String name : List.of("totalReturn", "annualizedReturn", "averageProfit", "riskAdjustedReturn",
+                "sharpeRatio", "sortinoRatio", "calmarRatio", "treynorRatio", "informationRatio", "sterlingRatio",
+                "burkeRatio", "modifiedSharpeRatio", "omega", "winRate", "profitFactor", "alpha", "uptrendCapture")) {
+            INDICATORS.put(name, IndicatorType.POSITIVE);
+        }
+        for (String name : List.of("maxDrawdown", "maximumLoss", "volatility", "ulcerIndex", "painIndex",
+                "downsideDeviation", "cvar", "var95", "var99", "trackingError", "maxDrawdownDuration", "downtrendCapture")) {
+            INDICATORS.put(name, IndicatorType.NEGATIVE);
+        }
+        for (String name : List.of("numberOfTrades", "beta", "skewness", "kurtosis")) {
+            INDICATORS.put(name, IndicatorType.NEUTRAL);
+        }
+    }
+
+    private List<IndicatorDistributionEntity> distributions;
+    private IndicatorDistributionSnapshot snapshot;
+    private IndicatorDistributionServiceImpl distributionService;
+    private List<Map<String, BigDecimal>> backtests;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        distributions = new ArrayList<>();
+        int index = 0;
+        for (Map.Entry<String, IndicatorType> entry : INDICATORS.entrySet()) {
+            distributions.add(distribution(entry.getKey(), entry.getValue(), index++));
+        }
+        snapshot = IndicatorDistributionSnapshot.of(distributions);
+
+        // 只用到当前版本分布的查询，其他方法不会被调用
+        IndicatorDistributionRepository repository = (IndicatorDistributionRepository) Proxy.newProxyInstance(
+                IndicatorDistributionRepository.class.getClassLoader(),
+                new Class<?>[]{IndicatorDistributionRepository.class},
+                (proxy, method, args) -> {
+                    if ("findByIsCurrentTrue".equals(method.getName())) {
+                        return distributions;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        distributionService = new IndicatorDistributionServiceImpl(null, repository);
+
+        // 指标值在 P10 以下到 P90 以上之间分布，覆盖全部评分档位
+        Random random = new Random(SEED);
+        backtests = new ArrayList<>(BACKTEST_COUNT);
+        for (int i = 0; i < BACKTEST_COUNT; i++) {
+            Map<String, BigDecimal> values = new HashMap<>();
+            index = 0;
+            for (String name : INDICATORS.keySet()) {
+                double scale = scale(index++);
+                values.put(name, BigDecimal.valueOf(scale * (random.nextDouble() * 12.0 - 1.0)));
+            }
+            backtests.add(values);
+        }
+    }
+
+    @Benchmark
+    public double snapshot() {
+        double total = 0;
+        for (Map.Entry<String, BigDecimal> entry : nextBacktest().entrySet()) {
+            total += snapshot.score(entry.getKey(), entry.getValue());
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Map<String, Double> service() {
+        return distributionService.calculateIndicatorScores(nextBacktest());
+    }
+
+    @Benchmark
+    public double entity() {
+        Map<String, BigDecimal> values = nextBacktest();
+        double total = 0;
+        for (IndicatorDistributionEntity distribution : distributions) {
+            total += distribution.calculateScore(values.get(distribution.getIndicatorName()));
+        }
+        return total;
+    }
+
+    private Map<String, BigDecimal> nextBacktest() {
+        return backtests.get(next++ & (BACKTEST_COUNT - 1));
+    }
+
+    /**
+     * 分位数 P10..P90 依次为 scale × 1..9
+     */
+    private static IndicatorDistributionEntity distribution(String name, IndicatorType type, int index) {
+        double scale = scale(index);
+        IndicatorDistributionEntity entity = new IndicatorDistributionEntity();
+        entity.setIndicatorName(name);
+        entity.setIndicatorType(type);
+        entity.setVersion(1L);
+        entity.setSampleCount(10000);
+        entity.setP10(BigDecimal.valueOf(scale));
+        entity.setP20(BigDecimal.valueOf(scale * 2));
+        entity.setP30(BigDecimal.valueOf(scale * 3));
+        entity.setP40(BigDecimal.valueOf(scale * 4));
+        entity.setP50(BigDecimal.valueOf(scale * 5));
+        entity.setP60(BigDecimal.valueOf(scale * 6));
+        entity.setP70(BigDecimal.valueOf(scale * 7));
+        entity.setP80(BigDecimal.valueOf(scale * 8));
+        entity.setP90(BigDecimal.valueOf(scale * 9));
+        return entity;
+    }
+
+    private static double scale(int index) {
+        return 0.01 * (1 + index % 7);
+    }
+}
@@ -0,0 +1,48 @@
+package com.okx.trading.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.model.market.Candlestick;
+import com.okx.trading.service.impl.OkxApiWebSocketServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OKX K线推送消息帧解析：JSON 解析加 handleKlineMessage 使用的K线解析
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KlineFrameParseBenchmark {
+
+    private static final int FRAME_COUNT = 1024;
+
+    private String[] frames;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<CandlestickEntity> candles = BenchmarkData.candles(FRAME_COUNT);
+        frames = new String[FRAME_COUNT];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            CandlestickEntity candle = candles.get(i);
+            long ts = candle.getOpenTime().atZone(ZoneId.of("UTC+8")).toInstant().toEpochMilli();
+            frames[i] = "{\"arg\":{\"channel\":\"candle1H\",\"instId\":\"" + BenchmarkData.SYMBOL + "\"},\"data\":[[\""
+                    + ts + "\",\"" + candle.getOpen() + "\",\"" + candle.getHigh() + "\",\"" + candle.getLow() + "\",\""
+                    + candle.getClose() + "\",\"" + candle.getVolume() + "\",\"" + candle.getVolume() + "\",\""
+                    + candle.getQuoteVolume() + "\",\"0\"]]}";
+        }
+    }
+
+    @Benchmark
+    public List<Candlestick> parseFrame() {
+        String frame = frames[next++ & (FRAME_COUNT - 1)];
+        return OkxApiWebSocketServiceImpl.parseKlineMessage(JSON.parseObject(frame));
+    }
+}
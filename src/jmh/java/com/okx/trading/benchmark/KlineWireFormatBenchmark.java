@@ -0,0 +1,73 @@
+package com.okx.trading.benchmark;
+
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.model.market.Candlestick;
+import com.okx.trading.util.KlineWireFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka K线消息编解码：紧凑二进制记录和 OKX 原始JSON
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KlineWireFormatBenchmark {
+
+    private static final int CANDLE_COUNT = 1024;
+
+    @Param({"binary", "json"})
+    public String format;
+
+    private Candlestick[] candles;
+    private byte[][] payloads;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<CandlestickEntity> entities = BenchmarkData.candles(CANDLE_COUNT);
+        candles = new Candlestick[CANDLE_COUNT];
+        payloads = new byte[CANDLE_COUNT][];
+        for (int i = 0; i < CANDLE_COUNT; i++) {
+            CandlestickEntity entity = entities.get(i);
+            candles[i] = Candlestick.builder()
+                    .symbol(BenchmarkData.SYMBOL)
+                    .intervalVal(BenchmarkData.INTERVAL)
+                    .openTime(entity.getOpenTime())
+                    .open(entity.getOpen())
+                    .high(entity.getHigh())
+                    .low(entity.getLow())
+                    .close(entity.getClose())
+                    .volume(entity.getVolume())
+                    .volCcy(entity.getVolume())
+                    .quoteVolume(entity.getQuoteVolume())
+                    .state(1)
+                    .build();
+            payloads[i] = encode(candles[i]);
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return encode(candles[next++ & (CANDLE_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public Candlestick decode() {
+        byte[] payload = payloads[next++ & (CANDLE_COUNT - 1)];
+        return KlineWireFormat.WIRE_FORMAT_BINARY.equals(format)
+                ? KlineWireFormat.decodeBinary(payload)
+                : KlineWireFormat.decodeOkxJson(payload);
+    }
+
+    private byte[] encode(Candlestick candle) {
+        return KlineWireFormat.WIRE_FORMAT_BINARY.equals(format)
+                ? KlineWireFormat.encodeBinary(candle)
+                : KlineWireFormat.encodeOkxJson(candle);
+    }
+}
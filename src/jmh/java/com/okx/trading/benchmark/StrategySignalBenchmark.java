@@ -0,0 +1,63 @@
+package com.okx.trading.benchmark;
+
+import com.okx.trading.strategy.StrategyRegisterCenter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.Strategy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 策略构建和信号判断
+ * <p>
+ * strategyCode 默认只有 SMA，通过 {@link BenchmarkRunner} 运行时替换为 StrategyRegisterCenter 中的全部策略。
+ * evaluate 每次使用新构建的策略从头计算每根K线的 shouldEnter/shouldExit，不受指标缓存影响。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrategySignalBenchmark {
+
+    static final int BAR_COUNT = 1000;
+
+    @Param({"SMA"})
+    public String strategyCode;
+
+    private BarSeries series;
+
+    /**
+     * 每次调用前新构建的策略，只用于 evaluate，避免每次调用的准备开销计入 create
+     */
+    @State(Scope.Thread)
+    public static class FreshStrategy {
+        private Strategy strategy;
+
+        @Setup(Level.Invocation)
+        public void setUp(StrategySignalBenchmark benchmark) {
+            strategy = StrategyRegisterCenter.createStrategy(benchmark.series, benchmark.strategyCode);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.initBacktestParameters();
+        series = BenchmarkData.series(BAR_COUNT);
+    }
+
+    @Benchmark
+    public Strategy create() {
+        return StrategyRegisterCenter.createStrategy(series, strategyCode);
+    }
+
+    @Benchmark
+    public void evaluate(FreshStrategy fresh, Blackhole blackhole) {
+        for (int i = series.getBeginIndex(); i <= series.getEndIndex(); i++) {
+            blackhole.consume(fresh.strategy.shouldEnter(i));
+            blackhole.consume(fresh.strategy.shouldExit(i));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.okx.trading.adapter;
+
+import com.okx.trading.model.market.Candlestick;
+import com.okx.trading.util.KlineWireFormat;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * K线 Kafka 反序列化器
+ * <p>
+ * 根据消息头 {@link KlineWireFormat#SCHEMA_HEADER} 选择解码方式：二进制记录按版本号直接读取；
+ * 没有消息头（data-warehouse 写入）或标识为JSON时按 OKX 原始格式解析。
+ * 解码失败返回null，由消费者跳过，避免单条坏消息阻塞分区。
+ */
+public class KlineKafkaDeserializer implements Deserializer<Candlestick> {
+
+    private static final Logger log = LoggerFactory.getLogger(KlineKafkaDeserializer.class);
+
+    @Override
+    public Candlestick deserialize(String topic, byte[] data) {
+        return deserialize(topic, null, data);
+    }
+
+    @Override
+    public Candlestick deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        String schema = schemaOf(headers);
+        try {
+            if (KlineWireFormat.SCHEMA_BINARY_V2.equals(schema) || KlineWireFormat.SCHEMA_BINARY_V1.equals(schema)) {
+                return KlineWireFormat.decodeBinary(data);
+            }
+            if (schema != null && !KlineWireFormat.SCHEMA_OKX_JSON.equals(schema)) {
+                log.warn("未知的K线消息格式: {}, 尝试按JSON解析", schema);
+            }
+            return KlineWireFormat.decodeOkxJson(data);
+        } catch (Exception e) {
+            log.error("❌ 解析 Kafka K线消息失败: topic={}, schema={}, size={}, error={}",
+                    topic, schema, data.length, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String schemaOf(Headers headers) {
+        if (headers == null) {
+            return null;
+        }
+        Header header = headers.lastHeader(KlineWireFormat.SCHEMA_HEADER);
+        return header == null || header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+package com.okx.trading.adapter;
+
+import com.okx.trading.model.market.Candlestick;
+import com.okx.trading.util.KlineWireFormat;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * K线 Kafka 序列化器
+ * <p>
+ * 按生产者配置 {@link KlineWireFormat#WIRE_FORMAT_CONFIG} 输出二进制或 OKX 原始JSON（默认），
+ * 并在消息头 {@link KlineWireFormat#SCHEMA_HEADER} 中写入格式标识，消费端据此选择解码方式。
+ */
+public class KlineKafkaSerializer implements Serializer<Candlestick> {
+
+    private boolean binary;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object format = configs.get(KlineWireFormat.WIRE_FORMAT_CONFIG);
+        if (format != null) {
+            binary = KlineWireFormat.WIRE_FORMAT_BINARY.equalsIgnoreCase(format.toString().trim());
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, Candlestick data) {
+        if (data == null) {
+            return null;
+        }
+        return binary ? KlineWireFormat.encodeBinary(data) : KlineWireFormat.encodeOkxJson(data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Candlestick data) {
+        if (data == null) {
+            return null;
+        }
+        String schema = binary ? KlineWireFormat.SCHEMA_BINARY_V2 : KlineWireFormat.SCHEMA_OKX_JSON;
+        headers.remove(KlineWireFormat.SCHEMA_HEADER);
+        headers.add(KlineWireFormat.SCHEMA_HEADER, schema.getBytes(StandardCharsets.UTF_8));
+        return serialize(topic, data);
+    }
+}
@@ -1,5 +1,9 @@
 package com.okx.trading.config;
 
+import com.okx.trading.adapter.KlineKafkaDeserializer;
+import com.okx.trading.adapter.KlineKafkaSerializer;
+import com.okx.trading.model.market.Candlestick;
+import com.okx.trading.util.KlineWireFormat;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
@@ -36,26 +40,33 @@ public class KafkaConfig {
     @Value("${spring.kafka.consumer.auto-offset-reset}")
     private String autoOffsetReset;
 
+    @Value("${spring.kafka.consumer.max-poll-records:500}")
+    private int maxPollRecords;
+
+    @Value("${kline.kafka.wire-format:json}")
+    private String wireFormat;
+
     /**
      * 生产者配置
      */
     @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    public ProducerFactory<String, Candlestick> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, KlineKafkaSerializer.class);
+        configProps.put(KlineWireFormat.WIRE_FORMAT_CONFIG, wireFormat);
         configProps.put(ProducerConfig.ACKS_CONFIG, "1");
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
         configProps.put(ProducerConfig.LINGER_MS_CONFIG, 10); // 批量发送延迟
         configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 16384); // 批量大小
         
-        log.info("✅ Kafka 生产者配置已初始化: bootstrapServers={}", bootstrapServers);
+        log.info("✅ Kafka 生产者配置已初始化: bootstrapServers={}, wireFormat={}", bootstrapServers, wireFormat);
         return new DefaultKafkaProducerFactory<>(configProps);
     }
 
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
+    public KafkaTemplate<String, Candlestick> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
 
@@ -63,15 +74,15 @@ public class KafkaConfig {
      * 消费者配置
      */
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public ConsumerFactory<String, Candlestick> consumerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, KlineKafkaDeserializer.class); // 按消息头识别二进制/JSON
         configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, autoOffsetReset);
         configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false); // 手动提交
-        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 100); // 每次拉取最多100条
+        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords); // 每次拉取的最大条数，K线按批处理
         
         log.info("✅ Kafka 消费者配置已初始化: bootstrapServers={}, groupId={}, autoOffsetReset={}", 
             bootstrapServers, groupId, autoOffsetReset);
@@ -83,8 +94,8 @@ public class KafkaConfig {
      * 配置手动提交模式
      */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, String> factory = 
+    public ConcurrentKafkaListenerContainerFactory<String, Candlestick> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, Candlestick> factory = 
             new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
         
@@ -0,0 +1,48 @@
+package com.okx.trading.config;
+
+import com.okx.trading.model.market.Candlestick;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+/**
+ * K线消费者批量监听配置
+ * K线消费者始终启用，因此不受 kline.kafka.enabled 控制：
+ * 启用时使用 {@link KafkaConfig} 中的 ConsumerFactory，未启用时使用 Spring Boot 自动配置的 ConsumerFactory
+ */
+@Slf4j
+@Configuration
+public class KafkaConsumerConfig {
+
+    @Value("${kline.kafka.consumer.concurrency:3}")
+    private int concurrency;
+
+    @Value("${kline.kafka.consumer.poll-timeout-ms:1000}")
+    private long pollTimeoutMs;
+
+    /**
+     * 批量监听器容器工厂
+     * 监听方法接收一次poll的全部记录，处理完成后通过 Acknowledgment 手动提交偏移量
+     */
+    @Bean
+    @SuppressWarnings("unchecked")
+    public ConcurrentKafkaListenerContainerFactory<String, Candlestick> klineBatchListenerContainerFactory(
+            ConsumerFactory<?, ?> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, Candlestick> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory((ConsumerFactory<String, Candlestick>) consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+
+        // 处理完一批后立即提交，避免偏移量堆积
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        factory.getContainerProperties().setPollTimeout(pollTimeoutMs);
+
+        log.info("✅ Kafka 批量监听器容器工厂已初始化: concurrency={}, ackMode=MANUAL_IMMEDIATE", concurrency);
+        return factory;
+    }
+}
@@ -0,0 +1,136 @@
+package com.okx.trading.config;
+
+import com.okx.trading.service.OrderAuditService;
+import com.okx.trading.service.OrderGatewayService;
+import com.okx.trading.service.OrderTrackerService;
+import com.okx.trading.service.TickerBookService;
+import com.okx.trading.service.TradeJournalService;
+import com.okx.trading.service.impl.JavaCompilerDynamicStrategyService;
+import com.okx.trading.util.BoundedVirtualThreadExecutor;
+import com.okx.trading.util.WebSocketUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * 监控指标配置
+ * <p>
+ * 热点路径的耗时和计数由 {@link com.okx.trading.util.TradingMetrics} 记录；MySQL 连接池、Redis 命令和
+ * Spring Data 仓库调用的耗时由 Spring Boot 自动采集。这里补充线程池队列深度和各服务 getStats() 中的数值指标，
+ * 通过 /actuator/prometheus 暴露。
+ */
+@Slf4j
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * 所有线程池的活跃线程数、队列长度和完成任务数，指标名 executor.*，按 name 标签区分线程池；
+     * 虚拟线程执行器没有线程池可读，改为注册 okx.executor.virtual.* 的执行中和等待中任务数
+     */
+    @Bean
+    public MeterBinder executorServiceMetrics(Map<String, ExecutorService> executors) {
+        return registry -> executors.forEach((name, executor) -> {
+            if (executor instanceof BoundedVirtualThreadExecutor virtualExecutor) {
+                bindVirtualExecutorStats(registry, name, virtualExecutor);
+            } else {
+                new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(registry);
+            }
+        });
+    }
+
+    /**
+     * 各服务运行统计中的数值项，指标名为 okx.组件.统计项；WebSocket 分片统计按 shard 标签区分
+     */
+    @Bean
+    public MeterBinder serviceStatsMetrics(ObjectProvider<OrderGatewayService> orderGatewayService,
+                                           ObjectProvider<OrderTrackerService> orderTrackerService,
+                                           ObjectProvider<TradeJournalService> tradeJournalService,
+                                           ObjectProvider<OrderAuditService> orderAuditService,
+                                           ObjectProvider<TickerBookService> tickerBookService,
+                                           ObjectProvider<JavaCompilerDynamicStrategyService> compilerService,
+                                           ObjectProvider<WebSocketUtil> webSocketUtil) {
+        return registry -> {
+            Map<String, Supplier<Map<String, Object>>> sources = new LinkedHashMap<>();
+            orderGatewayService.ifAvailable(service -> sources.put("okx.order.gateway", service::getStats));
+            orderTrackerService.ifAvailable(service -> sources.put("okx.order.tracker", service::getStats));
+            tradeJournalService.ifAvailable(service -> sources.put("okx.trade.journal", service::getStats));
+            orderAuditService.ifAvailable(service -> sources.put("okx.order.audit", service::getStats));
+            tickerBookService.ifAvailable(service -> sources.put("okx.ticker.book", service::getStats));
+            compilerService.ifAvailable(service -> sources.put("okx.strategy.compile", service::getCompileStats));
+            sources.forEach((prefix, stats) -> bindStats(registry, prefix, stats));
+            webSocketUtil.ifAvailable(util -> bindShardStats(registry, "okx.ws.shard", util::getBusinessShardStats));
+        };
+    }
+
+    /**
+     * 为统计中的每个数值项注册一个 Gauge，统计项在绑定时确定
+     */
+    static void bindStats(MeterRegistry registry, String prefix, Supplier<Map<String, Object>> stats) {
+        Map<String, Object> snapshot;
+        try {
+            snapshot = stats.get();
+        } catch (Exception e) {
+            log.warn("读取运行统计失败，跳过监控指标注册: {}, {}", prefix, e.getMessage());
+            return;
+        }
+        snapshot.forEach((key, value) -> {
+            if (toNumber(value) != null) {
+                Gauge.builder(prefix + "." + key, stats, s -> valueOf(s.get().get(key)))
+                        .strongReference(true)
+                        .register(registry);
+            }
+        });
+    }
+
+    static void bindVirtualExecutorStats(MeterRegistry registry, String name, BoundedVirtualThreadExecutor executor) {
+        executor.getStats().forEach((key, value) ->
+                Gauge.builder("okx.executor.virtual." + key, executor, e -> valueOf(e.getStats().get(key)))
+                        .tag("name", name)
+                        .strongReference(true)
+                        .register(registry));
+    }
+
+    @SuppressWarnings("unchecked")
+    static void bindShardStats(MeterRegistry registry, String prefix, Supplier<Map<String, Object>> stats) {
+        stats.get().forEach((shard, shardStats) -> {
+            if (!(shardStats instanceof Map)) {
+                return;
+            }
+            ((Map<String, Object>) shardStats).forEach((key, value) -> {
+                if (toNumber(value) != null) {
+                    Gauge.builder(prefix + "." + key, stats,
+                                    s -> s.get().get(shard) instanceof Map<?, ?> m ? valueOf(m.get(key)) : Double.NaN)
+                            .tag("shard", shard)
+                            .strongReference(true)
+                            .register(registry);
+                }
+            });
+        });
+    }
+
+    private static double valueOf(Object value) {
+        Number number = toNumber(value);
+        return number != null ? number.doubleValue() : Double.NaN;
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number number) {
+            return number;
+        }
+        if (value instanceof Boolean bool) {
+            return bool ? 1 : 0;
+        }
+        return null;
+    }
+}
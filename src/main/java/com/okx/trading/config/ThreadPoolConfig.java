@@ -1,6 +1,8 @@
 package com.okx.trading.config;
 
+import com.okx.trading.util.BoundedVirtualThreadExecutor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -14,6 +16,12 @@ import java.util.concurrent.ThreadFactory;
 /**
  * 线程池配置类
  * 统一配置和管理应用中的线程池
+ * 单线程池也用 newFixedThreadPool(1) / newScheduledThreadPool(1) 创建，
+ * newSingleThread* 返回的包装类拿不到底层 ThreadPoolExecutor，监控无法读取队列长度
+ * <p>
+ * okx.thread.virtual.enabled=true 时，阻塞在网络和数据库上的线程池（历史数据查询、历史数据批处理、
+ * 订单网关REST、执行交易）改为每任务一个虚拟线程，并用信号量限制同时访问下游的任务数，另外创建通知发送线程池；
+ * 指标计算、策略编译等CPU密集的线程池和定时线程池仍使用平台线程。
  */
 @Configuration
 @EnableAsync
@@ -25,6 +33,27 @@ public class ThreadPoolConfig{
     @Value("${okx.price-update.max-threads:5}")
     private int maxPriceUpdateThreads;
 
+    @Value("${okx.backfill.workers:4}")
+    private int backfillWorkers;
+
+    @Value("${okx.thread.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    @Value("${okx.thread.virtual.historical-data-concurrency:20}")
+    private int historicalDataConcurrency;
+
+    @Value("${okx.thread.virtual.db-write-concurrency:5}")
+    private int dbWriteConcurrency;
+
+    @Value("${okx.thread.virtual.order-rest-concurrency:4}")
+    private int orderRestConcurrency;
+
+    @Value("${okx.thread.virtual.trade-execution-concurrency:50}")
+    private int tradeExecutionConcurrency;
+
+    @Value("${okx.thread.virtual.notification-concurrency:2}")
+    private int notificationConcurrency;
+
     /**
      * 创建带有命名前缀的线程工厂
      *
@@ -41,14 +70,27 @@ public class ThreadPoolConfig{
         };
     }
 
+    /**
+     * 创建阻塞I/O线程池：启用虚拟线程时为限制并发的虚拟线程执行器，否则为固定大小的平台线程池
+     *
+     * @param namePrefix      线程名称前缀
+     * @param platformThreads 平台线程数
+     * @param maxConcurrency  虚拟线程模式下同时执行的最大任务数
+     */
+    private ExecutorService createIoExecutor(String namePrefix, int platformThreads, int maxConcurrency){
+        if (virtualThreadsEnabled) {
+            return new BoundedVirtualThreadExecutor(namePrefix, maxConcurrency);
+        }
+        return Executors.newFixedThreadPool(platformThreads, createThreadFactory(namePrefix));
+    }
+
     /**
      * 历史数据查询线程池
      * 用于执行历史数据查询任务
      */
     @Bean(name = "historicalDataExecutorService")
     public ExecutorService historicalDataExecutorService(){
-        return Executors.newFixedThreadPool(maxHistoricalDataThreads,
-            createThreadFactory("历史数据查询"));
+        return createIoExecutor("历史数据查询", maxHistoricalDataThreads, historicalDataConcurrency);
     }
 
     /**
@@ -57,8 +99,135 @@ public class ThreadPoolConfig{
      */
     @Bean(name = "batchHistoricalDataExecutorService")
     public ExecutorService batchHistoricalDataExecutorService(){
-        return Executors.newFixedThreadPool(5,
-            createThreadFactory("历史数据批处理"));
+        return createIoExecutor("历史数据批处理", 5, dbWriteConcurrency);
+    }
+
+    /**
+     * 历史数据回填工作线程池
+     * 线程数与回填调度器的工作线程数一致，每个线程循环从优先级队列中取任务
+     */
+    @Bean(name = "backfillExecutorService")
+    public ExecutorService backfillExecutorService(){
+        return Executors.newFixedThreadPool(backfillWorkers,
+            createThreadFactory("历史数据回填"));
+    }
+
+    /**
+     * 历史数据回填重试线程池
+     * 用于延迟重新入队失败的回填分页
+     */
+    @Bean(name = "backfillRetryScheduler")
+    public ScheduledExecutorService backfillRetryScheduler(){
+        return Executors.newScheduledThreadPool(1,
+            createThreadFactory("历史数据回填重试"));
+    }
+
+    /**
+     * K线缺口补齐线程池
+     * WebSocket分片重连后拉取断线期间缺失的K线，不占用WebSocket重连线程
+     */
+    @Bean(name = "gapFillExecutorService")
+    public ExecutorService gapFillExecutorService(){
+        return Executors.newFixedThreadPool(2,
+            createThreadFactory("K线缺口补齐"));
+    }
+
+    /**
+     * 指标分布重建线程池
+     * 应用启动后在这里游标读取回测汇总重建分位数草图，不阻塞应用就绪事件
+     */
+    @Bean(name = "indicatorDistributionRebuildExecutor")
+    public ExecutorService indicatorDistributionRebuildExecutor(){
+        return Executors.newFixedThreadPool(1,
+            createThreadFactory("指标分布重建"));
+    }
+
+    /**
+     * 动态策略编译线程池
+     * 批量编译时每个批次一个 javac 任务，按CPU核数并行
+     */
+    @Bean(name = "strategyCompileExecutorService")
+    public ExecutorService strategyCompileExecutorService(){
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            createThreadFactory("策略编译"));
+    }
+
+    /**
+     * K线聚合线程池
+     * 单线程顺序执行，避免同一周期的高周期K线被重复写入
+     */
+    @Bean(name = "candleAggregationExecutorService")
+    public ExecutorService candleAggregationExecutorService(){
+        return Executors.newFixedThreadPool(1,
+            createThreadFactory("K线聚合"));
+    }
+
+    /**
+     * 订单网关REST回退线程池
+     * 私有WebSocket未就绪时，订单请求改走REST接口
+     */
+    @Bean(name = "orderGatewayExecutorService")
+    public ExecutorService orderGatewayExecutorService(){
+        return createIoExecutor("订单网关REST", 4, orderRestConcurrency);
+    }
+
+    /**
+     * 行情回放交易线程池
+     * 回放触发的下单和成交记录在这里执行，不占用实盘的交易线程
+     */
+    @Bean(name = "replayExecutorService")
+    public ExecutorService replayExecutorService(){
+        return Executors.newFixedThreadPool(2,
+            createThreadFactory("行情回放"));
+    }
+
+    /**
+     * 订单对账线程池
+     * 下单后超时未收到终态推送时，在这里按clientOrderId查询REST接口，不占用下单线程
+     */
+    @Bean(name = "orderReconcileExecutorService")
+    public ExecutorService orderReconcileExecutorService(){
+        return createIoExecutor("订单对账", 2, orderRestConcurrency);
+    }
+
+    /**
+     * 批量下单窗口线程池
+     * 单线程负责窗口到期后合并发送订单
+     */
+    @Bean(name = "orderBatchScheduler")
+    public ScheduledExecutorService orderBatchScheduler(){
+        return Executors.newScheduledThreadPool(1,
+            createThreadFactory("批量下单"));
+    }
+
+    /**
+     * 交易日志写库线程池
+     * 单线程按固定间隔把交易日志批量写入数据库
+     */
+    @Bean(name = "tradeJournalFlushScheduler")
+    public ScheduledExecutorService tradeJournalFlushScheduler(){
+        return Executors.newScheduledThreadPool(1,
+            createThreadFactory("交易日志写库"));
+    }
+
+    /**
+     * 持仓快照发布线程池
+     * 单线程按固定间隔生成持仓组合快照并推送给订阅的前端
+     */
+    @Bean(name = "portfolioPublishScheduler")
+    public ScheduledExecutorService portfolioPublishScheduler(){
+        return Executors.newScheduledThreadPool(1,
+            createThreadFactory("持仓快照发布"));
+    }
+
+    /**
+     * 订单审计日志写线程
+     * 单线程从队列批量取出订单记录写入文件
+     */
+    @Bean(name = "orderAuditExecutor")
+    public ExecutorService orderAuditExecutor(){
+        return Executors.newFixedThreadPool(1,
+            createThreadFactory("订单审计日志"));
     }
 
     /**
@@ -84,10 +253,23 @@ public class ThreadPoolConfig{
             createThreadFactory("实时策略计算"));
     }
 
+    /**
+     * 执行交易线程池
+     * 下单后等待成交推送，任务大部分时间阻塞在订单结果上
+     */
     @Bean(name = "executeTradeScheduler")
     public ExecutorService executeTradeScheduler(){
-        return Executors.newFixedThreadPool(20,
-                createThreadFactory("执行交易和数据库更新"));
+        return createIoExecutor("执行交易和数据库更新", 20, tradeExecutionConcurrency);
+    }
+
+    /**
+     * 通知发送线程池
+     * 只在虚拟线程模式下创建，邮件通过SMTP发送，不占用交易线程；未开启时邮件在调用线程同步发送
+     */
+    @Bean(name = "notificationExecutorService")
+    @ConditionalOnProperty(name = "okx.thread.virtual.enabled", havingValue = "true")
+    public ExecutorService notificationExecutorService(){
+        return createIoExecutor("通知发送", 2, notificationConcurrency);
     }
 
     /**
@@ -96,7 +278,7 @@ public class ThreadPoolConfig{
      */
     @Bean(name = "websocketPingScheduler")
     public ScheduledExecutorService websocketPingScheduler(){
-        return Executors.newSingleThreadScheduledExecutor(
+        return Executors.newScheduledThreadPool(1,
             createThreadFactory("WebSocket心跳"));
     }
 
@@ -136,19 +318,19 @@ public class ThreadPoolConfig{
      */
     @Bean(name = "klineUpdateScheduler")
     public ScheduledExecutorService klineUpdateScheduler(){
-        return Executors.newSingleThreadScheduledExecutor(
+        return Executors.newScheduledThreadPool(1,
             createThreadFactory("K线更新"));
     }
 
     @Bean(name = "indicatorCalculateScheduler")
     public ScheduledExecutorService indicatorCalculateScheduler(){
-        return Executors.newSingleThreadScheduledExecutor(
+        return Executors.newScheduledThreadPool(1,
             createThreadFactory("指标计算"));
     }
 
     @Bean(name = "klineHandleScheduler")
     public ScheduledExecutorService klineHandleScheduler(){
-        return Executors.newSingleThreadScheduledExecutor(
+        return Executors.newScheduledThreadPool(1,
                 createThreadFactory("k线处理"));
     }
 
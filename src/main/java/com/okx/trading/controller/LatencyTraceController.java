@@ -0,0 +1,58 @@
+package com.okx.trading.controller;
+
+import com.okx.trading.model.common.ApiResponse;
+import com.okx.trading.service.LatencyTraceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行情到下单延迟控制器
+ * 查询各阶段耗时分位数和慢追踪
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/latency")
+@RequiredArgsConstructor
+@Tag(name = "行情到下单延迟")
+public class LatencyTraceController {
+
+    private final LatencyTraceService latencyTraceService;
+
+    /**
+     * 各阶段耗时分位数（微秒）
+     */
+    @GetMapping("/percentiles")
+    @Operation(summary = "按交易对和策略查询行情到下单各阶段耗时分位数")
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getPercentiles(
+            @RequestParam(required = false) String symbol,
+            @RequestParam(required = false) String strategyCode) {
+        return ResponseEntity.ok(ApiResponse.success(latencyTraceService.getPercentiles(symbol, strategyCode)));
+    }
+
+    /**
+     * 最近的慢追踪
+     */
+    @GetMapping("/slow-traces")
+    @Operation(summary = "查询总耗时超过阈值的最近追踪")
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getSlowTraces() {
+        return ResponseEntity.ok(ApiResponse.success(latencyTraceService.getSlowTraces()));
+    }
+
+    /**
+     * 清空统计
+     */
+    @PostMapping("/reset")
+    @Operation(summary = "清空延迟直方图和慢追踪")
+    public ResponseEntity<ApiResponse<String>> reset() {
+        latencyTraceService.reset();
+        log.info("行情到下单延迟统计已清空");
+        return ResponseEntity.ok(ApiResponse.success("已清空"));
+    }
+}
@@ -5,7 +5,10 @@ import com.alibaba.fastjson.JSONObject;
 import com.okx.trading.model.common.ApiResponse;
 import com.okx.trading.model.entity.CandlestickEntity;
 import com.okx.trading.model.market.Candlestick;
+import com.okx.trading.model.entity.BackfillCheckpointEntity;
 import com.okx.trading.model.market.Ticker;
+import com.okx.trading.service.BackfillSchedulerService;
+import com.okx.trading.service.CandleStreamService;
 import com.okx.trading.service.HistoricalDataService;
 import com.okx.trading.service.OkxApiService;
 import com.okx.trading.service.RedisCacheService;
@@ -16,14 +19,19 @@ import io.swagger.v3.oas.annotations.Parameters;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.concurrent.TimeUnit;
 
@@ -55,6 +63,8 @@ public class MarketController {
     private final KlineCacheService klineCacheService;
     private final RedisTemplate<String, Object> redisTemplate;
     private final com.okx.trading.service.TushareApiService tushareApiService;
+    private final BackfillSchedulerService backfillSchedulerService;
+    private final CandleStreamService candleStreamService;
 
     @Autowired
     public MarketController(OkxApiService okxApiService,
@@ -62,13 +72,17 @@ public class MarketController {
                             RedisCacheService redisCacheService,
                             KlineCacheService klineCacheService, 
                             RedisTemplate<String, Object> redisTemplate,
-                            com.okx.trading.service.TushareApiService tushareApiService) {
+                            com.okx.trading.service.TushareApiService tushareApiService,
+                            BackfillSchedulerService backfillSchedulerService,
+                            CandleStreamService candleStreamService) {
         this.okxApiService = okxApiService;
         this.historicalDataService = historicalDataService;
         this.redisCacheService = redisCacheService;
         this.klineCacheService = klineCacheService;
         this.redisTemplate = redisTemplate;
         this.tushareApiService = tushareApiService;
+        this.backfillSchedulerService = backfillSchedulerService;
+        this.candleStreamService = candleStreamService;
     }
 
     // 判断是否为开发环境，用于控制日志详细程度
@@ -326,6 +340,118 @@ public class MarketController {
         }
     }
     
+    /**
+     * 提交历史数据回填任务
+     * 任务异步执行，按优先级调度并受上游限流控制，进度保存在检查点中
+     */
+    @Operation(summary = "提交历史数据回填任务", description = "异步回填指定范围的K线数据，支持断点续传、限流和失败重试")
+    @Parameters({
+            @Parameter(name = "symbol", description = "交易对或股票代码", required = true, example = "BTC-USDT"),
+            @Parameter(name = "interval", description = "K线间隔 (1m=1分钟, 5m=5分钟, 15m=15分钟, 30m=30分钟, 1H=1小时, 2H=2小时, 4H=4小时, 6H=6小时, 12H=12小时, 1D=1天, 1W=1周, 1M=1个月)",
+                    required = true, example = "1m"),
+            @Parameter(name = "startTimeStr", description = "开始时间 (yyyy-MM-dd HH:mm:ss)", required = true, example = "2024-01-01 00:00:00"),
+            @Parameter(name = "endTimeStr", description = "结束时间 (yyyy-MM-dd HH:mm:ss)", required = true, example = "2024-02-01 00:00:00"),
+            @Parameter(name = "priority", description = "优先级 (LIVE_WARMUP=实盘预热, GAP_FILL=缺口补齐, RESEARCH=研究回填)", required = false, example = "RESEARCH")
+    })
+    @PostMapping("/backfill")
+    public ApiResponse<Boolean> submitBackfill(
+            @NotBlank(message = "交易对不能为空") @RequestParam String symbol,
+            @NotBlank(message = "K线间隔不能为空") @RequestParam String interval,
+            @NotBlank(message = "开始时间不能为空") @RequestParam String startTimeStr,
+            @NotBlank(message = "结束时间不能为空") @RequestParam String endTimeStr,
+            @RequestParam(required = false, defaultValue = "RESEARCH") String priority) {
+        try {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            LocalDateTime startTime = LocalDateTime.parse(startTimeStr, formatter);
+            LocalDateTime endTime = LocalDateTime.parse(endTimeStr, formatter);
+            BackfillSchedulerService.BackfillPriority backfillPriority =
+                    BackfillSchedulerService.BackfillPriority.valueOf(priority.toUpperCase());
+
+            backfillSchedulerService.submit(symbol, interval, startTime, endTime, backfillPriority);
+            log.info("回填任务已提交: symbol={}, interval={}, {} ~ {}, priority={}",
+                    symbol, interval, startTimeStr, endTimeStr, backfillPriority);
+            return ApiResponse.success(Boolean.TRUE);
+        } catch (Exception e) {
+            log.error("提交回填任务失败: {}", e.getMessage(), e);
+            return ApiResponse.error(500, "提交回填任务失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查看回填调度器状态和最近的检查点
+     */
+    @Operation(summary = "查看回填任务状态", description = "返回回填队列、运行中的任务、令牌桶余量和最近的检查点")
+    @GetMapping("/backfill/status")
+    public ApiResponse<Map<String, Object>> getBackfillStatus() {
+        Map<String, Object> status = new LinkedHashMap<>(backfillSchedulerService.getStatus());
+        List<BackfillCheckpointEntity> checkpoints = backfillSchedulerService.getRecentCheckpoints();
+        status.put("checkpoints", checkpoints);
+        return ApiResponse.success(status);
+    }
+
+    /**
+     * 流式导出已保存的历史K线数据
+     * 通过数据库游标逐行写出，响应以chunked方式传输，适合导出整年的1分钟K线
+     */
+    @Operation(summary = "流式导出历史K线数据", description = "逐行导出数据库中已保存的K线，支持jsonl、csv和binary格式")
+    @Parameters({
+            @Parameter(name = "symbol", description = "交易对", required = true, example = "BTC-USDT"),
+            @Parameter(name = "interval", description = "K线间隔 (1m=1分钟, 5m=5分钟, 15m=15分钟, 30m=30分钟, 1H=1小时, 2H=2小时, 4H=4小时, 6H=6小时, 12H=12小时, 1D=1天, 1W=1周, 1M=1个月)",
+                    required = true, example = "1m"),
+            @Parameter(name = "startTimeStr", description = "开始时间 (yyyy-MM-dd HH:mm:ss)", required = true, example = "2024-01-01 00:00:00"),
+            @Parameter(name = "endTimeStr", description = "结束时间 (yyyy-MM-dd HH:mm:ss)", required = true, example = "2025-01-01 00:00:00"),
+            @Parameter(name = "format", description = "导出格式 (jsonl, csv, binary)", required = false, example = "jsonl")
+    })
+    @GetMapping("/export_history")
+    public ResponseEntity<StreamingResponseBody> exportHistoricalData(
+            @NotBlank(message = "交易对不能为空") @RequestParam String symbol,
+            @NotBlank(message = "K线间隔不能为空") @RequestParam String interval,
+            @NotBlank(message = "开始时间不能为空") @RequestParam String startTimeStr,
+            @NotBlank(message = "结束时间不能为空") @RequestParam String endTimeStr,
+            @RequestParam(required = false, defaultValue = "jsonl") String format) {
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        LocalDateTime startTime = LocalDateTime.parse(startTimeStr, formatter);
+        LocalDateTime endTime = LocalDateTime.parse(endTimeStr, formatter);
+        CandleStreamService.StreamFormat streamFormat = CandleStreamService.StreamFormat.valueOf(format.toUpperCase());
+
+        log.info("流式导出历史K线数据, symbol: {}, interval: {}, startTime: {}, endTime: {}, format: {}",
+                symbol, interval, startTimeStr, endTimeStr, streamFormat);
+
+        StreamingResponseBody body = out -> candleStreamService.exportCandles(
+                symbol, interval, startTime, endTime, streamFormat, out);
+        String fileName = String.format("%s_%s_%s_%s.%s", symbol, interval,
+                startTime.toLocalDate(), endTime.toLocalDate(), streamFormat.getFileExtension());
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(streamFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+
+    /**
+     * 流式批量导入K线数据到candlestick_history
+     * 请求体直接作为数据流读取，格式与导出接口一致，已存在的K线会被跳过
+     */
+    @Operation(summary = "流式导入历史K线数据", description = "以请求体作为数据流批量导入K线，格式与导出接口一致，已存在的开盘时间会被跳过")
+    @Parameters({
+            @Parameter(name = "format", description = "导入格式 (jsonl, csv, binary)", required = false, example = "jsonl")
+    })
+    @PostMapping("/import_history")
+    public ApiResponse<Map<String, Object>> importHistoricalData(
+            @RequestParam(required = false, defaultValue = "jsonl") String format,
+            HttpServletRequest request) {
+        try {
+            CandleStreamService.StreamFormat streamFormat = CandleStreamService.StreamFormat.valueOf(format.toUpperCase());
+            log.info("流式导入历史K线数据, format: {}, contentLength: {}", streamFormat, request.getContentLengthLong());
+            Map<String, Object> result = candleStreamService.importCandles(request.getInputStream(), streamFormat);
+            return ApiResponse.success(result);
+        } catch (Exception e) {
+            log.error("导入历史K线数据失败: {}", e.getMessage(), e);
+            return ApiResponse.error(500, "导入历史K线数据失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 将Candlestick转换为CandlestickEntity
      */
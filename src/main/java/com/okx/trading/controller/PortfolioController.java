@@ -0,0 +1,56 @@
+package com.okx.trading.controller;
+
+import com.okx.trading.model.common.ApiResponse;
+import com.okx.trading.service.PortfolioSnapshotService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+
+/**
+ * 持仓组合控制器
+ * 查询持仓组合快照，或通过SSE订阅快照变化，代替前端轮询
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/portfolio")
+@RequiredArgsConstructor
+@Tag(name = "持仓组合")
+public class PortfolioController {
+
+    private final PortfolioSnapshotService portfolioSnapshotService;
+
+    /**
+     * 当前持仓组合快照
+     */
+    @GetMapping("/snapshot")
+    @Operation(summary = "获取持仓组合快照，包含持仓中的策略和收益汇总")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getSnapshot() {
+        return ResponseEntity.ok(ApiResponse.success(portfolioSnapshotService.getSnapshot()));
+    }
+
+    /**
+     * 订阅快照推送
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "通过SSE订阅持仓组合快照，快照变化时推送 portfolio 事件")
+    public SseEmitter stream() {
+        log.debug("新的持仓组合快照订阅");
+        return portfolioSnapshotService.subscribe();
+    }
+
+    /**
+     * 快照统计
+     */
+    @GetMapping("/stats")
+    @Operation(summary = "持仓组合快照的更新次数、生成次数和订阅数")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getStats() {
+        return ResponseEntity.ok(ApiResponse.success(portfolioSnapshotService.getStats()));
+    }
+}
@@ -0,0 +1,40 @@
+package com.okx.trading.controller;
+
+import com.okx.trading.model.common.ApiResponse;
+import com.okx.trading.model.dto.ReplayRequestDTO;
+import com.okx.trading.service.ReplayService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 行情回放控制器
+ * 用录制的行情驱动实时策略，输出吞吐、延迟分位数和交易日志，只能在模拟下单模式下使用
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/replay")
+@RequiredArgsConstructor
+@Tag(name = "行情回放")
+public class ReplayController {
+
+    private final ReplayService replayService;
+
+    /**
+     * 执行回放，回放结束后返回报告
+     */
+    @PostMapping("/run")
+    @Operation(summary = "回放录制的WebSocket消息帧或历史K线，返回吞吐、延迟分位数、交易日志和基准比对结果")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> replay(@Valid @RequestBody ReplayRequestDTO request) {
+        log.info("开始行情回放: source={}, strategies={}, speed={}",
+                request.getFramesFile() != null ? request.getFramesFile() : request.getSymbol() + " " + request.getInterval(),
+                request.getStrategyCodes(), request.getSpeed());
+        return ResponseEntity.ok(ApiResponse.success(replayService.replay(request)));
+    }
+}
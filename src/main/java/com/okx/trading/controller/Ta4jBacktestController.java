@@ -159,19 +159,15 @@ public class Ta4jBacktestController {
 
         try {
 
-            // 获取历史数据
-            List<CandlestickEntity> candlesticks = historicalDataService.fetchAndSaveHistoryWithIntegrityCheck(symbol, interval, startTime.format(dateFormat), endTime.format(dateFormat));
+            // 获取历史数据（优先从本地K线归档直接读取为条形系列）
+            BarSeries series = historicalDataService.fetchBarSeriesWithIntegrityCheck(symbol, interval, startTime.format(dateFormat), endTime.format(dateFormat));
 
             // 获取基准数据
-            List<CandlestickEntity> benchmarkCandlesticks = historicalDataService.fetchAndSaveHistoryWithIntegrityCheck("BTC-USDT", interval, startTime.format(dateFormat), endTime.format(dateFormat));
+            List<CandlestickEntity> benchmarkCandlesticks = historicalDataService.fetchArchivedHistoryWithIntegrityCheck("BTC-USDT", interval, startTime.format(dateFormat), endTime.format(dateFormat));
 
-            if (candlesticks == null || candlesticks.isEmpty()) {
+            if (series == null || series.isEmpty()) {
                 return ApiResponse.error(404, "未找到指定条件的历史数据");
             }
-            // 生成唯一的系列名称
-            String seriesName = CandlestickAdapter.getSymbol(candlesticks.get(0)) + "_" + CandlestickAdapter.getIntervalVal(candlesticks.get(0));
-            // 使用转换器将蜡烛图实体转换为条形系列
-            BarSeries series = barSeriesConverter.convert(candlesticks, seriesName);
 
             StrategyInfoEntity strategy = strategyInfoService.getStrategyByCode(strategyType).get();
 
@@ -269,23 +265,20 @@ public class Ta4jBacktestController {
             // ========== 性能优化: 数据只加载一次，所有策略共享 ==========
             long dataLoadStart = System.currentTimeMillis();
             
-            // 获取历史数据（只加载一次）
-            List<CandlestickEntity> candlesticks = historicalDataService.fetchAndSaveHistoryWithIntegrityCheck(
+            // 获取历史数据并转换为条形系列（只加载一次，优先从本地K线归档读取）
+            BarSeries series = historicalDataService.fetchBarSeriesWithIntegrityCheck(
                 symbol, interval, startTime.format(dateFormat), endTime.format(dateFormat));
 
             // 获取基准数据（只加载一次）
-            List<CandlestickEntity> benchmarkCandlesticks = historicalDataService.fetchAndSaveHistoryWithIntegrityCheck(
+            List<CandlestickEntity> benchmarkCandlesticks = historicalDataService.fetchArchivedHistoryWithIntegrityCheck(
                 "BTC-USDT", interval, startTime.format(dateFormat), endTime.format(dateFormat));
 
-            // 生成唯一的系列名称
-            String seriesName = CandlestickAdapter.getSymbol(candlesticks.get(0)) + "_" + 
-                               CandlestickAdapter.getIntervalVal(candlesticks.get(0));
-
-            // 使用转换器将蜡烛图实体转换为条形系列（只转换一次）
-            BarSeries series = barSeriesConverter.convert(candlesticks, seriesName);
+            if (series == null || series.isEmpty()) {
+                return ApiResponse.error(404, "未找到指定条件的历史数据");
+            }
             
             long dataLoadEnd = System.currentTimeMillis();
-            log.info("数据加载完成，耗时: {}ms, K线数量: {}", (dataLoadEnd - dataLoadStart), candlesticks.size());
+            log.info("数据加载完成，耗时: {}ms, K线数量: {}", (dataLoadEnd - dataLoadStart), series.getBarCount());
 
             // 获取所有支持的策略
             Map<String, Map<String, Object>> strategiesInfo = strategyInfoService.getStrategiesInfo();
@@ -805,11 +798,12 @@ public class Ta4jBacktestController {
 
             log.info("AI返回了{}个策略信息，开始处理", batchStrategyInfos.size());
 
-            // 处理每个策略信息
+            // 处理每个策略信息：先全部保存，再批量编译
+            List<Integer> savedIndexes = new ArrayList<>();
+            List<StrategyInfoEntity> savedStrategies = new ArrayList<>();
             for (int i = 0; i < batchStrategyInfos.size(); i++) {
                 try {
                     JSONObject strategyInfo = batchStrategyInfos.getJSONObject(i);
-                    String originalDescription = i < validDescriptions.size() ? validDescriptions.get(i) : "未知描述";
 
                     // 从AI返回的信息中提取各个字段
                     String strategyName = strategyInfo.getString("strategyName");
@@ -843,16 +837,33 @@ public class Ta4jBacktestController {
 
                     // 保存到数据库
                     StrategyInfoEntity savedStrategy = strategyInfoService.saveStrategy(strategyEntity);
+                    savedIndexes.add(i);
+                    savedStrategies.add(savedStrategy);
+                    generatedStrategies.add(savedStrategy);
 
-                    // 编译并动态加载策略 - 使用智能编译服务
-                    String compileError = null;
-                    boolean compileSuccess = true;
-                    try {
-                        smartDynamicStrategyService.compileAndLoadStrategy(generatedCode, savedStrategy);
+                } catch (Exception e) {
+                    generatedStrategies.add(generationFailed(i, validDescriptions, e, errorMessages));
+                }
+            }
+
+            // 编译并动态加载策略 - 使用智能编译服务，全部策略批量编译，只有失败的策略进入自动修复
+            Map<String, String> compileErrors = smartDynamicStrategyService.compileAndLoadStrategies(savedStrategies);
+
+            for (int k = 0; k < savedStrategies.size(); k++) {
+                int i = savedIndexes.get(k);
+                StrategyInfoEntity savedStrategy = savedStrategies.get(k);
+                String originalDescription = i < validDescriptions.size() ? validDescriptions.get(i) : "未知描述";
+                String uniqueStrategyId = savedStrategy.getStrategyCode();
+                String strategyName = savedStrategy.getStrategyName();
+                try {
+                    JSONObject strategyInfo = batchStrategyInfos.getJSONObject(i);
+                    String generatedCode = savedStrategy.getSourceCode();
+
+                    String compileError = compileErrors.get(uniqueStrategyId);
+                    boolean compileSuccess = compileError == null;
+                    if (compileSuccess) {
                         log.info("第{}个AI策略编译成功，策略代码: {}, 策略名称: {}", i + 1, uniqueStrategyId, strategyName);
-                    } catch (Exception compileException) {
-                        compileSuccess = false;
-                        compileError = compileException.getMessage();
+                    } else {
                         // 保存编译错误到strategy_info表的load_error字段
                         savedStrategy.setLoadError(compileError);
                         strategyInfoService.saveStrategy(savedStrategy);
@@ -875,15 +886,6 @@ public class Ta4jBacktestController {
                             .build();
                     strategyConversationService.saveConversation(conversation);
 
-                    // 如果对话记录中有编译错误，同步更新strategy_info表的load_error字段
-                    if (compileError != null && !compileError.trim().isEmpty()) {
-                        savedStrategy.setLoadError(compileError);
-                        strategyInfoService.saveStrategy(savedStrategy);
-                        log.debug("同步编译错误到strategy_info表，策略ID: {}", savedStrategy.getId());
-                    }
-
-                    generatedStrategies.add(savedStrategy);
-                    
                     if (compileSuccess) {
                         log.info("第{}个AI策略生成并编译成功，策略代码: {}, 策略名称: {}", i + 1, uniqueStrategyId, strategyName);
                     } else {
@@ -891,23 +893,9 @@ public class Ta4jBacktestController {
                     }
 
                 } catch (Exception e) {
-                    String originalDescription = i < validDescriptions.size() ? validDescriptions.get(i) : "未知描述";
                     String errorMsg = String.format("第%d个策略处理失败: %s, 描述: %s", i + 1, e.getMessage(), originalDescription);
                     log.error(errorMsg, e);
                     errorMessages.add(errorMsg);
-
-                    // 创建一个错误的策略实体用于返回
-                    StrategyInfoEntity errorStrategy = StrategyInfoEntity.builder()
-                            .strategyCode("ERROR_" + (i + 1))
-                            .strategyName("生成失败")
-                            .description(originalDescription)
-                            .comments("生成失败: " + e.getMessage())
-                            .category("错误")
-                            .paramsDesc("{}")
-                            .defaultParams("{}")
-                            .sourceCode("// 生成失败")
-                            .build();
-                    generatedStrategies.add(errorStrategy);
                 }
             }
 
@@ -937,6 +925,27 @@ public class Ta4jBacktestController {
         return ApiResponse.success(generatedStrategies);
     }
 
+    /**
+     * 记录生成失败的策略，返回用于展示的错误策略实体
+     */
+    private StrategyInfoEntity generationFailed(int i, List<String> validDescriptions, Exception e, List<String> errorMessages) {
+        String originalDescription = i < validDescriptions.size() ? validDescriptions.get(i) : "未知描述";
+        String errorMsg = String.format("第%d个策略处理失败: %s, 描述: %s", i + 1, e.getMessage(), originalDescription);
+        log.error(errorMsg, e);
+        errorMessages.add(errorMsg);
+
+        // 创建一个错误的策略实体用于返回
+        return StrategyInfoEntity.builder()
+                .strategyCode("ERROR_" + (i + 1))
+                .strategyName("生成失败")
+                .description(originalDescription)
+                .comments("生成失败: " + e.getMessage())
+                .category("错误")
+                .paramsDesc("{}")
+                .defaultParams("{}")
+                .sourceCode("// 生成失败")
+                .build();
+    }
 
     @PostMapping("/update-strategy")
     @Operation(summary = "更新策略", description = "更新策略信息和源代码，并重新加载到系统中")
@@ -174,16 +174,18 @@ public class TradeController {
      *
      * @param symbol  交易对，如BTC-USDT
      * @param orderId 订单ID
+     * @param simulated 是否为模拟交易，与下单时一致
      * @return 是否成功
      */
     @DeleteMapping("/orders")
     public ApiResponse<Boolean> cancelOrder(
             @NotBlank(message = "交易对不能为空") @RequestParam String symbol,
-            @NotBlank(message = "订单ID不能为空") @RequestParam String orderId) {
+            @NotBlank(message = "订单ID不能为空") @RequestParam String orderId,
+            @RequestParam(required = false) Boolean simulated) {
 
-        log.info("取消订单, symbol: {}, orderId: {}", symbol, orderId);
+        log.info("取消订单, symbol: {}, orderId: {}, simulated: {}", symbol, orderId, simulated);
 
-        boolean success = okxApiService.cancelOrder(symbol, orderId);
+        boolean success = okxApiService.cancelOrder(symbol, orderId, Boolean.TRUE.equals(simulated));
 
         return ApiResponse.success(success);
     }
@@ -1,8 +1,12 @@
 package com.okx.trading.event;
 
+import com.alibaba.fastjson.JSONObject;
 import lombok.Getter;
 import org.springframework.context.ApplicationEvent;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * WebSocket重连事件
  * 当WebSocket连接断开并重新连接后触发
@@ -35,6 +39,21 @@ public class WebSocketReconnectEvent extends ApplicationEvent {
      */
     private final ReconnectType type;
 
+    /**
+     * 业务频道分片序号，其他频道为-1
+     */
+    private final int shardIndex;
+
+    /**
+     * 断线时间（毫秒时间戳），未知时为0
+     */
+    private final long disconnectedAt;
+
+    /**
+     * 重连的连接上需要恢复的订阅参数
+     */
+    private final List<JSONObject> topics;
+
     /**
      * 创建WebSocket重连事件
      *
@@ -42,7 +61,23 @@ public class WebSocketReconnectEvent extends ApplicationEvent {
      * @param type 重连类型
      */
     public WebSocketReconnectEvent(Object source, ReconnectType type) {
+        this(source, type, -1, 0, Collections.emptyList());
+    }
+
+    /**
+     * 创建业务频道分片重连事件
+     *
+     * @param source         事件源
+     * @param type           重连类型
+     * @param shardIndex     分片序号
+     * @param disconnectedAt 断线时间（毫秒时间戳）
+     * @param topics         分片上的订阅参数
+     */
+    public WebSocketReconnectEvent(Object source, ReconnectType type, int shardIndex, long disconnectedAt, List<JSONObject> topics) {
         super(source);
         this.type = type;
+        this.shardIndex = shardIndex;
+        this.disconnectedAt = disconnectedAt;
+        this.topics = topics;
     }
 } 
\ No newline at end of file
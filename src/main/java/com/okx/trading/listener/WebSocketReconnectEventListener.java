@@ -1,29 +1,41 @@
 package com.okx.trading.listener;
 
+import com.alibaba.fastjson.JSONObject;
 import com.okx.trading.event.WebSocketReconnectEvent;
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.model.market.Candlestick;
+import com.okx.trading.service.HistoricalDataService;
 import com.okx.trading.service.KlineCacheService;
-import com.okx.trading.service.OkxApiService;
 import com.okx.trading.strategy.RealTimeStrategyManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 /**
  * WebSocket重连事件监听器
- * 处理WebSocket重连后的K线数据重新订阅
+ * K线订阅由业务频道分片连接池在连接建立时批量恢复，这里负责补齐分片断线期间缺失的K线：
+ * 事件在分片重新订阅前同步发布，先让策略管理器暂存该分片K线的推送，
+ * 再通过历史数据服务拉取缺口，补齐后按时间顺序交给策略，策略不会看到缺口
  * 
- * 注意: 只有当 kline.kafka.enabled=true 时才会重新订阅
+ * 注意: 只有当 kline.kafka.enabled=true 时才会处理
  * 如果 kline.kafka.enabled=false，数据来自 Kafka，不需要订阅 WebSocket
  */
 @Component
@@ -31,141 +43,103 @@ public class WebSocketReconnectEventListener {
 
     private static final Logger log = LoggerFactory.getLogger(WebSocketReconnectEventListener.class);
 
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final ZoneId ZONE_ID = ZoneId.of("UTC+8");
+
     private final KlineCacheService klineCacheService;
-    private final OkxApiService okxApiService;
     private final RealTimeStrategyManager realTimeStrategyManager;
+    private final HistoricalDataService historicalDataService;
+    private final ExecutorService gapFillExecutorService;
 
     @Value("${kline.kafka.enabled:false}")
     private boolean klineKafkaEnabled;
 
     @Autowired
     public WebSocketReconnectEventListener(KlineCacheService klineCacheService,
-                                           @Lazy OkxApiService okxApiService, RealTimeStrategyManager realTimeStrategyManager) {
+                                           RealTimeStrategyManager realTimeStrategyManager,
+                                           @Lazy HistoricalDataService historicalDataService,
+                                           @Qualifier("gapFillExecutorService") ExecutorService gapFillExecutorService) {
         this.klineCacheService = klineCacheService;
-        this.okxApiService = okxApiService;
         this.realTimeStrategyManager = realTimeStrategyManager;
+        this.historicalDataService = historicalDataService;
+        this.gapFillExecutorService = gapFillExecutorService;
     }
 
     /**
      * 处理WebSocket重连事件
-     * 公共频道或业务频道重连时，重新订阅所有K线数据
-     * 
-     * 注意: 只有当 kline.kafka.enabled=true 时才会重新订阅
+     * 在发布事件的WebSocket线程中同步执行，只登记缺口并提交补齐任务，不做阻塞操作
      */
     @EventListener
-    @Async("websocketReconnectScheduler")
     public void handleWebSocketReconnect(WebSocketReconnectEvent event) {
         log.info("收到WebSocket重连事件，重连类型: {}, kline.kafka.enabled={}", event.getType(), klineKafkaEnabled);
 
-        // 如果 Kafka 未启用，说明数据来自 Kafka，不需要订阅 WebSocket
+        // 如果 Kafka 未启用，说明数据来自 Kafka，不需要处理 WebSocket K线
         if (!klineKafkaEnabled) {
-            log.info("kline.kafka.enabled=false，数据来自 Kafka，跳过 WebSocket 重新订阅");
+            log.info("kline.kafka.enabled=false，数据来自 Kafka，跳过 WebSocket K线缺口补齐");
             return;
         }
 
-        try {
-            // 公共频道和业务频道重连时都需要重新订阅K线数据
-            if (event.getType() == WebSocketReconnectEvent.ReconnectType.PUBLIC) {
-                // 延迟3秒等待连接稳定
-                Thread.sleep(3000);
-
-                log.info("开始重新订阅WebSocket重连前的K线数据(公共频道重连)...");
-                resubscribeAllKlineData();
-            } else if (event.getType() == WebSocketReconnectEvent.ReconnectType.BUSINESS) {
-                // 业务频道重连时也可能需要重新订阅某些数据
-                Thread.sleep(2000);
+        if (event.getType() != WebSocketReconnectEvent.ReconnectType.BUSINESS || event.getDisconnectedAt() <= 0) {
+            return;
+        }
 
-                log.info("业务频道重连完成，检查是否需要重新订阅数据...");
-                // 目前K线订阅主要通过公共频道，业务频道重连暂时不需要特殊处理
-                // 但可以在这里添加业务频道相关的重新订阅逻辑
+        Set<String> running = realTimeStrategyManager.getRunningStrategies().values().stream()
+                .map(x -> x.getSymbol() + ":" + x.getInterval()).collect(Collectors.toSet());
+        LocalDateTime disconnectedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getDisconnectedAt()), ZONE_ID);
+        int gaps = 0;
+        for (JSONObject arg : event.getTopics()) {
+            String channel = arg.getString("channel");
+            String symbol = arg.getString("instId");
+            if (channel == null || !channel.startsWith("candle") || symbol == null) {
+                continue;
+            }
+            String interval = channel.substring("candle".length());
+            // 只补齐有运行中策略的K线，没有策略时推送恢复即可
+            if (!running.contains(symbol + ":" + interval)) {
+                continue;
+            }
+            realTimeStrategyManager.beginGapFill(symbol, interval);
+            try {
+                gapFillExecutorService.execute(() -> fillGap(symbol, interval, disconnectedAt));
+                gaps++;
+            } catch (RejectedExecutionException e) {
+                log.warn("提交K线缺口补齐任务失败: {} {}", symbol, interval);
+                realTimeStrategyManager.completeGapFill(symbol, interval, Collections.emptyList());
             }
-        } catch (Exception e) {
-            log.error("处理WebSocket重连事件失败: {}", e.getMessage(), e);
         }
+        log.info("业务频道分片#{}重连，断线时间 {}，提交 {} 个K线缺口补齐任务", event.getShardIndex(), disconnectedAt, gaps);
     }
 
     /**
-     * 重新订阅所有K线数据
+     * 拉取断线期间已收盘的K线并交给策略管理器
+     * 从断线时所在周期开始拉取，该周期的最后一次推送可能没有收到
      */
-    private void resubscribeAllKlineData() {
+    private void fillGap(String symbol, String interval, LocalDateTime disconnectedAt) {
+        List<Candlestick> missed = Collections.emptyList();
         try {
-            // 从缓存服务获取所有之前订阅的K线数据
-            Set<String> allSubscribedKlines = realTimeStrategyManager.getRunningStrategies().values().stream()
-                    .map(x -> x.getSymbol() + ":" + x.getInterval()).collect(Collectors.toSet());
-
-            if (allSubscribedKlines.isEmpty()) {
-                log.info("没有发现之前订阅的K线数据，跳过重新订阅");
-                return;
-            }
-
-            log.info("发现 {} 个K线订阅记录，开始重新订阅...", allSubscribedKlines.size());
-
-            okxApiService.clearSubscribeCache();
-            int totalResubscribed = 0;
-            int successCount = 0;
-
-            // 遍历所有订阅的交易对和时间间隔
-            for (String symbolInterval : allSubscribedKlines) {
-                String[] split = symbolInterval.split(":", -1);
-                if (split.length != 2) {
-                    log.warn("无效的订阅格式: {}", symbolInterval);
-                    continue;
-                }
-
-                String symbol = split[0];
-                String interval = split[1];
-
-                totalResubscribed++;
-                try {
-                    // 重新订阅K线数据
-                    boolean success = okxApiService.subscribeKlineData(symbol, interval);
-                    if (success) {
-                        successCount++;
-                        log.debug("重新订阅K线数据成功: {} {}", symbol, interval);
-                    } else {
-                        log.warn("重新订阅K线数据失败: {} {}", symbol, interval);
-                    }
-
-                    // 添加小延迟避免频率过高
-                    Thread.sleep(100);
-                } catch (Exception e) {
-                    log.error("重新订阅K线数据异常: {} {}, 错误: {}", symbol, interval, e.getMessage());
-                }
-            }
-
-            log.info("K线数据重新订阅完成: 总计 {} 个，成功 {} 个，失败 {} 个",
-                    totalResubscribed, successCount, totalResubscribed - successCount);
-
+            long intervalMinutes = historicalDataService.getIntervalMinutes(interval);
+            LocalDateTime start = disconnectedAt.minusMinutes(intervalMinutes);
+            LocalDateTime end = LocalDateTime.now(ZONE_ID);
+            List<CandlestickEntity> entities = historicalDataService.fetchAndSaveHistoryWithIntegrityCheck(
+                    symbol, interval, start.format(DATE_FORMAT), end.format(DATE_FORMAT));
+            // 只交出已收盘的K线，当前周期的K线继续由推送更新
+            missed = entities.stream()
+                    .filter(entity -> !entity.getOpenTime().plusMinutes(intervalMinutes).isAfter(end))
+                    .sorted(Comparator.comparing(CandlestickEntity::getOpenTime))
+                    .map(entity -> {
+                        Candlestick candlestick = new Candlestick();
+                        BeanUtils.copyProperties(entity, candlestick);
+                        candlestick.setChannel("candle" + interval);
+                        candlestick.setIntervalVal(interval);
+                        // 实体没有state字段，复制后为0（未完结），补齐的都是已收盘的K线
+                        candlestick.setState(1);
+                        return candlestick;
+                    })
+                    .collect(Collectors.toList());
         } catch (Exception e) {
-            log.error("重新订阅所有K线数据失败: {}", e.getMessage(), e);
+            log.error("补齐K线缺口失败: {} {}, 错误: {}", symbol, interval, e.getMessage(), e);
+        } finally {
+            realTimeStrategyManager.completeGapFill(symbol, interval, missed);
         }
     }
-
-    /**
-     * 异步重新订阅指定交易对的K线数据
-     */
-    @Async("customAsyncTaskExecutor")
-    public CompletableFuture<Void> resubscribeKlineDataAsync(String symbol, List<String> intervals) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                log.info("异步重新订阅交易对 {} 的K线数据，时间间隔: {}", symbol, intervals);
-
-                for (String interval : intervals) {
-                    try {
-                        boolean success = okxApiService.subscribeKlineData(symbol, interval);
-                        if (success) {
-                            log.debug("异步重新订阅K线数据成功: {} {}", symbol, interval);
-                        } else {
-                            log.warn("异步重新订阅K线数据失败: {} {}", symbol, interval);
-                        }
-                        Thread.sleep(100); // 添加延迟
-                    } catch (Exception e) {
-                        log.error("异步重新订阅K线数据异常: {} {}, 错误: {}", symbol, interval, e.getMessage());
-                    }
-                }
-            } catch (Exception e) {
-                log.error("异步重新订阅K线数据失败: {} {}", symbol, e.getMessage(), e);
-            }
-        });
-    }
 }
@@ -0,0 +1,54 @@
+package com.okx.trading.model.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import java.util.List;
+
+/**
+ * 行情回放请求DTO
+ * 数据来源二选一：framesFile 为录制的OKX WebSocket消息帧文件；为空时按 symbol、interval、时间范围读取 candlestick_history
+ * framesFile 和 goldenFile 是相对回放目录 okx.replay.dir 的路径，不能指向回放目录以外
+ */
+@Data
+@Schema(description = "行情回放请求参数")
+public class ReplayRequestDTO {
+
+    @Schema(description = "录制的WebSocket消息帧文件，相对回放目录的路径，每行一条消息，可带接收时间戳前缀：<毫秒时间戳>\\t<消息>", example = "btc-1m.frames")
+    private String framesFile;
+
+    @Schema(description = "交易对，读取历史K线时必填", example = "BTC-USDT")
+    private String symbol;
+
+    @Schema(description = "K线周期，读取历史K线时必填", example = "1m")
+    private String interval;
+
+    @Schema(description = "开始时间，读取历史K线时必填", example = "2024-01-01 00:00:00")
+    private String startTime;
+
+    @Schema(description = "结束时间，读取历史K线时必填", example = "2024-01-31 23:59:59")
+    private String endTime;
+
+    @Schema(description = "回放的策略代码", requiredMode = Schema.RequiredMode.REQUIRED, example = "[\"SMA\", \"MACD\"]")
+    @NotEmpty(message = "策略代码不能为空")
+    private List<String> strategyCodes;
+
+    @Schema(description = "每个策略的初始投资金额", example = "1000")
+    private Double tradeAmount = 1000.0;
+
+    @Schema(description = "回放倍速，1为按原始时间间隔回放，0为不等待全速回放", example = "0")
+    @Min(value = 0, message = "回放倍速不能小于0")
+    private double speed = 0;
+
+    @Schema(description = "每个交易对和周期用于初始化BarSeries的K线数量，这些K线不触发信号", example = "100")
+    @Min(value = 1, message = "预热K线数量必须大于0")
+    private int warmupBars = 100;
+
+    @Schema(description = "交易日志基准文件，相对回放目录的路径，不为空时与回放产生的交易日志逐行比对", example = "btc-1m.golden")
+    private String goldenFile;
+
+    @Schema(description = "是否用本次回放的交易日志覆盖基准文件", example = "false")
+    private boolean updateGolden = false;
+}
@@ -0,0 +1,111 @@
+package com.okx.trading.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 历史数据回填检查点实体
+ * 记录每个回填任务的进度，服务重启后从游标位置继续回填
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "backfill_checkpoint", indexes = {
+        @Index(name = "idx_backfill_status", columnList = "status"),
+        @Index(name = "idx_backfill_symbol_interval", columnList = "symbol,interval_val")
+})
+public class BackfillCheckpointEntity {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 交易对或股票代码，如BTC-USDT、000001.SZ
+     */
+    @Column(name = "symbol", nullable = false, length = 20)
+    private String symbol;
+
+    /**
+     * K线间隔
+     */
+    @Column(name = "interval_val", nullable = false, length = 10)
+    private String intervalVal;
+
+    /**
+     * 回填开始时间
+     */
+    @Column(name = "start_time", nullable = false)
+    private LocalDateTime startTime;
+
+    /**
+     * 回填结束时间
+     */
+    @Column(name = "end_time", nullable = false)
+    private LocalDateTime endTime;
+
+    /**
+     * 当前游标，之前的数据已回填完成
+     */
+    @Column(name = "cursor_time", nullable = false)
+    private LocalDateTime cursorTime;
+
+    /**
+     * 优先级：LIVE_WARMUP, GAP_FILL, RESEARCH
+     */
+    @Column(name = "priority", nullable = false, length = 20)
+    private String priority;
+
+    /**
+     * 状态：PENDING, RUNNING, COMPLETED, FAILED
+     */
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    /**
+     * 当前分页连续失败次数
+     */
+    @Column(name = "attempts")
+    private Integer attempts;
+
+    /**
+     * 已保存的K线数量
+     */
+    @Column(name = "saved_count")
+    private Long savedCount;
+
+    /**
+     * 最近一次错误信息
+     */
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "create_time")
+    private LocalDateTime createTime;
+
+    @Column(name = "update_time")
+    private LocalDateTime updateTime;
+
+    @PrePersist
+    public void prePersist() {
+        this.createTime = LocalDateTime.now();
+        this.updateTime = this.createTime;
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        this.updateTime = LocalDateTime.now();
+    }
+}
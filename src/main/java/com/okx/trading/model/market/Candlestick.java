@@ -1,7 +1,10 @@
 package com.okx.trading.model.market;
 
 import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.annotation.JSONField;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.okx.trading.util.TickTrace;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -92,6 +95,13 @@ public class Candlestick implements Comparable<Candlestick>{
 
     private Map<String,Map<String,BigDecimal>> indecator;
 
+    /**
+     * 行情到下单的追踪上下文，只在进程内随K线传递，不序列化
+     */
+    @JsonIgnore
+    @JSONField(serialize = false, deserialize = false)
+    private transient TickTrace trace;
+
     @Override
     public String toString(){
         return JSONObject.toJSONString(this);
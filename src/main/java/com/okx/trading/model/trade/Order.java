@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
  * 用于存储交易订单信息
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order {
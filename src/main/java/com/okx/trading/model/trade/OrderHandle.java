@@ -0,0 +1,133 @@
+package com.okx.trading.model.trade;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 订单句柄
+ * 下单请求发送后立即返回，订单状态由私有 orders 频道推送驱动：
+ * <ul>
+ *     <li>{@link #getAck()}：收到下单回执或第一条订单推送时完成</li>
+ *     <li>{@link #getFirstFill()}：首次成交（部分成交或全部成交）时完成</li>
+ *     <li>{@link #getResult()}：订单进入终态（全部成交、撤销、拒绝）时完成</li>
+ *     <li>{@link #getSettled()}：订单进入终态时完成；超时或下单失败时由跟踪服务对账后以对账结果完成，不会异常结束</li>
+ * </ul>
+ */
+public class OrderHandle {
+
+    private final String clientOrderId;
+    private final String symbol;
+    private final long createTime = System.currentTimeMillis();
+    private final CompletableFuture<Order> ack = new CompletableFuture<>();
+    private final CompletableFuture<Order> firstFill = new CompletableFuture<>();
+    private final CompletableFuture<Order> result = new CompletableFuture<>();
+    private final CompletableFuture<Order> settled = new CompletableFuture<>();
+    private volatile Order latest;
+
+    public OrderHandle(String clientOrderId, String symbol) {
+        this.clientOrderId = clientOrderId;
+        this.symbol = symbol;
+    }
+
+    /**
+     * 已经确定结果的句柄，用于同步下单的实现
+     */
+    public static OrderHandle completed(Order order) {
+        OrderHandle handle = new OrderHandle(order != null ? order.getClientOrderId() : null,
+                order != null ? order.getSymbol() : null);
+        handle.latest = order;
+        handle.ack.complete(order);
+        handle.firstFill.complete(order);
+        handle.result.complete(order);
+        handle.settled.complete(order);
+        return handle;
+    }
+
+    public String getClientOrderId() {
+        return clientOrderId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    /**
+     * 最近一次收到的订单状态，尚未收到推送时为null
+     */
+    public Order getLatest() {
+        return latest;
+    }
+
+    public CompletableFuture<Order> getAck() {
+        return ack;
+    }
+
+    public CompletableFuture<Order> getFirstFill() {
+        return firstFill;
+    }
+
+    public CompletableFuture<Order> getResult() {
+        return result;
+    }
+
+    public CompletableFuture<Order> getSettled() {
+        return settled;
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /**
+     * 等待下单回执，只用于需要同步返回订单的接口，成交结果通过 {@link #getSettled()} 获取
+     *
+     * @param timeoutMs 超时毫秒
+     * @return 下单回执；超时或下单失败时为最近一次收到的状态，可能为null
+     */
+    public Order awaitAck(long timeoutMs) {
+        try {
+            return ack.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException | ExecutionException e) {
+            // 回执未到，结果由对账补齐
+        }
+        return latest;
+    }
+
+    /**
+     * 由 {@link com.okx.trading.service.OrderTrackerService} 调用，更新最新状态
+     */
+    public void update(Order order, boolean filled, boolean terminal) {
+        latest = order;
+        ack.complete(order);
+        if (filled) {
+            firstFill.complete(order);
+        }
+        if (terminal) {
+            result.complete(order);
+        }
+    }
+
+    /**
+     * 下单失败
+     */
+    public void fail(Throwable cause) {
+        ack.completeExceptionally(cause);
+        firstFill.completeExceptionally(cause);
+        result.completeExceptionally(cause);
+    }
+
+    /**
+     * 由 {@link com.okx.trading.service.OrderTrackerService} 调用，确定订单的最终结果
+     */
+    public void settle(Order order) {
+        settled.complete(order);
+    }
+}
@@ -0,0 +1,30 @@
+package com.okx.trading.repository;
+
+import com.okx.trading.model.entity.BackfillCheckpointEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 历史数据回填检查点Repository
+ */
+@Repository
+public interface BackfillCheckpointRepository extends JpaRepository<BackfillCheckpointEntity, Long> {
+
+    /**
+     * 根据状态查询检查点，用于重启后恢复未完成的回填任务
+     */
+    List<BackfillCheckpointEntity> findByStatusInOrderByIdAsc(Collection<String> statuses);
+
+    /**
+     * 查询指定交易对和周期的检查点
+     */
+    List<BackfillCheckpointEntity> findBySymbolAndIntervalValOrderByIdDesc(String symbol, String intervalVal);
+
+    /**
+     * 查询最近的检查点
+     */
+    List<BackfillCheckpointEntity> findTop100ByOrderByIdDesc();
+}
@@ -4,9 +4,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import jakarta.persistence.QueryHint;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -67,6 +71,29 @@ public interface BacktestSummaryRepository extends JpaRepository<BacktestSummary
     @Query("SELECT b FROM BacktestSummaryEntity b WHERE b.batchBacktestId IS NOT NULL")
     List<BacktestSummaryEntity> findByBatchBacktestIdNotNull();
 
+    /**
+     * 以流式游标读取所有有交易的回测汇总，用于全量重建指标分布
+     * fetchSize为Integer.MIN_VALUE时MySQL驱动逐行返回结果，不会把整个结果集加载到内存；
+     * 调用方必须在事务内消费并关闭Stream，并及时detach已读取的实体
+     *
+     * @return 回测汇总数据流
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheable", value = "false")
+    })
+    @Query("SELECT b FROM BacktestSummaryEntity b WHERE b.numberOfTrades > 0")
+    Stream<BacktestSummaryEntity> streamWithTrades();
+
+    /**
+     * 查询当前最大的回测汇总ID，全量重建时用来区分重建期间新保存的回测
+     *
+     * @return 最大ID，没有数据时为null
+     */
+    @Query("SELECT MAX(b.id) FROM BacktestSummaryEntity b")
+    Long findMaxId();
+
     /**
      * 删除指定回测ID的汇总信息
      *
@@ -2,11 +2,15 @@ package com.okx.trading.repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import jakarta.persistence.QueryHint;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -34,6 +38,27 @@ public interface CandlestickRepository extends JpaRepository<CandlestickEntity,
             @Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
 
 
+    /**
+     * 以流式游标读取指定时间范围内的K线数据，用于大范围导出
+     * fetchSize为Integer.MIN_VALUE时MySQL驱动逐行返回结果，不会把整个结果集加载到内存；
+     * 调用方必须在事务内消费并关闭Stream，并及时detach已读取的实体
+     *
+     * @param symbol 交易对
+     * @param interval 时间间隔
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @return K线数据流
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheable", value = "false")
+    })
+    @Query("SELECT c FROM CandlestickEntity c WHERE c.symbol = :symbol AND BINARY(c.intervalVal) = BINARY(:interval_val) AND c.openTime BETWEEN :startTime AND :endTime ORDER BY c.openTime ASC")
+    Stream<CandlestickEntity> streamBySymbolAndIntervalAndOpenTimeBetween(
+            @Param("symbol") String symbol, @Param("interval_val") String intervalVal,
+            @Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
+
     /**
      * 根据交易对和时间间隔查询指定时间范围内的K线数据
      *
@@ -0,0 +1,63 @@
+package com.okx.trading.service;
+
+import com.okx.trading.model.entity.BackfillCheckpointEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 历史数据回填调度服务
+ * 按优先级调度回填任务，按上游和接口限流，失败后带抖动重试，进度以检查点形式持久化到MySQL
+ */
+public interface BackfillSchedulerService {
+
+    /**
+     * 回填优先级，数值越小越先执行
+     */
+    enum BackfillPriority {
+        /**
+         * 实盘策略启动前的预热数据
+         */
+        LIVE_WARMUP,
+        /**
+         * 断线等原因造成的数据缺口
+         */
+        GAP_FILL,
+        /**
+         * 回测研究用的大范围回填
+         */
+        RESEARCH
+    }
+
+    /**
+     * 提交回填任务
+     *
+     * @param symbol    交易对，如BTC-USDT，或股票代码如000001.SZ
+     * @param interval  K线间隔，如1m, 5m, 15m, 30m, 1H, 2H, 4H, 6H, 12H, 1D, 1W, 1M
+     * @param startTime 开始时间
+     * @param endTime   结束时间（不包含）
+     * @param priority  优先级
+     * @return 完成时返回保存的K线数量
+     */
+    CompletableFuture<Long> submit(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime,
+                                   BackfillPriority priority);
+
+    /**
+     * 恢复MySQL中未完成的回填任务
+     *
+     * @return 恢复的任务数量
+     */
+    int resumePendingTasks();
+
+    /**
+     * 查询最近的回填检查点
+     */
+    List<BackfillCheckpointEntity> getRecentCheckpoints();
+
+    /**
+     * 获取调度器状态：队列长度、运行中任务、令牌桶余量等
+     */
+    Map<String, Object> getStatus();
+}
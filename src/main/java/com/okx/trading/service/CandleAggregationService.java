@@ -0,0 +1,47 @@
+package com.okx.trading.service;
+
+import com.okx.trading.model.entity.CandlestickEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * K线聚合服务
+ * 由已保存的1分钟K线聚合出高周期K线，周期对齐方式与OKX一致，减少对高周期数据的API调用和重复存储
+ */
+public interface CandleAggregationService {
+
+    /**
+     * 目标周期是否支持由1分钟K线聚合
+     */
+    boolean supports(String interval);
+
+    /**
+     * 由已保存的1分钟K线实时聚合指定范围内的高周期K线，不写入任何存储
+     * 只返回1分钟数据完整的周期
+     *
+     * @param symbol    交易对
+     * @param interval  目标K线间隔，如5m, 15m, 1H, 4H, 1D
+     * @param startTime 开始时间
+     * @param endTime   结束时间（包含以该时间开始的周期）
+     * @return 按时间升序的聚合K线
+     */
+    List<CandlestickEntity> aggregate(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime);
+
+    /**
+     * 为缺失的高周期时间点聚合K线，并按配置写入candlestick_history或Redis缓存
+     *
+     * @param symbol       交易对
+     * @param interval     目标K线间隔
+     * @param periodStarts 缺失的周期开始时间
+     * @return 成功聚合的K线，1分钟数据不完整的周期不会返回
+     */
+    List<CandlestickEntity> deriveMissing(String symbol, String interval, List<LocalDateTime> periodStarts);
+
+    /**
+     * 1分钟K线保存后回调，异步增量更新受影响的高周期K线
+     *
+     * @param minuteCandles 新保存的1分钟K线
+     */
+    void onMinuteCandlesSaved(List<CandlestickEntity> minuteCandles);
+}
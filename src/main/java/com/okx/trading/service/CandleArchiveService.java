@@ -0,0 +1,49 @@
+package com.okx.trading.service;
+
+import com.okx.trading.model.entity.CandlestickEntity;
+import org.ta4j.core.BarSeries;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * K线列式归档服务
+ * 按 (交易对, 周期, 月份) 把K线存为本地列式文件，回测时通过内存映射直接读成BarSeries，
+ * 避免从MySQL加载大量JPA实体
+ */
+public interface CandleArchiveService {
+
+    /**
+     * 是否启用归档
+     */
+    boolean isEnabled();
+
+    /**
+     * 写入K线，同一开盘时间重复写入会覆盖，可重复调用
+     *
+     * @param candles K线数据，可包含多个交易对和周期
+     */
+    void append(List<CandlestickEntity> candles);
+
+    /**
+     * 统计归档中指定时间范围内（包含两端）的K线数量
+     */
+    int count(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime);
+
+    /**
+     * 从归档读取指定时间范围内（包含两端）的K线，直接构建BarSeries
+     *
+     * @param symbol     交易对
+     * @param interval   K线间隔
+     * @param startTime  开始时间
+     * @param endTime    结束时间
+     * @param seriesName BarSeries名称
+     * @return 按时间升序的BarSeries，归档中没有数据时为空序列
+     */
+    BarSeries loadBarSeries(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime, String seriesName);
+
+    /**
+     * 从归档读取指定时间范围内（包含两端）的K线实体，价格精度为double
+     */
+    List<CandlestickEntity> loadCandles(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime);
+}
@@ -0,0 +1,71 @@
+package com.okx.trading.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * K线数据流式导入导出服务
+ * 导出时通过数据库游标逐行写出，导入时按批写入candlestick_history，整个过程内存占用与数据量无关
+ */
+public interface CandleStreamService {
+
+    /**
+     * 流式数据格式
+     */
+    enum StreamFormat {
+        /**
+         * 每行一个JSON对象
+         */
+        JSONL("application/x-ndjson", "jsonl"),
+        /**
+         * 带表头的CSV
+         */
+        CSV("text/csv", "csv"),
+        /**
+         * 紧凑二进制格式，价格以BigDecimal无损保存
+         */
+        BINARY("application/octet-stream", "bin");
+
+        private final String contentType;
+        private final String fileExtension;
+
+        StreamFormat(String contentType, String fileExtension) {
+            this.contentType = contentType;
+            this.fileExtension = fileExtension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFileExtension() {
+            return fileExtension;
+        }
+    }
+
+    /**
+     * 将指定范围内已保存的K线流式写出
+     *
+     * @param symbol    交易对
+     * @param interval  K线间隔
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @param format    输出格式
+     * @param out       输出流，由调用方负责关闭
+     * @return 写出的K线数量
+     */
+    long exportCandles(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime,
+                       StreamFormat format, OutputStream out) throws IOException;
+
+    /**
+     * 从输入流批量导入K线到candlestick_history，已存在的开盘时间会被跳过
+     *
+     * @param in     输入流，格式需与导出一致，由调用方负责关闭
+     * @param format 输入格式
+     * @return 导入统计：读取数量、新增数量、跳过数量、耗时
+     */
+    Map<String, Object> importCandles(InputStream in, StreamFormat format) throws IOException;
+}
@@ -76,6 +76,24 @@ public interface HistoricalDataService {
 
     List<CandlestickEntity> fetchAndSaveHistoryWithIntegrityCheck(String symbol, String interval,  String endTimeStr, int limit);
 
+    /**
+     * 获取指定时间范围的BarSeries，优先从本地K线列式归档读取；
+     * 归档不完整时走 fetchAndSaveHistoryWithIntegrityCheck 并把结果写回归档
+     *
+     * @param symbol       交易对，如BTC-USDT
+     * @param interval     K线间隔，如1m, 5m, 15m, 30m, 1H, 2H, 4H, 6H, 12H, 1D, 1W, 1M
+     * @param startTimeStr 开始时间 (yyyy-MM-dd HH:mm:ss)
+     * @param endTimeStr   结束时间 (yyyy-MM-dd HH:mm:ss)
+     * @return 按时间升序的BarSeries，名称为 交易对_周期
+     */
+    BarSeries fetchBarSeriesWithIntegrityCheck(String symbol, String interval, String startTimeStr, String endTimeStr);
+
+    /**
+     * 与 fetchAndSaveHistoryWithIntegrityCheck 相同，但优先从本地K线列式归档读取，
+     * 适用于只需要价格的场景（如回测基准），价格精度为double
+     */
+    List<CandlestickEntity> fetchArchivedHistoryWithIntegrityCheck(String symbol, String interval, String startTimeStr, String endTimeStr);
+
     /**
      * 查询数据库中存储的历史K线数据
      *
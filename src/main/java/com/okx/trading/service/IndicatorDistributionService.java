@@ -1,5 +1,6 @@
 package com.okx.trading.service;
 
+import com.okx.trading.model.entity.BacktestSummaryEntity;
 import com.okx.trading.model.entity.IndicatorDistributionEntity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -16,12 +17,26 @@ public interface IndicatorDistributionService {
 
     /**
      * 更新指标分布数据
-     * 从所有历史回测记录中计算指标分布，生成新版本的分布数据
+     * 通过游标读取所有历史回测记录，全量重建各指标的分位数草图，生成新版本的分布数据
      * 
      * @return 更新后的指标分布列表
      */
     List<IndicatorDistributionEntity> updateIndicatorDistributions();
 
+    /**
+     * 记录新保存的回测汇总，增量更新各指标的分位数草图
+     * 全量重建之前不做处理，数据会在全量重建时读到；重建期间暂存，替换草图前补入新草图
+     * 应在保存回测汇总的事务提交后调用，回滚的回测不计入分布
+     *
+     * @param summary 回测汇总
+     */
+    void recordBacktestSummary(BacktestSummaryEntity summary);
+
+    /**
+     * 有新增样本时，把增量更新后的草图保存为新版本的分布数据
+     */
+    void publishIncrementalDistributions();
+
     /**
      * 获取当前版本的所有指标分布
      * 
@@ -1,21 +1,33 @@
 package com.okx.trading.service;
 
+import com.okx.trading.model.market.Candlestick;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.List;
+import java.util.Map;
+
 /**
  * K线数据 Kafka 消费者服务接口
  * 从 Kafka 消费 K线数据并处理
- * 
+ *
  * 始终启用,从 Kafka 消费 K线数据
  * - 当 kline.kafka.enabled=false 时: 数据由 data-warehouse 提供
  * - 当 kline.kafka.enabled=true 时: 数据由 okx-trading 自己写入
  */
 public interface KlineKafkaConsumerService {
-    
+
+    /**
+     * 批量消费 K线数据
+     * 同一批次内同一 (交易对, 周期, 开盘时间) 只处理最新一条，处理完成后提交偏移量
+     *
+     * @param records 一次poll拉取到的消息
+     * @param acknowledgment 偏移量提交句柄
+     */
+    void consumeKlineBatch(List<ConsumerRecord<String, Candlestick>> records, Acknowledgment acknowledgment);
+
     /**
-     * 消费 K线数据
-     * 
-     * @param message 消息内容
-     * @param partition 分区号
-     * @param offset 偏移量
+     * 获取按分区统计的消费指标：消息数、批次数、合并后处理数、处理耗时和消息延迟
      */
-    void consumeKlineData(String message, int partition, long offset);
+    Map<Integer, Map<String, Object>> getConsumerMetrics();
 }
@@ -1,6 +1,6 @@
 package com.okx.trading.service;
 
-import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.model.market.Candlestick;
 
 /**
  * K线数据 Kafka 生产者服务接口
@@ -10,12 +10,11 @@ public interface KlineKafkaProducerService {
     
     /**
      * 发送 K线数据到 Kafka
+     * 消息体格式由 kline.kafka.wire-format 决定，见 {@link com.okx.trading.util.KlineWireFormat}
      * 
-     * @param symbol 交易对
-     * @param interval 时间周期
-     * @param klineData K线数据（JSON格式）
+     * @param candlestick K线数据，交易对和周期不能为空
      */
-    void sendKlineData(String symbol, String interval, JSONObject klineData);
+    void sendKlineData(Candlestick candlestick);
     
     /**
      * 检查 Kafka 是否已启用
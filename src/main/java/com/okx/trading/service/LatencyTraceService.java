@@ -0,0 +1,42 @@
+package com.okx.trading.service;
+
+import com.okx.trading.util.TickTrace;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行情到下单的延迟追踪
+ * 按交易对和策略把各阶段耗时记录到 HDR 直方图，总耗时超过阈值的追踪保留最近若干条供排查
+ */
+public interface LatencyTraceService {
+
+    /**
+     * 是否启用追踪，关闭时不创建追踪上下文
+     */
+    boolean isEnabled();
+
+    /**
+     * 结束一次追踪，记录已到达的各阶段耗时
+     */
+    void record(TickTrace trace);
+
+    /**
+     * 各阶段耗时的分位数（微秒）
+     *
+     * @param symbol       交易对，为空时不过滤
+     * @param strategyCode 策略代码，为空时不过滤
+     * @return 每个交易对和策略一项，包含 parse、dispatch、evaluate、queue、order、total 各阶段的分位数
+     */
+    List<Map<String, Object>> getPercentiles(String symbol, String strategyCode);
+
+    /**
+     * 最近的慢追踪，按结束时间从新到旧
+     */
+    List<Map<String, Object>> getSlowTraces();
+
+    /**
+     * 清空直方图和慢追踪
+     */
+    void reset();
+}
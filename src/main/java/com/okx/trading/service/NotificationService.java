@@ -25,7 +25,7 @@ public interface NotificationService {
      * @param order       订单信息
      * @param side        交易方向 (BUY/SELL)
      * @param signalPrice 信号价格
-     * @return 是否发送成功
+     * @return 是否发送成功，异步发送的实现为是否已提交发送
      */
     boolean sendTradeNotification(RealTimeStrategyEntity strategy, Order order, String side, String signalPrice);
 
@@ -34,7 +34,7 @@ public interface NotificationService {
      *
      * @param strategy     策略信息
      * @param errorMessage 错误信息
-     * @return 是否发送成功
+     * @return 是否发送成功，异步发送的实现为是否已提交发送
      */
     boolean sendStrategyErrorNotification(RealTimeStrategyEntity strategy, String errorMessage);
 
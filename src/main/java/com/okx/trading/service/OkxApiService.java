@@ -8,6 +8,7 @@ import com.okx.trading.model.account.AccountBalance;
 import com.okx.trading.model.market.Candlestick;
 import com.okx.trading.model.market.Ticker;
 import com.okx.trading.model.trade.Order;
+import com.okx.trading.model.trade.OrderHandle;
 import com.okx.trading.model.trade.OrderRequest;
 
 /**
@@ -60,6 +61,7 @@ public interface OkxApiService {
 
     /**
      * 创建现货订单
+     * 异步下单的实现在收到下单回执后返回，不等待成交，成交结果见 {@link #placeSpotOrder(OrderRequest)}
      *
      * @param orderRequest 订单请求参数
      * @return 创建的订单
@@ -68,12 +70,35 @@ public interface OkxApiService {
 
     /**
      * 创建合约订单
+     * 异步下单的实现在收到下单回执后返回，不等待成交，成交结果见 {@link #placeFuturesOrder(OrderRequest)}
      *
      * @param orderRequest 订单请求参数
      * @return 创建的订单
      */
     Order createFuturesOrder(OrderRequest orderRequest);
 
+    /**
+     * 异步创建现货订单，发送下单请求后立即返回订单句柄
+     * 默认实现同步下单，返回已完成的句柄
+     *
+     * @param orderRequest 订单请求参数
+     * @return 订单句柄，成交、撤销或拒绝时完成，超时未完成时对账后完成 {@link OrderHandle#getSettled()}
+     */
+    default OrderHandle placeSpotOrder(OrderRequest orderRequest) {
+        return OrderHandle.completed(createSpotOrder(orderRequest));
+    }
+
+    /**
+     * 异步创建合约订单，发送下单请求后立即返回订单句柄
+     * 默认实现同步下单，返回已完成的句柄
+     *
+     * @param orderRequest 订单请求参数
+     * @return 订单句柄，成交、撤销或拒绝时完成，超时未完成时对账后完成 {@link OrderHandle#getSettled()}
+     */
+    default OrderHandle placeFuturesOrder(OrderRequest orderRequest) {
+        return OrderHandle.completed(createFuturesOrder(orderRequest));
+    }
+
     /**
      * 取消订单
      *
@@ -83,6 +108,18 @@ public interface OkxApiService {
      */
     boolean cancelOrder(String symbol, String orderId);
 
+    /**
+     * 取消订单，模拟盘订单需要按模拟交易撤单
+     *
+     * @param symbol    交易对，如BTC-USDT
+     * @param orderId   订单ID
+     * @param simulated 是否为模拟交易，与下单时一致
+     * @return 是否成功
+     */
+    default boolean cancelOrder(String symbol, String orderId, boolean simulated) {
+        return cancelOrder(symbol, orderId);
+    }
+
     /**
      * 取消订阅行情信息
      *
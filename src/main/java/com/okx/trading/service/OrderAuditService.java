@@ -0,0 +1,26 @@
+package com.okx.trading.service;
+
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.Map;
+
+/**
+ * 订单审计日志服务
+ * 订单回执和终态推送交给单独的写线程落盘，下单路径只做一次入队
+ */
+public interface OrderAuditService {
+
+    /**
+     * 记录一条订单数据（OKX 订单对象，如 orders 频道推送或订单查询结果中的一条）
+     * 不阻塞调用方，队列已满时丢弃并计数
+     *
+     * @param orderData OKX 订单数据
+     * @return 是否成功入队
+     */
+    boolean record(JSONObject orderData);
+
+    /**
+     * 审计日志统计：已入队、已写入、丢弃、批次数、队列长度
+     */
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,50 @@
+package com.okx.trading.service;
+
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 订单网关服务接口
+ * 通过已登录的私有WebSocket发送下单、批量下单和撤单请求，按请求id匹配响应，
+ * 私有频道未就绪时回退到REST接口
+ * <p>
+ * 两种通道返回的响应格式一致：{"code":"0","msg":"","data":[{"clOrdId":"","ordId":"","sCode":"0","sMsg":""}]}
+ * 请求参数可以同时包含 instId 和 instIdCode，WebSocket 使用 instIdCode，REST 使用 instId
+ */
+public interface OrderGatewayService {
+
+    /**
+     * 下单
+     *
+     * @param arg 下单参数
+     * @param simulated 是否为模拟交易，仅REST通道使用
+     * @return 交易所响应
+     */
+    CompletableFuture<JSONObject> placeOrder(JSONObject arg, boolean simulated);
+
+    /**
+     * 批量下单，单次最多20个订单
+     *
+     * @param args 下单参数列表
+     * @param simulated 是否为模拟交易，仅REST通道使用
+     * @return 交易所响应，data与args一一对应
+     */
+    CompletableFuture<JSONObject> placeBatchOrders(List<JSONObject> args, boolean simulated);
+
+    /**
+     * 撤单
+     *
+     * @param arg 撤单参数，包含 instId 和 ordId 或 clOrdId
+     * @param simulated 是否为模拟交易，仅REST通道使用
+     * @return 交易所响应
+     */
+    CompletableFuture<JSONObject> cancelOrder(JSONObject arg, boolean simulated);
+
+    /**
+     * 获取网关统计：在途请求数、WebSocket请求数、REST回退数、超时数和平均往返耗时
+     */
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,54 @@
+package com.okx.trading.service;
+
+import com.okx.trading.model.trade.Order;
+import com.okx.trading.model.trade.OrderHandle;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 订单生命周期跟踪服务
+ * 由私有 orders 频道的推送驱动订单句柄，取代下单后固定休眠再轮询REST的方式
+ */
+public interface OrderTrackerService {
+
+    /**
+     * 开始跟踪订单，必须在发送下单请求之前调用，避免错过推送
+     *
+     * @param clientOrderId 客户端订单ID
+     * @param symbol 交易对
+     * @return 订单句柄
+     */
+    OrderHandle track(String clientOrderId, String symbol);
+
+    /**
+     * 处理订单状态推送（orders 频道、下单回执或对账结果）
+     *
+     * @param order 订单，clientOrderId不能为空
+     * @return 该推送是否使一个被跟踪的订单进入终态
+     */
+    boolean onOrderUpdate(Order order);
+
+    /**
+     * 下单请求发送失败
+     */
+    void fail(String clientOrderId, Throwable cause);
+
+    /**
+     * 登记订单的超时对账，不阻塞调用方
+     * 订单进入终态时完成句柄的 {@link OrderHandle#getSettled()}；
+     * 超时或下单失败时在对账线程上查询一次，以对账结果或最近一次推送的状态完成
+     *
+     * @param handle 订单句柄
+     * @param timeoutMs 等待推送的超时毫秒
+     * @param reconciler 对账查询，例如按clientOrderId查询REST接口，可返回null
+     * @return 句柄的 settled future
+     */
+    CompletableFuture<Order> reconcileAfter(OrderHandle handle, long timeoutMs, Supplier<Order> reconciler);
+
+    /**
+     * 获取跟踪统计：跟踪中订单数、终态订单数、推送完成数、对账次数和平均完成耗时
+     */
+    Map<String, Object> getStats();
+}
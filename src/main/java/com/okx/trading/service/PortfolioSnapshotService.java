@@ -0,0 +1,55 @@
+package com.okx.trading.service;
+
+import com.okx.trading.model.entity.RealTimeOrderEntity;
+import com.okx.trading.model.entity.RealTimeStrategyEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * 持仓组合快照
+ * 策略启停、成交和行情推送时增量更新组合汇总，读取时直接返回最近一次生成的快照，
+ * 快照变化后通过SSE推送给订阅的前端
+ */
+public interface PortfolioSnapshotService {
+
+    /**
+     * 策略启动或状态变化后更新该策略的持仓
+     */
+    void onStrategyUpdated(RealTimeStrategyEntity state);
+
+    /**
+     * 策略停止或删除后移除该策略的持仓
+     */
+    void onStrategyRemoved(Long strategyId);
+
+    /**
+     * 策略成交后更新持仓，并累计当日信号数和当日收益
+     *
+     * @param state 成交后的策略状态
+     * @param order 成交的订单记录
+     */
+    void onTrade(RealTimeStrategyEntity state, RealTimeOrderEntity order);
+
+    /**
+     * 最新价变化后更新该交易对持仓的预估收益
+     */
+    void onPriceUpdate(String symbol, BigDecimal lastPrice);
+
+    /**
+     * 组合快照，结构与 RealTimeStrategyService#realTimeStrategiesState 一致：
+     * strategies 为持仓中的策略列表，statistics 为汇总统计
+     */
+    Map<String, Object> getSnapshot();
+
+    /**
+     * 订阅快照推送，订阅后立即推送一次当前快照，之后每次快照变化推送一次 portfolio 事件
+     */
+    SseEmitter subscribe();
+
+    /**
+     * 快照统计：策略数、持仓交易对数、更新次数、快照生成次数和订阅数
+     */
+    Map<String, Object> getStats();
+}
@@ -236,6 +236,8 @@ public interface RealTimeStrategyService {
      */
     RealTimeStrategyEntity copyRealTimeStrategy(Long strategyId, String interval, String symbol, Double tradeAmount);
 
-
+    /**
+     * 运行中策略的持仓和收益汇总，返回持仓组合快照，不逐个策略查询行情
+     */
     Map<String, Object> realTimeStrategiesState();
 }
@@ -0,0 +1,22 @@
+package com.okx.trading.service;
+
+import com.okx.trading.model.dto.ReplayRequestDTO;
+
+import java.util.Map;
+
+/**
+ * 行情回放服务
+ * 把录制的WebSocket消息帧或 candlestick_history 中的K线按模拟时钟推送给实时策略管理器，
+ * 经过与实盘相同的解析、分发和信号判断，订单由 OkxApiMockServiceImpl 按回放价格成交。
+ * 用于在没有交易所连接时压测实时策略链路，并以交易日志基准文件做信号语义的回归检查。
+ */
+public interface ReplayService {
+
+    /**
+     * 执行一次回放，同一时间只允许一次回放
+     *
+     * @param request 回放请求
+     * @return 回放报告：事件数、K线数、耗时、吞吐、各阶段延迟分位数、交易日志和基准比对结果
+     */
+    Map<String, Object> replay(ReplayRequestDTO request);
+}
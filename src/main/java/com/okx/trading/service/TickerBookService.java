@@ -0,0 +1,47 @@
+package com.okx.trading.service;
+
+import com.okx.trading.model.market.Ticker;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内存行情簿
+ * 由公共 tickers 频道推送持续更新，按接收时间判断行情是否过期，
+ * 查询行情时优先读内存，只有未知或过期的交易对才走REST
+ */
+public interface TickerBookService {
+
+    /**
+     * 更新单个交易对的行情，接收时间为当前时间
+     */
+    void update(Ticker ticker);
+
+    /**
+     * 用全量行情（如REST /market/tickers 结果）更新行情簿，并记录全量刷新时间
+     */
+    void updateAll(List<Ticker> tickers);
+
+    /**
+     * 获取未过期的行情
+     *
+     * @param symbol 交易对
+     * @return 行情，未知或已过期时返回null
+     */
+    Ticker getFresh(String symbol);
+
+    /**
+     * 全量行情在有效期内时返回行情簿中的全部行情，否则返回null
+     */
+    List<Ticker> getAllIfFresh();
+
+    /**
+     * 移除交易对（取消订阅时调用）
+     */
+    void remove(String symbol);
+
+    /**
+     * 行情簿统计：交易对数量、命中、过期、未知次数
+     */
+    Map<String, Object> getStats();
+}
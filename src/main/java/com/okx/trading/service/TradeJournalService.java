@@ -0,0 +1,59 @@
+package com.okx.trading.service;
+
+import com.okx.trading.model.entity.RealTimeOrderEntity;
+import com.okx.trading.model.entity.RealTimeStrategyEntity;
+
+import java.util.List;
+
+import java.util.Map;
+
+/**
+ * 实时交易写后日志服务
+ * 成交后的策略状态和订单记录先追加到本地日志文件并保存在内存，再由后台线程批量写入MySQL，
+ * 交易线程不再同步等待数据库。程序重启时从日志恢复尚未写入数据库的记录。
+ */
+public interface TradeJournalService {
+
+    /**
+     * 记录一次成交：策略的最新交易状态和对应的订单记录
+     *
+     * @param state 成交后的策略状态
+     * @param order 订单记录，strategyId 由策略ID填充
+     */
+    void recordTrade(RealTimeStrategyEntity state, RealTimeOrderEntity order);
+
+    /**
+     * 记录策略运行状态变化（如下单失败后停止策略）
+     *
+     * @param state 策略状态
+     */
+    void recordStatus(RealTimeStrategyEntity state);
+
+    /**
+     * 将日志中尚未写入数据库的状态合并到从数据库读取的策略上
+     *
+     * @param state 从数据库读取的策略
+     * @return 合并后的策略（同一对象）
+     */
+    RealTimeStrategyEntity reconcile(RealTimeStrategyEntity state);
+
+    /**
+     * 批量合并日志中尚未写入数据库的状态，只遍历一次日志
+     *
+     * @param states 从数据库读取的策略列表
+     * @return 合并后的策略列表（同一列表）
+     */
+    List<RealTimeStrategyEntity> reconcileAll(List<RealTimeStrategyEntity> states);
+
+    /**
+     * 立即把待写入的记录批量写入数据库，全部写入后清空日志文件
+     *
+     * @return 本次写入的日志条数，写入失败时返回0并保留记录等待重试
+     */
+    int flush();
+
+    /**
+     * 日志统计：待写入条数、追加条数、已写入条数、批次数、失败次数、恢复条数
+     */
+    Map<String, Object> getStats();
+}
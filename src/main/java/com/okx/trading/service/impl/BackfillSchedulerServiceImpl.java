@@ -0,0 +1,387 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.entity.BackfillCheckpointEntity;
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.model.market.Candlestick;
+import com.okx.trading.repository.BackfillCheckpointRepository;
+import com.okx.trading.service.BackfillSchedulerService;
+import com.okx.trading.service.HistoricalDataService;
+import com.okx.trading.service.OkxApiService;
+import com.okx.trading.service.TushareApiService;
+import com.okx.trading.util.UpstreamRateLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 历史数据回填调度服务实现
+ * <p>
+ * 回填任务进入优先级队列，工作线程每次只处理一个分页，处理完后把任务放回队列，
+ * 这样实盘预热任务可以在大范围研究回填的分页之间插队。每个分页请求前先从上游限流器拿令牌，
+ * 失败后按指数退避加随机抖动重试，每个分页完成后把游标写入MySQL检查点。
+ */
+@Slf4j
+@Service
+public class BackfillSchedulerServiceImpl implements BackfillSchedulerService {
+
+    private static final ZoneId ZONE_ID = ZoneId.of("UTC+8");
+    private static final List<String> RESUMABLE_STATUSES = Arrays.asList(
+            BackfillCheckpointEntity.STATUS_PENDING, BackfillCheckpointEntity.STATUS_RUNNING);
+
+    private final OkxApiService okxApiService;
+    private final TushareApiService tushareApiService;
+    private final HistoricalDataService historicalDataService;
+    private final BackfillCheckpointRepository checkpointRepository;
+    private final UpstreamRateLimiter rateLimiter;
+    private final ExecutorService workerExecutor;
+    private final ScheduledExecutorService retryScheduler;
+
+    @Value("${okx.backfill.workers:4}")
+    private int workers = 4;
+
+    @Value("${okx.backfill.page-size:100}")
+    private int pageSize = 100;
+
+    @Value("${okx.backfill.max-retries:5}")
+    private int maxRetries = 5;
+
+    @Value("${okx.backfill.retry-base-delay-ms:1000}")
+    private long retryBaseDelayMs = 1000;
+
+    @Value("${okx.backfill.retry-max-delay-ms:60000}")
+    private long retryMaxDelayMs = 60000;
+
+    @Value("${okx.backfill.resume-on-startup:true}")
+    private boolean resumeOnStartup = true;
+
+    private final PriorityBlockingQueue<BackfillTask> queue = new PriorityBlockingQueue<>();
+    private final Map<Long, BackfillTask> activeTasks = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean running;
+
+    /**
+     * 回填任务，只在内存中流转，进度同步到对应的检查点
+     */
+    private static class BackfillTask implements Comparable<BackfillTask> {
+        private final BackfillCheckpointEntity checkpoint;
+        private final BackfillPriority priority;
+        private final long sequence;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        private BackfillTask(BackfillCheckpointEntity checkpoint, long sequence) {
+            this.checkpoint = checkpoint;
+            this.priority = BackfillPriority.valueOf(checkpoint.getPriority());
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(BackfillTask o) {
+            int cmp = Integer.compare(priority.ordinal(), o.priority.ordinal());
+            return cmp != 0 ? cmp : Long.compare(sequence, o.sequence);
+        }
+
+        private boolean sameRange(String symbol, String interval, LocalDateTime start, LocalDateTime end) {
+            return checkpoint.getSymbol().equals(symbol) && checkpoint.getIntervalVal().equals(interval)
+                    && checkpoint.getStartTime().equals(start) && checkpoint.getEndTime().equals(end);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s [%s - %s] cursor=%s priority=%s", checkpoint.getSymbol(),
+                    checkpoint.getIntervalVal(), checkpoint.getStartTime(), checkpoint.getEndTime(),
+                    checkpoint.getCursorTime(), priority);
+        }
+    }
+
+    @Autowired
+    public BackfillSchedulerServiceImpl(@Lazy OkxApiService okxApiService,
+                                        @Lazy TushareApiService tushareApiService,
+                                        @Lazy HistoricalDataService historicalDataService,
+                                        BackfillCheckpointRepository checkpointRepository,
+                                        UpstreamRateLimiter rateLimiter,
+                                        @Qualifier("backfillExecutorService") ExecutorService workerExecutor,
+                                        @Qualifier("backfillRetryScheduler") ScheduledExecutorService retryScheduler) {
+        this.okxApiService = okxApiService;
+        this.tushareApiService = tushareApiService;
+        this.historicalDataService = historicalDataService;
+        this.checkpointRepository = checkpointRepository;
+        this.rateLimiter = rateLimiter;
+        this.workerExecutor = workerExecutor;
+        this.retryScheduler = retryScheduler;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            workerExecutor.execute(this::workerLoop);
+        }
+        log.info("历史数据回填调度器启动, 工作线程: {}, 分页大小: {}, 最大重试: {}", workers, pageSize, maxRetries);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workerExecutor.shutdownNow();
+    }
+
+    /**
+     * 应用启动完成后恢复未完成的回填任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (resumeOnStartup) {
+            resumePendingTasks();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> submit(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime,
+                                          BackfillPriority priority) {
+        if (!startTime.isBefore(endTime)) {
+            return CompletableFuture.completedFuture(0L);
+        }
+
+        // 相同范围的任务已经在执行，直接复用
+        for (BackfillTask task : activeTasks.values()) {
+            if (task.sameRange(symbol, interval, startTime, endTime)) {
+                log.info("回填任务已存在, 复用: {}", task);
+                return task.future;
+            }
+        }
+
+        BackfillCheckpointEntity checkpoint = BackfillCheckpointEntity.builder()
+                .symbol(symbol)
+                .intervalVal(interval)
+                .startTime(startTime)
+                .endTime(endTime)
+                .cursorTime(startTime)
+                .priority(priority.name())
+                .status(BackfillCheckpointEntity.STATUS_PENDING)
+                .attempts(0)
+                .savedCount(0L)
+                .build();
+        checkpoint = checkpointRepository.save(checkpoint);
+
+        BackfillTask task = enqueue(checkpoint);
+        log.info("提交回填任务: {}", task);
+        return task.future;
+    }
+
+    @Override
+    public int resumePendingTasks() {
+        List<BackfillCheckpointEntity> checkpoints = checkpointRepository.findByStatusInOrderByIdAsc(RESUMABLE_STATUSES);
+        int resumed = 0;
+        for (BackfillCheckpointEntity checkpoint : checkpoints) {
+            if (activeTasks.containsKey(checkpoint.getId())) {
+                continue;
+            }
+            checkpoint.setStatus(BackfillCheckpointEntity.STATUS_PENDING);
+            checkpoint.setAttempts(0);
+            enqueue(checkpoint);
+            resumed++;
+        }
+        if (resumed > 0) {
+            log.info("从检查点恢复 {} 个未完成的回填任务", resumed);
+        }
+        return resumed;
+    }
+
+    @Override
+    public List<BackfillCheckpointEntity> getRecentCheckpoints() {
+        return checkpointRepository.findTop100ByOrderByIdDesc();
+    }
+
+    @Override
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("workers", workers);
+        status.put("queueSize", queue.size());
+        status.put("activeTasks", activeTasks.values().stream()
+                .sorted()
+                .map(BackfillTask::toString)
+                .collect(Collectors.toList()));
+        status.put("availableTokens", rateLimiter.getAvailableTokens());
+        return status;
+    }
+
+    private BackfillTask enqueue(BackfillCheckpointEntity checkpoint) {
+        BackfillTask task = new BackfillTask(checkpoint, sequence.incrementAndGet());
+        activeTasks.put(checkpoint.getId(), task);
+        queue.offer(task);
+        return task;
+    }
+
+    private void workerLoop() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            BackfillTask task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                processPage(task);
+            } catch (InterruptedException e) {
+                // 停机时任务保持RUNNING状态，下次启动时恢复
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                handleFailure(task, e);
+            }
+        }
+    }
+
+    /**
+     * 处理任务的一个分页，未完成的任务重新放回队列
+     */
+    private void processPage(BackfillTask task) throws InterruptedException {
+        BackfillCheckpointEntity checkpoint = task.checkpoint;
+        String symbol = checkpoint.getSymbol();
+        String interval = checkpoint.getIntervalVal();
+        LocalDateTime cursor = checkpoint.getCursorTime();
+
+        if (!cursor.isBefore(checkpoint.getEndTime())) {
+            complete(task);
+            return;
+        }
+
+        long intervalMinutes = historicalDataService.getIntervalMinutes(interval);
+        LocalDateTime pageEnd = cursor.plusMinutes(intervalMinutes * pageSize);
+        if (pageEnd.isAfter(checkpoint.getEndTime())) {
+            pageEnd = checkpoint.getEndTime();
+        }
+
+        rateLimiter.acquireHistoryKline(symbol);
+
+        // 接口的起止时间都不包含，开始时间减一秒取到 cursor 这根K线；pageEnd 这根K线是下一页的第一根，不在本页取
+        long after = toEpochMilli(cursor.minusSeconds(1));
+        long before = toEpochMilli(pageEnd);
+        List<Candlestick> candlesticks;
+        if (UpstreamRateLimiter.isStock(symbol)) {
+            candlesticks = tushareApiService.getHistoryKlineData(symbol, interval, after, before, pageSize);
+        } else {
+            candlesticks = okxApiService.getHistoryKlineData(symbol, interval, after, before, pageSize);
+        }
+
+        List<CandlestickEntity> entities = convertToEntities(candlesticks, symbol, interval);
+        if (!entities.isEmpty()) {
+            historicalDataService.saveHistoricalData(entities);
+        }
+
+        checkpoint.setCursorTime(pageEnd);
+        checkpoint.setSavedCount(checkpoint.getSavedCount() + entities.size());
+        checkpoint.setAttempts(0);
+        checkpoint.setLastError(null);
+
+        if (!pageEnd.isBefore(checkpoint.getEndTime())) {
+            complete(task);
+            return;
+        }
+
+        checkpoint.setStatus(BackfillCheckpointEntity.STATUS_RUNNING);
+        checkpointRepository.save(checkpoint);
+        queue.offer(task);
+    }
+
+    private void complete(BackfillTask task) {
+        BackfillCheckpointEntity checkpoint = task.checkpoint;
+        checkpoint.setStatus(BackfillCheckpointEntity.STATUS_COMPLETED);
+        checkpointRepository.save(checkpoint);
+        activeTasks.remove(checkpoint.getId());
+        log.info("回填任务完成: {}, 共保存 {} 条K线", task, checkpoint.getSavedCount());
+        task.future.complete(checkpoint.getSavedCount());
+    }
+
+    /**
+     * 分页失败：未超过最大重试次数时按指数退避加抖动延迟重试，否则标记为失败
+     */
+    private void handleFailure(BackfillTask task, Exception e) {
+        BackfillCheckpointEntity checkpoint = task.checkpoint;
+        int attempts = checkpoint.getAttempts() == null ? 1 : checkpoint.getAttempts() + 1;
+        checkpoint.setAttempts(attempts);
+        checkpoint.setLastError(abbreviate(e.getMessage()));
+
+        if (attempts > maxRetries) {
+            checkpoint.setStatus(BackfillCheckpointEntity.STATUS_FAILED);
+            saveQuietly(checkpoint);
+            activeTasks.remove(checkpoint.getId());
+            log.error("回填任务失败, 已重试{}次: {}, 错误: {}", maxRetries, task, e.getMessage(), e);
+            task.future.completeExceptionally(e);
+            return;
+        }
+
+        long delay = computeRetryDelay(attempts);
+        saveQuietly(checkpoint);
+        log.warn("回填分页失败, {}ms 后第{}次重试: {}, 错误: {}", delay, attempts, task, e.getMessage());
+        retryScheduler.schedule(() -> queue.offer(task), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 指数退避，取 [delay/2, delay] 之间的随机值，避免多个任务同时重试
+     */
+    long computeRetryDelay(int attempts) {
+        long exp = retryBaseDelayMs << Math.min(attempts - 1, 20);
+        long delay = Math.min(retryMaxDelayMs, exp);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void saveQuietly(BackfillCheckpointEntity checkpoint) {
+        try {
+            checkpointRepository.save(checkpoint);
+        } catch (Exception e) {
+            log.error("保存回填检查点失败: {}", e.getMessage());
+        }
+    }
+
+    private List<CandlestickEntity> convertToEntities(List<Candlestick> candlesticks, String symbol, String interval) {
+        if (candlesticks == null || candlesticks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return candlesticks.stream()
+                .filter(c -> c != null && c.getOpenTime() != null)
+                .map(c -> CandlestickEntity.builder()
+                        .symbol(symbol)
+                        .intervalVal(interval)
+                        .openTime(c.getOpenTime())
+                        .closeTime(c.getCloseTime())
+                        .open(c.getOpen())
+                        .high(c.getHigh())
+                        .low(c.getLow())
+                        .close(c.getClose())
+                        .volume(c.getVolume())
+                        .quoteVolume(c.getQuoteVolume())
+                        .trades(c.getTrades())
+                        .fetchTime(now)
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZONE_ID).toInstant().toEpochMilli();
+    }
+
+    private static String abbreviate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+}
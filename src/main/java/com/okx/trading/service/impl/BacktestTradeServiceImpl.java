@@ -9,11 +9,15 @@ import com.okx.trading.repository.BacktestEquityCurveRepository;
 import com.okx.trading.repository.BacktestSummaryRepository;
 import com.okx.trading.repository.BacktestTradeRepository;
 import com.okx.trading.service.BacktestTradeService;
+import com.okx.trading.service.IndicatorDistributionService;
+import com.okx.trading.util.TradingMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -32,15 +36,18 @@ public class BacktestTradeServiceImpl implements BacktestTradeService {
     private final BacktestTradeRepository backtestTradeRepository;
     private final BacktestSummaryRepository backtestSummaryRepository;
     private final BacktestEquityCurveRepository backtestEquityCurveRepository;
+    private final IndicatorDistributionService indicatorDistributionService;
     private Ta4jBacktestService ta4jBacktestService;
 
     @Autowired
     public BacktestTradeServiceImpl(BacktestTradeRepository backtestTradeRepository,
                                     BacktestSummaryRepository backtestSummaryRepository,
-                                    BacktestEquityCurveRepository backtestEquityCurveRepository) {
+                                    BacktestEquityCurveRepository backtestEquityCurveRepository,
+                                    IndicatorDistributionService indicatorDistributionService) {
         this.backtestTradeRepository = backtestTradeRepository;
         this.backtestSummaryRepository = backtestSummaryRepository;
         this.backtestEquityCurveRepository = backtestEquityCurveRepository;
+        this.indicatorDistributionService = indicatorDistributionService;
     }
 
     @Override
@@ -189,6 +196,18 @@ public class BacktestTradeServiceImpl implements BacktestTradeService {
         BacktestSummaryEntity savedEntity = backtestSummaryRepository.save(summaryEntity);
         logger.info("成功保存回测汇总信息，回测ID: {}", backtestId);
 
+        // 事务提交后再增量更新指标分布草图，回滚的回测不计入分布
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    indicatorDistributionService.recordBacktestSummary(savedEntity);
+                }
+            });
+        } else {
+            indicatorDistributionService.recordBacktestSummary(savedEntity);
+        }
+
         // 打印详细的汇总信息
         com.okx.trading.util.BacktestResultPrinter.printSummaryEntity(savedEntity);
 
@@ -276,6 +295,7 @@ public class BacktestTradeServiceImpl implements BacktestTradeService {
                         .build())
                 .collect(Collectors.toList());
 
+        TradingMetrics.recordJpaBatch("BacktestEquityCurveEntity", entities.size());
         backtestEquityCurveRepository.saveAll(entities);
         logger.info("成功保存回测资金曲线数据，回测ID: {}, 数据点数: {}", backtestId, equityCurveData.size());
     }
@@ -0,0 +1,362 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.repository.CandlestickRepository;
+import com.okx.trading.service.CandleAggregationService;
+import com.okx.trading.service.CandleArchiveService;
+import com.okx.trading.service.RedisCacheService;
+import com.okx.trading.util.KlinePeriodUtil;
+import com.okx.trading.util.TradingMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * K线聚合服务实现
+ * <p>
+ * 周期边界统一由 {@link KlinePeriodUtil} 计算，与实时策略和完整性检查使用同一套对齐规则。
+ * 一个周期只有在其全部1分钟K线都已保存时才会被聚合，避免产生与OKX不一致的残缺K线。
+ * 聚合结果可写入candlestick_history（materialize=true），也可只写入Redis K线缓存按需提供。
+ */
+@Slf4j
+@Service
+public class CandleAggregationServiceImpl implements CandleAggregationService {
+
+    static final String MINUTE_INTERVAL = "1m";
+
+    /**
+     * 单次查询1分钟K线的最大跨度（分钟），大范围聚合按此分段，避免一次加载过多实体
+     */
+    private static final long MAX_QUERY_MINUTES = 7 * 24 * 60;
+
+    /**
+     * 聚合K线写入Redis缓存的过期时间（分钟），与完整性检查的缓存保持一致
+     */
+    private static final long CACHE_TIMEOUT_MINUTES = 15 * 24 * 60;
+
+    private final CandlestickRepository candlestickRepository;
+    private final CandleArchiveService candleArchiveService;
+    private final RedisCacheService redisCacheService;
+    private final ExecutorService aggregationExecutorService;
+
+    @Value("${okx.aggregation.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${okx.aggregation.materialize:true}")
+    private boolean materialize = true;
+
+    @Value("${okx.aggregation.intervals:5m,15m,30m,1H,4H,1D}")
+    private String incrementalIntervals = "5m,15m,30m,1H,4H,1D";
+
+    private List<String> incrementalIntervalList = Collections.emptyList();
+
+    /**
+     * 每个交易对和周期最近一次处理过的完整周期开始时间，key为 symbol_interval
+     */
+    private final Map<String, LocalDateTime> lastCompletePeriods = new ConcurrentHashMap<>();
+
+    private Clock clock = Clock.systemDefaultZone();
+
+    @Autowired
+    public CandleAggregationServiceImpl(CandlestickRepository candlestickRepository,
+                                        CandleArchiveService candleArchiveService,
+                                        RedisCacheService redisCacheService,
+                                        @Qualifier("candleAggregationExecutorService") ExecutorService aggregationExecutorService) {
+        this.candlestickRepository = candlestickRepository;
+        this.candleArchiveService = candleArchiveService;
+        this.redisCacheService = redisCacheService;
+        this.aggregationExecutorService = aggregationExecutorService;
+    }
+
+    @PostConstruct
+    public void init() {
+        incrementalIntervalList = Arrays.stream(incrementalIntervals.split(","))
+                .map(String::trim)
+                .filter(interval -> !interval.isEmpty())
+                .filter(interval -> {
+                    boolean supported = supports(interval);
+                    if (!supported) {
+                        log.warn("K线周期 {} 无法由1分钟K线对齐聚合，已忽略", interval);
+                    }
+                    return supported;
+                })
+                .collect(Collectors.toList());
+        log.info("K线聚合服务初始化完成: enabled={}, materialize={}, 增量聚合周期={}",
+                enabled, materialize, incrementalIntervalList);
+    }
+
+    @Override
+    public boolean supports(String interval) {
+        return KlinePeriodUtil.isAggregatableFromMinute(interval);
+    }
+
+    @Override
+    public List<CandlestickEntity> aggregate(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime) {
+        if (!supports(interval)) {
+            return Collections.emptyList();
+        }
+        LocalDateTime firstPeriod = KlinePeriodUtil.getPeriodStartTime(startTime, interval);
+        if (firstPeriod.isBefore(startTime)) {
+            firstPeriod = KlinePeriodUtil.getPeriodEndTime(firstPeriod, interval);
+        }
+        LocalDateTime lastPeriod = KlinePeriodUtil.getPeriodStartTime(endTime, interval);
+
+        List<CandlestickEntity> result = new ArrayList<>();
+        LocalDateTime windowStart = firstPeriod;
+        while (!windowStart.isAfter(lastPeriod)) {
+            // 按整周期分段，每段至少一个周期
+            LocalDateTime windowEnd = KlinePeriodUtil.getPeriodEndTime(windowStart, interval);
+            while (!windowEnd.isAfter(lastPeriod)
+                    && ChronoUnit.MINUTES.between(windowStart, KlinePeriodUtil.getPeriodEndTime(windowEnd, interval)) <= MAX_QUERY_MINUTES) {
+                windowEnd = KlinePeriodUtil.getPeriodEndTime(windowEnd, interval);
+            }
+
+            List<CandlestickEntity> minuteCandles = candlestickRepository.findBySymbolAndIntervalAndOpenTimeBetweenOrderByOpenTimeAsc(
+                    symbol, MINUTE_INTERVAL, windowStart, windowEnd.minusMinutes(1));
+            result.addAll(aggregateMinuteCandles(minuteCandles, symbol, interval));
+            windowStart = windowEnd;
+        }
+        return result;
+    }
+
+    @Override
+    public List<CandlestickEntity> deriveMissing(String symbol, String interval, List<LocalDateTime> periodStarts) {
+        if (!enabled || !supports(interval) || periodStarts == null || periodStarts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        TreeSet<LocalDateTime> wanted = new TreeSet<>(periodStarts);
+        List<CandlestickEntity> derived = new ArrayList<>();
+        // 只读取连续缺失周期所覆盖的1分钟K线，缺失周期之间已有的数据不再加载
+        for (List<LocalDateTime> run : consecutiveRuns(wanted, interval)) {
+            aggregate(symbol, interval, run.get(0), run.get(run.size() - 1)).stream()
+                    .filter(candle -> wanted.contains(candle.getOpenTime()))
+                    .forEach(derived::add);
+        }
+
+        if (!derived.isEmpty()) {
+            store(symbol, interval, derived);
+            log.info("由1分钟K线聚合出 {} {} K线 {} 条（缺失 {} 条）", symbol, interval, derived.size(), wanted.size());
+        }
+        return derived;
+    }
+
+    @Override
+    public void onMinuteCandlesSaved(List<CandlestickEntity> minuteCandles) {
+        if (!enabled || incrementalIntervalList.isEmpty() || minuteCandles == null || minuteCandles.isEmpty()) {
+            return;
+        }
+        List<CandlestickEntity> candles = minuteCandles.stream()
+                .filter(candle -> MINUTE_INTERVAL.equals(candle.getIntervalVal()) && candle.getOpenTime() != null)
+                .collect(Collectors.toList());
+        if (candles.isEmpty()) {
+            return;
+        }
+
+        aggregationExecutorService.submit(() -> {
+            try {
+                refreshAffectedPeriods(candles);
+            } catch (Exception e) {
+                log.error("增量聚合高周期K线失败: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 将升序的周期开始时间切分为首尾相接的连续段
+     */
+    static List<List<LocalDateTime>> consecutiveRuns(SortedSet<LocalDateTime> periodStarts, String interval) {
+        List<List<LocalDateTime>> runs = new ArrayList<>();
+        List<LocalDateTime> run = new ArrayList<>();
+        for (LocalDateTime periodStart : periodStarts) {
+            if (!run.isEmpty() && !KlinePeriodUtil.getPeriodEndTime(run.get(run.size() - 1), interval).equals(periodStart)) {
+                runs.add(run);
+                run = new ArrayList<>();
+            }
+            run.add(periodStart);
+        }
+        if (!run.isEmpty()) {
+            runs.add(run);
+        }
+        return runs;
+    }
+
+    /**
+     * 聚合新保存的1分钟K线所覆盖的已完成高周期
+     * <p>
+     * 尚未结束的周期不做聚合，等最近完整周期推进到该周期时再聚合一次，
+     * 避免每批1分钟K线都重复读取并聚合当前周期。
+     */
+    private void refreshAffectedPeriods(List<CandlestickEntity> minuteCandles) {
+        Map<String, List<CandlestickEntity>> bySymbol = minuteCandles.stream()
+                .collect(Collectors.groupingBy(CandlestickEntity::getSymbol));
+        LocalDateTime now = LocalDateTime.now(clock);
+
+        for (Map.Entry<String, List<CandlestickEntity>> entry : bySymbol.entrySet()) {
+            String symbol = entry.getKey();
+            for (String interval : incrementalIntervalList) {
+                LocalDateTime lastComplete = KlinePeriodUtil.getLastCompletePeriodStart(now, interval);
+                TreeSet<LocalDateTime> periods = entry.getValue().stream()
+                        .map(candle -> KlinePeriodUtil.getPeriodStartTime(candle.getOpenTime(), interval))
+                        .filter(period -> !period.isAfter(lastComplete))
+                        .collect(Collectors.toCollection(TreeSet::new));
+                // 刚刚结束的周期，其1分钟K线可能在周期结束前已经保存，这里补做一次聚合
+                LocalDateTime previous = lastCompletePeriods.put(symbol + "_" + interval, lastComplete);
+                if (!lastComplete.equals(previous)) {
+                    periods.add(lastComplete);
+                }
+                if (periods.isEmpty()) {
+                    continue;
+                }
+
+                // 已经写入的周期无需重复聚合
+                if (materialize) {
+                    List<LocalDateTime> existing = candlestickRepository.findExistingOpenTimesBySymbolAndIntervalBetween(
+                            symbol, interval, periods.first(), periods.last().plusSeconds(1));
+                    existing.forEach(periods::remove);
+                }
+                if (!periods.isEmpty()) {
+                    deriveMissing(symbol, interval, new ArrayList<>(periods));
+                }
+            }
+        }
+    }
+
+    /**
+     * 按配置写入数据库或Redis缓存
+     */
+    private void store(String symbol, String interval, List<CandlestickEntity> candles) {
+        if (!materialize) {
+            redisCacheService.batchAddKlineToSortedSet(symbol, interval, candles, CACHE_TIMEOUT_MINUTES);
+            return;
+        }
+
+        LocalDateTime first = candles.get(0).getOpenTime();
+        LocalDateTime last = candles.get(candles.size() - 1).getOpenTime();
+        Set<LocalDateTime> existing = new HashSet<>(candlestickRepository.findExistingOpenTimesBySymbolAndIntervalBetween(
+                symbol, interval, first, last.plusSeconds(1)));
+        List<CandlestickEntity> newCandles = candles.stream()
+                .filter(candle -> !existing.contains(candle.getOpenTime()))
+                .collect(Collectors.toList());
+        if (newCandles.isEmpty()) {
+            return;
+        }
+
+        TradingMetrics.recordJpaBatch("CandlestickEntity", newCandles.size());
+        List<CandlestickEntity> saved = candlestickRepository.saveAll(newCandles);
+        try {
+            candleArchiveService.append(saved);
+        } catch (Exception e) {
+            log.warn("聚合K线写入归档失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 将按时间升序的1分钟K线聚合为目标周期，只输出1分钟数据完整的周期
+     *
+     * @param minuteCandles 按开盘时间升序的1分钟K线
+     * @param symbol        交易对
+     * @param interval      目标K线间隔
+     * @return 聚合后的K线
+     */
+    static List<CandlestickEntity> aggregateMinuteCandles(List<CandlestickEntity> minuteCandles, String symbol, String interval) {
+        List<CandlestickEntity> result = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        LocalDateTime periodStart = null;
+        List<CandlestickEntity> bucket = new ArrayList<>();
+        for (CandlestickEntity candle : minuteCandles) {
+            if (candle.getOpenTime() == null) {
+                continue;
+            }
+            LocalDateTime candlePeriod = KlinePeriodUtil.getPeriodStartTime(candle.getOpenTime(), interval);
+            if (!candlePeriod.equals(periodStart)) {
+                addIfComplete(result, bucket, periodStart, symbol, interval, now);
+                bucket.clear();
+                periodStart = candlePeriod;
+            }
+            // 同一分钟重复的数据只保留第一条
+            if (bucket.isEmpty() || !bucket.get(bucket.size() - 1).getOpenTime().equals(candle.getOpenTime())) {
+                bucket.add(candle);
+            }
+        }
+        addIfComplete(result, bucket, periodStart, symbol, interval, now);
+        return result;
+    }
+
+    private static void addIfComplete(List<CandlestickEntity> result, List<CandlestickEntity> bucket,
+                                      LocalDateTime periodStart, String symbol, String interval, LocalDateTime fetchTime) {
+        if (periodStart == null || bucket.isEmpty()) {
+            return;
+        }
+        LocalDateTime periodEnd = KlinePeriodUtil.getPeriodEndTime(periodStart, interval);
+        if (bucket.size() != ChronoUnit.MINUTES.between(periodStart, periodEnd)) {
+            return;
+        }
+
+        CandlestickEntity first = bucket.get(0);
+        CandlestickEntity last = bucket.get(bucket.size() - 1);
+        BigDecimal high = first.getHigh();
+        BigDecimal low = first.getLow();
+        BigDecimal volume = null;
+        BigDecimal quoteVolume = null;
+        Long trades = null;
+        for (CandlestickEntity candle : bucket) {
+            high = max(high, candle.getHigh());
+            low = min(low, candle.getLow());
+            volume = add(volume, candle.getVolume());
+            quoteVolume = add(quoteVolume, candle.getQuoteVolume());
+            if (candle.getTrades() != null) {
+                trades = trades == null ? candle.getTrades() : trades + candle.getTrades();
+            }
+        }
+
+        result.add(CandlestickEntity.builder()
+                .symbol(symbol)
+                .intervalVal(interval)
+                .openTime(periodStart)
+                .closeTime(periodEnd)
+                .open(first.getOpen())
+                .high(high)
+                .low(low)
+                .close(last.getClose())
+                .volume(volume)
+                .quoteVolume(quoteVolume)
+                .trades(trades)
+                .fetchTime(fetchTime)
+                .build());
+    }
+
+    private static BigDecimal max(BigDecimal a, BigDecimal b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a.max(b);
+    }
+
+    private static BigDecimal min(BigDecimal a, BigDecimal b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a.min(b);
+    }
+
+    private static BigDecimal add(BigDecimal a, BigDecimal b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a.add(b);
+    }
+}
@@ -0,0 +1,447 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.service.CandleArchiveService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.ta4j.core.Bar;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseBarSeriesBuilder;
+import org.ta4j.core.num.DecimalNum;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * K线列式归档服务实现
+ * <p>
+ * 每个 (交易对, 周期, 月份) 一个文件，文件由64字节文件头和13个定长列组成：
+ * 开盘时间(long)、收盘时间(long)、开/高/低/收/成交量的非标度值低64位和高64位(long)，以及这5个值的小数位数(每个1字节)。
+ * 价格和成交量按十进制精确保存，读取后与从MySQL读取的 BigDecimal 数值相同，DECIMAL(30,15) 的取值都能放下。
+ * 每根K线按开盘时间落在固定槽位上（日内周期按分钟偏移，日线及以上按日期），
+ * 因此写入天然去重，读取时槽位顺序即时间顺序，无需排序和去重。
+ * 旧版本的文件在下次写入时重建。
+ */
+@Slf4j
+@Service
+public class CandleArchiveServiceImpl implements CandleArchiveService {
+
+    private static final ZoneId ZONE_ID = ZoneId.of("UTC+8");
+
+    static final int MAGIC = 0x4F4B5843; // "OKXC"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 64;
+
+    private static final int COL_OPEN_TIME = 0;
+    private static final int COL_CLOSE_TIME = 1;
+    private static final int COL_OPEN = 2;
+    private static final int COL_HIGH = 3;
+    private static final int COL_LOW = 4;
+    private static final int COL_CLOSE = 5;
+    private static final int COL_VOLUME = 6;
+    private static final int DECIMALS = 5;
+    /**
+     * 数值列的高64位，与低64位的列按相同顺序排列
+     */
+    private static final int COL_HIGH_WORDS = COL_OPEN + DECIMALS;
+    private static final int COL_SCALES = COL_HIGH_WORDS + DECIMALS;
+    private static final int COLUMNS = COL_SCALES + 1;
+
+    @Value("${okx.archive.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${okx.archive.dir:data/candle-archive}")
+    private String archiveDir = "data/candle-archive";
+
+    private static final BigInteger LOW_WORD_MASK = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+    private final Map<Path, Object> fileLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 单个归档文件的槽位布局
+     */
+    private static final class Layout {
+        private final LocalDateTime monthStart;
+        private final LocalDateTime nextMonthStart;
+        private final long intervalMinutes;
+        private final boolean daySlotted;
+        private final int slots;
+
+        private Layout(YearMonth month, long intervalMinutes) {
+            this.monthStart = month.atDay(1).atStartOfDay();
+            this.nextMonthStart = month.plusMonths(1).atDay(1).atStartOfDay();
+            this.intervalMinutes = intervalMinutes;
+            this.daySlotted = intervalMinutes >= 24 * 60;
+            if (daySlotted) {
+                this.slots = 31;
+            } else {
+                long minutesInMonth = (long) month.lengthOfMonth() * 24 * 60;
+                this.slots = (int) ((minutesInMonth + intervalMinutes - 1) / intervalMinutes);
+            }
+        }
+
+        /**
+         * 开盘时间对应的槽位，未对齐或不在本月时返回-1
+         */
+        private int slotOf(LocalDateTime openTime) {
+            if (openTime.isBefore(monthStart) || !openTime.isBefore(nextMonthStart)) {
+                return -1;
+            }
+            if (daySlotted) {
+                return openTime.getDayOfMonth() - 1;
+            }
+            long minutes = ChronoUnit.MINUTES.between(monthStart, openTime);
+            if (minutes % intervalMinutes != 0 || openTime.getSecond() != 0) {
+                return -1;
+            }
+            return (int) (minutes / intervalMinutes);
+        }
+
+        /**
+         * 时间点所在或之前最近的槽位，用于确定扫描范围
+         */
+        private int floorSlot(LocalDateTime time) {
+            if (time.isBefore(monthStart)) {
+                return -1;
+            }
+            if (!time.isBefore(nextMonthStart)) {
+                return slots;
+            }
+            if (daySlotted) {
+                return time.getDayOfMonth() - 1;
+            }
+            return (int) (ChronoUnit.MINUTES.between(monthStart, time) / intervalMinutes);
+        }
+
+        private int offset(int column, int slot) {
+            return HEADER_BYTES + (column * slots + slot) * 8;
+        }
+
+        private long fileSize() {
+            return HEADER_BYTES + (long) COLUMNS * 8 * slots;
+        }
+    }
+
+    /**
+     * 扫描到的槽位回调
+     */
+    private interface SlotVisitor {
+        void visit(ByteBuffer buffer, Layout layout, int slot, long openMillis);
+    }
+
+    public CandleArchiveServiceImpl() {
+    }
+
+    public CandleArchiveServiceImpl(String archiveDir) {
+        this.archiveDir = archiveDir;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void append(List<CandlestickEntity> candles) {
+        if (!enabled || candles == null || candles.isEmpty()) {
+            return;
+        }
+
+        // 按 (交易对, 周期, 月份) 分组写入
+        Map<String, List<CandlestickEntity>> groups = new LinkedHashMap<>();
+        for (CandlestickEntity candle : candles) {
+            if (candle == null || candle.getOpenTime() == null || candle.getSymbol() == null || candle.getIntervalVal() == null) {
+                continue;
+            }
+            String key = candle.getSymbol() + "|" + candle.getIntervalVal() + "|" + YearMonth.from(candle.getOpenTime());
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(candle);
+        }
+
+        for (List<CandlestickEntity> group : groups.values()) {
+            CandlestickEntity first = group.get(0);
+            try {
+                writeMonth(first.getSymbol(), first.getIntervalVal(), YearMonth.from(first.getOpenTime()), group);
+            } catch (IOException e) {
+                log.error("写入K线归档失败: {} {} {}, 错误: {}", first.getSymbol(), first.getIntervalVal(),
+                        YearMonth.from(first.getOpenTime()), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public int count(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime) {
+        int[] count = new int[1];
+        scan(symbol, interval, startTime, endTime, (buffer, layout, slot, openMillis) -> count[0]++);
+        return count[0];
+    }
+
+    @Override
+    public BarSeries loadBarSeries(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime, String seriesName) {
+        long start = System.currentTimeMillis();
+        Duration barDuration = Duration.ofMinutes(intervalMinutes(interval));
+        List<Bar> bars = new ArrayList<>();
+
+        scan(symbol, interval, startTime, endTime, (buffer, layout, slot, openMillis) -> {
+            long closeMillis = buffer.getLong(layout.offset(COL_CLOSE_TIME, slot));
+            bars.add(new BaseBar(
+                    barDuration,
+                    Instant.ofEpochMilli(closeMillis != 0 ? closeMillis : openMillis),
+                    DecimalNum.valueOf(readDecimal(buffer, layout, COL_OPEN, slot)),
+                    DecimalNum.valueOf(readDecimal(buffer, layout, COL_HIGH, slot)),
+                    DecimalNum.valueOf(readDecimal(buffer, layout, COL_LOW, slot)),
+                    DecimalNum.valueOf(readDecimal(buffer, layout, COL_CLOSE, slot)),
+                    DecimalNum.valueOf(readDecimal(buffer, layout, COL_VOLUME, slot)),
+                    DecimalNum.valueOf(BigDecimal.ZERO),
+                    0
+            ));
+        });
+
+        log.debug("从K线归档加载 {} {} {} 根K线, 耗时 {}ms", symbol, interval, bars.size(), System.currentTimeMillis() - start);
+        return new BaseBarSeriesBuilder().withName(seriesName).withBars(bars).build();
+    }
+
+    @Override
+    public List<CandlestickEntity> loadCandles(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime) {
+        List<CandlestickEntity> candles = new ArrayList<>();
+        scan(symbol, interval, startTime, endTime, (buffer, layout, slot, openMillis) -> {
+            long closeMillis = buffer.getLong(layout.offset(COL_CLOSE_TIME, slot));
+            candles.add(CandlestickEntity.builder()
+                    .symbol(symbol)
+                    .intervalVal(interval)
+                    .openTime(toLocalDateTime(openMillis))
+                    .closeTime(closeMillis != 0 ? toLocalDateTime(closeMillis) : null)
+                    .open(readDecimal(buffer, layout, COL_OPEN, slot))
+                    .high(readDecimal(buffer, layout, COL_HIGH, slot))
+                    .low(readDecimal(buffer, layout, COL_LOW, slot))
+                    .close(readDecimal(buffer, layout, COL_CLOSE, slot))
+                    .volume(readDecimal(buffer, layout, COL_VOLUME, slot))
+                    .build());
+        });
+        return candles;
+    }
+
+    /**
+     * 按月份依次内存映射归档文件，遍历时间范围内已写入的槽位
+     */
+    private void scan(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime, SlotVisitor visitor) {
+        if (!enabled || startTime == null || endTime == null || startTime.isAfter(endTime)) {
+            return;
+        }
+
+        long intervalMinutes = intervalMinutes(interval);
+        long startMillis = toEpochMilli(startTime);
+        long endMillis = toEpochMilli(endTime);
+        YearMonth lastMonth = YearMonth.from(endTime);
+
+        for (YearMonth month = YearMonth.from(startTime); !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            Path file = filePath(symbol, interval, month);
+            if (!Files.exists(file)) {
+                continue;
+            }
+
+            Layout layout = new Layout(month, intervalMinutes);
+            MappedByteBuffer buffer = mapReadOnly(file, layout);
+            if (buffer == null) {
+                continue;
+            }
+
+            int from = Math.max(0, layout.floorSlot(startTime));
+            int to = Math.min(layout.slots - 1, layout.floorSlot(endTime));
+            for (int slot = from; slot <= to; slot++) {
+                long openMillis = buffer.getLong(layout.offset(COL_OPEN_TIME, slot));
+                if (openMillis == 0 || openMillis < startMillis || openMillis > endMillis) {
+                    continue;
+                }
+                visitor.visit(buffer, layout, slot, openMillis);
+            }
+        }
+    }
+
+    private MappedByteBuffer mapReadOnly(Path file, Layout layout) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < layout.fileSize()) {
+                log.warn("K线归档文件大小不匹配，跳过: {}", file);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, layout.fileSize());
+            if (!isValidHeader(buffer, layout)) {
+                log.warn("K线归档文件头不匹配，跳过: {}", file);
+                return null;
+            }
+            return buffer;
+        } catch (IOException e) {
+            log.error("读取K线归档失败: {}, 错误: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeMonth(String symbol, String interval, YearMonth month, List<CandlestickEntity> candles) throws IOException {
+        Layout layout = new Layout(month, intervalMinutes(interval));
+        Path file = filePath(symbol, interval, month);
+        Object lock = fileLocks.computeIfAbsent(file, k -> new Object());
+
+        synchronized (lock) {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (isOlderVersion(channel)) {
+                    log.info("K线归档文件版本过旧，重建: {}", file);
+                    channel.truncate(0);
+                }
+                boolean fresh = channel.size() == 0;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, layout.fileSize());
+
+                if (fresh) {
+                    buffer.putInt(0, MAGIC);
+                    buffer.putInt(4, VERSION);
+                    buffer.putInt(8, layout.slots);
+                    buffer.putLong(16, layout.intervalMinutes);
+                    buffer.putLong(24, toEpochMilli(layout.monthStart));
+                } else if (!isValidHeader(buffer, layout)) {
+                    log.warn("K线归档文件头不匹配，放弃写入: {}", file);
+                    return;
+                }
+
+                int skipped = 0;
+                int unencodable = 0;
+                for (CandlestickEntity candle : candles) {
+                    int slot = layout.slotOf(candle.getOpenTime());
+                    if (slot < 0) {
+                        skipped++;
+                        continue;
+                    }
+                    BigDecimal[] values = {candle.getOpen(), candle.getHigh(), candle.getLow(), candle.getClose(), candle.getVolume()};
+                    long[] lowWords = new long[DECIMALS];
+                    long[] highWords = new long[DECIMALS];
+                    long scales = 0;
+                    boolean encodable = true;
+                    for (int i = 0; i < DECIMALS && encodable; i++) {
+                        BigDecimal value = values[i] != null ? values[i].stripTrailingZeros() : BigDecimal.ZERO;
+                        BigInteger unscaled = value.unscaledValue();
+                        encodable = unscaled.bitLength() < 128
+                                && value.scale() >= Byte.MIN_VALUE && value.scale() <= Byte.MAX_VALUE;
+                        lowWords[i] = unscaled.longValue();
+                        highWords[i] = unscaled.shiftRight(64).longValue();
+                        scales |= (value.scale() & 0xFFL) << (i * 8);
+                    }
+                    if (!encodable) {
+                        unencodable++;
+                        continue;
+                    }
+                    // 先清除开盘时间，覆盖写入过程中读到的槽位视为空
+                    buffer.putLong(layout.offset(COL_OPEN_TIME, slot), 0);
+                    buffer.putLong(layout.offset(COL_CLOSE_TIME, slot),
+                            candle.getCloseTime() != null ? toEpochMilli(candle.getCloseTime()) : 0);
+                    for (int i = 0; i < DECIMALS; i++) {
+                        buffer.putLong(layout.offset(COL_OPEN + i, slot), lowWords[i]);
+                        buffer.putLong(layout.offset(COL_HIGH_WORDS + i, slot), highWords[i]);
+                    }
+                    buffer.putLong(layout.offset(COL_SCALES, slot), scales);
+                    // 开盘时间最后写入，非0即表示该槽位数据完整
+                    buffer.putLong(layout.offset(COL_OPEN_TIME, slot), toEpochMilli(candle.getOpenTime()));
+                }
+                buffer.force();
+
+                if (skipped > 0) {
+                    log.warn("K线归档 {} 跳过 {} 根未对齐的K线", file, skipped);
+                }
+                if (unencodable > 0) {
+                    log.warn("K线归档 {} 跳过 {} 根数值超出归档精度的K线", file, unencodable);
+                }
+            }
+        }
+    }
+
+    private static boolean isValidHeader(ByteBuffer buffer, Layout layout) {
+        return buffer.getInt(0) == MAGIC
+                && buffer.getInt(4) == VERSION
+                && buffer.getInt(8) == layout.slots
+                && buffer.getLong(16) == layout.intervalMinutes;
+    }
+
+    /**
+     * 归档文件路径：{归档目录}/{交易对}/{周期}/{yyyy-MM}.col
+     * 月线目录使用 mo 后缀，避免在大小写不敏感的文件系统上与分钟线冲突
+     */
+    private Path filePath(String symbol, String interval, YearMonth month) {
+        String intervalDir = interval.endsWith("M") ? interval.substring(0, interval.length() - 1) + "mo" : interval;
+        return Paths.get(archiveDir, symbol, intervalDir, month + ".col");
+    }
+
+    /**
+     * 获取间隔对应的分钟数，与 HistoricalDataService.getIntervalMinutes 保持一致
+     */
+    private static long intervalMinutes(String interval) {
+        String unit = interval.substring(interval.length() - 1);
+        int amount = Integer.parseInt(interval.substring(0, interval.length() - 1));
+        switch (unit) {
+            case "m":
+                return amount;
+            case "H":
+                return amount * 60L;
+            case "D":
+                return amount * 60L * 24;
+            case "W":
+                return amount * 60L * 24 * 7;
+            case "M":
+                return amount * 60L * 24 * 30;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * 文件已有内容且版本号不是当前版本
+     */
+    private static boolean isOlderVersion(FileChannel channel) throws IOException {
+        if (channel.size() < 8) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(8);
+        channel.read(header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) != VERSION;
+    }
+
+    /**
+     * 读取槽位中的十进制数值：非标度值的低64位和高64位，加上小数位数列中对应的字节
+     */
+    private static BigDecimal readDecimal(ByteBuffer buffer, Layout layout, int column, int slot) {
+        int index = column - COL_OPEN;
+        int scale = (byte) (buffer.getLong(layout.offset(COL_SCALES, slot)) >>> (index * 8));
+        long lowWord = buffer.getLong(layout.offset(column, slot));
+        long highWord = buffer.getLong(layout.offset(COL_HIGH_WORDS + index, slot));
+        // 高64位只是低64位的符号扩展时，非标度值在 long 范围内
+        if (highWord == (lowWord >> 63)) {
+            return BigDecimal.valueOf(lowWord, scale);
+        }
+        BigInteger unscaled = BigInteger.valueOf(highWord).shiftLeft(64)
+                .or(BigInteger.valueOf(lowWord).and(LOW_WORD_MASK));
+        return new BigDecimal(unscaled, scale);
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZONE_ID).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMilli) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZONE_ID);
+    }
+}
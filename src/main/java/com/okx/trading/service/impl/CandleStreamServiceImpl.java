@@ -0,0 +1,529 @@
+package com.okx.trading.service.impl;
+
+import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.repository.CandlestickRepository;
+import com.okx.trading.service.CandleArchiveService;
+import com.okx.trading.service.CandleStreamService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * K线数据流式导入导出服务实现
+ * <p>
+ * 导出通过带fetchSize的JPA Stream逐行读取，每行写出后立即detach，避免持久化上下文膨胀；
+ * 导入按批去重后用JDBC批量插入，绕过IDENTITY主键导致的Hibernate逐行insert。
+ * 二进制格式：文件头(int魔数, short版本)，之后是标签记录：
+ * 2=序列(symbol, interval)，1=K线(开盘/收盘时间毫秒, OHLCV, 成交额, 成交笔数)，0=结束。
+ */
+@Slf4j
+@Service
+public class CandleStreamServiceImpl implements CandleStreamService {
+
+    private static final ZoneId ZONE_ID = ZoneId.of("UTC+8");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    static final int BINARY_MAGIC = 0x4F4B5853; // "OKXS"
+    static final short BINARY_VERSION = 1;
+    private static final byte TAG_END = 0;
+    private static final byte TAG_CANDLE = 1;
+    private static final byte TAG_SERIES = 2;
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    static final String CSV_HEADER = "symbol,interval,open_time,close_time,open,high,low,close,volume,quote_volume,trades";
+
+    private static final String INSERT_SQL = "INSERT INTO candlestick_history "
+            + "(symbol, interval_val, open_time, close_time, open, high, low, close, volume, quote_volume, trades, fetch_time) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int IO_BUFFER_BYTES = 64 * 1024;
+
+    private final CandlestickRepository candlestickRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final CandleArchiveService candleArchiveService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${okx.stream.import-batch-size:5000}")
+    private int importBatchSize = 5000;
+
+    @Autowired
+    public CandleStreamServiceImpl(CandlestickRepository candlestickRepository,
+                                   JdbcTemplate jdbcTemplate,
+                                   CandleArchiveService candleArchiveService) {
+        this.candlestickRepository = candlestickRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.candleArchiveService = candleArchiveService;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportCandles(String symbol, String interval, LocalDateTime startTime, LocalDateTime endTime,
+                              StreamFormat format, OutputStream out) throws IOException {
+        long startMillis = System.currentTimeMillis();
+        CandleWriter writer = createWriter(format, out);
+        long count = 0;
+
+        try (Stream<CandlestickEntity> stream = candlestickRepository
+                .streamBySymbolAndIntervalAndOpenTimeBetween(symbol, interval, startTime, endTime)) {
+            Iterator<CandlestickEntity> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                CandlestickEntity candle = iterator.next();
+                writer.write(candle);
+                entityManager.detach(candle);
+                count++;
+            }
+        }
+        writer.finish();
+
+        log.info("导出K线完成: symbol={}, interval={}, {} ~ {}, format={}, 数量={}, 耗时={}ms",
+                symbol, interval, startTime, endTime, format, count, System.currentTimeMillis() - startMillis);
+        return count;
+    }
+
+    @Override
+    public Map<String, Object> importCandles(InputStream in, StreamFormat format) throws IOException {
+        long startMillis = System.currentTimeMillis();
+        CandleReader reader = createReader(format, in);
+        List<CandlestickEntity> buffer = new ArrayList<>(importBatchSize);
+        long read = 0;
+        long inserted = 0;
+
+        CandlestickEntity candle;
+        while ((candle = reader.next()) != null) {
+            read++;
+            buffer.add(candle);
+            if (buffer.size() >= importBatchSize) {
+                inserted += flushImportBatch(buffer);
+                buffer.clear();
+            }
+        }
+        if (!buffer.isEmpty()) {
+            inserted += flushImportBatch(buffer);
+        }
+
+        long elapsed = System.currentTimeMillis() - startMillis;
+        log.info("导入K线完成: format={}, 读取={}, 新增={}, 跳过={}, 耗时={}ms", format, read, inserted, read - inserted, elapsed);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("read", read);
+        result.put("inserted", inserted);
+        result.put("skipped", read - inserted);
+        result.put("elapsedMillis", elapsed);
+        return result;
+    }
+
+    /**
+     * 按 (交易对, 周期) 分组，剔除批内重复和库中已存在的开盘时间后批量插入
+     *
+     * @return 新增数量
+     */
+    private int flushImportBatch(List<CandlestickEntity> batch) {
+        Map<String, TreeMap<LocalDateTime, CandlestickEntity>> groups = new LinkedHashMap<>();
+        for (CandlestickEntity candle : batch) {
+            groups.computeIfAbsent(candle.getSymbol() + "|" + candle.getIntervalVal(), k -> new TreeMap<>())
+                    .putIfAbsent(candle.getOpenTime(), candle);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int inserted = 0;
+        for (TreeMap<LocalDateTime, CandlestickEntity> sorted : groups.values()) {
+            CandlestickEntity first = sorted.firstEntry().getValue();
+            List<LocalDateTime> existing = candlestickRepository.findExistingOpenTimesBySymbolAndIntervalBetween(
+                    first.getSymbol(), first.getIntervalVal(), sorted.firstKey(), sorted.lastKey().plusSeconds(1));
+            existing.forEach(sorted::remove);
+            if (sorted.isEmpty()) {
+                continue;
+            }
+
+            List<CandlestickEntity> newCandles = new ArrayList<>(sorted.values());
+            newCandles.forEach(c -> c.setFetchTime(now));
+            jdbcTemplate.batchUpdate(INSERT_SQL, newCandles, newCandles.size(), (ps, c) -> {
+                ps.setString(1, c.getSymbol());
+                ps.setString(2, c.getIntervalVal());
+                ps.setTimestamp(3, Timestamp.valueOf(c.getOpenTime()));
+                if (c.getCloseTime() == null) {
+                    ps.setNull(4, Types.TIMESTAMP);
+                } else {
+                    ps.setTimestamp(4, Timestamp.valueOf(c.getCloseTime()));
+                }
+                ps.setBigDecimal(5, c.getOpen());
+                ps.setBigDecimal(6, c.getHigh());
+                ps.setBigDecimal(7, c.getLow());
+                ps.setBigDecimal(8, c.getClose());
+                ps.setBigDecimal(9, c.getVolume());
+                ps.setBigDecimal(10, c.getQuoteVolume());
+                if (c.getTrades() == null) {
+                    ps.setNull(11, Types.BIGINT);
+                } else {
+                    ps.setLong(11, c.getTrades());
+                }
+                ps.setTimestamp(12, Timestamp.valueOf(c.getFetchTime()));
+            });
+            inserted += newCandles.size();
+
+            try {
+                candleArchiveService.append(newCandles);
+            } catch (Exception e) {
+                log.warn("导入K线写入归档失败: {}", e.getMessage());
+            }
+        }
+        return inserted;
+    }
+
+    // ==================== 写出 ====================
+
+    /**
+     * K线写出器
+     */
+    interface CandleWriter {
+        void write(CandlestickEntity candle) throws IOException;
+
+        /**
+         * 写出结束标记并刷新缓冲区，不关闭底层输出流
+         */
+        void finish() throws IOException;
+    }
+
+    static CandleWriter createWriter(StreamFormat format, OutputStream out) {
+        switch (format) {
+            case JSONL:
+                return new TextCandleWriter(out, false);
+            case CSV:
+                return new TextCandleWriter(out, true);
+            case BINARY:
+                return new BinaryCandleWriter(out);
+            default:
+                throw new IllegalArgumentException("不支持的格式: " + format);
+        }
+    }
+
+    private static final class TextCandleWriter implements CandleWriter {
+        private final Writer writer;
+        private final boolean csv;
+
+        private TextCandleWriter(OutputStream out, boolean csv) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), IO_BUFFER_BYTES);
+            this.csv = csv;
+            if (csv) {
+                try {
+                    writer.write(CSV_HEADER);
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        @Override
+        public void write(CandlestickEntity c) throws IOException {
+            if (csv) {
+                writer.write(c.getSymbol());
+                writer.write(',');
+                writer.write(c.getIntervalVal());
+                writer.write(',');
+                writer.write(formatTime(c.getOpenTime()));
+                writer.write(',');
+                writer.write(formatTime(c.getCloseTime()));
+                for (BigDecimal value : new BigDecimal[]{c.getOpen(), c.getHigh(), c.getLow(), c.getClose(),
+                        c.getVolume(), c.getQuoteVolume()}) {
+                    writer.write(',');
+                    writer.write(plain(value));
+                }
+                writer.write(',');
+                writer.write(c.getTrades() == null ? "" : String.valueOf(c.getTrades()));
+            } else {
+                JSONObject json = new JSONObject(true);
+                json.put("symbol", c.getSymbol());
+                json.put("intervalVal", c.getIntervalVal());
+                json.put("openTime", formatTime(c.getOpenTime()));
+                json.put("closeTime", c.getCloseTime() == null ? null : formatTime(c.getCloseTime()));
+                json.put("open", strip(c.getOpen()));
+                json.put("high", strip(c.getHigh()));
+                json.put("low", strip(c.getLow()));
+                json.put("close", strip(c.getClose()));
+                json.put("volume", strip(c.getVolume()));
+                json.put("quoteVolume", strip(c.getQuoteVolume()));
+                json.put("trades", c.getTrades());
+                writer.write(json.toJSONString());
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class BinaryCandleWriter implements CandleWriter {
+        private final DataOutputStream out;
+        private String currentSymbol;
+        private String currentInterval;
+
+        private BinaryCandleWriter(OutputStream out) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, IO_BUFFER_BYTES));
+            try {
+                this.out.writeInt(BINARY_MAGIC);
+                this.out.writeShort(BINARY_VERSION);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(CandlestickEntity c) throws IOException {
+            if (!c.getSymbol().equals(currentSymbol) || !c.getIntervalVal().equals(currentInterval)) {
+                currentSymbol = c.getSymbol();
+                currentInterval = c.getIntervalVal();
+                out.writeByte(TAG_SERIES);
+                out.writeUTF(currentSymbol);
+                out.writeUTF(currentInterval);
+            }
+            out.writeByte(TAG_CANDLE);
+            out.writeLong(toMillis(c.getOpenTime()));
+            out.writeLong(c.getCloseTime() == null ? NULL_LONG : toMillis(c.getCloseTime()));
+            writeDecimal(c.getOpen());
+            writeDecimal(c.getHigh());
+            writeDecimal(c.getLow());
+            writeDecimal(c.getClose());
+            writeDecimal(c.getVolume());
+            writeDecimal(c.getQuoteVolume());
+            out.writeLong(c.getTrades() == null ? NULL_LONG : c.getTrades());
+        }
+
+        private void writeDecimal(BigDecimal value) throws IOException {
+            if (value == null) {
+                out.writeShort(-1);
+                return;
+            }
+            BigDecimal stripped = value.stripTrailingZeros();
+            byte[] unscaled = stripped.unscaledValue().toByteArray();
+            out.writeShort(unscaled.length);
+            out.write(unscaled);
+            out.writeShort(stripped.scale());
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.writeByte(TAG_END);
+            out.flush();
+        }
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * K线读取器，读完返回null
+     */
+    interface CandleReader {
+        CandlestickEntity next() throws IOException;
+    }
+
+    static CandleReader createReader(StreamFormat format, InputStream in) throws IOException {
+        switch (format) {
+            case JSONL:
+                return new TextCandleReader(in, false);
+            case CSV:
+                return new TextCandleReader(in, true);
+            case BINARY:
+                return new BinaryCandleReader(in);
+            default:
+                throw new IllegalArgumentException("不支持的格式: " + format);
+        }
+    }
+
+    private static final class TextCandleReader implements CandleReader {
+        private final BufferedReader reader;
+        private final boolean csv;
+        private long lineNumber;
+
+        private TextCandleReader(InputStream in, boolean csv) throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), IO_BUFFER_BYTES);
+            this.csv = csv;
+            if (csv) {
+                String header = reader.readLine();
+                lineNumber++;
+                if (header == null || !header.trim().equals(CSV_HEADER)) {
+                    throw new IOException("CSV表头不匹配，期望: " + CSV_HEADER);
+                }
+            }
+        }
+
+        @Override
+        public CandlestickEntity next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (!line.trim().isEmpty()) {
+                    try {
+                        return csv ? parseCsv(line) : parseJson(line);
+                    } catch (RuntimeException e) {
+                        throw new IOException("第" + lineNumber + "行解析失败: " + e.getMessage(), e);
+                    }
+                }
+            }
+            return null;
+        }
+
+        private static CandlestickEntity parseCsv(String line) {
+            String[] f = line.split(",", -1);
+            if (f.length != 11) {
+                throw new IllegalArgumentException("字段数量应为11，实际为" + f.length);
+            }
+            return CandlestickEntity.builder()
+                    .symbol(f[0])
+                    .intervalVal(f[1])
+                    .openTime(LocalDateTime.parse(f[2], DATE_FORMAT))
+                    .closeTime(f[3].isEmpty() ? null : LocalDateTime.parse(f[3], DATE_FORMAT))
+                    .open(decimal(f[4]))
+                    .high(decimal(f[5]))
+                    .low(decimal(f[6]))
+                    .close(decimal(f[7]))
+                    .volume(decimal(f[8]))
+                    .quoteVolume(decimal(f[9]))
+                    .trades(f[10].isEmpty() ? null : Long.valueOf(f[10]))
+                    .build();
+        }
+
+        private static CandlestickEntity parseJson(String line) {
+            JSONObject json = JSONObject.parseObject(line);
+            String closeTime = json.getString("closeTime");
+            return CandlestickEntity.builder()
+                    .symbol(json.getString("symbol"))
+                    .intervalVal(json.getString("intervalVal"))
+                    .openTime(LocalDateTime.parse(json.getString("openTime"), DATE_FORMAT))
+                    .closeTime(closeTime == null ? null : LocalDateTime.parse(closeTime, DATE_FORMAT))
+                    .open(json.getBigDecimal("open"))
+                    .high(json.getBigDecimal("high"))
+                    .low(json.getBigDecimal("low"))
+                    .close(json.getBigDecimal("close"))
+                    .volume(json.getBigDecimal("volume"))
+                    .quoteVolume(json.getBigDecimal("quoteVolume"))
+                    .trades(json.getLong("trades"))
+                    .build();
+        }
+    }
+
+    private static final class BinaryCandleReader implements CandleReader {
+        private final DataInputStream in;
+        private String currentSymbol;
+        private String currentInterval;
+        private boolean finished;
+
+        private BinaryCandleReader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, IO_BUFFER_BYTES));
+            int magic = this.in.readInt();
+            short version = this.in.readShort();
+            if (magic != BINARY_MAGIC || version != BINARY_VERSION) {
+                throw new IOException("不是有效的K线二进制文件: magic=" + Integer.toHexString(magic) + ", version=" + version);
+            }
+        }
+
+        @Override
+        public CandlestickEntity next() throws IOException {
+            while (!finished) {
+                byte tag;
+                try {
+                    tag = in.readByte();
+                } catch (EOFException e) {
+                    throw new IOException("二进制数据不完整，缺少结束标记", e);
+                }
+                switch (tag) {
+                    case TAG_END:
+                        finished = true;
+                        break;
+                    case TAG_SERIES:
+                        currentSymbol = in.readUTF();
+                        currentInterval = in.readUTF();
+                        break;
+                    case TAG_CANDLE:
+                        if (currentSymbol == null) {
+                            throw new IOException("K线记录之前缺少序列标记");
+                        }
+                        long openTime = in.readLong();
+                        long closeTime = in.readLong();
+                        BigDecimal open = readDecimal();
+                        BigDecimal high = readDecimal();
+                        BigDecimal low = readDecimal();
+                        BigDecimal close = readDecimal();
+                        BigDecimal volume = readDecimal();
+                        BigDecimal quoteVolume = readDecimal();
+                        long trades = in.readLong();
+                        return CandlestickEntity.builder()
+                                .symbol(currentSymbol)
+                                .intervalVal(currentInterval)
+                                .openTime(fromMillis(openTime))
+                                .closeTime(closeTime == NULL_LONG ? null : fromMillis(closeTime))
+                                .open(open)
+                                .high(high)
+                                .low(low)
+                                .close(close)
+                                .volume(volume)
+                                .quoteVolume(quoteVolume)
+                                .trades(trades == NULL_LONG ? null : trades)
+                                .build();
+                    default:
+                        throw new IOException("未知的记录标签: " + tag);
+                }
+            }
+            return null;
+        }
+
+        private BigDecimal readDecimal() throws IOException {
+            int length = in.readShort();
+            if (length < 0) {
+                return null;
+            }
+            byte[] unscaled = new byte[length];
+            in.readFully(unscaled);
+            return new BigDecimal(new BigInteger(unscaled), in.readShort());
+        }
+    }
+
+    // ==================== 工具方法 ====================
+
+    private static String formatTime(LocalDateTime time) {
+        return time == null ? "" : time.format(DATE_FORMAT);
+    }
+
+    private static BigDecimal strip(BigDecimal value) {
+        return value == null ? null : value.stripTrailingZeros();
+    }
+
+    private static String plain(BigDecimal value) {
+        return value == null ? "" : value.stripTrailingZeros().toPlainString();
+    }
+
+    private static BigDecimal decimal(String value) {
+        return value.isEmpty() ? null : new BigDecimal(value);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZONE_ID).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZONE_ID);
+    }
+}
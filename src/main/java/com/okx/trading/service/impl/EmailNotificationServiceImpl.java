@@ -13,6 +13,7 @@ import com.okx.trading.util.WebSocketUtil;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.ApplicationEventPublisher;
@@ -33,6 +34,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -99,6 +101,13 @@ public class EmailNotificationServiceImpl implements NotificationService {
     @Autowired
     private WebSocketUtil webSocketUtil;
 
+    /**
+     * 开启虚拟线程时SMTP发送在通知线程池中执行，不阻塞交易线程；没有该线程池时同步发送
+     */
+    @Autowired(required = false)
+    @Qualifier("notificationExecutorService")
+    private ExecutorService notificationExecutor;
+
     public EmailNotificationServiceImpl(RealTimeStrategyManager realTimeStrategyManager) {
         this.realTimeStrategyManager = realTimeStrategyManager;
     }
@@ -336,7 +345,7 @@ public class EmailNotificationServiceImpl implements NotificationService {
      * @param to      收件人
      * @param subject 主题
      * @param content HTML内容
-     * @return 是否发送成功
+     * @return 同步发送时为是否发送成功；使用通知线程池时为是否已提交发送，发送结果只记录日志
      */
     private boolean sendEmail(String to, String subject, String content) {
         try {
@@ -353,6 +362,17 @@ public class EmailNotificationServiceImpl implements NotificationService {
             helper.setSubject(subject);
             helper.setText(content, true); // true表示支持HTML内容
 
+            if (notificationExecutor != null) {
+                notificationExecutor.execute(() -> {
+                    try {
+                        mailSender.send(message);
+                        log.info("邮件发送成功: {}", subject);
+                    } catch (Exception e) {
+                        log.error("邮件发送失败: {}, {}", subject, e.getMessage(), e);
+                    }
+                });
+                return true;
+            }
             mailSender.send(message);
             log.info("邮件发送成功: {}", subject);
             return true;
@@ -6,9 +6,15 @@ import com.okx.trading.model.entity.CandlestickEntity;
 import com.okx.trading.model.entity.StrategyInfoEntity;
 import com.okx.trading.model.market.Candlestick;
 import com.okx.trading.repository.CandlestickRepository;
+import com.okx.trading.service.BackfillSchedulerService;
+import com.okx.trading.service.CandleAggregationService;
+import com.okx.trading.service.CandleArchiveService;
 import com.okx.trading.service.HistoricalDataService;
 import com.okx.trading.service.OkxApiService;
 import com.okx.trading.service.RedisCacheService;
+import com.okx.trading.util.KlinePeriodUtil;
+import com.okx.trading.util.UpstreamRateLimiter;
+import com.okx.trading.util.TradingMetrics;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -62,6 +68,19 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
     @Autowired
     private RedisCacheService redisCacheService;
 
+    @Autowired
+    private UpstreamRateLimiter upstreamRateLimiter;
+
+    @Autowired
+    private CandleArchiveService candleArchiveService;
+
+    @Autowired
+    private CandleAggregationService candleAggregationService;
+
+    @Lazy
+    @Autowired
+    private BackfillSchedulerService backfillSchedulerService;
+
     private final CandlestickBarSeriesConverter barSeriesConverter;
     private DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
@@ -143,7 +162,7 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
                         CompletableFuture<List<CandlestickEntity>> future = CompletableFuture.supplyAsync(() -> {
                             try {
                                 log.debug("获取时间片段数据,左右都不包括,故意开始时间减一秒,结束时间也减一秒: {}", slice);
-                                List<Candlestick> candlesticks = okxApiService.getHistoryKlineData(
+                                List<Candlestick> candlesticks = getOkxHistoryKlineData(
                                         symbol, interval, toEpochMilli(slice.getStart().minusSeconds(1)), toEpochMilli(slice.getEnd().minusSeconds(1)), batchSize);
 
                                 // 转换为实体类
@@ -410,6 +429,18 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
             return existingData;
         }
 
+        // 4.1 高周期优先由已保存的1分钟K线聚合，剩余缺失的才调用API
+        List<CandlestickEntity> derivedData = deriveFromMinuteCandles(symbol, interval, missingTimePoints);
+        if (!derivedData.isEmpty()) {
+            Set<LocalDateTime> derivedTimes = derivedData.stream()
+                    .map(CandlestickEntity::getOpenTime)
+                    .collect(Collectors.toSet());
+            missingTimePoints = missingTimePoints.stream()
+                    .filter(time -> !derivedTimes.contains(time))
+                    .collect(Collectors.toList());
+            log.info("🧮 由1分钟K线聚合补齐 {} 条，仍需通过API获取 {} 条", derivedData.size(), missingTimePoints.size());
+        }
+
         // 5. 使用多线程并行获取缺失数据
         List<CandlestickEntity> newlyFetchedData = Collections.synchronizedList(new ArrayList<>());
         int batchSize = 300;
@@ -479,6 +510,7 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
 
         // 6. 合并所有数据并按时间排序
         List<CandlestickEntity> allData = new ArrayList<>(existingData);
+        allData.addAll(derivedData);
         allData.addAll(newlyFetchedData);
 
         // 过滤掉时间字段为null的数据，避免排序时出现NullPointerException
@@ -521,6 +553,82 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
 
     }
 
+    @Override
+    public BarSeries fetchBarSeriesWithIntegrityCheck(String symbol, String interval, String startTimeStr, String endTimeStr) {
+        String seriesName = CandlestickBarSeriesConverter.createSeriesName(symbol, interval);
+        LocalDateTime[] range = resolveArchiveRange(interval, startTimeStr, endTimeStr);
+        int expectedCount = calculateTimeRangePoints(range[0], range[1], interval).size();
+
+        if (candleArchiveService.isEnabled()) {
+            BarSeries archived = candleArchiveService.loadBarSeries(symbol, interval, range[0], range[1], seriesName);
+            if (expectedCount > 0 && archived.getBarCount() >= expectedCount) {
+                log.info("📂 从K线归档加载BarSeries, symbol: {}, interval: {}, 数量: {}", symbol, interval, archived.getBarCount());
+                return archived;
+            }
+        }
+
+        List<CandlestickEntity> candlesticks = fetchAndSaveHistoryWithIntegrityCheck(symbol, interval, startTimeStr, endTimeStr);
+        archiveQuietly(candlesticks);
+        return barSeriesConverter.convert(candlesticks, seriesName);
+    }
+
+    @Override
+    public List<CandlestickEntity> fetchArchivedHistoryWithIntegrityCheck(String symbol, String interval, String startTimeStr, String endTimeStr) {
+        LocalDateTime[] range = resolveArchiveRange(interval, startTimeStr, endTimeStr);
+        int expectedCount = calculateTimeRangePoints(range[0], range[1], interval).size();
+
+        if (candleArchiveService.isEnabled()) {
+            List<CandlestickEntity> archived = candleArchiveService.loadCandles(symbol, interval, range[0], range[1]);
+            if (expectedCount > 0 && archived.size() >= expectedCount) {
+                log.info("📂 从K线归档加载K线, symbol: {}, interval: {}, 数量: {}", symbol, interval, archived.size());
+                return archived;
+            }
+        }
+
+        List<CandlestickEntity> candlesticks = fetchAndSaveHistoryWithIntegrityCheck(symbol, interval, startTimeStr, endTimeStr);
+        archiveQuietly(candlesticks);
+        return candlesticks;
+    }
+
+    /**
+     * 计算归档查询的时间范围，结束时间与 fetchAndSaveHistoryWithIntegrityCheck 一样避开未完成的周期
+     */
+    private LocalDateTime[] resolveArchiveRange(String interval, String startTimeStr, String endTimeStr) {
+        LocalDateTime startTime = LocalDateTime.parse(startTimeStr, dateFormat);
+        LocalDateTime endTime = adjustEndTimeToAvoidIncompleteData(LocalDateTime.parse(endTimeStr, dateFormat), interval);
+        return new LocalDateTime[]{startTime, endTime};
+    }
+
+    /**
+     * 写入K线归档，归档失败不影响主流程
+     */
+    private void archiveQuietly(List<CandlestickEntity> candlesticks) {
+        if (!candleArchiveService.isEnabled() || candlesticks == null || candlesticks.isEmpty()) {
+            return;
+        }
+        try {
+            candleArchiveService.append(candlesticks);
+        } catch (Exception e) {
+            log.warn("⚠️ 写入K线归档失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 由已保存的1分钟K线聚合缺失的高周期K线
+     * 不支持聚合的周期或聚合失败时返回空列表，缺失的K线全部交由API获取
+     */
+    private List<CandlestickEntity> deriveFromMinuteCandles(String symbol, String interval, List<LocalDateTime> missingTimePoints) {
+        if (!candleAggregationService.supports(interval)) {
+            return Collections.emptyList();
+        }
+        try {
+            return candleAggregationService.deriveMissing(symbol, interval, missingTimePoints);
+        } catch (Exception e) {
+            log.warn("⚠️ 由1分钟K线聚合 {} {} 失败，改为调用API获取: {}", symbol, interval, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
     public BarSeries fetchLastestedBars(String symbol, String interval, int kLineNum) {
 
         // 2. 获取历史100根K线数据作为基础数据
@@ -614,7 +722,7 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
             // 获取时间范围内的所有数据
             CompletableFuture<List<CandlestickEntity>> future = CompletableFuture.supplyAsync(() -> {
                 try {
-                    List<Candlestick> candlesticks = okxApiService.getHistoryKlineData(
+                    List<Candlestick> candlesticks = getOkxHistoryKlineData(
                             symbol, interval, toEpochMilli(batchStart), toEpochMilli(batchEnd), batchSize);
 
                     // 过滤出缺失的时间点对应的数据
@@ -687,7 +795,7 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
             // 获取时间范围内的所有数据
             CompletableFuture<List<CandlestickEntity>> future = CompletableFuture.supplyAsync(() -> {
                 try {
-                    List<Candlestick> candlesticks = okxApiService.getHistoryKlineData(
+                    List<Candlestick> candlesticks = getOkxHistoryKlineData(
                             symbol, interval, toEpochMilli(batchStart), toEpochMilli(batchEnd), batchSize);
 
                     if (candlesticks.isEmpty()) {
@@ -942,14 +1050,22 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
 
                 // 只保存新数据
                 if (!newEntities.isEmpty()) {
-                    return candlestickRepository.saveAll(newEntities);
+                    TradingMetrics.recordJpaBatch("CandlestickEntity", newEntities.size());
+                    List<CandlestickEntity> saved = candlestickRepository.saveAll(newEntities);
+                    archiveQuietly(saved);
+                    candleAggregationService.onMinuteCandlesSaved(saved);
+                    return saved;
                 } else {
                     return Collections.emptyList();
                 }
             }
 
             // 如果没有时间范围信息，直接保存所有数据
-            return candlestickRepository.saveAll(entities);
+            TradingMetrics.recordJpaBatch("CandlestickEntity", entities.size());
+            List<CandlestickEntity> saved = candlestickRepository.saveAll(entities);
+            archiveQuietly(saved);
+            candleAggregationService.onMinuteCandlesSaved(saved);
+            return saved;
         } catch (Exception e) {
             log.error("保存批量数据时出错: {}", e.getMessage(), e);
             throw e;
@@ -1038,7 +1154,7 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
                         CompletableFuture<List<CandlestickEntity>> future = CompletableFuture.supplyAsync(() -> {
                             try {
                                 log.debug("获取时间片段数据,左右都不包括,故意开始时间减一秒,结束时间也减一秒: {}", slice);
-                                List<Candlestick> candlesticks = okxApiService.getHistoryKlineData(
+                                List<Candlestick> candlesticks = getOkxHistoryKlineData(
                                         symbol, interval, toEpochMilli(slice.getStart().minusSeconds(1)), toEpochMilli(slice.getEnd().minusSeconds(1)), batchSize);
 
                                 // 转换为实体类
@@ -1143,7 +1259,7 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 // 获取原始数据
-                List<Candlestick> candlesticks = okxApiService.getHistoryKlineData(
+                List<Candlestick> candlesticks = getOkxHistoryKlineData(
                         symbol, interval, toEpochMilli(startTime.minusSeconds(1)), toEpochMilli(endTime.minusSeconds(1)), batchSize);
 
                 if (candlesticks.isEmpty()) {
@@ -1289,10 +1405,10 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
             if (isStock) {
                 // 股票：调用Tushare API
                 log.info("检测到股票代码: {}, 使用Tushare API获取数据", symbol);
-                apiData = tushareApiService.getHistoryKlineData(symbol, interval, startTimestamp, endTimestamp, batchSize);
+                apiData = getTushareHistoryKlineData(symbol, interval, startTimestamp, endTimestamp, batchSize);
             } else {
                 // 加密货币：调用OKX API
-                apiData = okxApiService.getHistoryKlineData(symbol, interval, startTimestamp, endTimestamp, batchSize);
+                apiData = getOkxHistoryKlineData(symbol, interval, startTimestamp, endTimestamp, batchSize);
             }
             
             // 转换并保存数据到MySQL
@@ -1307,12 +1423,12 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
                     List<Candlestick> apiData;
                     if (isStock) {
                         // 股票：调用Tushare API
-                        apiData = tushareApiService.getHistoryKlineData(symbol, interval,
+                        apiData = getTushareHistoryKlineData(symbol, interval,
                                 currentStart.atZone(zoneId).toEpochSecond() * 1000,
                                 currentStart.plusMinutes(intervalMinutes * batchSize).atZone(zoneId).toEpochSecond() * 1000, batchSize);
                     } else {
                         // 加密货币：调用OKX API
-                        apiData = okxApiService.getHistoryKlineData(symbol, interval,
+                        apiData = getOkxHistoryKlineData(symbol, interval,
                                 currentStart.atZone(zoneId).toEpochSecond() * 1000,
                                 currentStart.plusMinutes(intervalMinutes * batchSize).atZone(zoneId).toEpochSecond() * 1000, batchSize);
                     }
@@ -1322,17 +1438,46 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
                         List<CandlestickEntity> entities = convertAndSaveCandlesticks(apiData, symbol, interval);
                         result.addAll(entities);
                     }
-                    lastStart = currentStart;
-                    currentStart = currentStart.plusMinutes(intervalMinutes * batchSize);
                 } catch (Exception e) {
-                    log.error("  数据获取失败: {}", e.getMessage());
+                    // 失败的分页交给回填调度器按限流和退避重试，当前请求继续处理后续分页
+                    LocalDateTime pageEnd = currentStart.plusMinutes(intervalMinutes * batchSize);
+                    log.error("  数据获取失败, 转交回填调度器重试 {} ~ {}: {}", currentStart, pageEnd, e.getMessage());
+                    backfillSchedulerService.submit(symbol, interval, currentStart, pageEnd,
+                            BackfillSchedulerService.BackfillPriority.GAP_FILL);
                 }
+                lastStart = currentStart;
+                currentStart = currentStart.plusMinutes(intervalMinutes * batchSize);
             }
         }
 
         return result;
     }
 
+    /**
+     * 经过OKX history-candles限流后获取历史K线
+     */
+    private List<Candlestick> getOkxHistoryKlineData(String symbol, String interval, Long startTime, Long endTime, Integer limit) {
+        acquirePermits(UpstreamRateLimiter.UPSTREAM_OKX, UpstreamRateLimiter.ENDPOINT_OKX_HISTORY_CANDLES);
+        return okxApiService.getHistoryKlineData(symbol, interval, startTime, endTime, limit);
+    }
+
+    /**
+     * 经过Tushare限流后获取股票历史K线
+     */
+    private List<Candlestick> getTushareHistoryKlineData(String symbol, String interval, Long startTime, Long endTime, Integer limit) {
+        acquirePermits(UpstreamRateLimiter.UPSTREAM_TUSHARE, UpstreamRateLimiter.ENDPOINT_TUSHARE_KLINE);
+        return tushareApiService.getHistoryKlineData(symbol, interval, startTime, endTime, limit);
+    }
+
+    private void acquirePermits(String... keys) {
+        try {
+            upstreamRateLimiter.acquire(keys);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待限流令牌时被中断", e);
+        }
+    }
+
     /**
      * 转换并保存K线数据到MySQL数据库
      */
@@ -1379,40 +1524,7 @@ public class HistoricalDataServiceImpl implements HistoricalDataService {
     }
 
     private LocalDateTime calculateLastCompletePeriodStart(LocalDateTime now, String interval) {
-        String unit = interval.substring(interval.length() - 1);
-        int amount = Integer.parseInt(interval.substring(0, interval.length() - 1));
-
-        switch (unit) {
-            case "m": // 分钟
-                // 对齐到最近的完整分钟周期
-                int currentMinute = now.getMinute();
-                int alignedMinute = (currentMinute / amount) * amount;
-                return now.withMinute(alignedMinute).withSecond(0).withNano(0).minusMinutes(amount);
-
-            case "H": // 小时
-                // 对齐到最近的完整小时周期
-                int currentHour = now.getHour();
-                int alignedHour = (currentHour / amount) * amount;
-                return now.withHour(alignedHour).withMinute(0).withSecond(0).withNano(0).minusHours(amount);
-
-            case "D": // 天
-                // 对齐到最近的完整天周期 (UTC 0点开始)
-                return now.toLocalDate().atStartOfDay().minusDays(1);
-
-            case "W": // 周
-                // 对齐到最近的完整周周期 (周一开始)
-                LocalDate currentDate = now.toLocalDate();
-                LocalDate monday = currentDate.with(DayOfWeek.MONDAY);
-                return monday.atStartOfDay().minusWeeks(1);
-
-            case "M": // 月
-                // 对齐到最近的完整月周期 (月初开始)
-                return now.toLocalDate().withDayOfMonth(1).atStartOfDay().minusMonths(1);
-
-            default:
-                // 默认返回当前时间的分钟对齐
-                return now.withSecond(0).withNano(0).minusMinutes(1);
-        }
+        return KlinePeriodUtil.getLastCompletePeriodStart(now, interval);
     }
 
     public List<String> calculateTimeRangePoints(LocalDateTime startTime, LocalDateTime endTime, String interval) {
@@ -6,21 +6,41 @@ import com.okx.trading.model.entity.IndicatorDistributionEntity;
 import com.okx.trading.repository.BacktestSummaryRepository;
 import com.okx.trading.repository.IndicatorDistributionRepository;
 import com.okx.trading.service.IndicatorDistributionService;
+import com.okx.trading.util.KllSketch;
 import com.okx.trading.util.MapUtils;
+import com.okx.trading.util.TradingMetrics;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 指标分布服务实现类
  * 基于历史回测数据动态计算指标分布，提供数据驱动的评分机制
+ * 评分使用内存中当前版本的分布快照，首次评分时从数据库加载，更新分布后整体替换
+ * <p>
+ * 每个指标维护一个 KLL 分位数草图，内存与回测数量无关：
+ * 应用启动和全量重建时通过游标逐行读取回测汇总；之后每保存一条回测汇总就增量更新草图，
+ * 定时把有新样本的草图保存为新版本，事务提交后再替换评分快照。
+ * 启动重建在独立线程中执行，不阻塞应用就绪；重建期间保存的回测汇总先暂存，替换草图前补入新草图
  */
 @Slf4j
 @Service
@@ -30,6 +50,64 @@ public class IndicatorDistributionServiceImpl implements IndicatorDistributionSe
     private final BacktestSummaryRepository backtestSummaryRepository;
     private final IndicatorDistributionRepository indicatorDistributionRepository;
 
+    /**
+     * 当前版本的分布快照，为null表示尚未加载
+     */
+    private final AtomicReference<IndicatorDistributionSnapshot> snapshot = new AtomicReference<>();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${okx.indicator-distribution.sketch-k:200}")
+    private int sketchK = KllSketch.DEFAULT_K;
+
+    @Value("${okx.indicator-distribution.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup = true;
+
+    private static final double[] PERCENTILES = {0.10, 0.20, 0.30, 0.40, 0.50, 0.60, 0.70, 0.80, 0.90};
+
+    /**
+     * 各指标的累加器，全量重建之前为null，此时不做增量更新；由 sketchLock 保护
+     */
+    private Map<String, IndicatorAccumulator> accumulators;
+    private long pendingSamples;
+    /**
+     * 重建期间保存的回测汇总，不在重建时为null；由 sketchLock 保护
+     */
+    private List<BacktestSummaryEntity> rebuildBuffer;
+    private final Object sketchLock = new Object();
+    /**
+     * 启动重建和全量更新互斥执行
+     */
+    private final Object rebuildLock = new Object();
+
+    /**
+     * 单个指标的累加器：分位数草图，以及精确的样本数、最小值、最大值和总和
+     */
+    static final class IndicatorAccumulator {
+        private final KllSketch sketch;
+        private long count;
+        private BigDecimal sum = BigDecimal.ZERO;
+        private BigDecimal min;
+        private BigDecimal max;
+
+        IndicatorAccumulator(int k) {
+            this.sketch = new KllSketch(k);
+        }
+
+        void add(BigDecimal value) {
+            sketch.update(value.doubleValue());
+            count++;
+            sum = sum.add(value);
+            if (min == null || value.compareTo(min) < 0) {
+                min = value;
+            }
+            if (max == null || value.compareTo(max) > 0) {
+                max = value;
+            }
+        }
+    }
+
     /**
      * 指标配置：指标名称 -> 指标类型
      */
@@ -124,52 +202,186 @@ public class IndicatorDistributionServiceImpl implements IndicatorDistributionSe
     public List<IndicatorDistributionEntity> updateIndicatorDistributions() {
         log.info("开始更新指标分布数据...");
 
-        // 1. 查询所有有交易记录的回测数据
-        List<BacktestSummaryEntity> allBacktests = backtestSummaryRepository.findAll();
-        List<BacktestSummaryEntity> validBacktests = allBacktests.stream()
-                .filter(bt -> bt.getNumberOfTrades() != null && bt.getNumberOfTrades() > 0)
-                .collect(Collectors.toList());
+        synchronized (rebuildLock) {
+            // 1. 游标逐行读取有交易记录的回测数据，内存只保存各指标的草图
+            long scanned = rebuildAccumulators(false);
 
-        if (validBacktests.isEmpty()) {
-            log.warn("没有找到有效的回测数据，无法计算指标分布");
-            return Collections.emptyList();
+            if (scanned == 0) {
+                log.warn("没有找到有效的回测数据，无法计算指标分布");
+                return Collections.emptyList();
+            }
+
+            log.info("找到 {} 条有效回测记录", scanned);
+
+            // 2. 累加器已替换，之后保存的回测汇总在新草图上增量更新
+            return persistVersion();
+        }
+    }
+
+    /**
+     * 应用启动完成后在独立线程中从回测汇总重建草图，只恢复内存中的草图，不保存新版本
+     */
+    @Async("indicatorDistributionRebuildExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void onApplicationReady() {
+        if (!rebuildOnStartup) {
+            return;
+        }
+        synchronized (rebuildLock) {
+            synchronized (sketchLock) {
+                // 启动期间已经全量更新过时保留更新后的草图
+                if (accumulators != null) {
+                    return;
+                }
+            }
+            long scanned = rebuildAccumulators(true);
+            log.info("启动时重建指标分布草图，回测记录 {} 条", scanned);
+        }
+    }
+
+    /**
+     * 游标读取回测汇总重建草图，并补入重建期间保存的回测汇总后替换当前草图
+     * 重建开始时最大ID之后的回测可能已被游标读到，按ID去重，避免重复计入
+     *
+     * @param startup 启动重建：只在当前没有草图时替换，没有回测时也替换为空草图；
+     *                全量更新：没有回测时不替换
+     * @return 游标读取的回测数
+     */
+    private long rebuildAccumulators(boolean startup) {
+        synchronized (sketchLock) {
+            rebuildBuffer = new ArrayList<>();
+        }
+        try {
+            Long maxId = backtestSummaryRepository.findMaxId();
+            long startMaxId = maxId == null ? 0L : maxId;
+            Set<Long> scannedAfterStart = new HashSet<>();
+            Map<String, IndicatorAccumulator> rebuilt = newAccumulators();
+            long scanned = scanBacktests(rebuilt, startMaxId, scannedAfterStart);
+            synchronized (sketchLock) {
+                if (startup ? accumulators != null : scanned == 0) {
+                    return scanned;
+                }
+                int replayed = 0;
+                for (BacktestSummaryEntity summary : rebuildBuffer) {
+                    Long id = summary.getId();
+                    // 重建开始前已提交的回测和游标已读到的回测都在新草图中
+                    if (id != null && (id <= startMaxId || scannedAfterStart.contains(id))) {
+                        continue;
+                    }
+                    accumulate(rebuilt, summary);
+                    replayed++;
+                }
+                accumulators = rebuilt;
+                if (replayed > 0) {
+                    log.info("重建期间新增回测样本 {} 条，已补入新草图", replayed);
+                }
+                return scanned;
+            }
+        } finally {
+            synchronized (sketchLock) {
+                rebuildBuffer = null;
+            }
         }
+    }
 
-        log.info("找到 {} 条有效回测记录", validBacktests.size());
+    /**
+     * 游标逐行读取有交易记录的回测汇总累加到草图，读取后立即detach
+     *
+     * @param startMaxId        重建开始时的最大ID
+     * @param scannedAfterStart 收集读到的ID大于 startMaxId 的回测
+     * @return 读取的回测数
+     */
+    private long scanBacktests(Map<String, IndicatorAccumulator> target, long startMaxId, Set<Long> scannedAfterStart) {
+        long scanned = 0;
+        try (Stream<BacktestSummaryEntity> stream = backtestSummaryRepository.streamWithTrades()) {
+            Iterator<BacktestSummaryEntity> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                BacktestSummaryEntity backtest = iterator.next();
+                accumulate(target, backtest);
+                if (backtest.getId() != null && backtest.getId() > startMaxId) {
+                    scannedAfterStart.add(backtest.getId());
+                }
+                entityManager.detach(backtest);
+                scanned++;
+            }
+        }
+        return scanned;
+    }
+
+    @Override
+    public void recordBacktestSummary(BacktestSummaryEntity summary) {
+        if (summary == null || summary.getNumberOfTrades() == null || summary.getNumberOfTrades() <= 0) {
+            return;
+        }
+        synchronized (sketchLock) {
+            // 重建期间暂存，替换草图前补入新草图
+            if (rebuildBuffer != null) {
+                rebuildBuffer.add(summary);
+            } else if (accumulators == null) {
+                // 没有草图也不在重建，这条数据会在下次全量重建时读到
+                return;
+            }
+            if (accumulators != null) {
+                accumulate(accumulators, summary);
+            }
+            pendingSamples++;
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${okx.indicator-distribution.publish-interval-ms:300000}",
+            initialDelayString = "${okx.indicator-distribution.publish-interval-ms:300000}")
+    @Transactional
+    public void publishIncrementalDistributions() {
+        synchronized (sketchLock) {
+            if (accumulators == null || pendingSamples == 0) {
+                return;
+            }
+            log.info("增量更新指标分布，新增回测样本 {} 条", pendingSamples);
+        }
+        persistVersion();
+    }
 
-        // 2. 生成新版本号
+    /**
+     * 用当前草图生成新版本的分布数据并保存，事务提交后替换评分快照
+     */
+    private List<IndicatorDistributionEntity> persistVersion() {
+        // 生成新版本号
         Long maxVersion = indicatorDistributionRepository.findMaxVersion();
         Long newVersion = (maxVersion == null) ? 1L : maxVersion + 1;
 
-        // 3. 计算每个指标的分布
+        // 计算每个指标的分布，生成期间暂停增量更新
         List<IndicatorDistributionEntity> newDistributions = new ArrayList<>();
-
-        for (Map.Entry<String, IndicatorDistributionEntity.IndicatorType> entry : INDICATOR_CONFIGS.entrySet()) {
-            String indicatorName = entry.getKey();
-            IndicatorDistributionEntity.IndicatorType indicatorType = entry.getValue();
-
-            try {
-                IndicatorDistributionEntity distribution = calculateIndicatorDistribution(
-                        indicatorName, indicatorType, validBacktests, newVersion);
-                if (distribution != null) {
-                    newDistributions.add(distribution);
+        synchronized (sketchLock) {
+            for (Map.Entry<String, IndicatorDistributionEntity.IndicatorType> entry : INDICATOR_CONFIGS.entrySet()) {
+                String indicatorName = entry.getKey();
+                try {
+                    IndicatorDistributionEntity distribution = calculateIndicatorDistribution(
+                            indicatorName, entry.getValue(), accumulators.get(indicatorName), newVersion);
+                    if (distribution != null) {
+                        newDistributions.add(distribution);
+                    }
+                } catch (Exception e) {
+                    log.error("计算指标 {} 的分布时发生错误: {}", indicatorName, e.getMessage(), e);
                 }
-            } catch (Exception e) {
-                log.error("计算指标 {} 的分布时发生错误: {}", indicatorName, e.getMessage(), e);
             }
+            pendingSamples = 0;
         }
 
-        // 4. 保存新的分布数据
+        // 保存新的分布数据
         if (!newDistributions.isEmpty()) {
             // 将所有旧记录标记为非当前版本
             indicatorDistributionRepository.markAllAsNotCurrent();
 
             // 保存新的分布数据
+            TradingMetrics.recordJpaBatch("IndicatorDistributionEntity", newDistributions.size());
             List<IndicatorDistributionEntity> savedDistributions = indicatorDistributionRepository.saveAll(newDistributions);
 
             log.info("成功更新 {} 个指标的分布数据，新版本号: {}", savedDistributions.size(), newVersion);
+            publishSnapshotAfterCommit(IndicatorDistributionSnapshot.of(savedDistributions));
 
-            // 5. 清理历史版本（保留最近5个版本）
+            // 清理历史版本（保留最近5个版本）
             cleanOldVersions(5);
 
             return savedDistributions;
@@ -180,71 +392,83 @@ public class IndicatorDistributionServiceImpl implements IndicatorDistributionSe
     }
 
     /**
-     * 计算单个指标的分布
+     * 新版本提交后才用于评分，事务回滚时保留原快照，与数据库中的当前版本一致
+     */
+    private void publishSnapshotAfterCommit(IndicatorDistributionSnapshot published) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            snapshot.set(published);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                snapshot.set(published);
+            }
+        });
+    }
+
+    private Map<String, IndicatorAccumulator> newAccumulators() {
+        Map<String, IndicatorAccumulator> created = new HashMap<>();
+        for (String indicatorName : INDICATOR_CONFIGS.keySet()) {
+            created.put(indicatorName, new IndicatorAccumulator(sketchK));
+        }
+        return created;
+    }
+
+    private void accumulate(Map<String, IndicatorAccumulator> target, BacktestSummaryEntity backtest) {
+        for (Map.Entry<String, IndicatorAccumulator> entry : target.entrySet()) {
+            BigDecimal value = getIndicatorValue(backtest, entry.getKey());
+            if (value != null) {
+                entry.getValue().add(value);
+            }
+        }
+    }
+
+    /**
+     * 由草图计算单个指标的分布，样本数、最值和均值是精确值，分位数是草图估算值
      */
     private IndicatorDistributionEntity calculateIndicatorDistribution(
             String indicatorName,
             IndicatorDistributionEntity.IndicatorType indicatorType,
-            List<BacktestSummaryEntity> backtests,
+            IndicatorAccumulator accumulator,
             Long version) {
 
-        // 提取指标值
-        List<BigDecimal> values = extractIndicatorValues(indicatorName, backtests);
-        if (values.isEmpty()) {
+        if (accumulator == null || accumulator.count == 0) {
             log.warn("指标 {} 没有有效数据", indicatorName);
             return null;
         }
 
-        // 计算统计信息
-        Collections.sort(values);
-        int size = values.size();
-
         IndicatorDistributionEntity distribution = new IndicatorDistributionEntity();
         distribution.setIndicatorName(indicatorName);
         distribution.setIndicatorDisplayName(INDICATOR_DISPLAY_NAMES.get(indicatorName));
         distribution.setIndicatorType(indicatorType);
-        distribution.setSampleCount(size);
+        distribution.setSampleCount((int) Math.min(Integer.MAX_VALUE, accumulator.count));
         distribution.setVersion(version);
         distribution.setIsCurrent(true);
 
         // 基本统计
-        distribution.setMinValue(values.get(0));
-        distribution.setMaxValue(values.get(size - 1));
-        distribution.setAvgValue(calculateAverage(values));
+        distribution.setMinValue(accumulator.min);
+        distribution.setMaxValue(accumulator.max);
+        distribution.setAvgValue(accumulator.sum.divide(BigDecimal.valueOf(accumulator.count), 8, RoundingMode.HALF_UP));
 
         // 计算分位数（8个区间）
-        distribution.setP10(calculatePercentile(values, 0.10));
-        distribution.setP20(calculatePercentile(values, 0.20));
-        distribution.setP30(calculatePercentile(values, 0.30));
-        distribution.setP40(calculatePercentile(values, 0.40));
-        distribution.setP50(calculatePercentile(values, 0.50));
-        distribution.setP60(calculatePercentile(values, 0.60));
-        distribution.setP70(calculatePercentile(values, 0.70));
-        distribution.setP80(calculatePercentile(values, 0.80));
-        distribution.setP90(calculatePercentile(values, 0.90));
+        double[] p = accumulator.sketch.quantiles(PERCENTILES);
+        distribution.setP10(BigDecimal.valueOf(p[0]));
+        distribution.setP20(BigDecimal.valueOf(p[1]));
+        distribution.setP30(BigDecimal.valueOf(p[2]));
+        distribution.setP40(BigDecimal.valueOf(p[3]));
+        distribution.setP50(BigDecimal.valueOf(p[4]));
+        distribution.setP60(BigDecimal.valueOf(p[5]));
+        distribution.setP70(BigDecimal.valueOf(p[6]));
+        distribution.setP80(BigDecimal.valueOf(p[7]));
+        distribution.setP90(BigDecimal.valueOf(p[8]));
 
         log.debug("指标 {} 分布计算完成: 样本数={}, 范围=[{}, {}], 中位数={}",
-                indicatorName, size, distribution.getMinValue(), distribution.getMaxValue(), distribution.getP50());
+                indicatorName, accumulator.count, distribution.getMinValue(), distribution.getMaxValue(), distribution.getP50());
 
         return distribution;
     }
 
-    /**
-     * 从回测数据中提取指标值
-     */
-    private List<BigDecimal> extractIndicatorValues(String indicatorName, List<BacktestSummaryEntity> backtests) {
-        List<BigDecimal> values = new ArrayList<>();
-
-        for (BacktestSummaryEntity backtest : backtests) {
-            BigDecimal value = getIndicatorValue(backtest, indicatorName);
-            if (value != null) {
-                values.add(value);
-            }
-        }
-
-        return values;
-    }
-
     /**
      * 根据指标名称获取回测实体中的对应字段值
      */
@@ -290,38 +514,6 @@ public class IndicatorDistributionServiceImpl implements IndicatorDistributionSe
         }
     }
 
-    /**
-     * 计算分位数
-     */
-    private BigDecimal calculatePercentile(List<BigDecimal> sortedValues, double percentile) {
-        if (sortedValues.isEmpty()) return null;
-
-        int size = sortedValues.size();
-        double index = percentile * (size - 1);
-        int lowerIndex = (int) Math.floor(index);
-        int upperIndex = (int) Math.ceil(index);
-
-        if (lowerIndex == upperIndex) {
-            return sortedValues.get(lowerIndex);
-        } else {
-            BigDecimal lower = sortedValues.get(lowerIndex);
-            BigDecimal upper = sortedValues.get(upperIndex);
-            double weight = index - lowerIndex;
-
-            return lower.add(upper.subtract(lower).multiply(BigDecimal.valueOf(weight)));
-        }
-    }
-
-    /**
-     * 计算平均值
-     */
-    private BigDecimal calculateAverage(List<BigDecimal> values) {
-        if (values.isEmpty()) return null;
-
-        BigDecimal sum = values.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
-        return sum.divide(BigDecimal.valueOf(values.size()), 8, BigDecimal.ROUND_HALF_UP);
-    }
-
     @Override
     public Map<String, IndicatorDistributionEntity> getCurrentDistributions() {
         List<IndicatorDistributionEntity> currentDistributions = indicatorDistributionRepository.findByIsCurrentTrue();
@@ -350,33 +542,48 @@ public class IndicatorDistributionServiceImpl implements IndicatorDistributionSe
         return indicatorDistributionRepository.findCurrentWithFilters(search, type, pageable);
     }
 
+    /**
+     * 获取当前分布快照，未加载时从数据库加载一次
+     */
+    IndicatorDistributionSnapshot currentSnapshot() {
+        IndicatorDistributionSnapshot current = snapshot.get();
+        if (current == null) {
+            IndicatorDistributionSnapshot loaded = IndicatorDistributionSnapshot.of(indicatorDistributionRepository.findByIsCurrentTrue());
+            if (snapshot.compareAndSet(null, loaded)) {
+                log.info("加载指标分布快照，版本号: {}，指标数: {}", loaded.getVersion(), loaded.size());
+            }
+            current = snapshot.get();
+        }
+        return current;
+    }
+
     @Override
     public double calculateIndicatorScore(String indicatorName, BigDecimal value) {
-        Optional<IndicatorDistributionEntity> distributionOpt =
-                indicatorDistributionRepository.findByIndicatorNameAndIsCurrentTrue(indicatorName);
-
-        if (distributionOpt.isPresent()) {
-            return distributionOpt.get().calculateScore(value);
-        } else {
-            log.warn("未找到指标 {} 的分布数据，返回默认评分", indicatorName);
-            return 4.0; // 默认中等分
-        }
+        return scoreOf(currentSnapshot(), indicatorName, value);
     }
 
     @Override
     public Map<String, Double> calculateIndicatorScores(Map<String, BigDecimal> indicatorValues) {
+        // 同一批评分使用同一个快照，避免中途切换版本
+        IndicatorDistributionSnapshot current = currentSnapshot();
         Map<String, Double> scores = new HashMap<>();
 
         for (Map.Entry<String, BigDecimal> entry : indicatorValues.entrySet()) {
-            String indicatorName = entry.getKey();
-            BigDecimal value = entry.getValue();
-            double score = calculateIndicatorScore(indicatorName, value);
-            scores.put(indicatorName, score);
+            scores.put(entry.getKey(), scoreOf(current, entry.getKey(), entry.getValue()));
         }
 
         return scores;
     }
 
+    private double scoreOf(IndicatorDistributionSnapshot current, String indicatorName, BigDecimal value) {
+        double score = current.score(indicatorName, value);
+        if (Double.isNaN(score)) {
+            log.warn("未找到指标 {} 的分布数据，返回默认评分", indicatorName);
+            return IndicatorDistributionSnapshot.DEFAULT_SCORE; // 默认中等分
+        }
+        return score;
+    }
+
     @Override
     public Map<String, Object> getDistributionStatistics() {
         List<IndicatorDistributionEntity> currentDistributions = indicatorDistributionRepository.findByIsCurrentTrue();
@@ -385,6 +592,11 @@ public class IndicatorDistributionServiceImpl implements IndicatorDistributionSe
         Map<String, Object> statistics = new HashMap<>();
         statistics.put("currentVersion", currentVersion);
         statistics.put("indicatorCount", currentDistributions.size());
+        statistics.put("snapshotVersion", currentSnapshot().getVersion());
+        synchronized (sketchLock) {
+            statistics.put("sketchReady", accumulators != null);
+            statistics.put("pendingSamples", pendingSamples);
+        }
         statistics.put("lastUpdateTime",
                 currentDistributions.stream()
                         .map(IndicatorDistributionEntity::getUpdateTime)
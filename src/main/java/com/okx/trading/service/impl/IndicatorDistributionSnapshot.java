@@ -0,0 +1,184 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.entity.IndicatorDistributionEntity;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 指标分布快照
+ * <p>
+ * 某个版本的全部指标分布，创建后不再修改，分位数保存为 double 数组，
+ * 评分只做一次二分查找，不访问数据库。更新分布时整体替换为新快照。
+ * 评分规则与 {@link IndicatorDistributionEntity#calculateScore(BigDecimal)} 保持一致。
+ */
+public final class IndicatorDistributionSnapshot {
+
+    /**
+     * 正向指标：不大于值的阈值个数（P20..P90）对应的评分
+     */
+    private static final double[] POSITIVE_SCORES = {1.0, 1.5, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0};
+
+    /**
+     * 反向指标：小于值的阈值个数（P20..P90）对应的评分
+     */
+    private static final double[] NEGATIVE_SCORES = {8.0, 7.0, 6.0, 5.0, 4.0, 3.0, 2.0, 1.5, 1.0};
+
+    static final double DEFAULT_SCORE = 4.0;
+
+    private static final IndicatorDistributionSnapshot EMPTY = new IndicatorDistributionSnapshot(null, Collections.emptyList());
+
+    private final Long version;
+    private final Map<String, Table> tables;
+
+    /**
+     * 单个指标的分位数表
+     */
+    private static final class Table {
+        private final IndicatorDistributionEntity.IndicatorType type;
+        // P20..P90 升序
+        private final double[] thresholds;
+        private final double p30;
+        private final double p50;
+        private final double p70;
+        // 分位数不完整或非升序时按实体原有逻辑评分
+        private final IndicatorDistributionEntity fallback;
+
+        private Table(IndicatorDistributionEntity entity) {
+            this.type = entity.getIndicatorType();
+            BigDecimal[] values = {entity.getP20(), entity.getP30(), entity.getP40(), entity.getP50(),
+                    entity.getP60(), entity.getP70(), entity.getP80(), entity.getP90()};
+            double[] parsed = new double[values.length];
+            boolean complete = true;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    complete = false;
+                    break;
+                }
+                parsed[i] = values[i].doubleValue();
+                if (i > 0 && parsed[i] < parsed[i - 1]) {
+                    complete = false;
+                    break;
+                }
+            }
+            this.thresholds = complete ? parsed : null;
+            this.p30 = complete ? parsed[1] : Double.NaN;
+            this.p50 = complete ? parsed[3] : Double.NaN;
+            this.p70 = complete ? parsed[5] : Double.NaN;
+            this.fallback = complete ? null : entity;
+        }
+
+        private double score(double value) {
+            if (type == IndicatorDistributionEntity.IndicatorType.POSITIVE) {
+                return POSITIVE_SCORES[countAtMost(thresholds, value)];
+            }
+            if (type == IndicatorDistributionEntity.IndicatorType.NEGATIVE) {
+                return NEGATIVE_SCORES[countBelow(thresholds, value)];
+            }
+            // 中性指标，靠近中位数最好
+            double range = Math.abs(p70 - p30);
+            if (range > 0) {
+                return Math.max(1.0, 8.0 - Math.abs(value - p50) / range * 7.0);
+            }
+            return DEFAULT_SCORE;
+        }
+    }
+
+    private IndicatorDistributionSnapshot(Long version, Collection<IndicatorDistributionEntity> distributions) {
+        this.version = version;
+        Map<String, Table> built = new HashMap<>();
+        for (IndicatorDistributionEntity entity : distributions) {
+            if (entity.getIndicatorName() != null && entity.getIndicatorType() != null) {
+                built.put(entity.getIndicatorName(), new Table(entity));
+            }
+        }
+        this.tables = Collections.unmodifiableMap(built);
+    }
+
+    /**
+     * 由当前版本的分布数据创建快照
+     */
+    public static IndicatorDistributionSnapshot of(Collection<IndicatorDistributionEntity> distributions) {
+        if (distributions == null || distributions.isEmpty()) {
+            return EMPTY;
+        }
+        Long version = distributions.stream()
+                .map(IndicatorDistributionEntity::getVersion)
+                .filter(v -> v != null)
+                .max(Long::compare)
+                .orElse(null);
+        return new IndicatorDistributionSnapshot(version, distributions);
+    }
+
+    public static IndicatorDistributionSnapshot empty() {
+        return EMPTY;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return tables.size();
+    }
+
+    public boolean contains(String indicatorName) {
+        return tables.containsKey(indicatorName);
+    }
+
+    /**
+     * 计算指标评分
+     *
+     * @return 1-8分的评分；值为空时返回中等分；快照中没有该指标时返回NaN，由调用方决定默认值
+     */
+    public double score(String indicatorName, BigDecimal value) {
+        Table table = tables.get(indicatorName);
+        if (table == null) {
+            return Double.NaN;
+        }
+        if (value == null) {
+            return DEFAULT_SCORE;
+        }
+        if (table.fallback != null) {
+            return table.fallback.calculateScore(value);
+        }
+        return table.score(value.doubleValue());
+    }
+
+    /**
+     * 升序数组中不大于 value 的元素个数
+     */
+    static int countAtMost(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 升序数组中小于 value 的元素个数
+     */
+    static int countBelow(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -3,14 +3,19 @@ package com.okx.trading.service.impl;
 import com.okx.trading.model.entity.StrategyInfoEntity;
 import com.okx.trading.service.StrategyInfoService;
 import com.okx.trading.strategy.StrategyFactory1;
-import lombok.RequiredArgsConstructor;
+import com.okx.trading.util.InMemoryJavaCompiler;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.ta4j.core.BarSeries;
 import org.ta4j.core.Strategy;
 
 import javax.tools.*;
 import java.io.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.net.JarURLConnection;
 import java.net.URISyntaxException;
@@ -27,26 +32,61 @@ import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
  * 基于Java Compiler API的动态策略服务
  * 相比Janino具有更好的错误信息和完整的Java语法支持
+ * <p>
+ * 源代码在内存中编译，字节码按源代码哈希保存在本地，源代码未变化时重启直接加载字节码；
+ * classpath 只构建一次。策略通过绑定好的 {@link MethodHandle} 调用，不再每次反射查找方法。
+ * 批量编译时多份源代码放入同一个 javac 任务，多个批次在编译线程池中并行执行。
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class JavaCompilerDynamicStrategyService {
 
     private final StrategyInfoService strategyInfoService;
+    private final ExecutorService strategyCompileExecutorService;
 
     // 缓存已编译的策略函数
     private final Map<String, Function<BarSeries, Strategy>> compiledStrategies = new ConcurrentHashMap<>();
 
-    // 临时编译目录
-    private final Path tempCompileDir = Paths.get(System.getProperty("java.io.tmpdir"), "okx-trading-compiled-strategies");
+    // 已加载策略使用的字节码缓存键，清理缓存时保留
+    private final Map<String, String> loadedSourceHashes = new ConcurrentHashMap<>();
+
+    /**
+     * 字节码缓存目录
+     */
+    @Value("${okx.strategy.bytecode-cache-dir:data/strategy-bytecode}")
+    private String bytecodeCacheDir;
+
+    /**
+     * 每个 javac 任务最多编译的源代码数
+     */
+    @Value("${okx.strategy.compile-batch-size:50}")
+    private int compileBatchSize = 50;
+
+    private volatile StrategyBytecodeStore bytecodeStore;
+
+    // classpath 在首次编译时构建，之后复用
+    private volatile List<String> compileClasspath;
+
+    // 空闲的内存编译器，每个编译任务独占一个，文件管理器在多次编译间复用
+    private final Queue<InMemoryJavaCompiler> idleCompilers = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder compilations = new LongAdder();
+    private final LongAdder compiledUnits = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder compileMillis = new LongAdder();
 
     /**
      * Spring Boot 3.2+ fat jar 内 BOOT-INF/lib 下嵌套 jar 解压缓存，供 javac 使用（javac 无法直接读 nested: / 部分 jar: 嵌套路径）
@@ -56,6 +96,31 @@ public class JavaCompilerDynamicStrategyService {
     // Java编译器
     private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
 
+    public JavaCompilerDynamicStrategyService(StrategyInfoService strategyInfoService,
+                                              @Qualifier("strategyCompileExecutorService") ExecutorService strategyCompileExecutorService) {
+        this.strategyInfoService = strategyInfoService;
+        this.strategyCompileExecutorService = strategyCompileExecutorService;
+    }
+
+    /**
+     * 待编译的策略源代码
+     */
+    private static final class CompileUnit {
+        private final StrategyInfoEntity strategy;
+        private final String className;
+        private final String methodName;
+        private final String fullSourceCode;
+        private final String sourceHash;
+
+        private CompileUnit(StrategyInfoEntity strategy, String className, String methodName, String fullSourceCode) {
+            this.strategy = strategy;
+            this.className = className;
+            this.methodName = methodName;
+            this.fullSourceCode = fullSourceCode;
+            this.sourceHash = StrategyBytecodeStore.hash(fullSourceCode);
+        }
+    }
+
     /**
      * 编译策略代码并加载到StrategyFactory
      */
@@ -68,7 +133,7 @@ public class JavaCompilerDynamicStrategyService {
             }
 
             // 编译策略代码
-            Function<BarSeries, Strategy> strategyFunction = compileStrategyCode(strategyCode, strategyEntity.getStrategyCode());
+            Function<BarSeries, Strategy> strategyFunction = compileStrategyCode(strategyCode, strategyEntity);
 
             // 缓存策略函数
             compiledStrategies.put(strategyEntity.getStrategyCode(), strategyFunction);
@@ -85,71 +150,290 @@ public class JavaCompilerDynamicStrategyService {
     }
 
     /**
-     * 编译策略代码
+     * 批量编译并加载策略
+     * <p>
+     * 命中字节码缓存的直接加载；其余源代码按批放入同一个 javac 任务，同一批中类名不重复，
+     * 多个批次并行编译。某份源代码编译失败不影响同批其他源代码。
+     *
+     * @param strategies 策略，使用其中的 sourceCode
+     * @return 策略代码 -> 错误信息，只包含编译失败的策略
      */
-    private Function<BarSeries, Strategy> compileStrategyCode(String strategyCode, String strategyId) throws Exception {
-        // 确保临时目录存在
-        if (!Files.exists(tempCompileDir)) {
-            Files.createDirectories(tempCompileDir);
+    public Map<String, String> compileAndLoadStrategies(List<StrategyInfoEntity> strategies) {
+        Map<String, String> errors = new ConcurrentHashMap<>();
+        Map<String, Function<BarSeries, Strategy>> loaded = new ConcurrentHashMap<>();
+        if (compiler == null) {
+            strategies.forEach(strategy -> errors.put(strategy.getStrategyCode(),
+                    "编译策略代码失败: Java Compiler API不可用，请确保运行在JDK而非JRE环境中"));
+            return errors;
         }
 
-        // 从代码中提取类名和方法名
-        String className = extractClassName(strategyCode);
-        String methodName = extractMethodName(strategyCode);
+        List<CompileUnit> pending = new ArrayList<>();
+        for (StrategyInfoEntity strategy : strategies) {
+            try {
+                CompileUnit unit = toCompileUnit(strategy.getSourceCode(), strategy);
+                Function<BarSeries, Strategy> cached = loadCached(unit);
+                if (cached != null) {
+                    loaded.put(strategy.getStrategyCode(), cached);
+                } else {
+                    pending.add(unit);
+                }
+            } catch (Exception e) {
+                errors.put(strategy.getStrategyCode(), "编译策略代码失败: " + e.getMessage());
+            }
+        }
 
-        // 准备完整的源代码
-        String fullSourceCode = prepareFullSourceCode(strategyCode);
+        int cachedCount = loaded.size();
+        List<List<CompileUnit>> batches = partition(pending);
+        long start = System.currentTimeMillis();
+        if (batches.size() == 1) {
+            compileBatch(batches.get(0), loaded, errors);
+        } else if (!batches.isEmpty()) {
+            List<Future<?>> futures = new ArrayList<>(batches.size());
+            for (List<CompileUnit> batch : batches) {
+                futures.add(strategyCompileExecutorService.submit(() -> compileBatch(batch, loaded, errors)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failAll(batches.get(i), errors, "编译被中断");
+                } catch (ExecutionException e) {
+                    failAll(batches.get(i), errors, String.valueOf(e.getCause()));
+                }
+            }
+        }
 
-        // 创建源文件
-        Path sourceFile = tempCompileDir.resolve(className + ".java");
-        Files.write(sourceFile, fullSourceCode.getBytes("UTF-8"));
+        for (Map.Entry<String, Function<BarSeries, Strategy>> entry : loaded.entrySet()) {
+            compiledStrategies.put(entry.getKey(), entry.getValue());
+            loadStrategyToFactory(entry.getKey(), entry.getValue());
+        }
+        log.info("批量编译策略完成，共 {} 个，缓存加载 {} 个，编译 {} 个（{} 批，耗时 {}ms），失败 {} 个",
+                strategies.size(), cachedCount, pending.size(), batches.size(), System.currentTimeMillis() - start, errors.size());
+        return errors;
+    }
 
-        // 准备编译选项 - 禁用注解处理器以避免Lombok冲突
-        List<String> options = Arrays.asList(
-            "-classpath", buildClasspath(),
-            "-d", tempCompileDir.toString(),
-            "-proc:none"  // 禁用注解处理器
-        );
+    /**
+     * 编译一批源代码，出错的源代码记录错误，其余源代码若没有生成字节码则去掉出错的源代码后重新编译
+     */
+    private void compileBatch(List<CompileUnit> batch, Map<String, Function<BarSeries, Strategy>> loaded,
+                              Map<String, String> errors) {
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (CompileUnit unit : batch) {
+            sources.put(unit.className, unit.fullSourceCode);
+        }
+        InMemoryJavaCompiler.CompilationResult result;
+        try {
+            result = compileSources(sources);
+        } catch (Exception e) {
+            failAll(batch, errors, e.getMessage());
+            return;
+        }
 
-        // 获取文件管理器
-        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        Set<String> failedSources = result.getFailedSources();
+        List<CompileUnit> retry = new ArrayList<>();
+        for (CompileUnit unit : batch) {
+            String strategyId = unit.strategy.getStrategyCode();
+            Map<String, byte[]> classes = result.getClasses(unit.className);
+            if (failedSources.contains(unit.className)) {
+                errors.put(strategyId, "编译策略代码失败: " + result.formatErrors(unit.className));
+            } else if (classes.containsKey(unit.className)) {
+                try {
+                    loaded.put(strategyId, bindStrategyFunction(classes, unit.className, unit.methodName));
+                    getBytecodeStore().save(unit.sourceHash, classes);
+                    loadedSourceHashes.put(strategyId, unit.sourceHash);
+                } catch (Exception | LinkageError e) {
+                    errors.put(strategyId, "编译策略代码失败: " + e.getMessage());
+                }
+            } else {
+                retry.add(unit);
+            }
+        }
 
-        // 获取编译单元
-        Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjects(sourceFile.toFile());
+        if (retry.size() == batch.size()) {
+            // 错误无法归属到具体源代码，逐个编译
+            if (batch.size() == 1) {
+                errors.put(batch.get(0).strategy.getStrategyCode(), "编译策略代码失败: " + result.formatErrors(null));
+            } else {
+                for (CompileUnit unit : batch) {
+                    compileBatch(Collections.singletonList(unit), loaded, errors);
+                }
+            }
+        } else if (!retry.isEmpty()) {
+            compileBatch(retry, loaded, errors);
+        }
+    }
 
-        // 创建编译任务
-        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-        JavaCompiler.CompilationTask task = compiler.getTask(
-            null, fileManager, diagnostics, options, null, compilationUnits);
+    /**
+     * 按批次大小分批，同一批中类名不重复
+     */
+    private List<List<CompileUnit>> partition(List<CompileUnit> units) {
+        List<List<CompileUnit>> batches = new ArrayList<>();
+        List<Set<String>> batchClassNames = new ArrayList<>();
+        int batchSize = Math.max(1, compileBatchSize);
+        for (CompileUnit unit : units) {
+            int target = -1;
+            for (int i = 0; i < batches.size(); i++) {
+                if (batches.get(i).size() < batchSize && !batchClassNames.get(i).contains(unit.className)) {
+                    target = i;
+                    break;
+                }
+            }
+            if (target < 0) {
+                batches.add(new ArrayList<>());
+                batchClassNames.add(new HashSet<>());
+                target = batches.size() - 1;
+            }
+            batches.get(target).add(unit);
+            batchClassNames.get(target).add(unit.className);
+        }
+        return batches;
+    }
 
-        // 执行编译
-        boolean success = task.call();
+    private static void failAll(List<CompileUnit> batch, Map<String, String> errors, String message) {
+        for (CompileUnit unit : batch) {
+            errors.putIfAbsent(unit.strategy.getStrategyCode(), "编译策略代码失败: " + message);
+        }
+    }
 
-        if (!success) {
-            StringBuilder errorMessage = new StringBuilder("编译失败:\n");
-            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
-                errorMessage.append(String.format("Line %d, Column %d: %s\n",(Object) diagnostic.getLineNumber(), (Object) diagnostic.getColumnNumber(), diagnostic.getMessage(null)));
-            }
-            throw new RuntimeException(errorMessage.toString());
+    /**
+     * 编译策略代码，源代码未变化时直接使用缓存的字节码
+     */
+    private Function<BarSeries, Strategy> compileStrategyCode(String strategyCode, StrategyInfoEntity strategyEntity) throws Exception {
+        CompileUnit unit = toCompileUnit(strategyCode, strategyEntity);
+        Function<BarSeries, Strategy> cached = loadCached(unit);
+        if (cached != null) {
+            return cached;
+        }
+
+        InMemoryJavaCompiler.CompilationResult result = compileSources(
+                Collections.singletonMap(unit.className, unit.fullSourceCode));
+        Map<String, byte[]> classes = result.getClasses(unit.className);
+        if (!result.isSuccess() || !classes.containsKey(unit.className)) {
+            throw new RuntimeException(result.formatErrors(unit.className));
+        }
+
+        getBytecodeStore().save(unit.sourceHash, classes);
+        loadedSourceHashes.put(strategyEntity.getStrategyCode(), unit.sourceHash);
+        return bindStrategyFunction(classes, unit.className, unit.methodName);
+    }
+
+    private CompileUnit toCompileUnit(String strategyCode, StrategyInfoEntity strategyEntity) {
+        // 从代码中提取类名和方法名
+        String className = extractClassName(strategyCode);
+        String methodName = extractMethodName(strategyCode);
+        // 准备完整的源代码
+        return new CompileUnit(strategyEntity, className, methodName, prepareFullSourceCode(strategyCode));
+    }
+
+    /**
+     * 从字节码缓存加载策略，未命中或缓存无法加载时返回null
+     */
+    private Function<BarSeries, Strategy> loadCached(CompileUnit unit) {
+        Map<String, byte[]> classes = getBytecodeStore().load(unit.sourceHash);
+        if (classes == null || !classes.containsKey(unit.className)) {
+            return null;
+        }
+        String strategyId = unit.strategy.getStrategyCode();
+        try {
+            Function<BarSeries, Strategy> strategyFunction = bindStrategyFunction(classes, unit.className, unit.methodName);
+            cacheHits.increment();
+            loadedSourceHashes.put(strategyId, unit.sourceHash);
+            log.debug("策略 {} 使用缓存的字节码", strategyId);
+            return strategyFunction;
+        } catch (LinkageError | ReflectiveOperationException e) {
+            // 依赖库升级后旧字节码可能无法链接，重新编译
+            log.warn("策略 {} 缓存的字节码无法加载，重新编译: {}", strategyId, e.toString());
+            return null;
         }
+    }
 
-        // 加载编译后的类
-        URL[] urls = {tempCompileDir.toUri().toURL()};
-        URLClassLoader classLoader = new URLClassLoader(urls, this.getClass().getClassLoader());
+    /**
+     * 使用空闲的内存编译器执行一次 javac 任务
+     */
+    private InMemoryJavaCompiler.CompilationResult compileSources(Map<String, String> sources) throws IOException {
+        InMemoryJavaCompiler inMemory = idleCompilers.poll();
+        if (inMemory == null) {
+            // 禁用注解处理器以避免Lombok冲突
+            inMemory = new InMemoryJavaCompiler(compiler, getCompileClasspath(), List.of("-proc:none"));
+        }
+        long start = System.currentTimeMillis();
+        try {
+            return inMemory.compile(sources);
+        } finally {
+            compilations.increment();
+            compiledUnits.add(sources.size());
+            compileMillis.add(System.currentTimeMillis() - start);
+            idleCompilers.offer(inMemory);
+        }
+    }
+
+    /**
+     * 加载字节码并把策略静态方法绑定为 {@link MethodHandle}
+     */
+    private Function<BarSeries, Strategy> bindStrategyFunction(Map<String, byte[]> classes, String className, String methodName)
+            throws ReflectiveOperationException {
+        ClassLoader classLoader = new InMemoryJavaCompiler.BytecodeClassLoader(classes, this.getClass().getClassLoader());
         Class<?> strategyClass = classLoader.loadClass(className);
+        MethodHandle handle = MethodHandles.publicLookup()
+                .findStatic(strategyClass, methodName, MethodType.methodType(Strategy.class, BarSeries.class));
 
         // 创建策略函数 - 调用静态方法而不是构造函数
         return (series) -> {
             try {
-                // 查找静态方法
-                var method = strategyClass.getMethod(methodName, BarSeries.class);
-                return (Strategy) method.invoke(null, series);
-            } catch (Exception e) {
+                return (Strategy) handle.invokeExact(series);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
                 throw new RuntimeException("调用策略静态方法失败: " + e.getMessage(), e);
             }
         };
     }
 
+    private StrategyBytecodeStore getBytecodeStore() {
+        StrategyBytecodeStore store = bytecodeStore;
+        if (store == null) {
+            synchronized (this) {
+                store = bytecodeStore;
+                if (store == null) {
+                    String dir = bytecodeCacheDir != null ? bytecodeCacheDir
+                            : Paths.get(System.getProperty("java.io.tmpdir"), "okx-trading-strategy-cache").toString();
+                    store = new StrategyBytecodeStore(Paths.get(dir));
+                    bytecodeStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    private List<String> getCompileClasspath() {
+        List<String> classpath = compileClasspath;
+        if (classpath == null) {
+            synchronized (this) {
+                classpath = compileClasspath;
+                if (classpath == null) {
+                    classpath = buildClasspath();
+                    log.info("动态策略编译 classpath 共 {} 个条目", classpath.size());
+                    compileClasspath = classpath;
+                }
+            }
+        }
+        return classpath;
+    }
+
+    /**
+     * 编译统计：javac 任务数、编译的源代码数、字节码缓存命中次数和累计编译耗时
+     */
+    public Map<String, Object> getCompileStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", compiledStrategies.size());
+        stats.put("compilations", compilations.sum());
+        stats.put("compiledUnits", compiledUnits.sum());
+        stats.put("cacheHits", cacheHits.sum());
+        stats.put("compileMillis", compileMillis.sum());
+        return stats;
+    }
+
     /**
      * 准备完整的源代码，包含所有必要的import
      */
@@ -183,7 +467,7 @@ public class JavaCompilerDynamicStrategyService {
      * 仅靠 {@code java.class.path} 往往只有外层 jar，会导致动态编译找不到 Ta4j 等依赖。
      * 对 {@code nested:} 及 jar 内嵌套 lib 条目会解压到临时目录后再加入 classpath。
      */
-    private String buildClasspath() {
+    private List<String> buildClasspath() {
         LinkedHashSet<String> entries = new LinkedHashSet<>();
         String jcp = System.getProperty("java.class.path", "");
         if (!jcp.isBlank()) {
@@ -195,11 +479,7 @@ public class JavaCompilerDynamicStrategyService {
         }
         addClasspathEntriesFromLoader(entries, Thread.currentThread().getContextClassLoader());
         addClasspathEntriesFromLoader(entries, JavaCompilerDynamicStrategyService.class.getClassLoader());
-        String joined = String.join(File.pathSeparator, entries);
-        if (log.isDebugEnabled()) {
-            log.debug("动态策略编译 classpath 共 {} 个条目", entries.size());
-        }
-        return joined;
+        return new ArrayList<>(entries);
     }
 
     /** 沿父链收集 {@link URLClassLoader} 的 URL，转为 javac 可识别的本地路径或解压后的 jar 路径 */
@@ -408,36 +688,49 @@ public class JavaCompilerDynamicStrategyService {
      * 从数据库加载所有动态策略
      */
     public void loadAllDynamicStrategies() {
+        loadAllDynamicStrategies(this::compileAndLoadStrategies);
+    }
+
+    /**
+     * 从数据库加载所有动态策略，使用指定的批量编译方法，并把编译结果同步到策略的错误信息
+     *
+     * @param batchCompiler 批量编译方法，返回策略代码 -> 错误信息
+     */
+    public void loadAllDynamicStrategies(Function<List<StrategyInfoEntity>, Map<String, String>> batchCompiler) {
         try {
             // 获取所有有源代码的策略
-            strategyInfoService.findAll().stream()
+            List<StrategyInfoEntity> strategies = strategyInfoService.findAll().stream()
                     .filter(strategy ->
                             strategy.getSourceCode() != null &&
                             !strategy.getSourceCode().trim().isEmpty() &&
                             strategy.getSourceCode().contains("public class"))
-                    .forEach(strategy -> {
-                        try {
-                            compileAndLoadStrategy(strategy.getSourceCode(), strategy);
-                            // 加载成功，清除之前的错误信息
-                            if (strategy.getLoadError() != null) {
-                                strategy.setLoadError(null);
-                                strategyInfoService.saveStrategy(strategy);
-                            }
-                            log.info("使用Java Compiler API从数据库加载策略: {}", strategy.getStrategyCode());
-                        } catch (Exception e) {
-                            String errorMessage = "使用Java Compiler API加载策略失败: " + e.getMessage();
-                            log.error("加载策略 {} 失败: {}", strategy.getStrategyCode(), e.getMessage());
-
-                            // 将错误信息保存到数据库
-                            try {
-                                strategy.setLoadError(errorMessage);
-                                strategyInfoService.saveStrategy(strategy);
-                                log.info("策略 {} 的错误信息已保存到数据库", strategy.getStrategyCode());
-                            } catch (Exception saveException) {
-                                log.error("保存策略 {} 的错误信息失败: {}", strategy.getStrategyCode(), saveException.getMessage());
-                            }
-                        }
-                    });
+                    .collect(Collectors.toList());
+
+            Map<String, String> errors = batchCompiler.apply(strategies);
+            for (StrategyInfoEntity strategy : strategies) {
+                String error = errors.get(strategy.getStrategyCode());
+                if (error == null) {
+                    // 加载成功，清除之前的错误信息
+                    if (strategy.getLoadError() != null) {
+                        strategy.setLoadError(null);
+                        strategyInfoService.saveStrategy(strategy);
+                    }
+                    continue;
+                }
+
+                String errorMessage = "使用Java Compiler API加载策略失败: " + error;
+                log.error("加载策略 {} 失败: {}", strategy.getStrategyCode(), error);
+
+                // 将错误信息保存到数据库
+                try {
+                    strategy.setLoadError(errorMessage);
+                    strategyInfoService.saveStrategy(strategy);
+                    log.info("策略 {} 的错误信息已保存到数据库", strategy.getStrategyCode());
+                } catch (Exception saveException) {
+                    log.error("保存策略 {} 的错误信息失败: {}", strategy.getStrategyCode(), saveException.getMessage());
+                }
+            }
+            log.info("使用Java Compiler API从数据库加载策略 {} 个，失败 {} 个", strategies.size(), errors.size());
         } catch (Exception e) {
             log.error("使用Java Compiler API加载动态策略失败: {}", e.getMessage(), e);
         }
@@ -450,6 +743,7 @@ public class JavaCompilerDynamicStrategyService {
         try {
             // 从缓存中移除
             compiledStrategies.remove(strategyCode);
+            loadedSourceHashes.remove(strategyCode);
 
             // 从StrategyRegisterCenter中移除
             Field strategyCreatorsField = com.okx.trading.strategy.StrategyRegisterCenter.class.getDeclaredField("strategyCreators");
@@ -483,23 +777,10 @@ public class JavaCompilerDynamicStrategyService {
     }
 
     /**
-     * 清理临时文件
+     * 清理不再被已加载策略使用的字节码缓存
      */
     public void cleanup() {
-        try {
-            if (Files.exists(tempCompileDir)) {
-                Files.walk(tempCompileDir)
-                        .sorted((a, b) -> b.compareTo(a)) // 逆序，先删除文件再删除目录
-                        .forEach(path -> {
-                            try {
-                                Files.delete(path);
-                            } catch (IOException e) {
-                                log.warn("删除临时文件失败: {}", path, e);
-                            }
-                        });
-            }
-        } catch (Exception e) {
-            log.warn("清理临时编译目录失败", e);
-        }
+        int deleted = getBytecodeStore().prune(new HashSet<>(loadedSourceHashes.values()));
+        log.info("清理策略字节码缓存 {} 个", deleted);
     }
 }
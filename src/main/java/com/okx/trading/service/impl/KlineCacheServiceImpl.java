@@ -10,6 +10,7 @@ import com.okx.trading.service.OkxApiService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -28,8 +29,11 @@ import java.util.stream.Collectors;
  * K线缓存服务实现类
  * 负责K线数据的缓存管理，订阅与取消订阅功能。
  * 使用Redis存储K线数据，并通过内存维护当前订阅状态。
+ * K线数据以整个列表的JSON字符串存储，仅在 okx.kline-cache.backend=json 时启用，
+ * 默认使用 {@link KlineSortedSetCacheServiceImpl}。
  */
 @Service
+@ConditionalOnProperty(name = "okx.kline-cache.backend", havingValue = "json")
 public class KlineCacheServiceImpl implements KlineCacheService {
 
     private static final Logger log = LoggerFactory.getLogger(KlineCacheServiceImpl.class);
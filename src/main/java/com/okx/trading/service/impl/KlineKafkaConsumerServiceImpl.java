@@ -1,34 +1,43 @@
 package com.okx.trading.service.impl;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
 import com.okx.trading.model.market.Candlestick;
 import com.okx.trading.service.KafkaMonitorService;
 import com.okx.trading.service.KlineKafkaConsumerService;
+import com.okx.trading.service.LatencyTraceService;
 import com.okx.trading.service.NotificationService;
 import com.okx.trading.strategy.RealTimeStrategyManager;
-import com.okx.trading.util.BigDecimalUtil;
+import com.okx.trading.util.TickTrace;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
-import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * K线数据 Kafka 消费者服务实现
+ * <p>
+ * 消息由 {@link com.okx.trading.adapter.KlineKafkaDeserializer} 按消息头协商的格式解码。
+ * 以批量方式消费：一次poll的记录倒序扫描，同一根K线 (交易对, 周期, 开盘时间) 只处理最新的一条，
+ * 之前的推送直接丢弃；不同开盘时间的K线都会保留，
+ * 保证上一根K线的最终确认数据不会被下一根K线的推送覆盖。
+ * 处理完成后手动提交偏移量。K线是实时行情，单批处理失败时同样提交，避免重放过期数据。
  */
 @Slf4j
 @Service
 public class KlineKafkaConsumerServiceImpl implements KlineKafkaConsumerService {
 
+    /**
+     * 指标汇总日志的输出间隔
+     */
+    private static final long METRICS_LOG_INTERVAL_MS = 60_000;
+
     @Lazy
     @Autowired(required = false)
     private RealTimeStrategyManager realTimeStrategyManager;
@@ -39,132 +48,151 @@ public class KlineKafkaConsumerServiceImpl implements KlineKafkaConsumerService
     @Autowired(required = false)
     private KafkaMonitorService kafkaMonitorService;
 
+    @Autowired(required = false)
+    private LatencyTraceService latencyTraceService;
+
+    private final Map<Integer, PartitionMetrics> partitionMetrics = new ConcurrentHashMap<>();
+    private final AtomicLong lastMetricsLogTime = new AtomicLong(System.currentTimeMillis());
+
     /**
-     * 消费 K线数据
-     * 
-     * @param message 消息内容
-     * @param partition 分区号
-     * @param offset 偏移量
+     * 单个分区的消费指标
+     */
+    private static final class PartitionMetrics {
+        private final long startTime = System.currentTimeMillis();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder processingNanos = new LongAdder();
+        private final AtomicLong maxProcessingNanos = new AtomicLong();
+        private volatile long lastOffset = -1;
+        private volatile long lastRecordAgeMs;
+
+        private Map<String, Object> snapshot() {
+            long recordCount = records.sum();
+            long batchCount = batches.sum();
+            double elapsedSeconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("records", recordCount);
+            map.put("processed", processed.sum());
+            map.put("batches", batchCount);
+            map.put("recordsPerSecond", Math.round(recordCount / elapsedSeconds * 100) / 100.0);
+            map.put("avgBatchProcessingMs", batchCount == 0 ? 0 : processingNanos.sum() / batchCount / 1_000_000.0);
+            map.put("maxBatchProcessingMs", maxProcessingNanos.get() / 1_000_000.0);
+            map.put("lastOffset", lastOffset);
+            map.put("lastRecordAgeMs", lastRecordAgeMs);
+            return map;
+        }
+    }
+
+    /**
+     * 批量消费 K线数据
+     *
+     * @param records 一次poll拉取到的消息
+     * @param acknowledgment 偏移量提交句柄
      */
     @Override
     @KafkaListener(
         topics = "${kline.kafka.topic}",
-        groupId = "${spring.kafka.consumer.group-id}"
+        groupId = "${spring.kafka.consumer.group-id}",
+        containerFactory = "klineBatchListenerContainerFactory"
     )
-    public void consumeKlineData(
-            @Payload String message,
-            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
-            @Header(KafkaHeaders.OFFSET) long offset) {
-        
+    public void consumeKlineBatch(List<ConsumerRecord<String, Candlestick>> records, Acknowledgment acknowledgment) {
+        if (records == null || records.isEmpty()) {
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        List<Candlestick> candlesticks = Collections.emptyList();
         try {
-            log.debug("📥 接收到 Kafka 消息: partition={}, offset={}", partition, offset);
+            log.debug("📥 接收到 Kafka 批量消息: {} 条", records.size());
 
             // 更新监控服务的数据接收时间
             if (kafkaMonitorService != null) {
                 kafkaMonitorService.updateLastDataReceivedTime();
             }
 
-            // 解析消息 - 直接解析 OKX 原始格式
-            JSONObject messageObj = JSON.parseObject(message);
-            
-            // 解析 arg
-            JSONObject arg = messageObj.getJSONObject("arg");
-            if (arg == null) {
-                log.warn("K线消息缺少 arg 字段: {}", message);
-                return;
-            }
-            
-            String channel = arg.getString("channel");
-            String symbol = arg.getString("instId");
-            
-            if (channel == null || symbol == null) {
-                log.warn("K线消息缺少 channel 或 instId: {}", message);
-                return;
-            }
-            
-            // 从 channel 提取 interval (例如: candle1D -> 1D)
-            String interval = channel.replace("candle", "");
-            
-            // 解析 data 数组
-            JSONArray dataArray = messageObj.getJSONArray("data");
-            if (dataArray == null || dataArray.isEmpty()) {
-                log.debug("K线消息没有数据: {}", message);
-                return;
-            }
-            
-            // 处理第一条 K线数据
-            JSONArray klineData = dataArray.getJSONArray(0);
-            if (klineData == null || klineData.size() < 9) {
-                log.warn("K线数据格式不正确: {}", klineData);
-                return;
-            }
+            candlesticks = decodeLatest(records);
 
-            // 解析 K线数据
-            Candlestick candlestick = parseOKXKlineData(symbol, interval, klineData);
-            
-            if (candlestick != null) {
-                // 更新邮件通知服务的最新价格
-                emailNotificationService.updateLatestPrice(symbol, candlestick.getClose());
-
-                log.debug("✅ 从 Kafka 处理 K线数据: symbol={}, interval={}, close={}", 
-                    symbol, interval, candlestick.getClose());
-
-                // 通知实时策略管理器处理新的K线数据
-                if (realTimeStrategyManager != null) {
-                    realTimeStrategyManager.handleNewKlineData(symbol, interval, candlestick);
+            // 行情到下单的追踪从收到这批消息开始
+            boolean traced = latencyTraceService != null && latencyTraceService.isEnabled();
+            for (Candlestick candlestick : candlesticks) {
+                if (traced) {
+                    candlestick.setTrace(TickTrace.start("kafka", candlestick.getSymbol(), candlestick.getIntervalVal(), startNanos));
                 }
+                // 更新邮件通知服务的最新价格
+                emailNotificationService.updateLatestPrice(candlestick.getSymbol(), candlestick.getClose());
             }
 
+            // 通知实时策略管理器处理新的K线数据
+            if (realTimeStrategyManager != null && !candlesticks.isEmpty()) {
+                realTimeStrategyManager.handleNewKlineBatch(candlesticks);
+            }
         } catch (Exception e) {
-            log.error("❌ 处理 Kafka K线数据失败: partition={}, offset={}, error={}", 
-                partition, offset, e.getMessage(), e);
+            ConsumerRecord<String, Candlestick> first = records.get(0);
+            log.error("❌ 处理 Kafka K线批量数据失败: partition={}, offset={}, size={}, error={}",
+                first.partition(), first.offset(), records.size(), e.getMessage(), e);
+        } finally {
+            acknowledgment.acknowledge();
+            recordMetrics(records, candlesticks.size(), System.nanoTime() - startNanos);
         }
     }
 
+    @Override
+    public Map<Integer, Map<String, Object>> getConsumerMetrics() {
+        Map<Integer, Map<String, Object>> result = new TreeMap<>();
+        partitionMetrics.forEach((partition, metrics) -> result.put(partition, metrics.snapshot()));
+        return result;
+    }
+
     /**
-     * 解析 OKX K线数据 (原始格式)
-     * <p>
-     * OKX K线数据数组格式:
-     * [
-     *   "1712188800000",  // 0: 开盘时间戳
-     *   "67000.0",        // 1: 开盘价
-     *   "68000.0",        // 2: 最高价
-     *   "66500.0",        // 3: 最低价
-     *   "67500.0",        // 4: 收盘价
-     *   "1234.56",        // 5: 成交量（币）
-     *   "83456789.12",    // 6: 成交量（USDT）
-     *   "83456789.12",    // 7: 成交量（USDT）- 重复
-     *   "1"               // 8: 确认状态：0=未确认，1=已确认
-     * ]
+     * 倒序扫描一批已解码的消息，每根K线 (交易对, 周期, 开盘时间) 只保留最新的一条
+     *
+     * @return 按消息顺序排列的K线
      */
-    private Candlestick parseOKXKlineData(String symbol, String interval, JSONArray klineData) {
-        try {
-            // 时间戳
-            long timestamp = klineData.getLongValue(0);
-            LocalDateTime openTime = LocalDateTime.ofInstant(
-                    Instant.ofEpochMilli(timestamp), 
-                    ZoneId.of("UTC+8")
-            );
-            
-            Candlestick.CandlestickBuilder builder = Candlestick.builder()
-                    .symbol(symbol)
-                    .intervalVal(interval)
-                    .openTime(openTime)
-                    .open(BigDecimalUtil.safeGen(klineData.getString(1)))
-                    .high(BigDecimalUtil.safeGen(klineData.getString(2)))
-                    .low(BigDecimalUtil.safeGen(klineData.getString(3)))
-                    .close(BigDecimalUtil.safeGen(klineData.getString(4)))
-                    .volume(BigDecimalUtil.safeGen(klineData.getString(5)))
-                    .quoteVolume(BigDecimalUtil.safeGen(klineData.getString(6)));
-            
-            // 确认状态：0=未完结，1=已完结
-            String confirmStatus = klineData.getString(8);
-            builder.state("1".equals(confirmStatus) ? 1 : 0);
-
-            return builder.build();
-        } catch (Exception e) {
-            log.error("解析 OKX K线数据失败: symbol={}, interval={}", symbol, interval, e);
-            return null;
+    List<Candlestick> decodeLatest(List<ConsumerRecord<String, Candlestick>> records) {
+        Set<String> seen = new HashSet<>();
+        List<Candlestick> latest = new ArrayList<>();
+
+        for (int i = records.size() - 1; i >= 0; i--) {
+            Candlestick candlestick = records.get(i).value();
+            if (candlestick == null) {
+                // 反序列化失败的消息
+                continue;
+            }
+            if (!seen.add(candlestick.getSymbol() + "|" + candlestick.getIntervalVal() + "|" + candlestick.getOpenTime())) {
+                // 同一根K线已有更新的推送
+                continue;
+            }
+            latest.add(candlestick);
+        }
+
+        Collections.reverse(latest);
+        return latest;
+    }
+
+    private void recordMetrics(List<ConsumerRecord<String, Candlestick>> records, int processedCount, long elapsedNanos) {
+        long now = System.currentTimeMillis();
+        Map<Integer, Integer> countByPartition = new HashMap<>();
+        for (ConsumerRecord<String, Candlestick> record : records) {
+            countByPartition.merge(record.partition(), 1, Integer::sum);
+            PartitionMetrics metrics = partitionMetrics.computeIfAbsent(record.partition(), p -> new PartitionMetrics());
+            metrics.lastOffset = record.offset();
+            metrics.lastRecordAgeMs = record.timestamp() > 0 ? now - record.timestamp() : -1;
+        }
+        countByPartition.forEach((partition, count) -> {
+            PartitionMetrics metrics = partitionMetrics.get(partition);
+            metrics.records.add(count);
+            metrics.batches.increment();
+            metrics.processingNanos.add(elapsedNanos);
+            metrics.maxProcessingNanos.accumulateAndGet(elapsedNanos, Math::max);
+            // 合并后的处理数按分区消息占比分摊
+            metrics.processed.add(Math.round((double) processedCount * count / records.size()));
+        });
+
+        long lastLog = lastMetricsLogTime.get();
+        if (now - lastLog >= METRICS_LOG_INTERVAL_MS && lastMetricsLogTime.compareAndSet(lastLog, now)) {
+            log.info("📊 Kafka K线消费指标: {}", getConsumerMetrics());
         }
     }
 }
@@ -1,6 +1,6 @@
 package com.okx.trading.service.impl;
 
-import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.model.market.Candlestick;
 import com.okx.trading.service.KlineKafkaProducerService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -16,7 +16,7 @@ import org.springframework.stereotype.Service;
 public class KlineKafkaProducerNoOpServiceImpl implements KlineKafkaProducerService {
 
     @Override
-    public void sendKlineData(String symbol, String interval, JSONObject klineData) {
+    public void sendKlineData(Candlestick candlestick) {
         // 空实现，不做任何操作
         log.trace("Kafka 未启用，跳过 K线数据发送");
     }
@@ -1,6 +1,6 @@
 package com.okx.trading.service.impl;
 
-import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.model.market.Candlestick;
 import com.okx.trading.service.KafkaMonitorService;
 import com.okx.trading.service.KlineKafkaProducerService;
 import lombok.extern.slf4j.Slf4j;
@@ -23,7 +23,7 @@ import java.util.concurrent.CompletableFuture;
 public class KlineKafkaProducerServiceImpl implements KlineKafkaProducerService {
 
     @Autowired
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaTemplate<String, Candlestick> kafkaTemplate;
 
     @Autowired(required = false)
     private KafkaMonitorService kafkaMonitorService;
@@ -35,27 +35,25 @@ public class KlineKafkaProducerServiceImpl implements KlineKafkaProducerService
     private boolean enabled;
 
     @Override
-    public void sendKlineData(String symbol, String interval, JSONObject klineData) {
+    public void sendKlineData(Candlestick candlestick) {
         if (!enabled) {
             log.debug("Kafka 未启用，跳过发送");
             return;
         }
 
+        String symbol = candlestick.getSymbol();
+        String interval = candlestick.getIntervalVal();
         try {
             // 构建消息键：symbol_interval，用于分区
             String key = symbol + "_" + interval;
             
-            // ✅ 直接发送 OKX 原始数据，不进行包装
-            // klineData 已经是 OKX WebSocket 的原始格式：
-            // {
-            //   "arg": {"channel": "candle4H", "instId": "BTC-USDT"},
-            //   "data": [["1712188800000", ...]]
-            // }
-            // 这样与 data-warehouse 的格式保持一致
+            // 消息体由 KlineKafkaSerializer 编码：默认为与 data-warehouse 一致的 OKX 原始格式，
+            // kline.kafka.wire-format=binary 时输出紧凑二进制
+            // 两种格式都在消息头中标明 schema，消费端自动识别
 
             // 异步发送到 Kafka
-            CompletableFuture<SendResult<String, String>> future = 
-                kafkaTemplate.send(topic, key, klineData.toJSONString());
+            CompletableFuture<SendResult<String, Candlestick>> future = 
+                kafkaTemplate.send(topic, key, candlestick);
 
             future.whenComplete((result, ex) -> {
                 if (ex == null) {
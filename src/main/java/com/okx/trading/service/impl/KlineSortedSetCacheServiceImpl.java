@@ -0,0 +1,255 @@
+package com.okx.trading.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.model.market.Candlestick;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * 基于Redis Sorted Set的K线缓存服务实现
+ * <p>
+ * 每个 (交易对, 周期) 一个Sorted Set，score为开盘时间毫秒，member为K线JSON。
+ * 写入通过Lua脚本在Redis端原子完成"按score删除旧值 + ZADD + ZREMRANGEBYRANK裁剪"，
+ * 单条更新为O(log n)，多个写入方并发更新同一Key时不存在读-改-写竞争。
+ * 订阅管理沿用 {@link KlineCacheServiceImpl}。
+ */
+@Service
+@ConditionalOnProperty(name = "okx.kline-cache.backend", havingValue = "zset", matchIfMissing = true)
+public class KlineSortedSetCacheServiceImpl extends KlineCacheServiceImpl {
+
+    private static final Logger log = LoggerFactory.getLogger(KlineSortedSetCacheServiceImpl.class);
+
+    private static final String KLINE_ZSET_KEY_PREFIX = "kline:zset:";
+    private static final Duration KLINE_CACHE_DURATION = Duration.ofHours(24);
+    private static final ZoneId ZONE_ID = ZoneId.of("UTC+8");
+
+    /**
+     * KEYS[1]=缓存Key，ARGV[1]=最大保留条数，ARGV[2]=过期毫秒，之后为 (score, member) 对
+     */
+    private static final String UPSERT_SCRIPT =
+            "local n = 0\n" +
+            "for i = 3, #ARGV, 2 do\n" +
+            "  redis.call('ZREMRANGEBYSCORE', KEYS[1], ARGV[i], ARGV[i])\n" +
+            "  redis.call('ZADD', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+            "  n = n + 1\n" +
+            "end\n" +
+            "local maxSize = tonumber(ARGV[1])\n" +
+            "if maxSize > 0 then\n" +
+            "  redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -maxSize - 1)\n" +
+            "end\n" +
+            "if tonumber(ARGV[2]) > 0 then\n" +
+            "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+            "end\n" +
+            "return n";
+
+    private static final DefaultRedisScript<Long> UPSERT_REDIS_SCRIPT = new DefaultRedisScript<>(UPSERT_SCRIPT, Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${okx.kline-cache.max-size:5000}")
+    private int maxSize = 5000;
+
+    @Autowired
+    public KlineSortedSetCacheServiceImpl(RedisTemplate<String, String> redisTemplate,
+                                          ObjectMapper objectMapper,
+                                          ApplicationEventPublisher eventPublisher) {
+        super(redisTemplate, objectMapper, eventPublisher);
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean cacheKlineData(Candlestick candlestick) {
+        if (candlestick == null) {
+            return false;
+        }
+        if (candlestick.getSymbol() == null || candlestick.getIntervalVal() == null || candlestick.getOpenTime() == null) {
+            log.warn("缓存K线数据失败: 交易对、时间间隔或开盘时间为空");
+            return false;
+        }
+
+        try {
+            upsert(candlestick.getSymbol(), candlestick.getIntervalVal(), Collections.singletonList(candlestick));
+            log.debug("已缓存单条K线数据: {} {}, 时间: {}", candlestick.getSymbol(), candlestick.getIntervalVal(), candlestick.getOpenTime());
+            return true;
+        } catch (Exception e) {
+            log.error("缓存K线数据失败: {}, 错误: {}", candlestick.getSymbol(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public int batchCacheKlineData(List<Candlestick> candlesticks) {
+        if (CollectionUtils.isEmpty(candlesticks)) {
+            return 0;
+        }
+
+        // 按照交易对和时间间隔分组，每组一次脚本调用
+        Map<String, List<Candlestick>> groupedData = new LinkedHashMap<>();
+        for (Candlestick candlestick : candlesticks) {
+            if (candlestick == null || candlestick.getSymbol() == null
+                    || candlestick.getIntervalVal() == null || candlestick.getOpenTime() == null) {
+                continue;
+            }
+            groupedData.computeIfAbsent(candlestick.getSymbol() + ":" + candlestick.getIntervalVal(), k -> new ArrayList<>())
+                    .add(candlestick);
+        }
+
+        int successCount = 0;
+        for (List<Candlestick> data : groupedData.values()) {
+            String symbol = data.get(0).getSymbol();
+            String interval = data.get(0).getIntervalVal();
+            try {
+                successCount += upsert(symbol, interval, data);
+                log.debug("已批量缓存K线数据: {} {}, 数据条数: {}", symbol, interval, data.size());
+            } catch (Exception e) {
+                log.error("批量缓存K线数据失败: {} {}, 错误: {}", symbol, interval, e.getMessage(), e);
+            }
+        }
+        return successCount;
+    }
+
+    @Override
+    public List<CandlestickEntity> getKlineData(String symbol, String interval, int klineLimit) {
+        if (symbol == null || interval == null) {
+            return Collections.emptyList();
+        }
+        try {
+            String cacheKey = generateZSetKey(symbol, interval);
+            Long size = redisTemplate.opsForZSet().zCard(cacheKey);
+            if (size == null || size < klineLimit) {
+                log.error("获取K线数据失败: {} {}, 错误: k线数量不足阈值 {}", symbol, interval, klineLimit);
+                return Collections.emptyList();
+            }
+            return parse(redisTemplate.opsForZSet().range(cacheKey, 0, -1));
+        } catch (Exception e) {
+            log.error("获取K线数据失败: {} {}, 错误: {}", symbol, interval, e.getMessage(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public List<CandlestickEntity> getLatestKlineData(String symbol, String interval, int limit) {
+        if (symbol == null || interval == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        try {
+            // ZREVRANGE 直接取最新的limit条，结果按时间倒序
+            return parse(redisTemplate.opsForZSet().reverseRange(generateZSetKey(symbol, interval), 0, limit - 1));
+        } catch (Exception e) {
+            log.error("获取最新K线数据失败: {} {}, 错误: {}", symbol, interval, e.getMessage(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public List<CandlestickEntity> getHistoricalKlineData(String symbol, String interval, Long startTime, Long endTime, Integer limit) {
+        if (symbol == null || interval == null) {
+            return Collections.emptyList();
+        }
+        try {
+            double min = startTime == null ? Double.NEGATIVE_INFINITY : startTime;
+            double max = endTime == null ? Double.POSITIVE_INFINITY : endTime;
+            String cacheKey = generateZSetKey(symbol, interval);
+            Set<String> members = limit != null && limit > 0
+                    ? redisTemplate.opsForZSet().rangeByScore(cacheKey, min, max, 0, limit)
+                    : redisTemplate.opsForZSet().rangeByScore(cacheKey, min, max);
+            return parse(members);
+        } catch (Exception e) {
+            log.error("获取历史K线数据失败: {} {}, 错误: {}", symbol, interval, e.getMessage(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public boolean clearKlineCache(String symbol, String interval) {
+        try {
+            if (symbol == null || interval == null) {
+                log.warn("清除K线缓存失败: 交易对或时间间隔为空");
+                return false;
+            }
+
+            Boolean deleted = redisTemplate.delete(generateZSetKey(symbol, interval));
+            if (Boolean.TRUE.equals(deleted)) {
+                log.info("已清除K线缓存: {} {}", symbol, interval);
+                return true;
+            } else {
+                log.warn("清除K线缓存失败或缓存不存在: {} {}", symbol, interval);
+                return false;
+            }
+        } catch (Exception e) {
+            log.error("清除K线缓存失败: {} {}, 错误: {}", symbol, interval, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 原子写入一组同交易对同周期的K线，同一开盘时间的旧值会被替换
+     *
+     * @return 写入条数
+     */
+    private int upsert(String symbol, String interval, List<Candlestick> candlesticks) throws Exception {
+        Object[] args = new Object[2 + candlesticks.size() * 2];
+        args[0] = String.valueOf(maxSize);
+        args[1] = String.valueOf(KLINE_CACHE_DURATION.toMillis());
+        int i = 2;
+        for (Candlestick candlestick : candlesticks) {
+            args[i++] = String.valueOf(candlestick.getOpenTime().atZone(ZONE_ID).toInstant().toEpochMilli());
+            args[i++] = objectMapper.writeValueAsString(candlestick);
+        }
+        Long written = redisTemplate.execute(UPSERT_REDIS_SCRIPT,
+                Collections.singletonList(generateZSetKey(symbol, interval)), args);
+        return written == null ? 0 : written.intValue();
+    }
+
+    /**
+     * member 是 Candlestick 的JSON，时间按 Candlestick 上的格式解析后再转为实体
+     */
+    private List<CandlestickEntity> parse(Set<String> members) throws Exception {
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<CandlestickEntity> result = new ArrayList<>(members.size());
+        for (String member : members) {
+            result.add(toEntity(objectMapper.readValue(member, Candlestick.class)));
+        }
+        return result;
+    }
+
+    private static CandlestickEntity toEntity(Candlestick candlestick) {
+        CandlestickEntity entity = new CandlestickEntity();
+        entity.setSymbol(candlestick.getSymbol());
+        entity.setIntervalVal(candlestick.getIntervalVal());
+        entity.setOpenTime(candlestick.getOpenTime());
+        entity.setCloseTime(candlestick.getCloseTime());
+        entity.setOpen(candlestick.getOpen());
+        entity.setHigh(candlestick.getHigh());
+        entity.setLow(candlestick.getLow());
+        entity.setClose(candlestick.getClose());
+        entity.setVolume(candlestick.getVolume());
+        entity.setQuoteVolume(candlestick.getQuoteVolume());
+        entity.setTrades(candlestick.getTrades());
+        return entity;
+    }
+
+    /**
+     * 生成Sorted Set缓存Key，与旧版JSON字符串Key区分，避免类型冲突
+     */
+    private String generateZSetKey(String symbol, String interval) {
+        return KLINE_ZSET_KEY_PREFIX + symbol + ":" + interval;
+    }
+}
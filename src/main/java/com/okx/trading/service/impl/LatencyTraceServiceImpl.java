@@ -0,0 +1,200 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.service.LatencyTraceService;
+import com.okx.trading.util.TickTrace;
+import com.okx.trading.util.TickTrace.Stage;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 行情到下单的延迟追踪实现
+ * <p>
+ * 每个 (交易对, 策略) 一组 HDR 直方图，每个阶段一个，记录纳秒、保留3位有效数字、按需扩容。
+ * ConcurrentHistogram 的记录是无锁的，K线分发线程和交易线程可以同时写入。
+ */
+@Slf4j
+@Service
+public class LatencyTraceServiceImpl implements LatencyTraceService {
+
+    /**
+     * 对外展示的阶段：名称和起止阶段，total 是收到消息到最后一个已记录阶段
+     */
+    private static final String[] SEGMENT_NAMES = {"parse", "dispatch", "evaluate", "queue", "order"};
+    private static final Stage[] SEGMENT_STARTS = {Stage.RECEIVED, Stage.PARSED, Stage.DISPATCHED, Stage.EVALUATED, Stage.EXECUTING};
+    private static final Stage[] SEGMENT_ENDS = {Stage.PARSED, Stage.DISPATCHED, Stage.EVALUATED, Stage.EXECUTING, Stage.ACKED};
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50Us", "p90Us", "p99Us", "p999Us"};
+
+    @Value("${okx.latency-trace.enabled:true}")
+    private boolean enabled = true;
+
+    /**
+     * 总耗时超过该值（毫秒）的追踪保留为慢追踪
+     */
+    @Value("${okx.latency-trace.slow-threshold-ms:50}")
+    private long slowThresholdMs = 50;
+
+    /**
+     * 保留的慢追踪条数
+     */
+    @Value("${okx.latency-trace.slow-trace-capacity:200}")
+    private int slowTraceCapacity = 200;
+
+    /**
+     * 慢追踪是否同时输出到日志
+     */
+    @Value("${okx.latency-trace.log-slow-traces:false}")
+    private boolean logSlowTraces;
+
+    private final Map<String, StageHistograms> histograms = new ConcurrentHashMap<>();
+    private final Deque<Map<String, Object>> slowTraces = new ArrayDeque<>();
+
+    /**
+     * 一个交易对和策略的各阶段直方图
+     */
+    private static final class StageHistograms {
+        private final String symbol;
+        private final String strategyCode;
+        private final Histogram[] segments = new Histogram[SEGMENT_NAMES.length];
+        private final Histogram total = new ConcurrentHistogram(3);
+
+        private StageHistograms(String symbol, String strategyCode) {
+            this.symbol = symbol;
+            this.strategyCode = strategyCode;
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = new ConcurrentHistogram(3);
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void record(TickTrace trace) {
+        if (trace == null) {
+            return;
+        }
+        String strategyCode = trace.getStrategyCode() != null ? trace.getStrategyCode() : "-";
+        StageHistograms stageHistograms = histograms.computeIfAbsent(trace.getSymbol() + "|" + strategyCode,
+                key -> new StageHistograms(trace.getSymbol(), strategyCode));
+        for (int i = 0; i < SEGMENT_NAMES.length; i++) {
+            long nanos = trace.nanosBetween(SEGMENT_STARTS[i], SEGMENT_ENDS[i]);
+            if (nanos >= 0) {
+                stageHistograms.segments[i].recordValue(nanos);
+            }
+        }
+        long totalNanos = Math.max(0, trace.totalNanos());
+        stageHistograms.total.recordValue(totalNanos);
+
+        if (totalNanos >= TimeUnit.MILLISECONDS.toNanos(slowThresholdMs)) {
+            Map<String, Object> slowTrace = describe(trace, totalNanos);
+            synchronized (slowTraces) {
+                slowTraces.addFirst(slowTrace);
+                while (slowTraces.size() > slowTraceCapacity) {
+                    slowTraces.removeLast();
+                }
+            }
+            if (logSlowTraces) {
+                log.warn("行情到下单耗时过长: {}", slowTrace);
+            }
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> getPercentiles(String symbol, String strategyCode) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (StageHistograms stageHistograms : histograms.values()) {
+            if ((symbol != null && !symbol.isEmpty() && !symbol.equals(stageHistograms.symbol))
+                    || (strategyCode != null && !strategyCode.isEmpty() && !strategyCode.equals(stageHistograms.strategyCode))) {
+                continue;
+            }
+            Map<String, Object> stages = new LinkedHashMap<>();
+            for (int i = 0; i < SEGMENT_NAMES.length; i++) {
+                stages.put(SEGMENT_NAMES[i], summarize(stageHistograms.segments[i]));
+            }
+            stages.put("total", summarize(stageHistograms.total));
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("symbol", stageHistograms.symbol);
+            item.put("strategyCode", stageHistograms.strategyCode);
+            item.put("stages", stages);
+            result.add(item);
+        }
+        result.sort((a, b) -> (a.get("symbol") + "|" + a.get("strategyCode")).compareTo(b.get("symbol") + "|" + b.get("strategyCode")));
+        return result;
+    }
+
+    @Override
+    public List<Map<String, Object>> getSlowTraces() {
+        synchronized (slowTraces) {
+            return new ArrayList<>(slowTraces);
+        }
+    }
+
+    @Override
+    public void reset() {
+        histograms.clear();
+        synchronized (slowTraces) {
+            slowTraces.clear();
+        }
+    }
+
+    /**
+     * 直方图的次数、平均值、分位数和最大值，单位微秒
+     */
+    private static Map<String, Object> summarize(Histogram histogram) {
+        // 复制一份再读取，避免读取过程中的并发写入导致各分位数不一致
+        Histogram copy = histogram.copy();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", copy.getTotalCount());
+        if (copy.getTotalCount() == 0) {
+            return summary;
+        }
+        summary.put("meanUs", round(copy.getMean() / 1000.0));
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            summary.put(PERCENTILE_NAMES[i], round(copy.getValueAtPercentile(PERCENTILES[i]) / 1000.0));
+        }
+        summary.put("maxUs", round(copy.getMaxValue() / 1000.0));
+        return summary;
+    }
+
+    private static Map<String, Object> describe(TickTrace trace, long totalNanos) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("time", LocalDateTime.ofInstant(Instant.ofEpochMilli(trace.getStartMillis()), ZoneId.of("UTC+8")));
+        description.put("source", trace.getSource());
+        description.put("symbol", trace.getSymbol());
+        description.put("interval", trace.getInterval());
+        description.put("strategyCode", trace.getStrategyCode());
+        description.put("lastStage", trace.lastStage().name());
+        for (int i = 0; i < SEGMENT_NAMES.length; i++) {
+            long nanos = trace.nanosBetween(SEGMENT_STARTS[i], SEGMENT_ENDS[i]);
+            if (nanos >= 0) {
+                description.put(SEGMENT_NAMES[i] + "Us", round(nanos / 1000.0));
+            }
+        }
+        description.put("totalUs", round(totalNanos / 1000.0));
+        return description;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
@@ -4,17 +4,26 @@ import com.okx.trading.model.account.AccountBalance;
 import com.okx.trading.model.market.Candlestick;
 import com.okx.trading.model.market.Ticker;
 import com.okx.trading.model.trade.Order;
+import com.okx.trading.model.trade.OrderHandle;
 import com.okx.trading.model.trade.OrderRequest;
 import com.okx.trading.service.OkxApiService;
+import com.okx.trading.service.OrderTrackerService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.context.annotation.Primary;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -34,6 +43,24 @@ public class OkxApiMockServiceImpl implements OkxApiService {
     private final Map<String, Order> ordersCache = new ConcurrentHashMap<>();
     private final AtomicLong orderIdGenerator = new AtomicLong(1);
 
+    private static final ZoneId ZONE_ID = ZoneId.of("UTC+8");
+
+    /**
+     * 模拟市价单从下单到成交推送的延迟
+     */
+    private static final long MOCK_FILL_DELAY_MS = 50;
+
+    @Autowired
+    private OrderTrackerService orderTrackerService;
+
+    @Value("${okx.order.fill-timeout-ms:3000}")
+    private long orderFillTimeoutMs = 3000;
+
+    /**
+     * 订单时间使用的时钟，回放使用的独立实例为模拟时钟
+     */
+    private Clock clock = Clock.systemDefaultZone();
+
     /**
      * 获取K线数据
      *
@@ -71,6 +98,38 @@ public class OkxApiMockServiceImpl implements OkxApiService {
         return tickerCache.get(symbol);
     }
 
+    /**
+     * 设置模拟行情的最新价，之后的市价单按该价格成交
+     * 回放历史行情时按回放到的K线收盘价更新，使成交结果可重复
+     *
+     * @param symbol 交易对
+     * @param price  最新价
+     */
+    public void updateLastPrice(String symbol, BigDecimal price) {
+        Ticker ticker = getTicker(symbol);
+        ticker.setLastPrice(price);
+        ticker.setTimestamp(LocalDateTime.now(clock));
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * 创建不受Spring管理的独立模拟下单实例，行情、订单、订单跟踪和时钟都只属于该实例
+     * 行情回放使用，实盘节点和模拟模式节点都可以回放，回放到的历史价格和模拟时钟不影响任何运行中的策略
+     *
+     * @param clock              新实例使用的时钟
+     * @param orderFillTimeoutMs 等待成交推送的超时毫秒
+     */
+    public static OkxApiMockServiceImpl isolated(Clock clock, long orderFillTimeoutMs) {
+        OkxApiMockServiceImpl instance = new OkxApiMockServiceImpl();
+        instance.orderTrackerService = new OrderTrackerServiceImpl();
+        instance.orderFillTimeoutMs = orderFillTimeoutMs;
+        instance.clock = clock;
+        return instance;
+    }
+
     /**
      * 获取账户余额
      *
@@ -118,7 +177,7 @@ public class OkxApiMockServiceImpl implements OkxApiService {
      */
     @Override
     public Order createSpotOrder(OrderRequest orderRequest) {
-        return createOrder(orderRequest, false);
+        return placeSpotOrder(orderRequest).awaitAck(orderFillTimeoutMs);
     }
 
     /**
@@ -129,7 +188,17 @@ public class OkxApiMockServiceImpl implements OkxApiService {
      */
     @Override
     public Order createFuturesOrder(OrderRequest orderRequest) {
-        return createOrder(orderRequest, true);
+        return placeFuturesOrder(orderRequest).awaitAck(orderFillTimeoutMs);
+    }
+
+    @Override
+    public OrderHandle placeSpotOrder(OrderRequest orderRequest) {
+        return placeOrder(orderRequest, false);
+    }
+
+    @Override
+    public OrderHandle placeFuturesOrder(OrderRequest orderRequest) {
+        return placeOrder(orderRequest, true);
     }
 
     /**
@@ -145,8 +214,9 @@ public class OkxApiMockServiceImpl implements OkxApiService {
             Order order = ordersCache.get(orderId);
             if (symbol.equals(order.getSymbol())) {
                 order.setStatus("CANCELED");
-                order.setUpdateTime(LocalDateTime.now());
+                order.setUpdateTime(LocalDateTime.now(clock));
                 ordersCache.put(orderId, order);
+                orderTrackerService.onOrderUpdate(copyOf(order));
                 return true;
             }
         }
@@ -162,15 +232,28 @@ public class OkxApiMockServiceImpl implements OkxApiService {
      * @return K线数据列表
      */
     private List<Candlestick> generateMockCandlesticks(String symbol, String interval, int count) {
-        List<Candlestick> result = new ArrayList<>();
         LocalDateTime now = LocalDateTime.now();
+        List<LocalDateTime> openTimes = new ArrayList<>();
+        for (int i = count - 1; i >= 0; i--) {
+            openTimes.add(now.minusMinutes(i * getMinutesFromInterval(interval)));
+        }
+        return generateMockCandlesticks(symbol, interval, openTimes);
+    }
+
+    /**
+     * 按给定的开盘时间生成价格连续的模拟K线
+     *
+     * @param openTimes 开盘时间，从旧到新
+     * @return K线数据列表，从旧到新
+     */
+    private List<Candlestick> generateMockCandlesticks(String symbol, String interval, List<LocalDateTime> openTimes) {
+        List<Candlestick> result = new ArrayList<>();
 
         // 基础价格，根据币种设置不同的基础价格
         BigDecimal basePrice = getBasePrice(symbol);
         BigDecimal lastClose = basePrice;
 
-        for (int i = count - 1; i >= 0; i--) {
-            LocalDateTime time = now.minusMinutes(i * getMinutesFromInterval(interval));
+        for (LocalDateTime time : openTimes) {
 
             // 随机波动，但保持一定的连续性
             BigDecimal range = basePrice.multiply(new BigDecimal("0.02")); // 2%的价格波动范围
@@ -334,6 +417,47 @@ public class OkxApiMockServiceImpl implements OkxApiService {
         return assetBalance;
     }
 
+    /**
+     * 下单并返回订单句柄
+     * 与真实交易所一样异步推送订单状态：市价单在短暂延迟后全部成交，限价单保持挂单直到撤销；
+     * 超时未进入终态时以订单缓存中的状态对账
+     */
+    private OrderHandle placeOrder(OrderRequest orderRequest, boolean isFutures) {
+        Order order = createOrder(orderRequest, isFutures);
+        OrderHandle handle = orderTrackerService.track(order.getClientOrderId(), order.getSymbol());
+        orderTrackerService.onOrderUpdate(copyOf(order));
+
+        if (!"LIMIT".equalsIgnoreCase(order.getType())) {
+            CompletableFuture.runAsync(() -> fillOrder(order.getOrderId()),
+                    CompletableFuture.delayedExecutor(MOCK_FILL_DELAY_MS, TimeUnit.MILLISECONDS));
+        }
+        orderTrackerService.reconcileAfter(handle, orderFillTimeoutMs,
+                () -> Optional.ofNullable(ordersCache.get(order.getOrderId())).map(this::copyOf).orElse(null));
+        return handle;
+    }
+
+    /**
+     * 模拟订单全部成交并推送
+     */
+    private void fillOrder(String orderId) {
+        Order order = ordersCache.get(orderId);
+        if (order == null || !"NEW".equals(order.getStatus())) {
+            return;
+        }
+        order.setExecutedQty(order.getOrigQty());
+        order.setCummulativeQuoteQty(order.getPrice().multiply(order.getOrigQty()));
+        order.setStatus("FILLED");
+        order.setUpdateTime(LocalDateTime.now(clock));
+        orderTrackerService.onOrderUpdate(copyOf(order));
+    }
+
+    /**
+     * 推送的是订单快照，避免订单缓存后续修改影响已返回的结果
+     */
+    private Order copyOf(Order order) {
+        return order.toBuilder().build();
+    }
+
     /**
      * 创建订单（内部方法）
      *
@@ -453,8 +577,8 @@ public class OkxApiMockServiceImpl implements OkxApiService {
         order.setType(orderRequest.getType());
         order.setSide(orderRequest.getSide());
         order.setTimeInForce(orderRequest.getTimeInForce() != null ? orderRequest.getTimeInForce() : "GTC");
-        order.setCreateTime(LocalDateTime.now());
-        order.setUpdateTime(LocalDateTime.now());
+        order.setCreateTime(LocalDateTime.now(clock));
+        order.setUpdateTime(LocalDateTime.now(clock));
         order.setSimulated(orderRequest.getSimulated() != null ? orderRequest.getSimulated() : false);
         order.setFee(fee);
         order.setFeeCurrency(feeCurrency);
@@ -524,7 +648,8 @@ public class OkxApiMockServiceImpl implements OkxApiService {
 
     /**
      * 获取历史K线数据
-     * 模拟模式下与普通K线数据相同，只是根据时间范围过滤
+     * 按 OKX history-candles 的规则生成：开盘时间按周期对齐，起止时间都不包含，从新到旧，最多 limit 条，
+     * 与回填调度器等调用方按页请求的方式一致；没有时间范围时返回缓存的模拟K线
      *
      * @param symbol    交易对，如BTC-USDT
      * @param interval  K线间隔，如1m, 5m, 15m, 30m, 1H, 2H, 4H, 6H, 12H, 1D, 1W, 1M
@@ -535,30 +660,29 @@ public class OkxApiMockServiceImpl implements OkxApiService {
      */
     @Override
     public List<Candlestick> getHistoryKlineData(String symbol, String interval, Long startTime, Long endTime, Integer limit) {
-        String cacheKey = symbol + "_" + interval;
-
-        if (!candlestickCache.containsKey(cacheKey)) {
-            candlestickCache.put(cacheKey, generateMockCandlesticks(symbol, interval, 1000));
+        if (startTime == null && endTime == null) {
+            List<Candlestick> data = new ArrayList<>(getKlineData(symbol, interval, null));
+            // 按时间排序（从新到旧）
+            data.sort((c1, c2) -> c2.getOpenTime().compareTo(c1.getOpenTime()));
+            int size = limit != null && limit > 0 ? Math.min(limit, data.size()) : data.size();
+            return data.subList(0, size);
         }
 
-        List<Candlestick> allData = candlestickCache.get(cacheKey);
+        int maxSize = limit != null && limit > 0 ? Math.min(limit, 1000) : 100;
+        long step = getMinutesFromInterval(interval) * 60_000L;
+        long before = endTime != null ? endTime : clock.millis();
+        long after = startTime != null ? startTime : Long.MIN_VALUE;
 
-        // 根据时间范围过滤数据
-        List<Candlestick> filteredData = allData.stream()
-                .filter(candlestick -> {
-                    long candleTime = candlestick.getOpenTime().toInstant(java.time.ZoneOffset.UTC).toEpochMilli();
-                    boolean afterStart = startTime == null || candleTime >= startTime;
-                    boolean beforeEnd = endTime == null || candleTime <= endTime;
-                    return afterStart && beforeEnd;
-                })
-                .collect(Collectors.toList());
-
-        // 按时间排序（从新到旧）
-        filteredData.sort((c1, c2) -> c2.getOpenTime().compareTo(c1.getOpenTime()));
+        // 从 before 之前的最后一根K线往前取，最多 maxSize 根
+        long newest = Math.floorDiv(before - 1, step) * step;
+        Deque<LocalDateTime> openTimes = new ArrayDeque<>();
+        for (long ts = newest; ts > after && openTimes.size() < maxSize; ts -= step) {
+            openTimes.addFirst(LocalDateTime.ofInstant(Instant.ofEpochMilli(ts), ZONE_ID));
+        }
 
-        // 限制返回数量
-        int size = limit != null && limit > 0 ? Math.min(limit, filteredData.size()) : filteredData.size();
-        return filteredData.subList(0, size);
+        List<Candlestick> result = generateMockCandlesticks(symbol, interval, new ArrayList<>(openTimes));
+        Collections.reverse(result);
+        return result;
     }
 
     @Override
@@ -515,6 +515,11 @@ public class OkxApiRestServiceImpl implements OkxApiService{
      */
     @Override
     public boolean cancelOrder(String symbol, String orderId){
+        return cancelOrder(symbol, orderId, false);
+    }
+
+    @Override
+    public boolean cancelOrder(String symbol, String orderId, boolean isSimulated){
         try{
             String url = okxApiConfig.getBaseUrl() + TRADE_PATH + "/cancel-order";
 
@@ -527,7 +532,7 @@ public class OkxApiRestServiceImpl implements OkxApiService{
             String method = "POST";
             String requestPath = TRADE_PATH + "/cancel-order";
 
-            Map<String,String> headers = buildHeaders(timestamp, method, requestPath, requestBodyStr, false);
+            Map<String,String> headers = buildHeaders(timestamp, method, requestPath, requestBodyStr, isSimulated);
 
             String response = HttpUtil.post(okHttpClient, url, headers, requestBodyStr);
             JSONObject jsonResponse = JSON.parseObject(response);
@@ -12,12 +12,14 @@ import com.okx.trading.model.entity.RealTimeStrategyEntity;
 import com.okx.trading.model.market.Candlestick;
 import com.okx.trading.model.market.Ticker;
 import com.okx.trading.model.trade.Order;
+import com.okx.trading.model.trade.OrderHandle;
 import com.okx.trading.model.trade.OrderRequest;
 import com.okx.trading.service.*;
 import com.okx.trading.strategy.RealTimeStrategyManager;
 import com.okx.trading.util.BigDecimalUtil;
 import com.okx.trading.util.HttpUtil;
 import com.okx.trading.util.SignatureUtil;
+import com.okx.trading.util.TickTrace;
 import com.okx.trading.util.WebSocketUtil;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -25,6 +27,7 @@ import lombok.extern.slf4j.Slf4j;
 import okhttp3.OkHttpClient;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -48,13 +51,6 @@ import static com.okx.trading.constant.IndicatorInfo.BALANCE;
 import static com.okx.trading.constant.IndicatorInfo.RUNNING;
 import static com.okx.trading.service.impl.OkxApiRestServiceImpl.MARKET_PATH;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 
 /**
@@ -80,6 +76,16 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
     private final KlineCacheService klineCacheService;
     @Lazy
     private final RealTimeStrategyServiceImpl realTimeStrategyService;
+    private final OrderTrackerService orderTrackerService;
+    private final OrderGatewayService orderGatewayService;
+    private final OrderAuditService orderAuditService;
+    private final TickerBookService tickerBookService;
+
+    /**
+     * 下单后等待 orders 频道推送终态的超时毫秒，超时后通过REST接口对账
+     */
+    @Value("${okx.order.fill-timeout-ms:3000}")
+    private long orderFillTimeoutMs;
 
     @Lazy
     @Autowired(required = false)
@@ -91,13 +97,18 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
     @Autowired
     private KlineKafkaProducerService klineKafkaProducerService;
 
+    @Autowired(required = false)
+    private LatencyTraceService latencyTraceService;
+
+    @Lazy
+    @Autowired(required = false)
+    private PortfolioSnapshotService portfolioSnapshotService;
+
     // 缓存和回调
     private final Map<String, CompletableFuture<Ticker>> tickerFutures = new ConcurrentHashMap<>();
     private final Map<String, CompletableFuture<List<Candlestick>>> klineFutures = new ConcurrentHashMap<>();
     private final Map<String, CompletableFuture<AccountBalance>> balanceFutures = new ConcurrentHashMap<>();
     private final Map<String, CompletableFuture<List<Order>>> ordersFutures = new ConcurrentHashMap<>();
-    private final Map<String, CompletableFuture<Order>> orderFutures = new ConcurrentHashMap<>();
-    private final Map<String, CompletableFuture<Boolean>> cancelOrderFutures = new ConcurrentHashMap<>();
 
     // 跟踪当前已订阅的币种+周期
     private final Set<String> subscribedSymbols = Collections.synchronizedSet(new HashSet<>());
@@ -135,7 +146,6 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
 
         webSocketUtil.registerHandler("account", this::handleAccountMessage);
         webSocketUtil.registerHandler("orders", this::handleOrdersMessage);
-        webSocketUtil.registerHandler("order", this::handleOrderMessage);
     }
 
     /**
@@ -218,12 +228,19 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
 
                 log.debug("获取实时指数行情信息: {}", ticker);
 
+                if ("tickers".equals(channel)) {
+                    tickerBookService.update(ticker);
+                }
+
                 // 将最新价格写入Redis缓存
                 BigDecimal lastPrice = ticker.getLastPrice();
                 if (lastPrice != null) {
 //                    redisCacheService.updateCoinPrice(symbol, lastPrice);
                     // 更新邮件通知服务的最新价格
                     emailNotificationService.updateLatestPrice(symbol, lastPrice);
+                    if (portfolioSnapshotService != null) {
+                        portfolioSnapshotService.onPriceUpdate(symbol, lastPrice);
+                    }
                 }
 
 
@@ -259,38 +276,18 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
             // 获取数据并解析
             List<Candlestick> candlesticks = new ArrayList<>();
 
-            // 处理data字段 - 不同类型
-            Object dataObj = message.get("data");
-
-            // 数组格式 - 可能是数组的数组或对象的数组
-            JSONArray dataArray = (JSONArray) dataObj;
-            for (int i = 0; i < dataArray.size(); i++) {
-                Object item = dataArray.get(i);
-                Candlestick candlestick = null;
-
-                // 标准K线格式：数组的数组
-                JSONArray candleData = (JSONArray) item;
-                candlestick = parseCandlestick(candleData, symbol, channel);
-
-
+            for (Candlestick candlestick : parseKlineMessage(message)) {
                 if (candlestick != null) {
-                    candlestick.setIntervalVal(interval);
-
                     // 检查是否启用 Kafka 缓冲
                     if (klineKafkaProducerService.isEnabled()) {
-                        // 启用 Kafka：将原始数据发送到 Kafka，由消费者处理
-                        JSONObject klineDataJson = new JSONObject();
-                        klineDataJson.put("ts", candleData.getLongValue(0));
-                        klineDataJson.put("o", candleData.getString(1));
-                        klineDataJson.put("h", candleData.getString(2));
-                        klineDataJson.put("l", candleData.getString(3));
-                        klineDataJson.put("c", candleData.getString(4));
-                        klineDataJson.put("vol", candleData.getString(5));
-                        
-                        klineKafkaProducerService.sendKlineData(symbol, interval, klineDataJson);
+                        // 启用 Kafka：将解析后的K线发送到 Kafka，由消费者处理
+                        klineKafkaProducerService.sendKlineData(candlestick);
                         log.debug("📤 K线数据已发送到 Kafka: symbol={}, interval={}", symbol, interval);
                     } else {
                         // 未启用 Kafka：直接处理（原有逻辑）
+                        if (latencyTraceService != null && latencyTraceService.isEnabled()) {
+                            candlestick.setTrace(TickTrace.fromCurrentFrame(symbol, interval));
+                        }
                         // 更新邮件通知服务的最新价格
                         emailNotificationService.updateLatestPrice(symbol, candlestick.getClose());
 
@@ -316,6 +313,29 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
         }
     }
 
+    /**
+     * 解析K线推送消息帧中的全部K线
+     * data 为数组的数组，每根K线依次为 ts、o、h、l、c、vol、volCcy、volCcyQuote、confirm
+     *
+     * @param message 包含 arg 和 data 的K线推送消息
+     * @return K线列表，周期取自频道名
+     */
+    public static List<Candlestick> parseKlineMessage(JSONObject message) {
+        JSONObject arg = message.getJSONObject("arg");
+        String symbol = arg.getString("instId");
+        String channel = arg.getString("channel");
+        String interval = channel.replaceAll("candle", "");
+
+        JSONArray dataArray = message.getJSONArray("data");
+        List<Candlestick> candlesticks = new ArrayList<>(dataArray.size());
+        for (int i = 0; i < dataArray.size(); i++) {
+            Candlestick candlestick = parseCandlestick(dataArray.getJSONArray(i), symbol, channel);
+            candlestick.setIntervalVal(interval);
+            candlesticks.add(candlestick);
+        }
+        return candlesticks;
+    }
+
     /**
      * 从JSONObject解析K线数据
      * 用于处理非标准格式的K线数据
@@ -402,7 +422,8 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
     }
 
     /**
-     * 处理订单列表消息
+     * 处理订单频道消息
+     * 每条订单推送交给订单跟踪服务，订单进入终态时记录到订单审计日志
      */
     private void handleOrdersMessage(JSONObject message) {
         try {
@@ -412,8 +433,19 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
                 List<Order> orders = new ArrayList<>();
                 for (int i = 0; i < data.size(); i++) {
                     JSONObject orderData = data.getJSONObject(i);
-                    Order order = parseOrder(orderData);
+                    Order order;
+                    try {
+                        order = parseOrder(orderData);
+                    } catch (Exception e) {
+                        log.warn("解析订单推送失败: clientOrderId={}, state={}, error={}",
+                                orderData.getString("clOrdId"), orderData.getString("state"), e.getMessage());
+                        continue;
+                    }
                     orders.add(order);
+
+                    if (orderTrackerService.onOrderUpdate(order)) {
+                        orderAuditService.record(orderData);
+                    }
                 }
 
                 String key = symbol + "_orders";
@@ -428,7 +460,7 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
     }
 
     /**
-     * 处理订单消息
+     * 处理下单回执，WebSocket和REST通道的回执格式一致
      */
     private void handleOrderMessage(JSONObject message) {
         try {
@@ -448,7 +480,7 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
                 if (order.getSCode() != 0) {
                     // 如果sMsg不为空，将内容保存到对应策略的mysql表里
                     if (StringUtils.isNotBlank(sMsg)) {
-                        Long strategyId = realTimeStrategyManager.getClientOrderId2StrategyIdMap().get(clientOrderId);
+                        Long strategyId = clientOrderId != null ? realTimeStrategyManager.getClientOrderId2StrategyIdMap().get(clientOrderId) : null;
                         Optional<RealTimeStrategyEntity> realTimeStrategyById = realTimeStrategyService.getRealTimeStrategyById(strategyId);
                         if (realTimeStrategyById.isPresent()) {
                             RealTimeStrategyEntity realTimeStrategy = realTimeStrategyById.get();
@@ -457,27 +489,14 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
                             realTimeStrategy.setStatus("ERROR");
                             realTimeStrategy.setIsActive(false);
                             realTimeStrategyService.saveRealTimeStrategy(realTimeStrategy);
-                            realTimeStrategyManager.getRunningStrategies().remove(realTimeStrategy.getId());
+                            realTimeStrategyManager.removeRunningStrategy(realTimeStrategy.getId());
                         }
                     }
 //                    throw new BusinessException(order.getSCode(), order.getClientOrderId() + ": " + order.getSMsg());
                 }
 
-                CompletableFuture<Order> future = orderFutures.get(clientOrderId);
-                if (future != null && !future.isDone()) {
-                    future.complete(order);
-                }
-
-                // 处理取消订单的响应
-                if ("canceled".equals(orderData.getString("state"))) {
-                    String orderId = orderData.getString("ordId");
-                    CompletableFuture<Boolean> cancelFuture = cancelOrderFutures.get(orderId);
-                    if (cancelFuture != null && !cancelFuture.isDone()) {
-                        cancelFuture.complete(true);
-                    }
-                }
-
-
+                // 下单回执：拒绝时直接完成订单句柄，成交状态等待 orders 频道推送
+                orderTrackerService.onOrderUpdate(order);
             }
         } catch (Exception e) {
             log.error("处理订单消息失败", e);
@@ -527,8 +546,41 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
         }
     }
 
+    /**
+     * 获取行情：优先读内存行情簿，未知或过期时通过REST查询并订阅该交易对的 tickers 推送
+     */
     @Override
     public Ticker getTicker(String symbol){
+        Ticker cached = tickerBookService.getFresh(symbol);
+        if(cached != null){
+            return cached;
+        }
+        Ticker ticker = fetchTicker(symbol);
+        tickerBookService.update(ticker);
+        subscribeTickerStream(symbol);
+        return ticker;
+    }
+
+    /**
+     * 订阅交易对的 tickers 推送，之后的行情查询直接读内存
+     */
+    private void subscribeTickerStream(String symbol){
+        if(!subscribedSymbols.add(symbol)){
+            return;
+        }
+        try{
+            webSocketUtil.subscribePublicTopic("tickers", symbol);
+            log.info("订阅币种 {} 行情推送", symbol);
+        }catch(Exception e){
+            subscribedSymbols.remove(symbol);
+            log.warn("订阅币种 {} 行情推送失败: {}", symbol, e.getMessage());
+        }
+    }
+
+    /**
+     * 通过REST查询单个交易对的行情
+     */
+    private Ticker fetchTicker(String symbol){
         try{
             String url = okxApiConfig.getBaseUrl() + MARKET_PATH + "/ticker";
             url = url + "?instId=" + symbol;
@@ -754,115 +806,164 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
 
     @Override
     public Order createSpotOrder(OrderRequest orderRequest) {
-        return createOrder(orderRequest, "SPOT", orderRequest.getSimulated() != null && orderRequest.getSimulated());
+        return placeSpotOrder(orderRequest).awaitAck(orderFillTimeoutMs);
     }
 
     @Override
     public Order createFuturesOrder(OrderRequest orderRequest) {
-        return createOrder(orderRequest, "SWAP", orderRequest.getSimulated() != null && orderRequest.getSimulated());
+        return placeFuturesOrder(orderRequest).awaitAck(orderFillTimeoutMs);
+    }
+
+    @Override
+    public OrderHandle placeSpotOrder(OrderRequest orderRequest) {
+        return placeOrder(orderRequest, "SPOT", orderRequest.getSimulated() != null && orderRequest.getSimulated());
+    }
+
+    @Override
+    public OrderHandle placeFuturesOrder(OrderRequest orderRequest) {
+        return placeOrder(orderRequest, "SWAP", orderRequest.getSimulated() != null && orderRequest.getSimulated());
     }
 
     /**
-     * 创建订单
+     * 发送下单请求，立即返回订单句柄
+     * 订单状态由 orders 频道推送驱动，见 {@link #handleOrdersMessage(JSONObject)}；
+     * 超时未进入终态时由跟踪服务在对账线程上按clientOrderId查询REST接口
      */
-    private Order createOrder(OrderRequest orderRequest, String instType, boolean isSimulated) {
+    private OrderHandle placeOrder(OrderRequest orderRequest, String instType, boolean isSimulated) {
         // 生成订单ID
         String orderId = UUID.randomUUID().toString();
         String clientOrderId = orderRequest.getClientOrderId() != null ?
                 orderRequest.getClientOrderId() : System.currentTimeMillis() + orderId.substring(0, 8);
 
+        // 先登记句柄再发送请求，避免推送早于登记
+        OrderHandle handle = orderTrackerService.track(clientOrderId, orderRequest.getSymbol());
+        // 交易线程上的行情追踪在收到下单响应时结束
+        TickTrace trace = latencyTraceService != null ? TickTrace.takeCurrent() : null;
         try {
-            realTimeStrategyManager.getClientOrderId2StrategyIdMap().put(clientOrderId, orderRequest.getStrategyId());
-            CompletableFuture<Order> future = new CompletableFuture<>();
-            // 将future与clientOrderId关联，而不是orderId
-            orderFutures.put(clientOrderId, future);
+            // 手动下单没有策略ID，ConcurrentHashMap 不接受 null 值
+            if (orderRequest.getStrategyId() != null) {
+                realTimeStrategyManager.getClientOrderId2StrategyIdMap().put(clientOrderId, orderRequest.getStrategyId());
+            }
 
             log.info("准备创建订单, symbol: {}, type: {}, side: {}, clientOrderId: {}",
                     orderRequest.getSymbol(), orderRequest.getType(), orderRequest.getSide(), clientOrderId);
 
-            // 构建订单请求
-            JSONObject requestMessage = new JSONObject();
-            requestMessage.put("id", messageIdGenerator.getAndIncrement());
-            requestMessage.put("op", "order");
-
-            JSONObject arg = new JSONObject();
-            
-            // 根据 OKX 2026-03-26 更新：WebSocket 订单需要使用 instIdCode 而不是 instId
-            // Phase 1 (2026-03-26): WS Place order 和 Place multiple orders 已废弃 instId
-            // Phase 2 (2026-04-07): WS Amend/Cancel order 将废弃 instId
-            Integer instIdCode = getInstIdCode(orderRequest.getSymbol(), instType);
-            if (instIdCode == null) {
-                log.error("无法获取 instIdCode: symbol={}, instType={}", orderRequest.getSymbol(), instType);
-                throw new OkxApiException("无法获取交易对的 instIdCode，请检查交易对是否有效");
-            }
-            
-            arg.put("instIdCode", instIdCode);
-            arg.put("tdMode", "cash"); // 资金模式，cash为现钞
-            arg.put("side", orderRequest.getSide().toLowerCase());
-            if (orderRequest.getType() != null) {
-                arg.put("ordType", mapToOkxOrderType(orderRequest.getType())); // MARKET LIMIT
-            } else {
-                arg.put("ordType", "market");
-            }
+            JSONObject arg = buildOrderArg(orderRequest, instType, clientOrderId, isSimulated);
 
+            // 记录发送的订单请求
+            log.info("发送订单请求: {}", arg.toJSONString());
 
-            //币币市价单委托数量sz的单位,base_ccy: 交易货币 ；quote_ccy：计价货币,仅适用于币币市价订单,默认买单为quote_ccy，卖单为base_ccy
-            if (orderRequest.getAmount() != null) {
-                // 市价\限价,指定金额
-                arg.put("sz", orderRequest.getAmount().toString());
-                arg.put("tgtCcy", "quote_ccy");
-            } else if (orderRequest.getQuantity() != null) {
-                //指定数量,市价单不指定价格,限价单指定价格
-                arg.put("sz", orderRequest.getQuantity().toString());
-                arg.put("tgtCcy", "base_ccy");
-                // 限价单指定价格
-                if (orderRequest.getType() != null && orderRequest.getType().equals("LIMIT")) {
-                    if (orderRequest.getPrice() != null) {
-                        arg.put("px", orderRequest.getPrice().toString());
-                    } else {
-                        BigDecimal coinPrice = redisCacheService.getCoinPrice(orderRequest.getSymbol());
-                        arg.put("px", coinPrice.toString());
+            // 经订单网关发送，私有WebSocket未就绪时回退到REST；不等待响应，下单回执和成交推送驱动订单句柄
+            orderGatewayService.placeOrder(arg, isSimulated).whenComplete((response, ex) -> {
+                if (trace != null) {
+                    if (ex == null) {
+                        trace.mark(TickTrace.Stage.ACKED);
                     }
+                    latencyTraceService.record(trace);
+                }
+                if (ex == null) {
+                    handleOrderMessage(response);
+                    return;
                 }
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (cause instanceof TimeoutException) {
+                    // 结果未知，等待orders频道推送或超时对账
+                    log.warn("下单响应超时: clientOrderId={}", clientOrderId);
+                } else {
+                    log.error("下单请求失败: clientOrderId={}, error={}", clientOrderId, cause.getMessage());
+                    orderTrackerService.fail(clientOrderId, cause);
+                }
+            });
+        } catch (Exception e) {
+            log.error("创建订单失败: {}", e.getMessage(), e);
+            orderTrackerService.fail(clientOrderId, e);
+            if (trace != null) {
+                latencyTraceService.record(trace);
             }
+        }
+        orderTrackerService.reconcileAfter(handle, orderFillTimeoutMs,
+                () -> queryOrderByClientOrderId(handle.getSymbol(), handle.getClientOrderId(), isSimulated));
+        return handle;
+    }
 
-            // 设置客户端订单ID
-            arg.put("clOrdId", clientOrderId);
+    /**
+     * 构建下单参数
+     */
+    private JSONObject buildOrderArg(OrderRequest orderRequest, String instType, String clientOrderId, boolean isSimulated) {
+        JSONObject arg = new JSONObject();
+        putInstrument(arg, orderRequest.getSymbol(), instType);
+        arg.put("tdMode", "cash"); // 资金模式，cash为现钞
+        arg.put("side", orderRequest.getSide().toLowerCase());
+        if (orderRequest.getType() != null) {
+            arg.put("ordType", mapToOkxOrderType(orderRequest.getType())); // MARKET LIMIT
+        } else {
+            arg.put("ordType", "market");
+        }
 
-            // 设置杠杆倍数（合约交易）
-            if ("SWAP".equals(instType) && orderRequest.getLeverage() != null) {
-                arg.put("lever", orderRequest.getLeverage().toString());
-            }
 
-            // 设置模拟交易
-            if (isSimulated) {
-                arg.put("simulated", "1");
+        //币币市价单委托数量sz的单位,base_ccy: 交易货币 ；quote_ccy：计价货币,仅适用于币币市价订单,默认买单为quote_ccy，卖单为base_ccy
+        if (orderRequest.getAmount() != null) {
+            // 市价\限价,指定金额
+            arg.put("sz", orderRequest.getAmount().toString());
+            arg.put("tgtCcy", "quote_ccy");
+        } else if (orderRequest.getQuantity() != null) {
+            //指定数量,市价单不指定价格,限价单指定价格
+            arg.put("sz", orderRequest.getQuantity().toString());
+            arg.put("tgtCcy", "base_ccy");
+            // 限价单指定价格
+            if (orderRequest.getType() != null && orderRequest.getType().equals("LIMIT")) {
+                if (orderRequest.getPrice() != null) {
+                    arg.put("px", orderRequest.getPrice().toString());
+                } else {
+                    BigDecimal coinPrice = redisCacheService.getCoinPrice(orderRequest.getSymbol());
+                    arg.put("px", coinPrice.toString());
+                }
             }
+        }
 
-            JSONObject[] args = new JSONObject[]{arg};
-            requestMessage.put("args", args);
+        // 设置客户端订单ID
+        arg.put("clOrdId", clientOrderId);
 
-            // 记录发送的订单请求
-            log.info("发送订单请求: {}", requestMessage.toJSONString());
+        // 设置杠杆倍数（合约交易）
+        if ("SWAP".equals(instType) && orderRequest.getLeverage() != null) {
+            arg.put("lever", orderRequest.getLeverage().toString());
+        }
 
-            // 检查WebSocket连接状态
-            if (!webSocketUtil.isPrivateSocketConnected()) {
-                log.error("私有WebSocket未连接，无法发送订单请求");
-                throw new OkxApiException("WebSocket连接已断开，请重新连接后再尝试");
-            }
-            // 发送请求
-            webSocketUtil.sendPrivateRequest(requestMessage.toJSONString());
-            Thread.sleep(1000);
-        } catch (Exception e) {
-            log.error("创建订单失败: {}", e.getMessage(), e);
+        // 设置模拟交易
+        if (isSimulated) {
+            arg.put("simulated", "1");
+        }
+
+        return arg;
+    }
+
+    /**
+     * 设置订单请求的交易对，下单和撤单共用
+     */
+    private void putInstrument(JSONObject arg, String symbol, String instType) {
+        // 根据 OKX 2026-03-26 更新：WebSocket 订单需要使用 instIdCode 而不是 instId
+        // Phase 1 (2026-03-26): WS Place order 和 Place multiple orders 已废弃 instId
+        // Phase 2 (2026-04-07): WS Amend/Cancel order 将废弃 instId
+        Integer instIdCode = getInstIdCode(symbol, instType);
+        if (instIdCode == null) {
+            log.error("无法获取 instIdCode: symbol={}, instType={}", symbol, instType);
+            throw new OkxApiException("无法获取交易对的 instIdCode，请检查交易对是否有效");
         }
-        // 增加订单超时处理
+
+        // REST回退时使用instId，由订单网关按通道选择
+        arg.put("instId", symbol);
+        arg.put("instIdCode", instIdCode);
+    }
+
+    /**
+     * 按clientOrderId通过REST接口查询单个订单，用于推送超时后的对账
+     */
+    private Order queryOrderByClientOrderId(String symbol, String clientOrderId, boolean isSimulated) {
         Order order = null;
-        // 使用正确的API接口：直接使用order接口按clientOrderId查询单个订单
         // 构建API请求路径
         StringBuilder apiUrlBuilder = new StringBuilder(okxApiConfig.getBaseUrl())
                 .append("/api/v5/trade/order?instId=")
-                .append(orderRequest.getSymbol())
+                .append(symbol)
                 .append("&clOrdId=")
                 .append(clientOrderId);
 
@@ -874,7 +975,7 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
 
         // 构建请求路径（不含baseUrl，用于签名）
         String requestPath = "/api/v5/trade/order?instId="
-                + orderRequest.getSymbol() + "&clOrdId=" + clientOrderId;
+                + symbol + "&clOrdId=" + clientOrderId;
 
         // 生成签名
         String sign = SignatureUtil.sign(timestamp, "GET", requestPath, "", okxApiConfig.getSecretKey());
@@ -898,15 +999,13 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
                 String responseBody = response.body().string();
                 log.info("REST API查询订单响应: {}", responseBody);
 
-                // 将响应数据写入CSV文件
-                appendOrderResponseToCsv(responseBody, orderRequest.getSymbol(), clientOrderId);
-
                 JSONObject responseJson = JSONObject.parseObject(responseBody);
                 if ("0".equals(responseJson.getString("code"))) {
                     JSONArray data = responseJson.getJSONArray("data");
                     if (data != null && !data.isEmpty()) {
                         // 直接解析第一个订单，因为是按clientOrderId精确查询的
                         JSONObject orderData = data.getJSONObject(0);
+                        orderAuditService.record(orderData);
                         order = parseOrder(orderData);
                         log.info("通过REST API查询到订单: clientOrderId={}, orderId={}, status={}",
                                 clientOrderId, order.getOrderId(), order.getStatus());
@@ -914,124 +1013,39 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
                 }
             }
         } catch (Exception e) {
-            log.error("订单请求异常, symbol: {}, type: {}, side: {}, clientOrderId: {}, 错误: {}",
-                    orderRequest.getSymbol(), orderRequest.getType(), orderRequest.getSide(),
-                    clientOrderId, e.getMessage(), e);
-            throw new OkxApiException("订单请求异常: " + e.getMessage(), e);
-        } finally {
-            // 清理资源
-            orderFutures.remove(clientOrderId);
+            log.error("订单查询异常, symbol: {}, clientOrderId: {}, 错误: {}",
+                    symbol, clientOrderId, e.getMessage(), e);
+            throw new OkxApiException("订单查询异常: " + e.getMessage(), e);
         }
         return order;
     }
 
-    /**
-     * 将订单响应数据追加到CSV文件
-     * @param responseBody 响应数据JSON字符串
-     * @param symbol 交易对
-     * @param clientOrderId 客户端订单ID
-     */
-    private void appendOrderResponseToCsv(String responseBody, String symbol, String clientOrderId) {
-        try {
-            // 确保日志目录存在
-            String logDir = "logs/orders";
-            Files.createDirectories(Paths.get(logDir));
-
-            // 创建CSV文件名，使用当前日期
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-            String fileName = logDir + "/orders_" + dateFormat.format(new Date()) + ".csv";
-            File file = new File(fileName);
-
-            // 如果文件不存在，创建文件并写入表头
-            boolean newFile = !file.exists();
-
-            // 解析JSON响应数据
-            JSONObject responseJson = JSONObject.parseObject(responseBody);
-            if (!"0".equals(responseJson.getString("code"))) {
-                log.error("订单查询返回错误码: {}", responseJson.getString("code"));
-                return;
-            }
-
-            JSONArray data = responseJson.getJSONArray("data");
-            if (data == null || data.isEmpty()) {
-                log.error("订单查询无数据返回");
-                return;
-            }
-
-            JSONObject orderData = data.getJSONObject(0);
-
-            // 获取所有字段作为schema
-            Set<String> fields = orderData.keySet();
-            List<String> fieldNames = new ArrayList<>(fields);
-            // 排序字段，确保schema顺序一致
-            Collections.sort(fieldNames);
-
-            try (FileWriter writer = new FileWriter(file, true)) {
-                // 如果是新文件，写入schema
-                if (newFile) {
-                    writer.write(String.join(",", fieldNames) + "\n");
-                }
-
-                // 按照schema顺序写入数据
-                StringBuilder line = new StringBuilder();
-                for (int i = 0; i < fieldNames.size(); i++) {
-                    String fieldName = fieldNames.get(i);
-                    String value = orderData.getString(fieldName);
-
-                    // 处理值中可能包含的逗号和引号
-                    if (value != null) {
-                        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
-                            value = "\"" + value.replace("\"", "\"\"") + "\"";
-                        }
-                    } else {
-                        value = "";
-                    }
-
-                    line.append(value);
-                    if (i < fieldNames.size() - 1) {
-                        line.append(",");
-                    }
-                }
-                line.append("\n");
-
-                // 写入数据
-                writer.write(line.toString());
-
-                log.info("订单响应数据已按schema追加到CSV文件: {}", fileName);
-            }
-        } catch (IOException e) {
-            log.error("写入订单响应数据到CSV文件失败: {}", e.getMessage(), e);
-        } catch (Exception e) {
-            log.error("解析订单响应数据失败: {}", e.getMessage(), e);
-        }
+    @Override
+    public boolean cancelOrder(String symbol, String orderId) {
+        return cancelOrder(symbol, orderId, false);
     }
 
     @Override
-    public boolean cancelOrder(String symbol, String orderId) {
+    public boolean cancelOrder(String symbol, String orderId, boolean isSimulated) {
         try {
-            CompletableFuture<Boolean> future = new CompletableFuture<>();
-            cancelOrderFutures.put(orderId, future);
-
-            // 构建取消订单请求
-            JSONObject requestMessage = new JSONObject();
-            requestMessage.put("id", messageIdGenerator.getAndIncrement());
-            requestMessage.put("op", "cancel-order");
-
             JSONObject arg = new JSONObject();
-            arg.put("instId", symbol);
+            putInstrument(arg, symbol, symbol.endsWith("-SWAP") ? "SWAP" : "SPOT");
             arg.put("ordId", orderId);
-
-            JSONObject[] args = new JSONObject[]{arg};
-            requestMessage.put("args", args);
-
-            // 发送请求
-            webSocketUtil.sendPrivateRequest(requestMessage.toJSONString());
+            if (isSimulated) {
+                arg.put("simulated", "1");
+            }
 
             // 获取配置的超时时间
             int timeout = okxApiConfig.getTimeout() > 0 ? okxApiConfig.getTimeout() : 10;
-            boolean success = future.get(timeout, TimeUnit.SECONDS);
-            cancelOrderFutures.remove(orderId);
-
+            JSONObject response = orderGatewayService.cancelOrder(arg, isSimulated).get(timeout, TimeUnit.SECONDS);
+
+            // 撤单回执只有sCode，撤单后的订单状态由orders频道推送
+            JSONArray data = response.getJSONArray("data");
+            boolean success = "0".equals(response.getString("code")) && data != null && !data.isEmpty()
+                    && "0".equals(data.getJSONObject(0).getString("sCode"));
+            if (!success) {
+                log.warn("取消订单被拒绝: orderId={}, response={}", orderId, response);
+            }
             return success;
         } catch (Exception e) {
             log.error("取消订单失败", e);
@@ -1075,7 +1089,7 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
     /**
      * 解析K线数据
      */
-    private Candlestick parseCandlestick(JSONArray candleData, String symbol, String channel) {
+    private static Candlestick parseCandlestick(JSONArray candleData, String symbol, String channel) {
         Candlestick candlestick = new Candlestick();
         candlestick.setSymbol(symbol);
         candlestick.setChannel(channel);
@@ -1154,7 +1168,7 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
 
         // 买是买的货币数量 "fee":"-0.00000004324"  ，卖是usdt数量 "fee":"-0.004593758"
         if (orderData.containsKey("fee") && !orderData.getString("fee").isEmpty()) {
-            if (orderData.getString("feeCcy").equals("USDT")) {
+            if (orderData.getString("feeCcy").equals("USDT") || StringUtils.isBlank(orderData.getString("fillPx"))) {
                 order.setFee(BigDecimalUtil.safeGen(orderData.getString("fee")).abs());
             } else {
                 order.setFee(BigDecimalUtil.safeGen(orderData.getString("fee")).multiply(BigDecimalUtil.safeGen(orderData.getString("fillPx"))).abs());
@@ -1165,7 +1179,10 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
         // 接口返回的成交数量没有扣除手续费，需要扣除才是实际成交数量，成交金额也是，返回的费用是负数，所以要加上
         // 卖买都一样都是币的数量，不是usdt的数量 "accFillSz":"0.00004324"   "fillSz":"0.00004324"
         if (orderData.containsKey("accFillSz")) {
-            if (orderData.containsKey("side") && orderData.getString("side").equals("buy")) {
+            if (StringUtils.isBlank(orderData.getString("fillPx")) || order.getFee() == null) {
+                // 尚未成交（live、未成交撤销）的推送没有成交价
+                order.setExecutedQty(BigDecimalUtil.safeGen(orderData.getString("accFillSz")));
+            } else if (orderData.containsKey("side") && orderData.getString("side").equals("buy")) {
                 order.setExecutedQty(BigDecimalUtil.safeGen(orderData.getString("accFillSz")).subtract(BigDecimalUtil.safeGen(orderData.getString("fee")).abs()));
             } else {
                 BigDecimal accFillFeeSz = order.getFee().divide(BigDecimal.valueOf(Double.valueOf(orderData.getString("fillPx"))), 12, BigDecimal.ROUND_DOWN);
@@ -1308,6 +1325,7 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
 
             // 清理相关Future
             tickerFutures.remove(key);
+            tickerBookService.remove(symbol);
             return true;
         } catch (Exception e) {
             log.error("取消订阅行情数据失败: {}", e.getMessage(), e);
@@ -1608,6 +1626,16 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
      */
     @Override
     public List<Ticker> getAllTickers() {
+        List<Ticker> cached = tickerBookService.getAllIfFresh();
+        if (cached != null) {
+            List<Ticker> tickers = new ArrayList<>(cached.size());
+            for (Ticker ticker : cached) {
+                if (ticker.getSymbol().endsWith("-USDT")) {
+                    tickers.add(ticker);
+                }
+            }
+            return tickers;
+        }
         try {
             // 使用REST API获取所有SPOT交易对的行情数据
             String url = okxApiConfig.getBaseUrl() + "/api/v5/market/tickers?instType=SPOT";
@@ -1649,6 +1677,7 @@ public class OkxApiWebSocketServiceImpl implements OkxApiService {
 
                 tickers.add(ticker);
             }
+            tickerBookService.updateAll(tickers);
 
             return tickers;
         } catch (Exception e) {
@@ -0,0 +1,333 @@
+package com.okx.trading.service.impl;
+
+import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.service.OrderAuditService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订单审计日志服务实现
+ * <p>
+ * 调用方把订单数据放入有界队列后立即返回，单个写线程批量取出后写入按天滚动的文件：
+ * <ul>
+ *     <li>csv：固定列（{@link #CSV_COLUMNS}），不随订单字段变化，文件 orders_yyyy-MM-dd.csv</li>
+ *     <li>jsonl：每行一条完整订单JSON，保留全部字段，文件 orders_yyyy-MM-dd.jsonl</li>
+ * </ul>
+ * 当天的文件通道保持打开，跨天时关闭并打开新文件。已有的当天CSV表头与固定列不一致时（旧版本按订单字段生成的表头），
+ * 把旧文件改名为 orders_yyyy-MM-dd.legacy-N.csv 后重新开始写。
+ * fsync 策略：none 交给操作系统，batch 每批写入后刷盘，interval 按间隔刷盘。
+ */
+@Slf4j
+@Service
+public class OrderAuditServiceImpl implements OrderAuditService {
+
+    static final String FORMAT_CSV = "csv";
+    static final String FORMAT_JSONL = "jsonl";
+
+    static final String FSYNC_NONE = "none";
+    static final String FSYNC_BATCH = "batch";
+    static final String FSYNC_INTERVAL = "interval";
+
+    /**
+     * CSV 固定列，按OKX订单字段名排序；订单中没有的字段写空值，未列出的字段只保留在jsonl中
+     */
+    static final List<String> CSV_COLUMNS = List.of(
+            "accFillSz", "algoClOrdId", "algoId", "attachAlgoClOrdId", "avgPx", "cTime", "cancelSource",
+            "category", "ccy", "clOrdId", "fee", "feeCcy", "fillPx", "fillSz", "fillTime", "instId",
+            "instType", "lever", "ordId", "ordType", "pnl", "posSide", "px", "rebate", "rebateCcy",
+            "reduceOnly", "side", "source", "state", "sz", "tag", "tdMode", "tgtCcy", "tradeId", "uTime");
+
+    private static final String CSV_HEADER = String.join(",", CSV_COLUMNS) + "\n";
+    private static final ZoneId ZONE_ID = ZoneId.of("UTC+8");
+
+    private final ExecutorService writerExecutor;
+
+    @Value("${okx.order-audit.dir:logs/orders}")
+    private String auditDir = "logs/orders";
+
+    @Value("${okx.order-audit.formats:csv}")
+    private String formats = FORMAT_CSV;
+
+    @Value("${okx.order-audit.queue-capacity:10000}")
+    private int queueCapacity = 10000;
+
+    @Value("${okx.order-audit.batch-size:256}")
+    private int batchSize = 256;
+
+    @Value("${okx.order-audit.fsync:batch}")
+    private String fsyncPolicy = FSYNC_BATCH;
+
+    @Value("${okx.order-audit.fsync-interval-ms:1000}")
+    private long fsyncIntervalMs = 1000;
+
+    private BlockingQueue<JSONObject> queue;
+    private volatile boolean running;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    // 以下字段只由写线程访问
+    private final Map<String, FileChannel> channels = new LinkedHashMap<>();
+    private LocalDate currentDay;
+    private long lastSyncMillis;
+    private boolean dirty;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+
+    public OrderAuditServiceImpl(@Qualifier("orderAuditExecutor") ExecutorService writerExecutor) {
+        this.writerExecutor = writerExecutor;
+    }
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerExecutor.execute(this::writeLoop);
+        log.info("订单审计日志已启动: dir={}, formats={}, fsync={}", auditDir, formats, fsyncPolicy);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            if (!stopped.await(5, TimeUnit.SECONDS)) {
+                log.warn("订单审计日志写线程未在5秒内退出，剩余 {} 条未写入", queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean record(JSONObject orderData) {
+        if (orderData == null) {
+            return false;
+        }
+        JSONObject record = new JSONObject(orderData);
+        record.put("auditTime", System.currentTimeMillis());
+        if (!queue.offer(record)) {
+            dropped.increment();
+            log.warn("订单审计队列已满，丢弃记录: clOrdId={}", orderData.getString("clOrdId"));
+            return false;
+        }
+        enqueued.increment();
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enqueued", enqueued.sum());
+        stats.put("written", written.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("batches", batches.sum());
+        stats.put("writeFailures", writeFailures.sum());
+        stats.put("queueSize", queue != null ? queue.size() : 0);
+        return stats;
+    }
+
+    /**
+     * 写线程主循环：阻塞等待第一条记录，再一次取出队列中的剩余记录批量写入；
+     * 停止后写完队列中的记录再关闭文件
+     */
+    private void writeLoop() {
+        List<JSONObject> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                JSONObject first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                syncIfDue();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeChannels();
+            stopped.countDown();
+        }
+    }
+
+    private void writeBatch(List<JSONObject> batch) {
+        try {
+            // 按审计时间所在日期分组写入，跨天时切换文件
+            int start = 0;
+            while (start < batch.size()) {
+                LocalDate day = dayOf(batch.get(start));
+                int end = start + 1;
+                while (end < batch.size() && day.equals(dayOf(batch.get(end)))) {
+                    end++;
+                }
+                rollTo(day);
+                List<JSONObject> sameDay = batch.subList(start, end);
+                for (Map.Entry<String, FileChannel> entry : channels.entrySet()) {
+                    writeFully(entry.getValue(), encode(entry.getKey(), sameDay));
+                }
+                start = end;
+            }
+            dirty = true;
+            if (FSYNC_BATCH.equals(fsyncPolicy)) {
+                sync();
+            }
+            written.add(batch.size());
+            batches.increment();
+        } catch (Exception e) {
+            writeFailures.increment();
+            log.error("写入订单审计日志失败，丢弃 {} 条记录: {}", batch.size(), e.getMessage(), e);
+            closeChannels();
+        }
+    }
+
+    private void rollTo(LocalDate day) throws IOException {
+        if (day.equals(currentDay) && !channels.isEmpty()) {
+            return;
+        }
+        closeChannels();
+        Path dir = Paths.get(auditDir);
+        Files.createDirectories(dir);
+        for (String format : formats.split(",")) {
+            format = format.trim().toLowerCase();
+            if (!FORMAT_CSV.equals(format) && !FORMAT_JSONL.equals(format)) {
+                continue;
+            }
+            Path file = dir.resolve("orders_" + day + "." + format);
+            if (FORMAT_CSV.equals(format)) {
+                rotateIfHeaderMismatch(file, day);
+            }
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (FORMAT_CSV.equals(format) && channel.size() == 0) {
+                writeFully(channel, CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+            }
+            channels.put(format, channel);
+        }
+        currentDay = day;
+    }
+
+    /**
+     * 已有CSV文件的表头不是当前固定列时改名保留，避免新记录写在旧表头下面
+     */
+    private void rotateIfHeaderMismatch(Path file, LocalDate day) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return;
+        }
+        String firstLine;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            firstLine = reader.readLine();
+        }
+        if (CSV_HEADER.equals(firstLine + "\n")) {
+            return;
+        }
+        Path legacy;
+        int n = 1;
+        do {
+            legacy = file.resolveSibling("orders_" + day + ".legacy-" + n++ + "." + FORMAT_CSV);
+        } while (Files.exists(legacy));
+        Files.move(file, legacy);
+        log.warn("订单审计CSV表头与固定列不一致，旧文件改名为: {}", legacy);
+    }
+
+    static byte[] encode(String format, List<JSONObject> records) {
+        StringBuilder builder = new StringBuilder(records.size() * 256);
+        for (JSONObject record : records) {
+            if (FORMAT_JSONL.equals(format)) {
+                builder.append(record.toJSONString()).append('\n');
+            } else {
+                appendCsvLine(builder, record);
+            }
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendCsvLine(StringBuilder builder, JSONObject record) {
+        for (int i = 0; i < CSV_COLUMNS.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            String value = record.getString(CSV_COLUMNS.get(i));
+            if (value == null) {
+                continue;
+            }
+            // 处理值中可能包含的逗号和引号
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+                builder.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                builder.append(value);
+            }
+        }
+        builder.append('\n');
+    }
+
+    private static LocalDate dayOf(JSONObject record) {
+        return Instant.ofEpochMilli(record.getLongValue("auditTime")).atZone(ZONE_ID).toLocalDate();
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void syncIfDue() {
+        if (dirty && FSYNC_INTERVAL.equals(fsyncPolicy)
+                && System.currentTimeMillis() - lastSyncMillis >= fsyncIntervalMs) {
+            sync();
+        }
+    }
+
+    private void sync() {
+        for (FileChannel channel : channels.values()) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                log.warn("订单审计日志刷盘失败: {}", e.getMessage());
+            }
+        }
+        dirty = false;
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    private void closeChannels() {
+        if (dirty && !FSYNC_NONE.equals(fsyncPolicy)) {
+            sync();
+        }
+        for (FileChannel channel : channels.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭订单审计日志失败: {}", e.getMessage());
+            }
+        }
+        channels.clear();
+        currentDay = null;
+    }
+}
@@ -0,0 +1,402 @@
+package com.okx.trading.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.config.OkxApiConfig;
+import com.okx.trading.exception.OkxApiException;
+import com.okx.trading.service.OrderGatewayService;
+import com.okx.trading.util.HttpUtil;
+import com.okx.trading.util.SignatureUtil;
+import com.okx.trading.util.TradingMetrics;
+import com.okx.trading.util.UpstreamRateLimiter;
+import com.okx.trading.util.WebSocketUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订单网关服务实现
+ * <p>
+ * WebSocket通道：每个请求分配唯一id，发送后立即返回，多个请求可同时在途；
+ * 响应按id完成对应的Future，超过 okx.order.ws-request-timeout-ms 未响应的请求以超时失败，
+ * 结果未知的订单由调用方对账，网关不会自动重发以免重复下单。
+ * REST通道：私有频道未登录时使用，请求在独立线程池中执行。
+ * <p>
+ * 单笔下单默认先进入批量窗口：窗口内（okx.order.batch.window-ms）到达的订单合并为一次 batch-orders 请求，
+ * 满20笔立即发送；批量回执按clOrdId拆分后完成各自的Future，调用方看到的仍是单笔下单回执。
+ * 每次请求前按接口获取限流令牌，合并后同样的订单数占用更少的请求配额；撤单使用单独的令牌桶。
+ * 批量窗口在单线程的 orderBatchScheduler 上发送，只尝试获取令牌不等待，拿不到令牌的窗口推迟到下一个窗口再发，
+ * 不阻塞其他窗口。
+ */
+@Slf4j
+@Service
+public class OrderGatewayServiceImpl implements OrderGatewayService {
+
+    private static final String TRADE_PATH = "/api/v5/trade";
+
+    private static final String OP_ORDER = "order";
+    private static final String OP_BATCH_ORDERS = "batch-orders";
+    private static final String OP_CANCEL_ORDER = "cancel-order";
+    private static final String OP_AMEND_ORDER = "amend-order";
+
+    private final WebSocketUtil webSocketUtil;
+    private final OkHttpClient okHttpClient;
+    private final OkxApiConfig okxApiConfig;
+    private final ExecutorService restExecutor;
+    private final ScheduledExecutorService batchScheduler;
+    private final UpstreamRateLimiter rateLimiter;
+
+    /**
+     * OKX 批量下单单次最多20笔
+     */
+    static final int MAX_BATCH_SIZE = 20;
+
+    @Value("${okx.order.ws-request-timeout-ms:5000}")
+    private long requestTimeoutMs = 5000;
+
+    @Value("${okx.order.batch.enabled:true}")
+    private boolean batchEnabled = true;
+
+    @Value("${okx.order.batch.window-ms:20}")
+    private long batchWindowMs = 20;
+
+    /**
+     * 单笔下单的批量窗口，按是否模拟交易分开（REST通道的模拟交易标志在请求头上）
+     */
+    private final Map<Boolean, List<BatchEntry>> openBatches = new HashMap<>();
+    private final Object batchLock = new Object();
+
+    private static final class BatchEntry {
+        private final JSONObject arg;
+        private final CompletableFuture<JSONObject> future = new CompletableFuture<>();
+
+        private BatchEntry(JSONObject arg) {
+            this.arg = arg;
+        }
+    }
+
+    /**
+     * 在途的WebSocket请求：id -> 响应Future
+     */
+    private final Map<String, CompletableFuture<JSONObject>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicLong requestIdGenerator = new AtomicLong(System.currentTimeMillis() % 1_000_000_000L * 1000);
+
+    private final LongAdder wsRequests = new LongAdder();
+    private final LongAdder restRequests = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder wsRoundTripNanos = new LongAdder();
+    private final LongAdder wsResponses = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedOrders = new LongAdder();
+    private final LongAdder throttledBatches = new LongAdder();
+
+    public OrderGatewayServiceImpl(WebSocketUtil webSocketUtil,
+                                   OkHttpClient okHttpClient,
+                                   OkxApiConfig okxApiConfig,
+                                   UpstreamRateLimiter rateLimiter,
+                                   @Qualifier("orderGatewayExecutorService") ExecutorService restExecutor,
+                                   @Qualifier("orderBatchScheduler") ScheduledExecutorService batchScheduler) {
+        this.webSocketUtil = webSocketUtil;
+        this.okHttpClient = okHttpClient;
+        this.okxApiConfig = okxApiConfig;
+        this.rateLimiter = rateLimiter;
+        this.restExecutor = restExecutor;
+        this.batchScheduler = batchScheduler;
+    }
+
+    @PostConstruct
+    public void init() {
+        webSocketUtil.registerHandler(OP_ORDER, this::onResponse);
+        webSocketUtil.registerHandler(OP_BATCH_ORDERS, this::onResponse);
+        webSocketUtil.registerHandler(OP_CANCEL_ORDER, this::onResponse);
+        webSocketUtil.registerHandler(OP_AMEND_ORDER, this::onResponse);
+    }
+
+    @Override
+    public CompletableFuture<JSONObject> placeOrder(JSONObject arg, boolean simulated) {
+        if (!batchEnabled) {
+            return send(OP_ORDER, "/order", Collections.singletonList(arg), false, simulated);
+        }
+
+        BatchEntry entry = new BatchEntry(arg);
+        List<BatchEntry> full = null;
+        synchronized (batchLock) {
+            List<BatchEntry> batch = openBatches.computeIfAbsent(simulated, k -> new ArrayList<>());
+            batch.add(entry);
+            if (batch.size() == 1) {
+                // 窗口内第一笔订单，到期后发送整个窗口
+                batchScheduler.schedule(() -> flushWindow(simulated, batch), batchWindowMs, TimeUnit.MILLISECONDS);
+            }
+            if (batch.size() >= MAX_BATCH_SIZE) {
+                openBatches.remove(simulated);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            List<BatchEntry> toSend = full;
+            batchScheduler.execute(() -> flush(toSend, simulated));
+        }
+        return entry.future;
+    }
+
+    @Override
+    public CompletableFuture<JSONObject> placeBatchOrders(List<JSONObject> args, boolean simulated) {
+        if (args == null || args.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("批量下单参数为空"));
+        }
+        return send(OP_BATCH_ORDERS, "/batch-orders", args, true, simulated);
+    }
+
+    @Override
+    public CompletableFuture<JSONObject> cancelOrder(JSONObject arg, boolean simulated) {
+        return send(OP_CANCEL_ORDER, "/cancel-order", Collections.singletonList(arg), false, simulated);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long responses = wsResponses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", pendingRequests.size());
+        stats.put("wsRequests", wsRequests.sum());
+        stats.put("restRequests", restRequests.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("batches", batches.sum());
+        stats.put("batchedOrders", batchedOrders.sum());
+        stats.put("throttledBatches", throttledBatches.sum());
+        stats.put("avgWsRoundTripMs", responses == 0 ? 0 : wsRoundTripNanos.sum() / responses / 1_000_000.0);
+        return stats;
+    }
+
+    /**
+     * 批量窗口到期，窗口已因满20笔被发送时跳过
+     */
+    private void flushWindow(boolean simulated, List<BatchEntry> batch) {
+        synchronized (batchLock) {
+            if (openBatches.get(simulated) != batch) {
+                return;
+            }
+            openBatches.remove(simulated);
+        }
+        flush(batch, simulated);
+    }
+
+    /**
+     * 发送一个批量窗口：只有一笔时按单笔下单，多笔时合并为 batch-orders 并按clOrdId拆分回执
+     * 在批量线程上执行，限流时不等待令牌，推迟一个窗口后重试
+     */
+    private void flush(List<BatchEntry> batch, boolean simulated) {
+        String op = batch.size() == 1 ? OP_ORDER : OP_BATCH_ORDERS;
+        if (!rateLimiter.tryAcquire(endpoint(op))) {
+            throttledBatches.increment();
+            batchScheduler.schedule(() -> flush(batch, simulated), batchWindowMs, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        if (batch.size() == 1) {
+            BatchEntry entry = batch.get(0);
+            dispatch(OP_ORDER, "/order", Collections.singletonList(entry.arg), false, simulated)
+                    .whenComplete((response, ex) -> complete(entry, response, ex));
+            return;
+        }
+
+        batches.increment();
+        batchedOrders.add(batch.size());
+        List<JSONObject> args = new ArrayList<>(batch.size());
+        for (BatchEntry entry : batch) {
+            args.add(entry.arg);
+        }
+        log.info("合并批量下单: {} 笔", batch.size());
+        dispatch(OP_BATCH_ORDERS, "/batch-orders", args, true, simulated).whenComplete((response, ex) -> {
+            if (ex != null) {
+                batch.forEach(entry -> entry.future.completeExceptionally(ex));
+                return;
+            }
+            JSONArray data = response.getJSONArray("data");
+            Map<String, JSONObject> byClientOrderId = new HashMap<>();
+            if (data != null) {
+                for (int i = 0; i < data.size(); i++) {
+                    JSONObject item = data.getJSONObject(i);
+                    byClientOrderId.put(item.getString("clOrdId"), item);
+                }
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                BatchEntry entry = batch.get(i);
+                JSONObject item = byClientOrderId.get(entry.arg.getString("clOrdId"));
+                if (item == null && data != null && i < data.size()) {
+                    item = data.getJSONObject(i);
+                }
+                entry.future.complete(splitBatchResponse(response, item));
+            }
+        });
+    }
+
+    private static void complete(BatchEntry entry, JSONObject response, Throwable ex) {
+        if (ex != null) {
+            entry.future.completeExceptionally(ex);
+        } else {
+            entry.future.complete(response);
+        }
+    }
+
+    /**
+     * 从批量回执中取出单笔订单的回执，格式与单笔下单一致
+     */
+    static JSONObject splitBatchResponse(JSONObject batchResponse, JSONObject item) {
+        JSONObject response = new JSONObject();
+        response.put("id", batchResponse.getString("id"));
+        response.put("op", OP_ORDER);
+        JSONArray data = new JSONArray();
+        if (item != null) {
+            data.add(item);
+            // 批量回执 code=1/2 表示全部/部分失败，单笔是否成功以sCode为准
+            boolean success = "0".equals(item.getString("sCode"));
+            response.put("code", success ? "0" : "1");
+            response.put("msg", success ? "" : item.getString("sMsg"));
+        } else {
+            response.put("code", batchResponse.getString("code"));
+            response.put("msg", batchResponse.getString("msg"));
+        }
+        response.put("data", data);
+        return response;
+    }
+
+    private static String endpoint(String op) {
+        switch (op) {
+            case OP_BATCH_ORDERS:
+                return UpstreamRateLimiter.ENDPOINT_OKX_BATCH_ORDERS;
+            case OP_CANCEL_ORDER:
+                return UpstreamRateLimiter.ENDPOINT_OKX_CANCEL_ORDER;
+            default:
+                return UpstreamRateLimiter.ENDPOINT_OKX_ORDER;
+        }
+    }
+
+    /**
+     * 在调用方线程上等待限流令牌后发送
+     */
+    private CompletableFuture<JSONObject> send(String op, String restPath, List<JSONObject> args,
+                                               boolean batch, boolean simulated) {
+        try {
+            rateLimiter.acquire(endpoint(op));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        return dispatch(op, restPath, args, batch, simulated);
+    }
+
+    /**
+     * 已获取令牌的请求：私有频道就绪时走WebSocket，否则走REST
+     */
+    private CompletableFuture<JSONObject> dispatch(String op, String restPath, List<JSONObject> args,
+                                                   boolean batch, boolean simulated) {
+        if (webSocketUtil.isPrivateChannelReady()) {
+            return sendWebSocket(op, args);
+        }
+        log.warn("私有WebSocket未就绪，订单请求改走REST: op={}", op);
+        return CompletableFuture.supplyAsync(() -> sendRest(restPath, args, batch, simulated), restExecutor);
+    }
+
+    private CompletableFuture<JSONObject> sendWebSocket(String op, List<JSONObject> args) {
+        String id = String.valueOf(requestIdGenerator.incrementAndGet());
+        JSONArray wsArgs = new JSONArray();
+        for (JSONObject arg : args) {
+            JSONObject wsArg = new JSONObject(arg);
+            // WebSocket 下单使用 instIdCode
+            if (wsArg.containsKey("instIdCode")) {
+                wsArg.remove("instId");
+            }
+            wsArgs.add(wsArg);
+        }
+
+        JSONObject request = new JSONObject();
+        request.put("id", id);
+        request.put("op", op);
+        request.put("args", wsArgs);
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<JSONObject> future = new CompletableFuture<>();
+        pendingRequests.put(id, future);
+        // 返回统计之后的阶段，调用方看到结果时超时和往返耗时已经计入
+        CompletableFuture<JSONObject> result = future.whenComplete((response, ex) -> {
+            pendingRequests.remove(id);
+            if (ex instanceof TimeoutException) {
+                timeouts.increment();
+                log.warn("订单请求超时未响应: id={}, op={}", id, op);
+            } else if (ex == null) {
+                wsResponses.increment();
+                long roundTripNanos = System.nanoTime() - startNanos;
+                wsRoundTripNanos.add(roundTripNanos);
+                TradingMetrics.recordOrderRoundTrip("ws", op, roundTripNanos);
+            }
+        });
+        future.orTimeout(requestTimeoutMs, TimeUnit.MILLISECONDS);
+
+        wsRequests.increment();
+        try {
+            webSocketUtil.sendPrivateRequest(request.toJSONString());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * 处理WebSocket下单/撤单响应，按id完成对应请求
+     */
+    void onResponse(JSONObject message) {
+        String id = message.getString("id");
+        CompletableFuture<JSONObject> future = id != null ? pendingRequests.get(id) : null;
+        if (future == null) {
+            log.debug("收到未匹配的订单响应: {}", message);
+            return;
+        }
+        log.info("收到订单响应: id={}, op={}, code={}, msg={}",
+                id, message.getString("op"), message.getString("code"), message.getString("msg"));
+        future.complete(message);
+    }
+
+    private JSONObject sendRest(String restPath, List<JSONObject> args, boolean batch, boolean simulated) {
+        restRequests.increment();
+        List<JSONObject> restArgs = new ArrayList<>(args.size());
+        for (JSONObject arg : args) {
+            JSONObject restArg = new JSONObject(arg);
+            // REST 使用 instId，模拟交易通过请求头标识
+            restArg.remove("instIdCode");
+            restArg.remove("simulated");
+            restArgs.add(restArg);
+        }
+        String body = batch ? JSON.toJSONString(restArgs) : restArgs.get(0).toJSONString();
+        String requestPath = TRADE_PATH + restPath;
+        String timestamp = SignatureUtil.getIsoTimestamp();
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("OK-ACCESS-KEY", okxApiConfig.getApiKey());
+        headers.put("OK-ACCESS-SIGN", SignatureUtil.sign(timestamp, "POST", requestPath, body, okxApiConfig.getSecretKey()));
+        headers.put("OK-ACCESS-TIMESTAMP", timestamp);
+        headers.put("OK-ACCESS-PASSPHRASE", okxApiConfig.getPassphrase());
+        headers.put("Content-Type", "application/json");
+        if (simulated) {
+            headers.put("x-simulated-trading", "1");
+        }
+
+        long startNanos = System.nanoTime();
+        String response = HttpUtil.post(okHttpClient, okxApiConfig.getBaseUrl() + requestPath, headers, body);
+        TradingMetrics.recordOrderRoundTrip("rest", restPath.substring(1), System.nanoTime() - startNanos);
+        JSONObject json = JSON.parseObject(response);
+        if (json == null) {
+            throw new OkxApiException("订单REST响应为空: " + requestPath);
+        }
+        log.info("订单REST响应: path={}, code={}, msg={}", requestPath, json.getString("code"), json.getString("msg"));
+        return json;
+    }
+}
@@ -0,0 +1,168 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.trade.Order;
+import com.okx.trading.model.trade.OrderHandle;
+import com.okx.trading.service.OrderTrackerService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 订单生命周期跟踪服务实现
+ * <p>
+ * 以clientOrderId索引被跟踪的订单句柄。收到推送后更新句柄：
+ * 有成交数量或状态为部分成交/全部成交时完成首次成交，
+ * 状态为全部成交、撤销、拒绝、过期或下单回执sCode非0时完成终态并停止跟踪。
+ * 超时未进入终态的订单在对账线程上查询一次补齐状态后同样停止跟踪，不会在Map中堆积；
+ * 下单和等待成交都不占用调用方线程。
+ */
+@Slf4j
+@Service
+public class OrderTrackerServiceImpl implements OrderTrackerService {
+
+    private static final String FILLED = "FILLED";
+    private static final String PARTIALLY_FILLED = "PARTIALLY_FILLED";
+    private static final String REJECTED = "REJECTED";
+
+    private final Map<String, OrderHandle> handles = new ConcurrentHashMap<>();
+
+    private final LongAdder trackedCount = new LongAdder();
+    private final LongAdder pushCompletedCount = new LongAdder();
+    private final LongAdder reconcileCount = new LongAdder();
+    private final LongAdder completedMillis = new LongAdder();
+
+    /**
+     * 对账查询线程池，未注入时（单元测试、回放的独立实例）使用公共线程池
+     */
+    @Autowired(required = false)
+    @Qualifier("orderReconcileExecutorService")
+    private Executor reconcileExecutor = ForkJoinPool.commonPool();
+
+    @Override
+    public OrderHandle track(String clientOrderId, String symbol) {
+        OrderHandle handle = new OrderHandle(clientOrderId, symbol);
+        OrderHandle previous = handles.put(clientOrderId, handle);
+        if (previous != null && !previous.isDone()) {
+            log.warn("重复跟踪的订单: clientOrderId={}", clientOrderId);
+        }
+        trackedCount.increment();
+        return handle;
+    }
+
+    @Override
+    public boolean onOrderUpdate(Order order) {
+        if (order == null || order.getClientOrderId() == null) {
+            return false;
+        }
+        OrderHandle handle = handles.get(order.getClientOrderId());
+        if (handle == null) {
+            return false;
+        }
+
+        // 下单回执只有ordId和sCode，没有状态，拒绝时补上状态
+        if (order.getSCode() != 0 && order.getStatus() == null) {
+            order.setStatus(REJECTED);
+        }
+
+        // 先移除跟踪并计数再完成句柄，等待方被唤醒时统计已经更新
+        boolean terminal = isTerminal(order);
+        boolean completed = terminal && handles.remove(order.getClientOrderId(), handle);
+        if (completed) {
+            pushCompletedCount.increment();
+            completedMillis.add(System.currentTimeMillis() - handle.getCreateTime());
+        }
+        handle.update(order, isFilled(order), terminal);
+        log.debug("订单状态更新: clientOrderId={}, status={}, executedQty={}",
+                order.getClientOrderId(), order.getStatus(), order.getExecutedQty());
+        return completed;
+    }
+
+    @Override
+    public void fail(String clientOrderId, Throwable cause) {
+        OrderHandle handle = handles.remove(clientOrderId);
+        if (handle != null) {
+            handle.fail(cause);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Order> reconcileAfter(OrderHandle handle, long timeoutMs, Supplier<Order> reconciler) {
+        handle.getResult().whenComplete((order, ex) -> {
+            if (ex == null) {
+                handle.settle(order);
+            } else {
+                // 下单失败时订单可能已经到达交易所，立即对账
+                reconcileExecutor.execute(() -> reconcile(handle, timeoutMs, reconciler));
+            }
+        });
+        CompletableFuture.delayedExecutor(timeoutMs, TimeUnit.MILLISECONDS, reconcileExecutor)
+                .execute(() -> reconcile(handle, timeoutMs, reconciler));
+        return handle.getSettled();
+    }
+
+    /**
+     * 推送超时或下单失败，查询一次确认订单的实际状态
+     */
+    private void reconcile(OrderHandle handle, long timeoutMs, Supplier<Order> reconciler) {
+        synchronized (handle) {
+            if (handle.getSettled().isDone()) {
+                return;
+            }
+            reconcileCount.increment();
+            log.info("订单未在{}ms内进入终态，开始对账: clientOrderId={}, 最近状态={}",
+                    timeoutMs, handle.getClientOrderId(), handle.getLatest() != null ? handle.getLatest().getStatus() : null);
+            Order reconciled = null;
+            try {
+                reconciled = reconciler.get();
+            } catch (Exception e) {
+                log.warn("订单对账失败: clientOrderId={}, error={}", handle.getClientOrderId(), e.getMessage());
+            }
+            if (reconciled != null) {
+                handle.update(reconciled, isFilled(reconciled), isTerminal(reconciled));
+            }
+            handles.remove(handle.getClientOrderId(), handle);
+            handle.settle(reconciled != null ? reconciled : handle.getLatest());
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long completed = pushCompletedCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", handles.size());
+        stats.put("tracked", trackedCount.sum());
+        stats.put("pushCompleted", completed);
+        stats.put("reconciled", reconcileCount.sum());
+        stats.put("avgCompleteMs", completed == 0 ? 0 : completedMillis.sum() / (double) completed);
+        return stats;
+    }
+
+    static boolean isFilled(Order order) {
+        if (FILLED.equals(order.getStatus()) || PARTIALLY_FILLED.equals(order.getStatus())) {
+            return true;
+        }
+        return order.getExecutedQty() != null && order.getExecutedQty().compareTo(BigDecimal.ZERO) > 0;
+    }
+
+    static boolean isTerminal(Order order) {
+        String status = order.getStatus();
+        if (status == null) {
+            return order.getSCode() != 0;
+        }
+        // CANCELED、MMP_CANCELED 等撤销状态都视为终态，CANCELING 不是
+        return FILLED.equals(status) || REJECTED.equals(status) || "EXPIRED".equals(status)
+                || status.endsWith("CANCELED");
+    }
+}
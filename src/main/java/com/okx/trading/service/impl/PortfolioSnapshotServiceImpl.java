@@ -0,0 +1,612 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.entity.RealTimeOrderEntity;
+import com.okx.trading.model.entity.RealTimeStrategyEntity;
+import com.okx.trading.model.market.Ticker;
+import com.okx.trading.repository.RealTimeOrderRepository;
+import com.okx.trading.service.OkxApiService;
+import com.okx.trading.service.PortfolioSnapshotService;
+import com.okx.trading.strategy.RealTimeStrategyManager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.okx.trading.constant.IndicatorInfo.BUY;
+import static com.okx.trading.constant.IndicatorInfo.SELL;
+
+/**
+ * 持仓组合快照实现
+ * <p>
+ * 每个运行中策略保存一份不可变的持仓记录，按交易对汇总持仓数量和入场价值。
+ * 策略启停和成交时只调整该策略对汇总的贡献，行情推送时只重算该交易对的预估收益，都是O(1)操作。
+ * 后台线程按固定间隔检查汇总是否变化，变化时生成新的快照并推送给SSE订阅者，读取快照不做任何计算；
+ * 同时按较长的间隔用运行中策略全量重建一次汇总，纠正未经通知的状态修改和浮点累计误差。
+ */
+@Slf4j
+@Service
+public class PortfolioSnapshotServiceImpl implements PortfolioSnapshotService {
+
+    static final String EVENT_NAME = "portfolio";
+    private static final String UNKNOWN = "未知";
+    /**
+     * 没有变化时也按这个间隔重新生成快照，刷新持仓时长
+     */
+    private static final long HOLDING_REFRESH_MS = 60_000;
+
+    private final RealTimeOrderRepository realTimeOrderRepository;
+    private final RealTimeStrategyManager realTimeStrategyManager;
+    private final OkxApiService okxApiService;
+    private final ScheduledExecutorService publishScheduler;
+    private final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Value("${okx.portfolio.publish-interval-ms:1000}")
+    private long publishIntervalMs = 1000;
+
+    @Value("${okx.portfolio.resync-interval-ms:60000}")
+    private long resyncIntervalMs = 60000;
+
+    @Value("${okx.portfolio.sse-timeout-ms:1800000}")
+    private long sseTimeoutMs = 1800000;
+
+    /**
+     * 保护持仓记录和汇总值，行情推送、成交和后台线程都在锁内修改，锁内只做加减运算
+     */
+    private final Object lock = new Object();
+    private final Map<Long, Position> positions = new HashMap<>();
+    private final Map<String, Exposure> exposures = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> profitByStrategyName = new HashMap<>();
+    private final Map<String, Bucket> profitByStrategySymbol = new HashMap<>();
+    private final Map<String, BigDecimal> prices = new ConcurrentHashMap<>();
+    private int holdingStrategiesCount;
+    private double totalRealizedProfit;
+    private double totalInvestmentAmount;
+    private double totalEstimatedProfit;
+    private double totalHoldingInvestmentAmount;
+    private LocalDate today;
+    private int todaySignalCount;
+    private double todayProfit;
+
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private volatile Map<String, Object> snapshot;
+    private volatile long lastBuildMillis;
+    private long lastResyncMillis;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    private final LongAdder strategyUpdates = new LongAdder();
+    private final LongAdder trades = new LongAdder();
+    private final LongAdder priceUpdates = new LongAdder();
+    private final LongAdder snapshotBuilds = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder pushes = new LongAdder();
+    private final LongAdder pushFailures = new LongAdder();
+
+    /**
+     * 单个策略的持仓记录，策略状态变化时整体替换
+     */
+    private static final class Position {
+        private final Long id;
+        private final String strategyCode;
+        private final String strategyName;
+        private final String symbol;
+        private final String interval;
+        private final double tradeAmount;
+        private final double totalProfit;
+        private final boolean holding;
+        private final Double entryPrice;
+        private final Double entryAmount;
+        private final Double quantity;
+        private final LocalDateTime entryTime;
+
+        private Position(RealTimeStrategyEntity state) {
+            this.id = state.getId();
+            this.strategyCode = state.getStrategyCode();
+            this.strategyName = String.valueOf(state.getStrategyName());
+            this.symbol = state.getSymbol();
+            this.interval = state.getInterval();
+            this.tradeAmount = state.getTradeAmount() != null ? state.getTradeAmount() : 0;
+            this.totalProfit = state.getTotalProfit() != null ? state.getTotalProfit() : 0;
+            this.holding = BUY.equals(state.getLastTradeType());
+            this.entryPrice = state.getLastTradePrice();
+            this.entryAmount = state.getLastTradeAmount();
+            this.quantity = state.getLastTradeQuantity();
+            this.entryTime = state.getLastTradeTime();
+        }
+
+        private boolean isPriced() {
+            return holding && entryPrice != null && quantity != null;
+        }
+    }
+
+    /**
+     * 单个交易对的持仓汇总，applied 为当前计入总预估收益和持仓投资额的部分
+     */
+    private static final class Exposure {
+        private int count;
+        private double quantity;
+        private double entryValue;
+        private double investment;
+        private double appliedProfit;
+        private double appliedInvestment;
+    }
+
+    private static final class Bucket {
+        private int count;
+        private double profit;
+    }
+
+    public PortfolioSnapshotServiceImpl(RealTimeOrderRepository realTimeOrderRepository,
+                                        @Lazy RealTimeStrategyManager realTimeStrategyManager,
+                                        @Lazy OkxApiService okxApiService,
+                                        @Qualifier("portfolioPublishScheduler") ScheduledExecutorService publishScheduler) {
+        this.realTimeOrderRepository = realTimeOrderRepository;
+        this.realTimeStrategyManager = realTimeStrategyManager;
+        this.okxApiService = okxApiService;
+        this.publishScheduler = publishScheduler;
+    }
+
+    @PostConstruct
+    public void init() {
+        publishScheduler.scheduleWithFixedDelay(this::publish, publishIntervalMs, publishIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("持仓快照已启动: publishIntervalMs={}, resyncIntervalMs={}", publishIntervalMs, resyncIntervalMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (SseEmitter emitter : emitters) {
+            emitter.complete();
+        }
+        emitters.clear();
+    }
+
+    @Override
+    public void onStrategyUpdated(RealTimeStrategyEntity state) {
+        if (state == null || state.getId() == null) {
+            return;
+        }
+        synchronized (lock) {
+            replace(new Position(state));
+        }
+        strategyUpdates.increment();
+        dirty.set(true);
+    }
+
+    @Override
+    public void onStrategyRemoved(Long strategyId) {
+        if (strategyId == null) {
+            return;
+        }
+        synchronized (lock) {
+            Position old = positions.remove(strategyId);
+            if (old == null) {
+                return;
+            }
+            subtract(old);
+        }
+        strategyUpdates.increment();
+        dirty.set(true);
+    }
+
+    @Override
+    public void onTrade(RealTimeStrategyEntity state, RealTimeOrderEntity order) {
+        if (state == null || state.getId() == null) {
+            return;
+        }
+        synchronized (lock) {
+            replace(new Position(state));
+            rollDay();
+            // 当日统计从数据库加载之前的成交由加载结果包含
+            if (today != null && order != null && order.getCreateTime() != null && today.equals(order.getCreateTime().toLocalDate())) {
+                todaySignalCount++;
+                if (SELL.equals(order.getSide()) && order.getProfit() != null) {
+                    todayProfit += order.getProfit().doubleValue();
+                }
+            }
+        }
+        trades.increment();
+        dirty.set(true);
+    }
+
+    @Override
+    public void onPriceUpdate(String symbol, BigDecimal lastPrice) {
+        if (symbol == null || lastPrice == null) {
+            return;
+        }
+        priceUpdates.increment();
+        BigDecimal old = prices.put(symbol, lastPrice);
+        if ((old != null && old.compareTo(lastPrice) == 0) || !exposures.containsKey(symbol)) {
+            return;
+        }
+        synchronized (lock) {
+            Exposure exposure = exposures.get(symbol);
+            if (exposure != null) {
+                refresh(symbol, exposure);
+            }
+        }
+        dirty.set(true);
+    }
+
+    @Override
+    public Map<String, Object> getSnapshot() {
+        Map<String, Object> current = snapshot;
+        return current != null ? current : rebuild();
+    }
+
+    @Override
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(getSnapshot()));
+        } catch (Exception e) {
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (lock) {
+            stats.put("strategies", positions.size());
+            stats.put("holdingStrategies", holdingStrategiesCount);
+        }
+        stats.put("heldSymbols", exposures.size());
+        stats.put("strategyUpdates", strategyUpdates.sum());
+        stats.put("trades", trades.sum());
+        stats.put("priceUpdates", priceUpdates.sum());
+        stats.put("snapshotBuilds", snapshotBuilds.sum());
+        stats.put("resyncs", resyncs.sum());
+        stats.put("subscribers", emitters.size());
+        stats.put("pushes", pushes.sum());
+        stats.put("pushFailures", pushFailures.sum());
+        return stats;
+    }
+
+    /**
+     * 后台发布任务：补齐缺少行情的持仓交易对、按需全量重建，汇总有变化时生成快照并推送
+     */
+    void publish() {
+        try {
+            loadTodayIfAbsent();
+            fetchMissingPrices();
+            long now = System.currentTimeMillis();
+            if (now - lastResyncMillis >= resyncIntervalMs) {
+                resync();
+                lastResyncMillis = now;
+            }
+            if (!dirty.get() && snapshot != null && now - lastBuildMillis < HOLDING_REFRESH_MS) {
+                return;
+            }
+            push(rebuild());
+        } catch (Exception e) {
+            log.error("发布持仓快照失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 用运行中策略全量重建持仓记录和汇总，保留已知的最新价
+     */
+    void resync() {
+        Collection<RealTimeStrategyEntity> running = realTimeStrategyManager.getAllRunningStrategies().values();
+        synchronized (lock) {
+            positions.clear();
+            exposures.clear();
+            profitByStrategyName.clear();
+            profitByStrategySymbol.clear();
+            holdingStrategiesCount = 0;
+            totalRealizedProfit = 0;
+            totalInvestmentAmount = 0;
+            totalEstimatedProfit = 0;
+            totalHoldingInvestmentAmount = 0;
+            for (RealTimeStrategyEntity state : running) {
+                if (state.getId() != null) {
+                    replace(new Position(state));
+                }
+            }
+        }
+        resyncs.increment();
+        dirty.set(true);
+    }
+
+    /**
+     * 当日信号数和当日收益启动后从数据库加载一次，之后由成交增量累计
+     */
+    private void loadTodayIfAbsent() {
+        synchronized (lock) {
+            if (today != null) {
+                return;
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<RealTimeOrderEntity> todayOrderList = realTimeOrderRepository.findByCreateTimeBetweenOrderByCreateTimeDesc(now.with(LocalTime.MIN), now);
+        double profit = todayOrderList.stream()
+                .filter(order -> SELL.equals(order.getSide()) && order.getProfit() != null)
+                .mapToDouble(order -> order.getProfit().doubleValue()).sum();
+        synchronized (lock) {
+            if (today == null) {
+                today = now.toLocalDate();
+                todaySignalCount = todayOrderList.size();
+                todayProfit = profit;
+                dirty.set(true);
+            }
+        }
+    }
+
+    /**
+     * 持仓交易对还没有收到行情时查询一次，查询同时订阅该交易对的行情推送
+     */
+    private void fetchMissingPrices() {
+        for (String symbol : exposures.keySet()) {
+            if (prices.containsKey(symbol)) {
+                continue;
+            }
+            try {
+                Ticker ticker = okxApiService.getTicker(symbol);
+                if (ticker != null) {
+                    onPriceUpdate(symbol, ticker.getLastPrice());
+                }
+            } catch (Exception e) {
+                log.warn("获取持仓交易对行情失败: symbol={}, error={}", symbol, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 跨天时清零当日统计，需持有锁
+     */
+    private void rollDay() {
+        LocalDate now = LocalDate.now();
+        if (today != null && !today.equals(now)) {
+            today = now;
+            todaySignalCount = 0;
+            todayProfit = 0;
+        }
+    }
+
+    /**
+     * 用新记录替换策略的旧记录，需持有锁
+     */
+    private void replace(Position position) {
+        Position old = positions.put(position.id, position);
+        if (old != null) {
+            subtract(old);
+        }
+        add(position);
+    }
+
+    private void add(Position position) {
+        totalRealizedProfit += position.totalProfit;
+        totalInvestmentAmount += position.tradeAmount;
+        adjust(profitByStrategyName, position.strategyName, position.totalProfit, 1);
+        adjust(profitByStrategySymbol, position.symbol, position.totalProfit, 1);
+        if (position.holding) {
+            holdingStrategiesCount++;
+        }
+        if (position.isPriced()) {
+            Exposure exposure = exposures.computeIfAbsent(position.symbol, k -> new Exposure());
+            exposure.count++;
+            exposure.quantity += position.quantity;
+            exposure.entryValue += position.entryPrice * position.quantity;
+            exposure.investment += position.tradeAmount;
+            refresh(position.symbol, exposure);
+        }
+    }
+
+    private void subtract(Position position) {
+        totalRealizedProfit -= position.totalProfit;
+        totalInvestmentAmount -= position.tradeAmount;
+        adjust(profitByStrategyName, position.strategyName, -position.totalProfit, -1);
+        adjust(profitByStrategySymbol, position.symbol, -position.totalProfit, -1);
+        if (position.holding) {
+            holdingStrategiesCount--;
+        }
+        if (position.isPriced()) {
+            Exposure exposure = exposures.get(position.symbol);
+            if (exposure == null) {
+                return;
+            }
+            exposure.count--;
+            if (exposure.count == 0) {
+                // 最后一个持仓移除时直接清零，避免浮点误差留下残余
+                exposure.quantity = 0;
+                exposure.entryValue = 0;
+                exposure.investment = 0;
+                refresh(position.symbol, exposure);
+                exposures.remove(position.symbol);
+            } else {
+                exposure.quantity -= position.quantity;
+                exposure.entryValue -= position.entryPrice * position.quantity;
+                exposure.investment -= position.tradeAmount;
+                refresh(position.symbol, exposure);
+            }
+        }
+    }
+
+    /**
+     * 按最新价重算交易对的预估收益，把差值计入总预估收益和持仓投资额；没有行情的交易对不计入
+     */
+    private void refresh(String symbol, Exposure exposure) {
+        BigDecimal price = exposure.count > 0 ? prices.get(symbol) : null;
+        double profit = price != null ? price.doubleValue() * exposure.quantity - exposure.entryValue : 0;
+        double investment = price != null ? exposure.investment : 0;
+        totalEstimatedProfit += profit - exposure.appliedProfit;
+        totalHoldingInvestmentAmount += investment - exposure.appliedInvestment;
+        exposure.appliedProfit = profit;
+        exposure.appliedInvestment = investment;
+    }
+
+    private static void adjust(Map<String, Bucket> buckets, String key, double profit, int count) {
+        Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket());
+        bucket.count += count;
+        bucket.profit += profit;
+        if (bucket.count <= 0) {
+            buckets.remove(key);
+        }
+    }
+
+    /**
+     * 生成快照：锁内复制持仓记录和汇总值，锁外格式化和排序；同一时间只有一个线程生成
+     */
+    private synchronized Map<String, Object> rebuild() {
+        dirty.set(false);
+        List<Position> holdings = new ArrayList<>();
+        Map<String, BigDecimal> heldPrices = new HashMap<>();
+        Map<String, Double> profitByName = new HashMap<>();
+        Map<String, Double> profitBySymbol = new HashMap<>();
+        Map<String, Object> statistics = new HashMap<>();
+        BigDecimal totalRealized;
+        BigDecimal totalEstimated;
+        BigDecimal totalInvestment;
+        synchronized (lock) {
+            rollDay();
+            for (Position position : positions.values()) {
+                if (position.holding) {
+                    holdings.add(position);
+                    BigDecimal price = prices.get(position.symbol);
+                    if (price != null) {
+                        heldPrices.put(position.symbol, price);
+                    }
+                }
+            }
+            profitByStrategyName.forEach((name, bucket) -> profitByName.put(name, bucket.profit));
+            profitByStrategySymbol.forEach((symbol, bucket) -> profitBySymbol.put(symbol, bucket.profit));
+            totalRealized = BigDecimal.valueOf(totalRealizedProfit);
+            totalEstimated = BigDecimal.valueOf(totalEstimatedProfit);
+            totalInvestment = BigDecimal.valueOf(totalInvestmentAmount);
+            statistics.put("totalHlodingInvestmentAmount", BigDecimal.valueOf(totalHoldingInvestmentAmount).setScale(8, RoundingMode.HALF_UP));
+            statistics.put("holdingStrategiesCount", holdingStrategiesCount);
+            statistics.put("runningStrategiesCount", positions.size());
+            statistics.put("todaysingalCount", todaySignalCount);
+            statistics.put("todayProfit", todayProfit);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Map<String, Object>> strategiesList = new ArrayList<>(holdings.size());
+        Map<Map<String, Object>, Double> sortKeys = new IdentityHashMap<>();
+        for (Position position : holdings) {
+            Map<String, Object> strategyProfit = toStrategyProfit(position, heldPrices.get(position.symbol), now, sortKeys);
+            strategiesList.add(strategyProfit);
+        }
+        // 按预估收益率降序排序，没有行情的排在最后
+        strategiesList.sort(Comparator.comparing((Map<String, Object> item) -> sortKeys.get(item),
+                Comparator.nullsLast(Comparator.reverseOrder())));
+
+        statistics.put("totalEstimatedProfit", totalEstimated.setScale(8, RoundingMode.HALF_UP));
+        statistics.put("totalRealizedProfit", totalRealized.setScale(8, RoundingMode.HALF_UP));
+        statistics.put("totalInvestmentAmount", totalInvestment.setScale(8, RoundingMode.HALF_UP));
+        // 计算总收益(已实现收益 + 未实现收益)
+        BigDecimal totalProfit = totalRealized.add(totalEstimated);
+        statistics.put("totalProfit", totalProfit.setScale(8, RoundingMode.HALF_UP));
+        if (totalInvestment.compareTo(BigDecimal.ZERO) > 0) {
+            BigDecimal totalProfitRate = totalProfit.multiply(new BigDecimal("100")).divide(totalInvestment, 4, RoundingMode.HALF_UP);
+            statistics.put("totalProfitRate", totalProfitRate + "%");
+        } else {
+            statistics.put("totalProfitRate", "0.00%");
+        }
+        statistics.put("profitByStrategyName", profitByName);
+        statistics.put("profitByStrategySymbol", profitBySymbol);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("strategies", Collections.unmodifiableList(strategiesList));
+        result.put("statistics", Collections.unmodifiableMap(statistics));
+        Map<String, Object> built = Collections.unmodifiableMap(result);
+        snapshot = built;
+        lastBuildMillis = System.currentTimeMillis();
+        snapshotBuilds.increment();
+        return built;
+    }
+
+    private Map<String, Object> toStrategyProfit(Position position, BigDecimal currentPrice, LocalDateTime now,
+                                                 Map<Map<String, Object>, Double> sortKeys) {
+        Map<String, Object> strategyProfit = new HashMap<>();
+        strategyProfit.put("strategyId", position.id);
+        strategyProfit.put("strategyCode", position.strategyCode);
+        strategyProfit.put("strategyName", position.strategyName);
+        strategyProfit.put("symbol", position.symbol);
+        strategyProfit.put("interval", position.interval);
+        strategyProfit.put("entryPrice", position.entryPrice);
+        if (position.entryAmount != null) {
+            strategyProfit.put("entryAmount", BigDecimal.valueOf(position.entryAmount).setScale(8, RoundingMode.HALF_UP));
+        }
+        if (position.entryTime != null) {
+            strategyProfit.put("entryTime", position.entryTime.format(dateFormat));
+        }
+
+        if (currentPrice == null || !position.isPriced()) {
+            strategyProfit.put("currentPrice", UNKNOWN);
+            strategyProfit.put("estimatedProfit", UNKNOWN);
+            strategyProfit.put("profitPercentage", UNKNOWN);
+            return strategyProfit;
+        }
+        double quantity = position.quantity;
+        double currentValue = currentPrice.doubleValue() * quantity;
+        double entryValue = position.entryPrice * quantity;
+        double estimatedProfit = currentValue - entryValue;
+        double profitPercentage = (estimatedProfit / entryValue) * 100;
+        strategyProfit.put("currentPrice", currentPrice);
+        strategyProfit.put("quantity", new BigDecimal(quantity).setScale(8, RoundingMode.HALF_UP));
+        strategyProfit.put("currentValue", new BigDecimal(currentValue).setScale(8, RoundingMode.HALF_UP));
+        strategyProfit.put("estimatedProfit", new BigDecimal(estimatedProfit).setScale(8, RoundingMode.HALF_UP));
+        if (Double.isFinite(profitPercentage)) {
+            strategyProfit.put("profitPercentage", new BigDecimal(profitPercentage).setScale(4, RoundingMode.HALF_UP) + "%");
+            sortKeys.put(strategyProfit, profitPercentage);
+        } else {
+            strategyProfit.put("profitPercentage", UNKNOWN);
+        }
+        if (position.entryTime != null) {
+            strategyProfit.put("holdingDuration", formatDuration(Duration.between(position.entryTime, now)));
+        }
+        return strategyProfit;
+    }
+
+    private static String formatDuration(Duration holdingDuration) {
+        long days = holdingDuration.toDays();
+        long hours = holdingDuration.minusDays(days).toHours();
+        long minutes = holdingDuration.minusDays(days).minusHours(hours).toMinutes();
+        String durationStr = "";
+        if (days > 0) {
+            durationStr += days + "天";
+        }
+        if (hours > 0 || days > 0) {
+            durationStr += hours + "小时";
+        }
+        return durationStr + minutes + "分钟";
+    }
+
+    private void push(Map<String, Object> built) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name(EVENT_NAME).data(built));
+                pushes.increment();
+            } catch (Exception e) {
+                // 连接已断开，移除订阅
+                pushFailures.increment();
+                emitters.remove(emitter);
+            }
+        }
+    }
+}
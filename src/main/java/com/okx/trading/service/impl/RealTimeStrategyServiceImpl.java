@@ -3,17 +3,17 @@ package com.okx.trading.service.impl;
 import com.okx.trading.model.entity.RealTimeOrderEntity;
 import com.okx.trading.model.entity.RealTimeStrategyEntity;
 import com.okx.trading.model.market.Candlestick;
-import com.okx.trading.model.market.Ticker;
 import com.okx.trading.repository.RealTimeOrderRepository;
 import com.okx.trading.repository.RealTimeStrategyRepository;
 import com.okx.trading.service.OkxApiService;
+import com.okx.trading.service.PortfolioSnapshotService;
 import com.okx.trading.service.RealTimeStrategyService;
+import com.okx.trading.service.TradeJournalService;
 import com.okx.trading.strategy.RealTimeStrategyManager;
 import com.okx.trading.strategy.StrategyRegisterCenter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
@@ -22,21 +22,20 @@ import org.ta4j.core.Strategy;
 
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.stream.Collectors;
 
 import static com.okx.trading.constant.IndicatorInfo.*;
 
 /**
  * 实时运行策略服务实现类
+ * 交易状态经交易日志延迟写库，读取策略时合并日志中尚未写入的部分。
+ * 按状态或启用标记查询的条件在数据库中执行，合并后不再满足条件的策略从结果中去掉；
+ * 日志中刚进入该状态、尚未写库的策略要等下次写库后才能查到
  */
 @Slf4j
 @Service
@@ -45,27 +44,33 @@ public class RealTimeStrategyServiceImpl implements RealTimeStrategyService {
     private final RealTimeStrategyRepository realTimeStrategyRepository;
     private final RealTimeStrategyManager realTimeStrategyManager;
     private final RealTimeOrderRepository realTimeOrderRepository;
+    private final TradeJournalService tradeJournalService;
+    private final PortfolioSnapshotService portfolioSnapshotService;
     private final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private final OkxApiService okxApiService;
 
     public RealTimeStrategyServiceImpl(RealTimeStrategyRepository realTimeStrategyRepository,
                                        RealTimeStrategyManager realTimeStrategyManager, RealTimeOrderRepository realTimeOrderRepository,
+                                       TradeJournalService tradeJournalService,
+                                       PortfolioSnapshotService portfolioSnapshotService,
                                        @Lazy OkxApiService okxApiService) {
         this.realTimeStrategyRepository = realTimeStrategyRepository;
         this.realTimeStrategyManager = realTimeStrategyManager;
         this.realTimeOrderRepository = realTimeOrderRepository;
+        this.tradeJournalService = tradeJournalService;
+        this.portfolioSnapshotService = portfolioSnapshotService;
         this.okxApiService = okxApiService;
     }
 
     @Override
     public List<RealTimeStrategyEntity> getAllRealTimeStrategies() {
-        return realTimeStrategyRepository.findAll();
+        return tradeJournalService.reconcileAll(realTimeStrategyRepository.findAll());
     }
 
     @Override
     public List<RealTimeStrategyEntity> getActiveRealTimeStrategies() {
-        return realTimeStrategyRepository.findStrategiesToAutoStart();
+        return reconcile(realTimeStrategyRepository.findStrategiesToAutoStart(), "RUNNING");
     }
 
     @Override
@@ -73,7 +78,7 @@ public class RealTimeStrategyServiceImpl implements RealTimeStrategyService {
         if (StringUtils.isBlank(strategyCode)) {
             return Optional.empty();
         }
-        return realTimeStrategyRepository.findByStrategyCode(strategyCode);
+        return realTimeStrategyRepository.findByStrategyCode(strategyCode).map(tradeJournalService::reconcile);
     }
 
     @Override
@@ -81,7 +86,8 @@ public class RealTimeStrategyServiceImpl implements RealTimeStrategyService {
         if (id == null) {
             return Optional.empty();
         }
-        return realTimeStrategyRepository.findById(id);
+        // 交易状态写库有延迟，合并交易日志中尚未写入的部分
+        return realTimeStrategyRepository.findById(id).map(tradeJournalService::reconcile);
     }
 
     @Override
@@ -89,7 +95,7 @@ public class RealTimeStrategyServiceImpl implements RealTimeStrategyService {
         if (StringUtils.isBlank(strategyCode)) {
             return Collections.emptyList();
         }
-        return realTimeStrategyRepository.findByStrategyCodeAndIsActiveTrueOrderByCreateTimeDesc(strategyCode);
+        return reconcile(realTimeStrategyRepository.findByStrategyCodeAndIsActiveTrueOrderByCreateTimeDesc(strategyCode), null);
     }
 
     @Override
@@ -97,7 +103,7 @@ public class RealTimeStrategyServiceImpl implements RealTimeStrategyService {
         if (StringUtils.isBlank(symbol)) {
             return Collections.emptyList();
         }
-        return realTimeStrategyRepository.findBySymbolAndIsActiveTrueOrderByCreateTimeDesc(symbol);
+        return reconcile(realTimeStrategyRepository.findBySymbolAndIsActiveTrueOrderByCreateTimeDesc(symbol), null);
     }
 
     @Override
@@ -105,12 +111,15 @@ public class RealTimeStrategyServiceImpl implements RealTimeStrategyService {
         if (StringUtils.isBlank(status)) {
             return Collections.emptyList();
         }
-        return realTimeStrategyRepository.findByStatusOrderByCreateTimeDesc(status);
+        List<RealTimeStrategyEntity> strategies = new ArrayList<>(
+                tradeJournalService.reconcileAll(realTimeStrategyRepository.findByStatusOrderByCreateTimeDesc(status)));
+        strategies.removeIf(strategy -> !status.equals(strategy.getStatus()));
+        return strategies;
     }
 
     @Override
     public List<RealTimeStrategyEntity> getRunningRealTimeStrategies() {
-        return realTimeStrategyRepository.findByStatusAndIsActiveTrueOrderByCreateTimeDesc("RUNNING");
+        return reconcile(realTimeStrategyRepository.findByStatusAndIsActiveTrueOrderByCreateTimeDesc("RUNNING"), "RUNNING");
     }
 
     @Override
@@ -118,7 +127,7 @@ public class RealTimeStrategyServiceImpl implements RealTimeStrategyService {
         if (StringUtils.isBlank(symbol) || StringUtils.isBlank(status)) {
             return Collections.emptyList();
         }
-        return realTimeStrategyRepository.findBySymbolAndStatusAndIsActiveTrueOrderByCreateTimeDesc(symbol, status);
+        return reconcile(realTimeStrategyRepository.findBySymbolAndStatusAndIsActiveTrueOrderByCreateTimeDesc(symbol, status), status);
     }
 
     @Override
@@ -126,7 +135,20 @@ public class RealTimeStrategyServiceImpl implements RealTimeStrategyService {
         if (startTime == null || endTime == null) {
             return Collections.emptyList();
         }
-        return realTimeStrategyRepository.findByCreateTimeBetweenOrderByCreateTimeDesc(startTime, endTime);
+        return tradeJournalService.reconcileAll(realTimeStrategyRepository.findByCreateTimeBetweenOrderByCreateTimeDesc(startTime, endTime));
+    }
+
+    /**
+     * 合并交易日志后去掉已停用或状态已变化的策略
+     *
+     * @param strategies 按启用标记（和状态）从数据库查询的策略
+     * @param status     查询条件中的状态，为null时只检查启用标记
+     */
+    private List<RealTimeStrategyEntity> reconcile(List<RealTimeStrategyEntity> strategies, String status) {
+        List<RealTimeStrategyEntity> reconciled = new ArrayList<>(tradeJournalService.reconcileAll(strategies));
+        reconciled.removeIf(strategy -> !Boolean.TRUE.equals(strategy.getIsActive())
+                || (status != null && !status.equals(strategy.getStatus())));
+        return reconciled;
     }
 
     @Override
@@ -182,7 +204,7 @@ public class RealTimeStrategyServiceImpl implements RealTimeStrategyService {
             if (StringUtils.isNotBlank(strategy.getLastTradeType()) && strategy.getLastTradeType().equals(BUY)) {
                 realTimeStrategyManager.executeTradeSignal(strategy, new Candlestick(BigDecimal.ZERO), SELL);
             }
-            realTimeStrategyManager.getRunningStrategies().remove(Long.parseLong(id));
+            realTimeStrategyManager.removeRunningStrategy(Long.parseLong(id));
             log.info("停止实时策略成功: {}", id);
             return true;
         }
@@ -282,7 +304,7 @@ public class RealTimeStrategyServiceImpl implements RealTimeStrategyService {
             if (strategy != null && strategy.getLastTradeType().equals(BUY)) {
                 realTimeStrategyManager.executeTradeSignal(strategy, new Candlestick(BigDecimal.ZERO), SELL);
             }
-            realTimeStrategyManager.getRunningStrategies().remove(Long.parseLong(id));
+            realTimeStrategyManager.removeRunningStrategy(Long.parseLong(id));
             log.info("删除实时策略成功: {}", id);
             return true;
         } catch (Exception e) {
@@ -400,187 +422,7 @@ public class RealTimeStrategyServiceImpl implements RealTimeStrategyService {
 
     @Override
     public Map<String, Object> realTimeStrategiesState() {
-        // 获取所有正在运行的策略
-        Map<Long, RealTimeStrategyEntity> allRunningStrategies = realTimeStrategyManager.getAllRunningStrategies();
-        List<Map<String, Object>> strategiesList = new ArrayList<>();
-
-        // 统计指标
-        BigDecimal totalEstimatedProfit = BigDecimal.ZERO;
-        BigDecimal totalInvestmentAmount = BigDecimal.ZERO;
-        BigDecimal totalHlodingInvestmentAmount = BigDecimal.ZERO;
-        BigDecimal totalRealizedProfit = BigDecimal.ZERO;
-        int holdingStrategiesCount = 0;
-        int runningStrategiesCount = 0;
-
-        // 筛选出最后交易类型为买入(BUY)的策略
-        for (RealTimeStrategyEntity strategy : allRunningStrategies.values()) {
-            // 统计运行中策略总数
-            runningStrategiesCount++;
-
-            // 累计已实现总收益
-            if (strategy.getTotalProfit() != null) {
-                totalRealizedProfit = totalRealizedProfit.add(BigDecimal.valueOf(strategy.getTotalProfit()));
-            }
-
-            // 累计总投资金额
-            if (strategy.getTradeAmount() != null) {
-                totalInvestmentAmount = totalInvestmentAmount.add(BigDecimal.valueOf(strategy.getTradeAmount()));
-            }
-
-            // 处理持仓中策略
-            if ("BUY".equals(strategy.getLastTradeType())) {
-                holdingStrategiesCount++;
-                Map<String, Object> strategyProfit = new HashMap<>();
-
-                try {
-                    // 获取基本信息
-                    strategyProfit.put("strategyId", strategy.getId());
-                    strategyProfit.put("strategyCode", strategy.getStrategyCode());
-                    strategyProfit.put("strategyName", strategy.getStrategyName());
-                    strategyProfit.put("symbol", strategy.getSymbol());
-                    strategyProfit.put("interval", strategy.getInterval());
-
-                    // 入场信息
-                    strategyProfit.put("entryPrice", strategy.getLastTradePrice());
-                    strategyProfit.put("entryAmount", new BigDecimal(strategy.getLastTradeAmount()).setScale(8, RoundingMode.HALF_UP));
-                    strategyProfit.put("entryTime", strategy.getLastTradeTime().format(dateFormat));
-
-                    // 获取最新价格
-                    Ticker latestTicker = okxApiService.getTicker(strategy.getSymbol());
-                    BigDecimal currentPrice = latestTicker != null ? latestTicker.getLastPrice() : null;
-
-                    if (currentPrice != null && strategy.getLastTradePrice() != null) {
-                        // 计算当前持仓价值
-                        double entryPrice = strategy.getLastTradePrice();
-                        double quantity = strategy.getLastTradeQuantity();
-                        double currentValue = currentPrice.doubleValue() * quantity;
-                        double entryValue = entryPrice * quantity;
-
-                        // 计算预估收益和收益率
-                        double estimatedProfit = currentValue - entryValue;
-                        double profitPercentage = (estimatedProfit / entryValue) * 100;
-
-                        // 添加预估收益信息 - 格式化为4位小数
-                        strategyProfit.put("currentPrice", currentPrice);
-                        strategyProfit.put("quantity", new BigDecimal(quantity).setScale(8, RoundingMode.HALF_UP));
-                        strategyProfit.put("currentValue", new BigDecimal(currentValue).setScale(8, RoundingMode.HALF_UP));
-                        strategyProfit.put("estimatedProfit", new BigDecimal(estimatedProfit).setScale(8, RoundingMode.HALF_UP));
-                        strategyProfit.put("profitPercentage", new BigDecimal(profitPercentage).setScale(4, RoundingMode.HALF_UP) + "%");
-
-                        // 累加预估收益到总预估收益
-                        totalEstimatedProfit = totalEstimatedProfit.add(new BigDecimal(estimatedProfit));
-
-                        totalHlodingInvestmentAmount = totalHlodingInvestmentAmount.add(BigDecimal.valueOf(strategy.getTradeAmount()));
-
-                        // 计算持仓时长
-                        Duration holdingDuration = Duration.between(strategy.getLastTradeTime(), LocalDateTime.now());
-                        long days = holdingDuration.toDays();
-                        long hours = holdingDuration.minusDays(days).toHours();
-                        long minutes = holdingDuration.minusDays(days).minusHours(hours).toMinutes();
-
-                        String durationStr = "";
-                        if (days > 0) {
-                            durationStr += days + "天";
-                        }
-                        if (hours > 0 || days > 0) {
-                            durationStr += hours + "小时";
-                        }
-                        durationStr += minutes + "分钟";
-
-                        strategyProfit.put("holdingDuration", durationStr);
-                    } else {
-                        // 如果无法获取最新价格
-                        strategyProfit.put("currentPrice", "未知");
-                        strategyProfit.put("estimatedProfit", "未知");
-                        strategyProfit.put("profitPercentage", "未知");
-                    }
-
-                    strategiesList.add(strategyProfit);
-                } catch (Exception e) {
-                    log.error("计算策略{}的预估收益时出错: {}", strategy.getStrategyCode(), e.getMessage());
-                    // 继续处理下一个策略
-                }
-            }
-        }
-
-        // 按预估收益率降序排序
-        strategiesList.sort((a, b) -> {
-            Object aProfit = a.get("profitPercentage");
-            Object bProfit = b.get("profitPercentage");
-
-            // 处理可能的字符串情况
-            if (aProfit instanceof String && bProfit instanceof String) {
-                if (aProfit.equals("未知") && bProfit.equals("未知")) {
-                    return 0;
-                } else if (aProfit.equals("未知")) {
-                    return 1;
-                } else if (bProfit.equals("未知")) {
-                    return -1;
-                }
-            }
-
-            // 如果都是数值，则比较
-            if (aProfit instanceof String && ((String) aProfit).endsWith("%")) {
-                aProfit = new BigDecimal(((String) aProfit).replace("%", ""));
-            }
-            if (bProfit instanceof String && ((String) bProfit).endsWith("%")) {
-                bProfit = new BigDecimal(((String) bProfit).replace("%", ""));
-            }
-
-            if (aProfit instanceof BigDecimal && bProfit instanceof BigDecimal) {
-                return ((BigDecimal) bProfit).compareTo((BigDecimal) aProfit);
-            }
-
-            return 0;
-        });
-
-        // 创建包含策略列表和统计信息的返回结果
-        Map<String, Object> result = new HashMap<>();
-        result.put("strategies", strategiesList);
-
-        // 添加统计信息
-        Map<String, Object> statistics = new HashMap<>();
-        statistics.put("totalEstimatedProfit", totalEstimatedProfit.setScale(8, RoundingMode.HALF_UP));
-        statistics.put("totalRealizedProfit", totalRealizedProfit.setScale(8, RoundingMode.HALF_UP));
-        statistics.put("totalInvestmentAmount", totalInvestmentAmount.setScale(8, RoundingMode.HALF_UP));
-        statistics.put("totalHlodingInvestmentAmount", totalHlodingInvestmentAmount.setScale(8, RoundingMode.HALF_UP));
-        statistics.put("holdingStrategiesCount", holdingStrategiesCount);
-        statistics.put("runningStrategiesCount", runningStrategiesCount);
-
-        // 计算总收益(已实现收益 + 未实现收益)
-        BigDecimal totalProfit = totalRealizedProfit.add(totalEstimatedProfit);
-        statistics.put("totalProfit", totalProfit.setScale(8, RoundingMode.HALF_UP));
-
-        // 计算总收益率
-        if (totalInvestmentAmount.compareTo(BigDecimal.ZERO) > 0) {
-            BigDecimal totalProfitRate = totalProfit.multiply(new BigDecimal("100")).divide(totalInvestmentAmount, 4, RoundingMode.HALF_UP);
-            statistics.put("totalProfitRate", totalProfitRate + "%");
-        } else {
-            statistics.put("totalProfitRate", "0.00%");
-        }
-
-        // 计算当日数据
-        //今天的开始时间
-        LocalDateTime startTime = LocalDateTime.now().with(LocalTime.MIN);
-        // 现在
-        LocalDateTime endTime = LocalDateTime.now();
-        List<RealTimeOrderEntity> todayOrderList = realTimeOrderRepository.findByCreateTimeBetweenOrderByCreateTimeDesc(startTime, endTime);
-        Double todayProfit = todayOrderList.stream().filter(order -> order.getSide().equals("SELL")).map(x -> x.getProfit().doubleValue()).reduce(Double::sum).orElseGet(() -> 0.0);
-        statistics.put("todaysingalCount", todayOrderList.size());
-        statistics.put("todayProfit", todayProfit);
-
-        // 计算收益排行
-        Map<String, Double> profitByStrategyName = allRunningStrategies.values().stream().collect(Collectors.groupingBy(x -> x.getStrategyName()))
-                .entrySet().stream().map(x -> Pair.of(x.getKey(), x.getValue().stream().map(y -> y.getTotalProfit()).reduce(Double::sum).get()))
-                .collect(Collectors.toMap(Pair::getKey, Pair::getValue));
-        Map<String, Double> profitByStrategySymbol = allRunningStrategies.values().stream().collect(Collectors.groupingBy(x -> x.getSymbol()))
-                .entrySet().stream().map(x -> Pair.of(x.getKey(), x.getValue().stream().map(y -> y.getTotalProfit()).reduce(Double::sum).get()))
-                .collect(Collectors.toMap(Pair::getKey, Pair::getValue));
-        statistics.put("profitByStrategyName", profitByStrategyName);
-        statistics.put("profitByStrategySymbol", profitByStrategySymbol);
-
-
-        result.put("statistics", statistics);
-        return result;
+        // 持仓组合由成交和行情推送增量维护，这里直接返回最近一次生成的快照
+        return portfolioSnapshotService.getSnapshot();
     }
 }
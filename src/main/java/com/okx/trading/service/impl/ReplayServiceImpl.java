@@ -0,0 +1,547 @@
+package com.okx.trading.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.adapter.CandlestickBarSeriesConverter;
+import com.okx.trading.event.WebSocketReconnectEvent;
+import com.okx.trading.model.dto.ReplayRequestDTO;
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.model.entity.RealTimeOrderEntity;
+import com.okx.trading.model.entity.RealTimeStrategyEntity;
+import com.okx.trading.model.market.Candlestick;
+import com.okx.trading.model.trade.Order;
+import com.okx.trading.repository.CandlestickRepository;
+import com.okx.trading.service.*;
+import com.okx.trading.strategy.RealTimeStrategyManager;
+import com.okx.trading.strategy.StrategyRegisterCenter;
+import com.okx.trading.util.SimulatedClock;
+import com.okx.trading.util.TickTrace;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.ta4j.core.BarSeries;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 行情回放实现
+ * <p>
+ * 每次回放新建一个 RealTimeStrategyManager，K线的解析、分发、信号判断和下单都走实盘代码，
+ * 只替换不应被回放影响的部分：时钟换成模拟时钟，交易日志只记录在内存中，不发送通知，
+ * 策略不写入数据库也不订阅行情。订单直接发给本次回放新建的 OkxApiMockServiceImpl 实例，
+ * 按回放到的收盘价成交，与节点使用的下单服务无关，实盘节点上也可以回放。
+ * 下单和成交记录在回放专用的线程池中执行，不占用实盘交易线程。
+ * <p>
+ * 每条K线分发后等待本次触发的交易全部完成再处理下一条，交易顺序与线程调度无关，
+ * 同样的输入总是产生同样的交易日志。
+ * <p>
+ * 消息帧文件和交易日志基准文件只能位于回放目录内，请求中的路径按回放目录解析。
+ */
+@Slf4j
+@Service
+public class ReplayServiceImpl implements ReplayService {
+
+    private static final ZoneId ZONE = ZoneId.of("UTC+8");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * 没有录制接收时间的K线视为在收盘前1秒推送，落在策略管理器收盘前15秒的交易窗口内
+     */
+    private static final long PUSH_BEFORE_CLOSE_SECONDS = 1;
+
+    private final RealTimeOrderService realTimeOrderService;
+    private final HistoricalDataService historicalDataService;
+    private final CandlestickBarSeriesConverter barSeriesConverter;
+    private final StrategyInfoService strategyInfoService;
+    private final CandlestickRepository candlestickRepository;
+    private final Environment environment;
+    private final ExecutorService executorService;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * 回放目录，消息帧文件和交易日志基准文件都在此目录下
+     */
+    @Value("${okx.replay.dir:data/replay}")
+    private String replayDir;
+
+    @Value("${okx.order.fill-timeout-ms:3000}")
+    private long orderFillTimeoutMs = 3000;
+
+    public ReplayServiceImpl(RealTimeOrderService realTimeOrderService,
+                             HistoricalDataService historicalDataService,
+                             CandlestickBarSeriesConverter barSeriesConverter,
+                             StrategyInfoService strategyInfoService,
+                             CandlestickRepository candlestickRepository,
+                             Environment environment,
+                             @Qualifier("replayExecutorService") ExecutorService executorService) {
+        this.realTimeOrderService = realTimeOrderService;
+        this.historicalDataService = historicalDataService;
+        this.barSeriesConverter = barSeriesConverter;
+        this.strategyInfoService = strategyInfoService;
+        this.candlestickRepository = candlestickRepository;
+        this.environment = environment;
+        this.executorService = executorService;
+    }
+
+    @Override
+    public Map<String, Object> replay(ReplayRequestDTO request) {
+        for (String strategyCode : request.getStrategyCodes()) {
+            if (!StrategyRegisterCenter.strategyCreators.containsKey(strategyCode)) {
+                throw new IllegalArgumentException("不支持的策略类型: " + strategyCode);
+            }
+        }
+        Path framesFile = StringUtils.isNotBlank(request.getFramesFile()) ? resolveReplayFile(request.getFramesFile()) : null;
+        Path goldenFile = StringUtils.isNotBlank(request.getGoldenFile()) ? resolveReplayFile(request.getGoldenFile()) : null;
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("已有行情回放正在运行");
+        }
+        try {
+            ReplaySession session = new ReplaySession(request, goldenFile);
+            if (framesFile != null) {
+                replayFrames(session, framesFile);
+            } else {
+                replayHistory(session, request);
+            }
+            Map<String, Object> report = session.report();
+            log.info("行情回放完成: 事件 {} 条, K线 {} 根, 交易 {} 笔, 耗时 {} ms",
+                    report.get("events"), report.get("candles"), report.get("trades"), report.get("elapsedMs"));
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 按回放目录解析请求中的文件路径，规范化后不在回放目录内的路径（如含 .. 或指向其他目录的绝对路径）拒绝
+     */
+    private Path resolveReplayFile(String file) {
+        Path dir = Paths.get(replayDir).toAbsolutePath().normalize();
+        Path path = dir.resolve(file).normalize();
+        if (!path.startsWith(dir)) {
+            throw new IllegalArgumentException("文件不在回放目录内: " + file);
+        }
+        return path;
+    }
+
+    /**
+     * 回放录制的消息帧，逐行读取，非K线消息跳过
+     */
+    private void replayFrames(ReplaySession session, Path path) {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                Instant receivedAt = null;
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    receivedAt = Instant.ofEpochMilli(Long.parseLong(line.substring(0, tab).trim()));
+                    line = line.substring(tab + 1);
+                }
+
+                long parseStart = System.nanoTime();
+                JSONObject message = JSON.parseObject(line);
+                if (!message.containsKey("arg") || !message.containsKey("data")
+                        || !StringUtils.startsWith(message.getJSONObject("arg").getString("channel"), "candle")) {
+                    continue;
+                }
+                List<Candlestick> candlesticks = OkxApiWebSocketServiceImpl.parseKlineMessage(message);
+                session.onEvent(candlesticks, receivedAt, System.nanoTime() - parseStart);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取消息帧文件失败: " + path, e);
+        }
+    }
+
+    /**
+     * 回放 candlestick_history 中的K线，每根已收盘K线作为一次收盘前的推送
+     */
+    private void replayHistory(ReplaySession session, ReplayRequestDTO request) {
+        if (StringUtils.isAnyBlank(request.getSymbol(), request.getInterval(), request.getStartTime(), request.getEndTime())) {
+            throw new IllegalArgumentException("未指定消息帧文件时，交易对、K线周期和时间范围不能为空");
+        }
+        List<CandlestickEntity> entities = candlestickRepository.findBySymbolAndIntervalAndOpenTimeBetweenOrderByOpenTimeAsc(
+                request.getSymbol(), request.getInterval(),
+                LocalDateTime.parse(request.getStartTime(), DATE_FORMAT), LocalDateTime.parse(request.getEndTime(), DATE_FORMAT));
+        for (CandlestickEntity entity : entities) {
+            long parseStart = System.nanoTime();
+            Candlestick candlestick = Candlestick.builder()
+                    .symbol(entity.getSymbol())
+                    .channel("candle" + entity.getIntervalVal())
+                    .intervalVal(entity.getIntervalVal())
+                    .openTime(entity.getOpenTime())
+                    .open(entity.getOpen())
+                    .high(entity.getHigh())
+                    .low(entity.getLow())
+                    .close(entity.getClose())
+                    .volume(entity.getVolume())
+                    .quoteVolume(entity.getQuoteVolume())
+                    .state(1)
+                    .build();
+            session.onEvent(Collections.singletonList(candlestick), null, System.nanoTime() - parseStart);
+        }
+    }
+
+    /**
+     * 一次回放的状态
+     */
+    private final class ReplaySession {
+
+        private final ReplayRequestDTO request;
+        private final Path goldenFile;
+        private final OkxApiMockServiceImpl mockService;
+        private final SimulatedClock clock = new SimulatedClock(Instant.EPOCH, ZONE);
+        private final ReplayTradeJournal journal = new ReplayTradeJournal();
+        private final LatencyTraceServiceImpl latencyTraceService = new LatencyTraceServiceImpl();
+        private final RealTimeStrategyManager manager;
+
+        /**
+         * 尚未开始分发的交易对和周期已收到的预热K线，key: symbol_interval
+         */
+        private final Map<String, List<CandlestickEntity>> warmups = new HashMap<>();
+        private final Set<String> startedKeys = new HashSet<>();
+        private final List<String> tradeLog = new ArrayList<>();
+        private long nextStrategyId = 1;
+
+        private long events;
+        private long candles;
+        private long dispatched;
+        private final long startNanos = System.nanoTime();
+        private Instant firstEventTime;
+        private Instant lastEventTime;
+
+        /**
+         * @param goldenFile 已按回放目录解析的交易日志基准文件，为空时不比对
+         */
+        private ReplaySession(ReplayRequestDTO request, Path goldenFile) {
+            this.request = request;
+            this.goldenFile = goldenFile;
+            this.mockService = OkxApiMockServiceImpl.isolated(clock, orderFillTimeoutMs);
+            this.manager = new RealTimeStrategyManager(null, realTimeOrderService, historicalDataService,
+                    mockService, null, barSeriesConverter, strategyInfoService, null, new SilentNotificationService(),
+                    journal, latencyTraceService, executorService, null, environment);
+            this.manager.setClock(clock);
+        }
+
+        /**
+         * 处理一条消息中的K线：按倍速等待到事件时间，推进模拟时钟，逐根分发并等待触发的交易完成
+         *
+         * @param receivedAt 录制的接收时间，为空时按最后一根K线收盘前推送计算
+         * @param parseNanos 解析耗时，计入延迟追踪的解析阶段
+         */
+        private void onEvent(List<Candlestick> candlesticks, Instant receivedAt, long parseNanos) {
+            if (candlesticks.isEmpty()) {
+                return;
+            }
+            events++;
+            Instant eventTime = receivedAt != null ? receivedAt : pushTime(candlesticks.get(candlesticks.size() - 1));
+            pace(eventTime);
+            clock.setInstant(eventTime);
+
+            long receivedNanos = System.nanoTime() - parseNanos;
+            for (Candlestick candlestick : candlesticks) {
+                candles++;
+                String key = candlestick.getSymbol() + "_" + candlestick.getIntervalVal();
+                if (!startedKeys.contains(key) && !warmUp(key, candlestick)) {
+                    continue;
+                }
+                mockService.updateLastPrice(candlestick.getSymbol(), candlestick.getClose());
+                candlestick.setTrace(TickTrace.start("replay", candlestick.getSymbol(), candlestick.getIntervalVal(), receivedNanos));
+                manager.handleNewKlineData(candlestick.getSymbol(), candlestick.getIntervalVal(), candlestick);
+                dispatched++;
+                awaitTrades();
+                List<String> lines = journal.drain();
+                Collections.sort(lines);
+                tradeLog.addAll(lines);
+            }
+        }
+
+        private Instant pushTime(Candlestick candlestick) {
+            long intervalMinutes = historicalDataService.getIntervalMinutes(candlestick.getIntervalVal());
+            return candlestick.getOpenTime().plusMinutes(intervalMinutes).minusSeconds(PUSH_BEFORE_CLOSE_SECONDS)
+                    .atZone(ZONE).toInstant();
+        }
+
+        /**
+         * 按倍速等待：第一条事件为起点，之后每条事件在 (事件时间 - 起点) / 倍速 后处理，倍速为0时不等待
+         */
+        private void pace(Instant eventTime) {
+            if (firstEventTime == null) {
+                firstEventTime = eventTime;
+            }
+            if (lastEventTime == null || eventTime.isAfter(lastEventTime)) {
+                lastEventTime = eventTime;
+            }
+            if (request.getSpeed() <= 0) {
+                return;
+            }
+            long dueNanos = startNanos + (long) ((eventTime.toEpochMilli() - firstEventTime.toEpochMilli()) * 1_000_000L / request.getSpeed());
+            long waitNanos = dueNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("行情回放被中断", e);
+                }
+            }
+        }
+
+        /**
+         * 收集预热K线，同一周期的推送只保留最新一条。
+         * 预热K线数量足够后，收到下一周期的第一条K线时启动该交易对和周期的策略
+         *
+         * @return 是否已启动策略，当前K线需要分发
+         */
+        private boolean warmUp(String key, Candlestick candlestick) {
+            List<CandlestickEntity> bars = warmups.computeIfAbsent(key, k -> new ArrayList<>());
+            CandlestickEntity last = bars.isEmpty() ? null : bars.get(bars.size() - 1);
+            if (last != null && !candlestick.getOpenTime().isAfter(last.getOpenTime())) {
+                if (candlestick.getOpenTime().equals(last.getOpenTime())) {
+                    bars.set(bars.size() - 1, toEntity(candlestick));
+                }
+                return false;
+            }
+            if (bars.size() < request.getWarmupBars()) {
+                bars.add(toEntity(candlestick));
+                return false;
+            }
+            startStrategies(candlestick.getSymbol(), candlestick.getIntervalVal(), warmups.remove(key));
+            startedKeys.add(key);
+            return true;
+        }
+
+        /**
+         * 与 startExecuteRealTimeStrategy 相同地准备BarSeries和策略，但不写数据库、不订阅行情
+         */
+        private void startStrategies(String symbol, String interval, List<CandlestickEntity> bars) {
+            BarSeries series = barSeriesConverter.convert(bars, symbol);
+            manager.getRunningBarSeries().put(symbol + "_" + interval, series);
+            for (String strategyCode : request.getStrategyCodes()) {
+                RealTimeStrategyEntity state = new RealTimeStrategyEntity();
+                state.setId(nextStrategyId++);
+                state.setStrategyCode(strategyCode);
+                state.setStrategyName(strategyCode);
+                state.setSymbol(symbol);
+                state.setInterval(interval);
+                state.setTradeAmount(request.getTradeAmount());
+                state.setStartTime(LocalDateTime.now(clock));
+                state.setStrategy(StrategyRegisterCenter.createStrategy(series, strategyCode));
+                manager.getRunningStrategies().put(state.getId(), state);
+            }
+            log.info("行情回放开始分发: {} {}, 预热K线 {} 根, 策略 {}", symbol, interval, bars.size(), request.getStrategyCodes());
+        }
+
+        private CandlestickEntity toEntity(Candlestick candlestick) {
+            long intervalMinutes = historicalDataService.getIntervalMinutes(candlestick.getIntervalVal());
+            return CandlestickEntity.builder()
+                    .symbol(candlestick.getSymbol())
+                    .intervalVal(candlestick.getIntervalVal())
+                    .openTime(candlestick.getOpenTime())
+                    .closeTime(candlestick.getOpenTime().plusMinutes(intervalMinutes))
+                    .open(candlestick.getOpen())
+                    .high(candlestick.getHigh())
+                    .low(candlestick.getLow())
+                    .close(candlestick.getClose())
+                    .volume(candlestick.getVolume())
+                    .quoteVolume(candlestick.getQuoteVolume())
+                    .build();
+        }
+
+        /**
+         * 等待本次分发触发的交易记录完成，交易在分发时已登记到策略管理器
+         */
+        private void awaitTrades() {
+            try {
+                manager.awaitPendingTrades().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("行情回放被中断", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("行情回放交易失败", e.getCause());
+            }
+        }
+
+        private Map<String, Object> report() {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("source", StringUtils.isNotBlank(request.getFramesFile()) ? request.getFramesFile() : "candlestick_history");
+            report.put("speed", request.getSpeed());
+            report.put("events", events);
+            report.put("candles", candles);
+            report.put("dispatched", dispatched);
+            report.put("strategies", manager.getRunningStrategies().size());
+            report.put("trades", tradeLog.size());
+            report.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            report.put("candlesPerSecond", elapsedNanos > 0 ? candles * 1_000_000_000.0 / elapsedNanos : 0.0);
+            report.put("simulatedStart", firstEventTime != null ? LocalDateTime.ofInstant(firstEventTime, ZONE).format(DATE_FORMAT) : null);
+            report.put("simulatedEnd", lastEventTime != null ? LocalDateTime.ofInstant(lastEventTime, ZONE).format(DATE_FORMAT) : null);
+            report.put("latency", latencyTraceService.getPercentiles(null, null));
+            report.put("tradeLog", tradeLog);
+            if (goldenFile != null) {
+                report.put("golden", compareGolden());
+            }
+            return report;
+        }
+
+        /**
+         * 与基准文件逐行比对交易日志；要求更新基准时先写入本次交易日志
+         */
+        private Map<String, Object> compareGolden() {
+            Map<String, Object> golden = new LinkedHashMap<>();
+            golden.put("file", request.getGoldenFile());
+            try {
+                if (request.isUpdateGolden()) {
+                    if (goldenFile.getParent() != null) {
+                        Files.createDirectories(goldenFile.getParent());
+                    }
+                    Files.write(goldenFile, tradeLog, StandardCharsets.UTF_8);
+                    golden.put("updated", true);
+                }
+                if (!Files.exists(goldenFile)) {
+                    golden.put("matched", false);
+                    golden.put("message", "基准文件不存在");
+                    return golden;
+                }
+                List<String> expected = new ArrayList<>();
+                for (String line : Files.readAllLines(goldenFile, StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) {
+                        expected.add(line.trim());
+                    }
+                }
+                golden.put("expectedTrades", expected.size());
+                golden.put("matched", expected.equals(tradeLog));
+                for (int i = 0; i < Math.max(expected.size(), tradeLog.size()); i++) {
+                    String expectedLine = i < expected.size() ? expected.get(i) : null;
+                    String actualLine = i < tradeLog.size() ? tradeLog.get(i) : null;
+                    if (!Objects.equals(expectedLine, actualLine)) {
+                        golden.put("firstMismatchLine", i + 1);
+                        golden.put("expected", expectedLine);
+                        golden.put("actual", actualLine);
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("读写交易日志基准文件失败: " + request.getGoldenFile(), e);
+            }
+            return golden;
+        }
+    }
+
+    /**
+     * 回放使用的交易日志，成交和状态变化转换为一行文本暂存，由回放线程取出
+     */
+    private static final class ReplayTradeJournal implements TradeJournalService {
+
+        private final List<String> pending = new ArrayList<>();
+        private long trades;
+
+        @Override
+        public synchronized void recordTrade(RealTimeStrategyEntity state, RealTimeOrderEntity order) {
+            trades++;
+            pending.add(String.join(" ",
+                    order.getSingalTime().format(DATE_FORMAT),
+                    state.getStrategyCode(), state.getSymbol(), state.getInterval(), order.getSide(),
+                    "price=" + plain(order.getPrice()),
+                    "qty=" + plain(order.getExecutedQty()),
+                    "amount=" + plain(order.getExecutedAmount()),
+                    "fee=" + plain(order.getFee()),
+                    "status=" + order.getStatus()));
+        }
+
+        @Override
+        public synchronized void recordStatus(RealTimeStrategyEntity state) {
+            LocalDateTime time = state.getEndTime() != null ? state.getEndTime() : state.getUpdateTime();
+            pending.add(String.join(" ",
+                    time != null ? time.format(DATE_FORMAT) : "-",
+                    state.getStrategyCode(), state.getSymbol(), state.getInterval(), "STATUS", state.getStatus()));
+        }
+
+        @Override
+        public RealTimeStrategyEntity reconcile(RealTimeStrategyEntity state) {
+            return state;
+        }
+
+        @Override
+        public List<RealTimeStrategyEntity> reconcileAll(List<RealTimeStrategyEntity> states) {
+            return states;
+        }
+
+        @Override
+        public int flush() {
+            return 0;
+        }
+
+        @Override
+        public synchronized Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("trades", trades);
+            stats.put("pending", pending.size());
+            return stats;
+        }
+
+        private synchronized List<String> drain() {
+            List<String> lines = new ArrayList<>(pending);
+            pending.clear();
+            return lines;
+        }
+
+        private static String plain(BigDecimal value) {
+            return value == null ? "-" : value.stripTrailingZeros().toPlainString();
+        }
+    }
+
+    /**
+     * 回放不发送交易和告警通知
+     */
+    private static final class SilentNotificationService implements NotificationService {
+
+        @Override
+        public void onWebSocketReconnect(WebSocketReconnectEvent event) {
+        }
+
+        @Override
+        public boolean sendTradeNotification(RealTimeStrategyEntity strategy, Order order, String side, String signalPrice) {
+            return false;
+        }
+
+        @Override
+        public boolean sendStrategyErrorNotification(RealTimeStrategyEntity strategy, String errorMessage) {
+            return false;
+        }
+
+        @Override
+        public void updateLatestPrice(String symbol, BigDecimal price) {
+        }
+
+        @Override
+        public void monitorPrice() {
+        }
+
+        @Override
+        public void sendStrategyStateEmail() {
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package com.okx.trading.service.impl;
 
 import com.okx.trading.model.entity.StrategyInfoEntity;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.ta4j.core.BarSeries;
 import org.ta4j.core.Strategy;
@@ -11,18 +11,31 @@ import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 /**
  * 智能动态策略服务
  * 结合Java Compiler API和Janino，并能自动修复常见编译错误
+ * 批量编译时先把全部源代码交给 javac 批量编译，只有编译失败的策略才进入自动修复和Janino
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class SmartDynamicStrategyService {
 
     private final JavaCompilerDynamicStrategyService javaCompilerService;
     private final DynamicStrategyService janinoService;
+    private final ExecutorService strategyCompileExecutorService;
+
+    public SmartDynamicStrategyService(JavaCompilerDynamicStrategyService javaCompilerService,
+                                       DynamicStrategyService janinoService,
+                                       @Qualifier("strategyCompileExecutorService") ExecutorService strategyCompileExecutorService) {
+        this.javaCompilerService = javaCompilerService;
+        this.janinoService = janinoService;
+        this.strategyCompileExecutorService = strategyCompileExecutorService;
+    }
 
     /**
      * 智能编译策略代码，自动修复常见错误并选择最佳编译器
@@ -53,6 +66,48 @@ public class SmartDynamicStrategyService {
             }
         }
 
+        return compileWithFixes(strategyCode, strategyEntity);
+    }
+
+    /**
+     * 批量编译并加载策略
+     * 全部源代码先由 javac 批量并行编译，编译失败的策略再并行进行自动修复和Janino编译
+     *
+     * @param strategies 策略，使用其中的 sourceCode
+     * @return 策略代码 -> 错误信息，只包含最终编译失败的策略
+     */
+    public Map<String, String> compileAndLoadStrategies(List<StrategyInfoEntity> strategies) {
+        Map<String, String> directErrors = javaCompilerService.compileAndLoadStrategies(strategies);
+        if (directErrors.isEmpty()) {
+            return directErrors;
+        }
+        log.info("🔧 {} 个策略直接编译失败，开始自动修复", directErrors.size());
+
+        Map<String, String> errors = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> retries = new ArrayList<>();
+        for (StrategyInfoEntity strategy : strategies) {
+            if (!directErrors.containsKey(strategy.getStrategyCode())) {
+                continue;
+            }
+            retries.add(CompletableFuture.runAsync(() -> {
+                try {
+                    compileWithFixes(strategy.getSourceCode(), strategy);
+                } catch (Exception e) {
+                    errors.put(strategy.getStrategyCode(), e.getMessage());
+                }
+            }, strategyCompileExecutorService).exceptionally(e -> {
+                errors.putIfAbsent(strategy.getStrategyCode(), String.valueOf(e.getMessage()));
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(retries.toArray(new CompletableFuture[0])).join();
+        return errors;
+    }
+
+    /**
+     * 修复常见错误后编译，Java Compiler API失败时使用Janino
+     */
+    private Function<BarSeries, Strategy> compileWithFixes(String strategyCode, StrategyInfoEntity strategyEntity) {
         // 第二步：如果直接编译失败，进行错误修复后再编译
         log.info("🔧 开始自动修复策略代码错误...");
         String originalCode = strategyCode;
@@ -1531,7 +1586,7 @@ public class SmartDynamicStrategyService {
      */
     public void loadAllDynamicStrategies() {
         try {
-            javaCompilerService.loadAllDynamicStrategies();
+            javaCompilerService.loadAllDynamicStrategies(this::compileAndLoadStrategies);
         } catch (Exception e) {
             log.warn("Java Compiler API加载失败，回退到Janino: {}", e.getMessage());
             janinoService.loadAllDynamicStrategies();
@@ -0,0 +1,186 @@
+package com.okx.trading.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ta4j.core.BarSeries;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.CodeSource;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 动态策略字节码的本地存储
+ * <p>
+ * 以源代码哈希为键，每份源代码编译出的全部类保存在一个文件中。源代码不变时重启直接加载字节码，不再调用 javac。
+ * 哈希包含存储格式版本、JDK 主版本、应用构建版本和 ta4j 版本，升级 JDK、重新发布应用或升级 ta4j 后自动重新编译，
+ * 避免加载按旧的类签名编译出的字节码。写入先写临时文件再原子替换，读取失败的文件直接删除。
+ */
+@Slf4j
+public class StrategyBytecodeStore {
+
+    private static final int MAGIC = 0x4F4B5342;
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".classes";
+
+    /**
+     * 编译环境指纹：应用和 ta4j 的版本及所在 jar，进程内不变
+     */
+    private static final String ENVIRONMENT = Runtime.version().feature()
+            + "|" + fingerprint(StrategyBytecodeStore.class)
+            + "|" + fingerprint(BarSeries.class);
+
+    private final Path directory;
+
+    public StrategyBytecodeStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 计算源代码的缓存键
+     */
+    public static String hash(String source) {
+        return hash(source, ENVIRONMENT);
+    }
+
+    static String hash(String source, String environment) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((FORMAT_VERSION + "|" + environment + "|").getBytes(StandardCharsets.UTF_8));
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 读取字节码
+     *
+     * @return 类的全名 -> 字节码，不存在或文件损坏时返回null
+     */
+    public Map<String, byte[]> load(String hash) {
+        Path file = directory.resolve(hash + SUFFIX);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("文件格式不匹配");
+            }
+            int count = in.readInt();
+            Map<String, byte[]> classes = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String className = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes.put(className, bytes);
+            }
+            return classes;
+        } catch (IOException e) {
+            log.warn("读取策略字节码缓存失败，将重新编译: {}, {}", file, e.getMessage());
+            delete(file);
+            return null;
+        }
+    }
+
+    /**
+     * 保存字节码，失败只记录日志
+     */
+    public void save(String hash, Map<String, byte[]> classes) {
+        Path target = directory.resolve(hash + SUFFIX);
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, hash, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(classes.size());
+                for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("保存策略字节码缓存失败: {}, {}", target, e.getMessage());
+            if (temp != null) {
+                delete(temp);
+            }
+        }
+    }
+
+    /**
+     * 删除不在 keep 中的缓存文件
+     *
+     * @return 删除的文件数
+     */
+    public int prune(Set<String> keep) {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                String hash = name.endsWith(SUFFIX) ? name.substring(0, name.length() - SUFFIX.length()) : null;
+                if (hash == null || !keep.contains(hash)) {
+                    if (delete(file)) {
+                        deleted++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理策略字节码缓存失败: {}", e.getMessage());
+        }
+        return deleted;
+    }
+
+    /**
+     * 类所在构件的指纹：清单中的实现版本，加上 jar 或类目录的位置；位置是文件时再加上大小和修改时间
+     */
+    static String fingerprint(Class<?> type) {
+        StringBuilder fingerprint = new StringBuilder();
+        Package pkg = type.getPackage();
+        fingerprint.append(pkg == null ? null : pkg.getImplementationVersion());
+        CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        URL location = codeSource == null ? null : codeSource.getLocation();
+        if (location != null) {
+            fingerprint.append('@').append(location);
+            try {
+                Path file = Paths.get(location.toURI());
+                if (Files.isRegularFile(file)) {
+                    fingerprint.append('@').append(Files.size(file)).append('@').append(Files.getLastModifiedTime(file).toMillis());
+                }
+            } catch (Exception e) {
+                // 嵌套在 Spring Boot jar 中的位置不是文件，只使用版本和位置
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    private static boolean delete(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除策略字节码缓存文件失败: {}", file, e);
+            return false;
+        }
+    }
+}
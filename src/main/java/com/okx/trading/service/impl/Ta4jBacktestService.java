@@ -20,6 +20,7 @@ import com.okx.trading.model.entity.CandlestickEntity;
 import com.okx.trading.strategy.BacktestMetricsCalculator;
 import com.okx.trading.strategy.StrategyRegisterCenter;
 import com.okx.trading.adapter.CandlestickBarSeriesConverter;
+import com.okx.trading.util.TradingMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -61,6 +62,14 @@ public class Ta4jBacktestService {
      */
     public BacktestResultDTO backtest(BarSeries series, List<CandlestickEntity> benchmarkCandlesticks, String strategyType,
                                       BigDecimal initialAmount, BigDecimal feeRatio, String interval) {
+        long startNanos = System.nanoTime();
+        BacktestResultDTO result = runBacktest(series, benchmarkCandlesticks, strategyType, initialAmount, feeRatio, interval);
+        TradingMetrics.recordBacktest(strategyType, result.isSuccess(), System.nanoTime() - startNanos);
+        return result;
+    }
+
+    private BacktestResultDTO runBacktest(BarSeries series, List<CandlestickEntity> benchmarkCandlesticks, String strategyType,
+                                          BigDecimal initialAmount, BigDecimal feeRatio, String interval) {
         // loadLoggerConfiguration();
         try {
             // 使用策略工厂创建策略
@@ -0,0 +1,118 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.market.Ticker;
+import com.okx.trading.service.TickerBookService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内存行情簿实现
+ * 每个交易对保存最新行情和接收时间，读写都是单次 ConcurrentHashMap 操作
+ */
+@Slf4j
+@Service
+public class TickerBookServiceImpl implements TickerBookService {
+
+    /**
+     * 单个交易对行情的有效期，超过后回退到REST
+     */
+    @Value("${okx.ticker-book.max-age-ms:5000}")
+    private long maxAgeMs = 5000;
+
+    /**
+     * 全量行情的有效期，未订阅推送的交易对只在全量刷新时更新
+     */
+    @Value("${okx.ticker-book.all-max-age-ms:30000}")
+    private long allMaxAgeMs = 30000;
+
+    private final Map<String, Entry> book = new ConcurrentHashMap<>();
+    private volatile long lastFullRefreshMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private static final class Entry {
+        private final Ticker ticker;
+        private final long receivedAt;
+
+        private Entry(Ticker ticker, long receivedAt) {
+            this.ticker = ticker;
+            this.receivedAt = receivedAt;
+        }
+    }
+
+    @Override
+    public void update(Ticker ticker) {
+        if (ticker == null || ticker.getSymbol() == null || ticker.getLastPrice() == null) {
+            return;
+        }
+        book.put(ticker.getSymbol(), new Entry(ticker, System.currentTimeMillis()));
+    }
+
+    @Override
+    public void updateAll(List<Ticker> tickers) {
+        long now = System.currentTimeMillis();
+        for (Ticker ticker : tickers) {
+            if (ticker != null && ticker.getSymbol() != null && ticker.getLastPrice() != null) {
+                // 推送的行情可能比全量结果更新，按交易所时间戳保留较新的一条
+                book.merge(ticker.getSymbol(), new Entry(ticker, now), (old, fresh) -> isNewer(old.ticker, fresh.ticker) ? old : fresh);
+            }
+        }
+        lastFullRefreshMillis = now;
+    }
+
+    private static boolean isNewer(Ticker a, Ticker b) {
+        return a.getTimestamp() != null && b.getTimestamp() != null && a.getTimestamp().isAfter(b.getTimestamp());
+    }
+
+    @Override
+    public Ticker getFresh(String symbol) {
+        Entry entry = book.get(symbol);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.receivedAt > maxAgeMs) {
+            stale.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.ticker;
+    }
+
+    @Override
+    public List<Ticker> getAllIfFresh() {
+        if (System.currentTimeMillis() - lastFullRefreshMillis > allMaxAgeMs) {
+            return null;
+        }
+        List<Ticker> tickers = new ArrayList<>(book.size());
+        for (Entry entry : book.values()) {
+            tickers.add(entry.ticker);
+        }
+        return tickers;
+    }
+
+    @Override
+    public void remove(String symbol) {
+        book.remove(symbol);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("symbols", book.size());
+        stats.put("hits", hits.sum());
+        stats.put("stale", stale.sum());
+        stats.put("misses", misses.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,518 @@
+package com.okx.trading.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.model.entity.RealTimeOrderEntity;
+import com.okx.trading.model.entity.RealTimeStrategyEntity;
+import com.okx.trading.repository.RealTimeOrderRepository;
+import com.okx.trading.repository.RealTimeStrategyRepository;
+import com.okx.trading.service.TradeJournalService;
+import com.okx.trading.util.TradingMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 实时交易写后日志服务实现
+ * <p>
+ * 日志文件每行一条JSON记录：
+ * <ul>
+ *     <li>TRADE：成交后的策略快照 + 订单记录</li>
+ *     <li>STATUS：策略运行状态快照（启停、错误）</li>
+ * </ul>
+ * 追加时按配置执行 fsync，保证写入返回后记录不会因进程崩溃丢失。
+ * 后台线程按固定间隔把待写入记录合并后批量写入数据库：同一策略只写最后一次快照，订单批量插入；
+ * 待写入记录全部落库后清空日志文件。启动时重放日志，已存在的订单（按orderId）不会重复插入。
+ * <p>
+ * 一批记录在同一个事务中写入。整批失败时逐条重试，同一策略的记录按顺序写入，前一条失败时后面的记录留到下次；
+ * 单条记录多次写入失败（如违反约束）后移入死信文件，不再阻塞其他记录。数据库不可用时不计失败次数，全部保留等待重试。
+ */
+@Slf4j
+@Service
+public class TradeJournalServiceImpl implements TradeJournalService {
+
+    static final String JOURNAL_FILE = "trade-journal.log";
+    static final String DEAD_LETTER_FILE = "trade-journal.dead.log";
+    static final String TYPE_TRADE = "TRADE";
+    static final String TYPE_STATUS = "STATUS";
+
+    private final RealTimeStrategyRepository realTimeStrategyRepository;
+    private final RealTimeOrderRepository realTimeOrderRepository;
+    private final ScheduledExecutorService flushScheduler;
+
+    /**
+     * flush 在本类内部调用写库方法，不经过事务代理，由 TransactionTemplate 开启事务
+     */
+    @Autowired(required = false)
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${okx.journal.dir:data/trade-journal}")
+    private String journalDir = "data/trade-journal";
+
+    @Value("${okx.journal.flush-interval-ms:500}")
+    private long flushIntervalMs = 500;
+
+    @Value("${okx.journal.fsync:true}")
+    private boolean fsync = true;
+
+    @Value("${okx.journal.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    /**
+     * 保护日志文件和待写入队列；待写入队列只在队尾追加，只由flush从队头移除
+     */
+    private final Object journalLock = new Object();
+    private final Object flushLock = new Object();
+    private final List<JSONObject> pending = new ArrayList<>();
+    private FileChannel channel;
+    private Path journalFile;
+    private long sequence;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder flushBatches = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder journalFailures = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+
+    public TradeJournalServiceImpl(RealTimeStrategyRepository realTimeStrategyRepository,
+                                   RealTimeOrderRepository realTimeOrderRepository,
+                                   @Qualifier("tradeJournalFlushScheduler") ScheduledExecutorService flushScheduler) {
+        this.realTimeStrategyRepository = realTimeStrategyRepository;
+        this.realTimeOrderRepository = realTimeOrderRepository;
+        this.flushScheduler = flushScheduler;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path dir = Paths.get(journalDir);
+        Files.createDirectories(dir);
+        Path file = dir.resolve(JOURNAL_FILE);
+        replay(file);
+        journalFile = file;
+        channel = openJournal();
+
+        if (!pending.isEmpty()) {
+            log.info("交易日志恢复 {} 条未写入数据库的记录，开始补写", pending.size());
+            flush();
+        }
+        flushScheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("交易日志已启动: file={}, flushIntervalMs={}, fsync={}", file, flushIntervalMs, fsync);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        synchronized (journalLock) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                log.warn("关闭交易日志失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void recordTrade(RealTimeStrategyEntity state, RealTimeOrderEntity order) {
+        order.setStrategyId(state.getId());
+        JSONObject entry = new JSONObject();
+        entry.put("type", TYPE_TRADE);
+        entry.put("strategyId", state.getId());
+        entry.put("state", snapshot(state));
+        entry.put("order", JSON.parseObject(JSON.toJSONString(order)));
+        append(entry);
+    }
+
+    @Override
+    public void recordStatus(RealTimeStrategyEntity state) {
+        JSONObject entry = new JSONObject();
+        entry.put("type", TYPE_STATUS);
+        entry.put("strategyId", state.getId());
+        entry.put("state", snapshot(state));
+        append(entry);
+    }
+
+    @Override
+    public RealTimeStrategyEntity reconcile(RealTimeStrategyEntity state) {
+        if (state == null || state.getId() == null) {
+            return state;
+        }
+        synchronized (journalLock) {
+            for (JSONObject entry : pending) {
+                if (state.getId().equals(entry.getLong("strategyId"))) {
+                    apply(entry, state);
+                }
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public List<RealTimeStrategyEntity> reconcileAll(List<RealTimeStrategyEntity> states) {
+        if (states == null || states.isEmpty()) {
+            return states;
+        }
+        Map<Long, RealTimeStrategyEntity> byId = new HashMap<>();
+        for (RealTimeStrategyEntity state : states) {
+            if (state != null && state.getId() != null) {
+                byId.put(state.getId(), state);
+            }
+        }
+        synchronized (journalLock) {
+            for (JSONObject entry : pending) {
+                RealTimeStrategyEntity state = byId.get(entry.getLong("strategyId"));
+                if (state != null) {
+                    apply(entry, state);
+                }
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public int flush() {
+        synchronized (flushLock) {
+            List<JSONObject> batch;
+            synchronized (journalLock) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                batch = new ArrayList<>(pending);
+            }
+
+            long deadLetteredBefore = deadLettered.sum();
+            List<JSONObject> retained;
+            try {
+                writeInTransaction(batch);
+                retained = Collections.emptyList();
+            } catch (Exception e) {
+                flushFailures.increment();
+                log.warn("交易日志批量写入数据库失败，逐条重试 {} 条记录: {}", batch.size(), e.getMessage());
+                retained = retryEach(batch);
+            }
+
+            int removed = batch.size() - retained.size();
+            int written = removed - (int) (deadLettered.sum() - deadLetteredBefore);
+            synchronized (journalLock) {
+                pending.subList(0, batch.size()).clear();
+                pending.addAll(0, retained);
+                if (pending.isEmpty()) {
+                    truncateJournal();
+                } else if (removed > 0) {
+                    compactJournal();
+                }
+            }
+            if (written > 0) {
+                flushed.add(written);
+                flushBatches.increment();
+                log.debug("交易日志写入数据库: {} 条", written);
+            }
+            return written;
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (journalLock) {
+            stats.put("pending", pending.size());
+        }
+        stats.put("appended", appended.sum());
+        stats.put("flushed", flushed.sum());
+        stats.put("flushBatches", flushBatches.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("journalFailures", journalFailures.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("replayed", replayed.sum());
+        return stats;
+    }
+
+    private void append(JSONObject entry) {
+        synchronized (journalLock) {
+            entry.put("seq", ++sequence);
+            try {
+                write(channel, entry);
+            } catch (IOException e) {
+                // 日志写入失败时记录仍保留在内存中，由后台线程写入数据库
+                journalFailures.increment();
+                log.error("追加交易日志失败: strategyId={}, error={}", entry.getLong("strategyId"), e.getMessage(), e);
+            }
+            pending.add(entry);
+        }
+        appended.increment();
+    }
+
+    /**
+     * 整批失败后逐条写入，每条记录单独一个事务
+     *
+     * @return 未写入、需要保留的记录，保持原有顺序
+     */
+    private List<JSONObject> retryEach(List<JSONObject> batch) {
+        List<JSONObject> retained = new ArrayList<>();
+        Set<Long> blockedStrategies = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            JSONObject entry = batch.get(i);
+            Long strategyId = entry.getLong("strategyId");
+            // 同一策略的记录是完整快照，前一条未写入时后面的也不能先写，否则旧快照会覆盖新快照
+            if (blockedStrategies.contains(strategyId)) {
+                retained.add(entry);
+                continue;
+            }
+            try {
+                writeInTransaction(Collections.singletonList(entry));
+            } catch (Exception e) {
+                if (isDatabaseUnavailable(e)) {
+                    retained.addAll(batch.subList(i, batch.size()));
+                    log.warn("数据库不可用，{} 条交易日志记录等待下次写入: {}", retained.size(), e.getMessage());
+                    return retained;
+                }
+                int attempts = entry.getIntValue("attempts") + 1;
+                entry.put("attempts", attempts);
+                if (attempts >= maxAttempts) {
+                    deadLetter(entry, e);
+                } else {
+                    log.warn("交易日志记录写入失败（第{}次）: strategyId={}, seq={}, error={}",
+                            attempts, strategyId, entry.getLong("seq"), e.getMessage());
+                    retained.add(entry);
+                    blockedStrategies.add(strategyId);
+                }
+            }
+        }
+        return retained;
+    }
+
+    private void writeInTransaction(List<JSONObject> batch) {
+        if (transactionTemplate == null) {
+            writeBatch(batch);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+    }
+
+    /**
+     * 连接、事务创建等数据库层面的失败与记录本身无关，不计入记录的失败次数
+     */
+    private static boolean isDatabaseUnavailable(Exception e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    /**
+     * 多次写入失败的记录追加到死信文件，附带最后一次的错误信息，需要人工处理
+     */
+    private void deadLetter(JSONObject entry, Exception error) {
+        JSONObject deadLetter = new JSONObject(new LinkedHashMap<>(entry));
+        deadLetter.put("error", error.getClass().getName() + ": " + error.getMessage());
+        Path file = journalFile.resolveSibling(DEAD_LETTER_FILE);
+        try (FileChannel deadLetterChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            write(deadLetterChannel, deadLetter);
+        } catch (IOException e) {
+            // 死信文件写入失败时仍丢弃该记录，避免阻塞后续写库，内容保留在错误日志中
+            log.error("写入交易日志死信文件失败: {}", deadLetter.toJSONString(), e);
+        }
+        deadLettered.increment();
+        log.error("交易日志记录写入数据库失败 {} 次，已移入死信文件 {}: strategyId={}, seq={}, error={}",
+                entry.getIntValue("attempts"), file, entry.getLong("strategyId"), entry.getLong("seq"), error.getMessage());
+    }
+
+    private void truncateJournal() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            log.warn("清空交易日志失败，重启时将重放已写入的记录: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 部分记录已写库或移入死信时，用剩余的待写入记录重写日志文件，日志文件不随失败的记录无限增长。
+     * 先写临时文件再替换，替换前崩溃时原日志仍完整
+     */
+    private void compactJournal() {
+        if (channel == null) {
+            return;
+        }
+        Path temp = journalFile.resolveSibling(JOURNAL_FILE + ".tmp");
+        try {
+            try (FileChannel tempChannel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (JSONObject entry : pending) {
+                    write(tempChannel, entry);
+                }
+            }
+            channel.close();
+            Files.move(temp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = openJournal();
+        } catch (IOException e) {
+            log.warn("重写交易日志失败，重启时将重放已写入的记录: {}", e.getMessage());
+            if (!channel.isOpen()) {
+                try {
+                    channel = openJournal();
+                } catch (IOException reopen) {
+                    log.error("重新打开交易日志失败: {}", reopen.getMessage(), reopen);
+                }
+            }
+        }
+    }
+
+    private FileChannel openJournal() throws IOException {
+        return FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void write(FileChannel target, JSONObject entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((entry.toJSONString() + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        if (fsync) {
+            target.force(false);
+        }
+    }
+
+    /**
+     * 合并一批日志记录后写入数据库：每个策略只更新一次，订单批量插入。
+     * 由 writeInTransaction 在一个事务中调用，中途失败时整批回滚，重试时不会重复插入
+     */
+    private void writeBatch(List<JSONObject> batch) {
+        Map<Long, List<JSONObject>> byStrategy = new LinkedHashMap<>();
+        List<RealTimeOrderEntity> orders = new ArrayList<>();
+        for (JSONObject entry : batch) {
+            byStrategy.computeIfAbsent(entry.getLong("strategyId"), k -> new ArrayList<>()).add(entry);
+            JSONObject order = entry.getJSONObject("order");
+            if (order == null) {
+                continue;
+            }
+            RealTimeOrderEntity orderEntity = order.toJavaObject(RealTimeOrderEntity.class);
+            // 重放的订单可能在崩溃前已经写入数据库
+            if (entry.getBooleanValue("replayed") && orderEntity.getOrderId() != null
+                    && realTimeOrderRepository.findByOrderId(orderEntity.getOrderId()) != null) {
+                continue;
+            }
+            orders.add(orderEntity);
+        }
+
+        List<RealTimeStrategyEntity> strategies = realTimeStrategyRepository.findAllById(byStrategy.keySet());
+        for (RealTimeStrategyEntity strategy : strategies) {
+            for (JSONObject entry : byStrategy.get(strategy.getId())) {
+                apply(entry, strategy);
+            }
+        }
+        TradingMetrics.recordJpaBatch("RealTimeStrategyEntity", strategies.size());
+        realTimeStrategyRepository.saveAll(strategies);
+        if (!orders.isEmpty()) {
+            TradingMetrics.recordJpaBatch("RealTimeOrderEntity", orders.size());
+            realTimeOrderRepository.saveAll(orders);
+        }
+    }
+
+    /**
+     * 启动时读取日志文件，最后一行不完整（写入时崩溃）时丢弃
+     */
+    private void replay(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JSONObject entry;
+            try {
+                entry = JSON.parseObject(line);
+            } catch (Exception e) {
+                log.warn("交易日志存在不完整的记录，已忽略: {}", line);
+                continue;
+            }
+            entry.put("replayed", true);
+            pending.add(entry);
+            sequence = Math.max(sequence, entry.getLongValue("seq"));
+            replayed.increment();
+        }
+    }
+
+    /**
+     * 策略需要持久化的交易状态和运行状态
+     */
+    static JSONObject snapshot(RealTimeStrategyEntity state) {
+        JSONObject snapshot = new JSONObject();
+        snapshot.put("lastTradeType", state.getLastTradeType());
+        snapshot.put("lastTradeAmount", state.getLastTradeAmount());
+        snapshot.put("lastTradePrice", state.getLastTradePrice());
+        snapshot.put("lastTradeQuantity", state.getLastTradeQuantity());
+        snapshot.put("lastTradeFee", state.getLastTradeFee());
+        snapshot.put("lastTradeTime", state.getLastTradeTime());
+        snapshot.put("lastSingalTime", state.getLastSingalTime());
+        snapshot.put("lastTradeProfit", state.getLastTradeProfit());
+        snapshot.put("totalProfit", state.getTotalProfit());
+        snapshot.put("totalProfitRate", state.getTotalProfitRate());
+        snapshot.put("totalFees", state.getTotalFees());
+        snapshot.put("totalTrades", state.getTotalTrades());
+        snapshot.put("successfulTrades", state.getSuccessfulTrades());
+        snapshot.put("isInPosition", state.getIsInPosition());
+        snapshot.put("isActive", state.getIsActive());
+        snapshot.put("status", state.getStatus());
+        snapshot.put("message", state.getMessage());
+        snapshot.put("endTime", state.getEndTime());
+        return JSON.parseObject(snapshot.toJSONString());
+    }
+
+    /**
+     * 把一条日志记录应用到策略上：TRADE 只更新交易字段，STATUS 只更新运行状态字段，
+     * 避免覆盖其他途径（如停止策略）直接写入数据库的字段
+     */
+    static void apply(JSONObject entry, RealTimeStrategyEntity target) {
+        JSONObject state = entry.getJSONObject("state");
+        if (TYPE_TRADE.equals(entry.getString("type"))) {
+            target.setLastTradeType(state.getString("lastTradeType"));
+            target.setLastTradeAmount(state.getDouble("lastTradeAmount"));
+            target.setLastTradePrice(state.getDouble("lastTradePrice"));
+            target.setLastTradeQuantity(state.getDouble("lastTradeQuantity"));
+            target.setLastTradeFee(state.getDouble("lastTradeFee"));
+            target.setLastTradeTime(state.getObject("lastTradeTime", LocalDateTime.class));
+            target.setLastSingalTime(state.getObject("lastSingalTime", LocalDateTime.class));
+            target.setLastTradeProfit(state.getDouble("lastTradeProfit"));
+            target.setTotalProfit(state.getDouble("totalProfit"));
+            target.setTotalProfitRate(state.getDouble("totalProfitRate"));
+            target.setTotalFees(state.getDouble("totalFees"));
+            target.setTotalTrades(state.getInteger("totalTrades"));
+            target.setSuccessfulTrades(state.getInteger("successfulTrades"));
+            target.setIsInPosition(state.getBoolean("isInPosition"));
+        } else if (TYPE_STATUS.equals(entry.getString("type"))) {
+            target.setIsActive(state.getBoolean("isActive"));
+            target.setStatus(state.getString("status"));
+            target.setMessage(state.getString("message"));
+            target.setEndTime(state.getObject("endTime", LocalDateTime.class));
+        }
+    }
+}
@@ -2,15 +2,20 @@ package com.okx.trading.strategy;
 
 import com.okx.trading.model.market.Candlestick;
 import com.okx.trading.model.trade.Order;
+import com.okx.trading.model.trade.OrderHandle;
+import com.okx.trading.model.trade.OrderRequest;
 import com.okx.trading.model.entity.RealTimeOrderEntity;
 import com.okx.trading.model.entity.RealTimeStrategyEntity;
 import com.okx.trading.adapter.CandlestickBarSeriesConverter;
 import com.okx.trading.repository.RealTimeStrategyRepository;
 import com.okx.trading.service.*;
-import com.okx.trading.controller.TradeController;
 import com.okx.trading.service.impl.OkxApiWebSocketServiceImpl;
+import com.okx.trading.util.KlinePeriodUtil;
+import com.okx.trading.util.TickTrace;
+import com.okx.trading.util.TradingMetrics;
 import lombok.Data;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
@@ -32,9 +37,12 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import static com.okx.trading.constant.IndicatorInfo.*;
 
@@ -56,7 +64,6 @@ public class RealTimeStrategyManager implements ApplicationRunner {
 
     private final OkxApiWebSocketServiceImpl webSocketService;
     private final RealTimeOrderService realTimeOrderService;
-    private final TradeController tradeController;
     private final HistoricalDataService historicalDataService;
     private final OkxApiService okxApiService;
     @Lazy
@@ -67,26 +74,33 @@ public class RealTimeStrategyManager implements ApplicationRunner {
     private final int kLineNum = 100;
     private boolean loadedStrategies = false;
     private final NotificationService notificationService;
+    private final TradeJournalService tradeJournalService;
+    private final LatencyTraceService latencyTraceService;
     private ExecutorService executorService;
     private RedisTemplate redisTemplate;
     private final Environment environment;
-
+    // 判断交易时间窗口和记录信号时间使用的时钟，回放历史行情时替换为模拟时钟
+    private Clock clock = Clock.systemDefaultZone();
+    // 持仓组合快照，策略启停、成交和K线收盘价变化时通知；回放时不设置
+    @Lazy
+    @Autowired(required = false)
+    private PortfolioSnapshotService portfolioSnapshotService;
 
     public RealTimeStrategyManager(@Lazy OkxApiWebSocketServiceImpl webSocketService,
                                    RealTimeOrderService realTimeOrderService,
-                                   TradeController tradeController,
                                    HistoricalDataService historicalDataService, OkxApiService okxApiService,
                                    @Lazy RealTimeStrategyService realTimeStrategyService,
                                    CandlestickBarSeriesConverter barSeriesConverter,
                                    StrategyInfoService strategyInfoService,
                                    RealTimeStrategyRepository realTimeStrategyRepository,
                                    NotificationService notificationService,
+                                   TradeJournalService tradeJournalService,
+                                   LatencyTraceService latencyTraceService,
                                    @Qualifier("executeTradeScheduler") ExecutorService executorService,
                                    RedisTemplate redisTemplate,
                                    Environment environment) {
         this.webSocketService = webSocketService;
         this.realTimeOrderService = realTimeOrderService;
-        this.tradeController = tradeController;
         this.historicalDataService = historicalDataService;
         this.okxApiService = okxApiService;
         this.realTimeStrategyService = realTimeStrategyService;
@@ -94,6 +108,8 @@ public class RealTimeStrategyManager implements ApplicationRunner {
         this.strategyInfoService = strategyInfoService;
         this.realTimeStrategyRepository = realTimeStrategyRepository;
         this.notificationService = notificationService;
+        this.tradeJournalService = tradeJournalService;
+        this.latencyTraceService = latencyTraceService;
         this.executorService = executorService;
         this.redisTemplate = redisTemplate;
         this.environment = environment;
@@ -103,10 +119,27 @@ public class RealTimeStrategyManager implements ApplicationRunner {
     // key: strategyCode_symbol_interval, value: 策略运行状态
     private final Map<Long, RealTimeStrategyEntity> runningStrategies = new ConcurrentHashMap<>();
     private final Map<String, BarSeries> runningBarSeries = new ConcurrentHashMap<>();
-    private final Map<String, Long> clientOrderId2StrategyIdMap = new HashMap<>();
+    // 下单在 executeTradeScheduler 上并发写入，订单推送在WebSocket线程读取
+    private final Map<String, Long> clientOrderId2StrategyIdMap = new ConcurrentHashMap<>();
+    // 下单尚未完成的策略及其交易，订单结果记录前忽略该策略的新信号，避免重复下单
+    private final Map<Long, CompletableFuture<Void>> pendingTrades = new ConcurrentHashMap<>();
+    // 正在补齐断线缺口的K线，key: symbol_interval，补齐完成前收到的推送先暂存，补齐后按顺序处理
+    private final Map<String, List<Candlestick>> gapBuffers = new ConcurrentHashMap<>();
 
     private final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    /**
+     * 批量处理新的K线数据，按传入顺序逐条交给对应的策略
+     */
+    public void handleNewKlineBatch(List<Candlestick> candlesticks) {
+        if (runningStrategies.isEmpty() || candlesticks == null) {
+            return;
+        }
+        for (Candlestick candlestick : candlesticks) {
+            handleNewKlineData(candlestick.getSymbol(), candlestick.getIntervalVal(), candlestick);
+        }
+    }
+
     /**
      * 处理新的K线数据
      * 由WebSocket服务调用
@@ -116,33 +149,95 @@ public class RealTimeStrategyManager implements ApplicationRunner {
         if (runningStrategies.isEmpty()) {
             return;
         }
-        runningStrategies.entrySet().stream()
-                .filter(entry -> {
-                    RealTimeStrategyEntity state = entry.getValue();
-                    return state.getSymbol().equals(symbol) && state.getInterval().equals(interval);
-                })
-                .forEach(entry -> {
-                    RealTimeStrategyEntity state = entry.getValue();
-                    try {
-                        if (state.getStrategy() != null) {
-                            processStrategySignal(state, candlestick);
-                        }
-                    } catch (Exception e) {
-                        log.error("处理策略信号失败: key={}, error={}", buildStrategyKey(state.getStrategyCode(), state.getSymbol(), state.getInterval()), e.getMessage(), e);
-                    }
-                });
+        List<Candlestick> buffer = gapBuffers.get(symbol + "_" + interval);
+        if (buffer != null) {
+            synchronized (buffer) {
+                if (gapBuffers.get(symbol + "_" + interval) == buffer) {
+                    buffer.add(candlestick);
+                    return;
+                }
+            }
+        }
+        dispatchKlineData(symbol, interval, candlestick);
+    }
+
+    /**
+     * 开始补齐断线缺口，之后收到的推送暂存到补齐完成
+     */
+    public void beginGapFill(String symbol, String interval) {
+        gapBuffers.putIfAbsent(symbol + "_" + interval, new ArrayList<>());
+    }
+
+    /**
+     * 补齐断线缺口：先按时间顺序处理缺失的K线，再处理补齐期间暂存的推送。
+     * 缺失的K线都已收盘，不在交易时间窗口内，只更新BarSeries不会触发交易
+     *
+     * @param missed 断线期间缺失的K线，可以为空
+     */
+    public void completeGapFill(String symbol, String interval, List<Candlestick> missed) {
+        String key = symbol + "_" + interval;
+        List<Candlestick> buffer = gapBuffers.get(key);
+        if (buffer == null) {
+            return;
+        }
+        synchronized (buffer) {
+            for (Candlestick candlestick : missed) {
+                dispatchKlineData(symbol, interval, candlestick);
+            }
+            for (Candlestick candlestick : buffer) {
+                dispatchKlineData(symbol, interval, candlestick);
+            }
+            gapBuffers.remove(key, buffer);
+        }
+        log.info("K线缺口补齐完成: {} {}, 补齐 {} 根, 期间推送 {} 条", symbol, interval, missed.size(), buffer.size());
+    }
+
+    private void dispatchKlineData(String symbol, String interval, Candlestick candlestick) {
+        long dispatchStart = System.nanoTime();
+        int fanout = 0;
+        TickTrace tickTrace = candlestick.getTrace();
+        if (portfolioSnapshotService != null) {
+            portfolioSnapshotService.onPriceUpdate(symbol, candlestick.getClose());
+        }
+        for (RealTimeStrategyEntity state : runningStrategies.values()) {
+            if (!state.getSymbol().equals(symbol) || !state.getInterval().equals(interval)) {
+                continue;
+            }
+            fanout++;
+            long evaluationStart = System.nanoTime();
+            TickTrace trace = tickTrace != null ? tickTrace.forStrategy(state.getStrategyCode()) : null;
+            try {
+                if (state.getStrategy() != null) {
+                    processStrategySignal(state, candlestick, trace);
+                }
+            } catch (Exception e) {
+                log.error("处理策略信号失败: key={}, error={}", buildStrategyKey(state.getStrategyCode(), state.getSymbol(), state.getInterval()), e.getMessage(), e);
+            } finally {
+                TradingMetrics.recordStrategyEvaluation(state.getStrategyCode(), System.nanoTime() - evaluationStart);
+                // 未触发交易的追踪在这里结束，触发交易的由交易线程结束
+                if (trace != null && !trace.isHandedOff()) {
+                    trace.mark(TickTrace.Stage.EVALUATED);
+                    latencyTraceService.record(trace);
+                }
+            }
+        }
+        TradingMetrics.recordKlineDispatch(fanout, System.nanoTime() - dispatchStart);
     }
 
     /**
      * 处理策略信号
      * 真正执行实时策略逻辑，判断买卖信号的地方
      */
-    private void processStrategySignal(RealTimeStrategyEntity state, Candlestick candlestick) {
+    private void processStrategySignal(RealTimeStrategyEntity state, Candlestick candlestick, TickTrace trace) {
 
         // 更新BarSeries - 智能判断是更新还是添加新bar
         Bar newBar = createBarFromCandlestick(candlestick);
         BarSeries series = runningBarSeries.get(state.getSymbol() + "_" + state.getInterval());
         boolean shouldReplace = shouldReplaceLastBar(series, newBar, state.getInterval());
+        // 早于最后一根bar的K线（如补齐缺口时已推送过的周期）直接忽略
+        if (!shouldReplace && !series.isEmpty() && !newBar.getEndTime().isAfter(series.getLastBar().getEndTime())) {
+            return;
+        }
         series.addBar(newBar, shouldReplace);
         if (!shouldReplace) {
             series = series.getSubSeries(series.getBeginIndex() + 1, series.getEndIndex() + 1);
@@ -157,8 +252,8 @@ public class RealTimeStrategyManager implements ApplicationRunner {
             long intervalSeconds = historicalDataService.getIntervalMinutes(candlestick.getIntervalVal()) * 60;
             // 在每个周期的最后15秒判断信号是否触发，而不是在周期刚开始就触发了就执行交易
             // 提到上面，无论是否策略的首次交易都要求在每个周期的最后15秒才触发交易
-            forbiddenTradeTime = Duration.between(candlestick.getOpenTime().plusSeconds(intervalSeconds), LocalDateTime.now()).abs().get(ChronoUnit.SECONDS) > 15;
-            if (forbiddenTradeTime) {
+            forbiddenTradeTime = Duration.between(candlestick.getOpenTime().plusSeconds(intervalSeconds), LocalDateTime.now(clock)).abs().get(ChronoUnit.SECONDS) > 15;
+            if (forbiddenTradeTime || pendingTrades.containsKey(state.getId())) {
                 return;
             }
 
@@ -180,16 +275,55 @@ public class RealTimeStrategyManager implements ApplicationRunner {
 
             // 处理买入信号 - 只有在上一次不是买入时才触发
             if (shouldBuy && (StringUtils.isBlank(state.getLastTradeType()) || SELL.equals(state.getLastTradeType()))) {
-                executeTradeSignal(state, candlestick, BUY);
+                dispatchTradeSignal(state, candlestick, BUY, trace);
             }
 
             // 处理卖出信号 - 只有在上一次是买入时才触发
             if (shouldSell && BUY.equals(state.getLastTradeType())) {
-                executeTradeSignal(state, candlestick, SELL);
+                dispatchTradeSignal(state, candlestick, SELL, trace);
             }
         }
     }
 
+    /**
+     * 在交易线程池中执行交易信号
+     * 同一根K线收盘时触发的多个策略并发下单，订单网关把批量窗口内的订单合并为一次批量下单，
+     * 订单完成后在交易线程池中记录结果
+     */
+    private void dispatchTradeSignal(RealTimeStrategyEntity state, Candlestick candlestick, String side, TickTrace trace) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (pendingTrades.putIfAbsent(state.getId(), done) != null) {
+            return;
+        }
+        if (trace != null) {
+            trace.mark(TickTrace.Stage.EVALUATED);
+        }
+        try {
+            // 交易线程只负责下单，订单结果记录完成后才允许该策略处理新的信号
+            CompletableFuture.supplyAsync(() -> executeTradeSignal(state, candlestick, side, trace), executorService)
+                    .thenCompose(Function.identity())
+                    .whenComplete((result, e) -> finishTrade(state.getId(), done));
+            if (trace != null) {
+                trace.handOff();
+            }
+        } catch (RejectedExecutionException e) {
+            finishTrade(state.getId(), done);
+            log.error("交易线程池已满，丢弃策略 {} 的{}信号", state.getStrategyName(), side);
+        }
+    }
+
+    private void finishTrade(Long strategyId, CompletableFuture<Void> done) {
+        pendingTrades.remove(strategyId, done);
+        done.complete(null);
+    }
+
+    /**
+     * 当前已分发交易的完成信号，这些交易的订单结果都记录后完成
+     */
+    public CompletableFuture<Void> awaitPendingTrades() {
+        return CompletableFuture.allOf(pendingTrades.values().toArray(new CompletableFuture[0]));
+    }
+
     /**
      * 判断是否应该替换最后一个bar（同一周期更新）还是添加新bar（不同周期）
      *
@@ -218,8 +352,22 @@ public class RealTimeStrategyManager implements ApplicationRunner {
 
     /**
      * 执行交易信号
+     *
+     * @return 订单结果记录完成时完成，不会异常结束
      */
-    public void executeTradeSignal(RealTimeStrategyEntity state, Candlestick candlestick, String side) {
+    public CompletableFuture<Void> executeTradeSignal(RealTimeStrategyEntity state, Candlestick candlestick, String side) {
+        return executeTradeSignal(state, candlestick, side, null);
+    }
+
+    /**
+     * 执行交易信号，追踪绑定到交易线程，由下单方在收到下单响应时结束
+     * 下单后不等待成交，订单进入终态或超时对账后在交易线程池中记录结果
+     */
+    private CompletableFuture<Void> executeTradeSignal(RealTimeStrategyEntity state, Candlestick candlestick, String side, TickTrace trace) {
+        if (trace != null) {
+            trace.mark(TickTrace.Stage.EXECUTING);
+            TickTrace.bind(trace);
+        }
 //        CompletableFuture.runAsync(() -> {
         try {
 
@@ -234,7 +382,7 @@ public class RealTimeStrategyManager implements ApplicationRunner {
 
             BigDecimal preAmount = null;
             BigDecimal preQuantity = null;
-            LocalDateTime singalTime = LocalDateTime.now();
+            LocalDateTime singalTime = LocalDateTime.now(clock);
 
             // 计算交易数量
             if (BUY.equals(side)) {
@@ -252,105 +400,141 @@ public class RealTimeStrategyManager implements ApplicationRunner {
                     preQuantity = BigDecimal.valueOf(state.getLastTradeQuantity());
                 } else {
 //                        log.warn("卖出信号触发但没有持仓数量，跳过交易: strategyCode={}", state.getStrategyCode());
-                    return;
+                    return CompletableFuture.completedFuture(null);
                 }
             }
 
-            Order order = tradeController.createSpotOrder(
-                    state.getSymbol(),
-                    null,
-                    side,
-                    null,
-                    preQuantity,
-                    preAmount,
-                    null, null, null, null,
-                    false, state.getId()
-            ).getData();
-
-            if (order != null) {
-                // 保存订单记录
-                RealTimeOrderEntity orderEntity = realTimeOrderService.createOrderRecord(
-                        state.getStrategyCode(),
-                        state.getSymbol(),
-                        order,
-                        side + "_SIGNAL",
-                        side,
-                        candlestick.getClose().toString(),
-                        false,
-                        preAmount,
-                        preQuantity,
-                        singalTime);  // 打算买入金额，不是成交金额
-
-                // 利润统计
-                // 更新累计统计信息
-                if (orderEntity.getSide().equals(SELL)) {
-                    // executedAmount 已经是扣除手续费的金额，卖出的执行金额就是最后剩下的金额，减去上次卖出执行金额以及手续费就是利润
-                    double profit = orderEntity.getExecutedAmount().doubleValue() - state.getLastTradeAmount() - state.getLastTradeFee();
+            OrderHandle handle = okxApiService.placeSpotOrder(OrderRequest.builder()
+                    .symbol(state.getSymbol())
+                    .side(side)
+                    .quantity(preQuantity)
+                    .amount(preAmount)
+                    .timeInForce("")
+                    .simulated(false)
+                    .strategyId(state.getId())
+                    .build());
+
+            // 下单实现未经订单网关发送时（如REST实现）追踪仍绑定在当前线程，以返回订单作为下单响应
+            TickTrace unacked = TickTrace.takeCurrent();
+            if (unacked != null) {
+                unacked.mark(TickTrace.Stage.ACKED);
+                latencyTraceService.record(unacked);
+            }
+
+            BigDecimal amount = preAmount;
+            BigDecimal quantity = preQuantity;
+            return handle.getSettled()
+                    .thenAcceptAsync(order -> recordTrade(state, candlestick, side, order, amount, quantity, singalTime), executorService)
+                    .exceptionally(e -> {
+                        onTradeFailed(state, side, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                        return null;
+                    });
+        } catch (Exception e) {
+            onTradeFailed(state, side, e);
+            return CompletableFuture.completedFuture(null);
+        } finally {
+            // 没有发出下单请求（如卖出时没有持仓、下单前异常），追踪在这里结束
+            TickTrace unclaimed = TickTrace.takeCurrent();
+            if (unclaimed != null) {
+                latencyTraceService.record(unclaimed);
+            }
+        }
+//        }, executorService);
+    }
+
+    /**
+     * 记录订单结果并更新策略状态，订单为null（下单失败且对账无结果）时不记录
+     */
+    private void recordTrade(RealTimeStrategyEntity state, Candlestick candlestick, String side, Order order,
+                             BigDecimal preAmount, BigDecimal preQuantity, LocalDateTime singalTime) {
+        if (order == null) {
+            return;
+        }
+        // 保存订单记录
+        RealTimeOrderEntity orderEntity = realTimeOrderService.createOrderRecord(
+                state.getStrategyCode(),
+                state.getSymbol(),
+                order,
+                side + "_SIGNAL",
+                side,
+                candlestick.getClose().toString(),
+                false,
+                preAmount,
+                preQuantity,
+                singalTime);  // 打算买入金额，不是成交金额
+
+        // 利润统计
+        // 更新累计统计信息
+        if (orderEntity.getSide().equals(SELL)) {
+            // executedAmount 已经是扣除手续费的金额，卖出的执行金额就是最后剩下的金额，减去上次卖出执行金额以及手续费就是利润
+            double profit = orderEntity.getExecutedAmount().doubleValue() - state.getLastTradeAmount() - state.getLastTradeFee();
 //                            orderEntity.getFee().doubleValue() - state.getLastTradeFee();
-                    state.setTotalProfit(state.getTotalProfit() + profit);
-                    state.setTotalProfitRate(state.getTotalProfit() / state.getTradeAmount());
-                    state.setLastTradeProfit(profit);
-                    orderEntity.setProfit(BigDecimal.valueOf(profit));
-                    orderEntity.setProfitRate(BigDecimal.valueOf(profit / (state.getLastTradeAmount() + state.getLastTradeFee())));
-                }
-                // 费用每次都有
-                state.setTotalFees(state.getTotalFees() + orderEntity.getFee().doubleValue());
-                // 更新策略状态
-                state.setLastTradeType(orderEntity.getSide());
-                // 买入时记录购买数量
-                state.setLastTradeAmount(orderEntity.getExecutedAmount().doubleValue());
-                state.setLastTradeQuantity(orderEntity.getExecutedQty().doubleValue());
-                state.setLastTradePrice(orderEntity.getPrice().doubleValue());
-                state.setLastTradeTime(orderEntity.getCreateTime());
-                state.setLastTradeFee(orderEntity.getFee().doubleValue());
-                state.setLastSingalTime(singalTime);
-                if (BUY.equals(side)) {
-                    state.setIsInPosition(true);
-                } else {
-                    state.setIsInPosition(false);
-                }
-                // 成交次数统计
-                state.setTotalTrades(state.getTotalTrades() + 1);
-                if (FILLED.equals(order.getStatus())) {
-                    state.setSuccessfulTrades(state.getSuccessfulTrades() + 1);
-                }
-                // 更新数据库中的交易信息
-                RealTimeStrategyEntity realTimeStrategy = realTimeStrategyService.updateTradeInfo(state);
-                // 更新订单信息
-                orderEntity.setStrategyId(realTimeStrategy.getId());
-                realTimeOrderService.saveOrder(orderEntity);
-                //更新交易控制标记,过期时间是本周期还剩的剩余的时间
+            state.setTotalProfit(state.getTotalProfit() + profit);
+            state.setTotalProfitRate(state.getTotalProfit() / state.getTradeAmount());
+            state.setLastTradeProfit(profit);
+            orderEntity.setProfit(BigDecimal.valueOf(profit));
+            orderEntity.setProfitRate(BigDecimal.valueOf(profit / (state.getLastTradeAmount() + state.getLastTradeFee())));
+        }
+        // 费用每次都有
+        state.setTotalFees(state.getTotalFees() + orderEntity.getFee().doubleValue());
+        // 更新策略状态
+        state.setLastTradeType(orderEntity.getSide());
+        // 买入时记录购买数量
+        state.setLastTradeAmount(orderEntity.getExecutedAmount().doubleValue());
+        state.setLastTradeQuantity(orderEntity.getExecutedQty().doubleValue());
+        state.setLastTradePrice(orderEntity.getPrice().doubleValue());
+        state.setLastTradeTime(orderEntity.getCreateTime());
+        state.setLastTradeFee(orderEntity.getFee().doubleValue());
+        state.setLastSingalTime(singalTime);
+        if (BUY.equals(side)) {
+            state.setIsInPosition(true);
+        } else {
+            state.setIsInPosition(false);
+        }
+        // 成交次数统计
+        state.setTotalTrades(state.getTotalTrades() + 1);
+        if (FILLED.equals(order.getStatus())) {
+            state.setSuccessfulTrades(state.getSuccessfulTrades() + 1);
+        }
+        // 交易信息和订单追加到交易日志，由后台线程批量写入数据库
+        tradeJournalService.recordTrade(state, orderEntity);
+        if (portfolioSnapshotService != null && runningStrategies.containsKey(state.getId())) {
+            portfolioSnapshotService.onTrade(state, orderEntity);
+        }
+        //更新交易控制标记,过期时间是本周期还剩的剩余的时间
 //                long seconds = Duration.between(candlestick.getOpenTime().plus(
 //                                historicalDataService.getIntervalMinutes(state.getInterval()), ChronoUnit.MINUTES),
 //                        LocalDateTime.now()).abs().getSeconds();
 //                redisTemplate.opsForValue().set(TRADE_FLAG + realTimeStrategy.getId(), String.valueOf(seconds), seconds, TimeUnit.SECONDS);
 
-                log.info("执行{}订单成功: symbol={}, price={}, amount={}, quantity={}", side, state.getSymbol(), state.getLastTradePrice(),
-                        state.getLastTradeAmount(), state.getLastTradeQuantity());
+        log.info("执行{}订单成功: symbol={}, price={}, amount={}, quantity={}", side, state.getSymbol(), state.getLastTradePrice(),
+                state.getLastTradeAmount(), state.getLastTradeQuantity());
 
-                // 发送交易通知
-                try {
-                    notificationService.sendTradeNotification(state, order, side, candlestick.getClose().toString());
-                } catch (Exception e) {
-                    log.error("发送交易通知失败: {}", e.getMessage(), e);
-                }
-            }
+        // 发送交易通知
+        try {
+            notificationService.sendTradeNotification(state, order, side, candlestick.getClose().toString());
         } catch (Exception e) {
-            runningStrategies.remove(state.getId());
-            state.setIsActive(false);
-            state.setStatus("ERROR");
-            state.setEndTime(LocalDateTime.now());
-            realTimeStrategyRepository.save(state);
-            log.error("执行策略 {} {}订单失败，停止策略: {},", state.getStrategyName(), side, e.getMessage(), e);
-
-            // 发送错误通知
-            try {
-                notificationService.sendStrategyErrorNotification(state, state.getMessage());
-            } catch (Exception ex) {
-                log.error("发送错误通知失败: {}", ex.getMessage(), ex);
-            }
+            log.error("发送交易通知失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 下单或记录结果失败，停止策略
+     */
+    private void onTradeFailed(RealTimeStrategyEntity state, String side, Throwable e) {
+        removeRunningStrategy(state.getId());
+        state.setIsActive(false);
+        state.setStatus("ERROR");
+        state.setEndTime(LocalDateTime.now(clock));
+        tradeJournalService.recordStatus(state);
+        log.error("执行策略 {} {}订单失败，停止策略: {},", state.getStrategyName(), side, e.getMessage(), e);
+
+        // 发送错误通知
+        try {
+            notificationService.sendStrategyErrorNotification(state, state.getMessage());
+        } catch (Exception ex) {
+            log.error("发送错误通知失败: {}", ex.getMessage(), ex);
         }
-//        }, executorService);
     }
 
     /**
@@ -405,6 +589,8 @@ public class RealTimeStrategyManager implements ApplicationRunner {
                 return;
             }
             log.info("找到 {} 个需要自动启动的策略", strategies.size());
+            // 合并交易日志中尚未写入数据库的交易状态
+            strategies.forEach(tradeJournalService::reconcile);
 
             LocalDateTime now = LocalDateTime.now();
             for (RealTimeStrategyEntity strategyEntity : strategies) {
@@ -453,6 +639,19 @@ public class RealTimeStrategyManager implements ApplicationRunner {
         return new ConcurrentHashMap<>(runningStrategies);
     }
 
+    /**
+     * 从运行中策略移除，同时从持仓组合快照移除
+     *
+     * @return 被移除的策略，不在运行中时返回null
+     */
+    public RealTimeStrategyEntity removeRunningStrategy(Long strategyId) {
+        RealTimeStrategyEntity removed = runningStrategies.remove(strategyId);
+        if (portfolioSnapshotService != null) {
+            portfolioSnapshotService.onStrategyRemoved(strategyId);
+        }
+        return removed;
+    }
+
     public Map<String, Object> startExecuteRealTimeStrategy(RealTimeStrategyEntity strategyEntity) {
         Map<String, Object> response = new HashMap<>();
 
@@ -515,6 +714,9 @@ public class RealTimeStrategyManager implements ApplicationRunner {
 
         // 添加到运行中策略列表
         runningStrategies.put(strategyEntity.getId(), strategyEntity);
+        if (portfolioSnapshotService != null) {
+            portfolioSnapshotService.onStrategyUpdated(strategyEntity);
+        }
 
         log.info("已添加策略: strategyCode={}, symbol={}, interval={}", strategyEntity.getStrategyCode(), strategyEntity.getSymbol(), strategyEntity.getInterval());
         response.put("id", strategyEntity.getId());
@@ -532,43 +734,7 @@ public class RealTimeStrategyManager implements ApplicationRunner {
      * @return 周期开始时间
      */
     private LocalDateTime getPeriodStartTime(LocalDateTime dateTime, String interval) {
-        if (dateTime == null || interval == null) {
-            return dateTime;
-        }
-
-        // 解析时间单位和数量
-        String unit = interval.substring(interval.length() - 1);
-        int amount;
-        try {
-            amount = Integer.parseInt(interval.substring(0, interval.length() - 1));
-        } catch (NumberFormatException e) {
-            amount = 1;
-        }
-
-        switch (unit) {
-            case "m": // 分钟
-                int minute = dateTime.getMinute();
-                int periodMinute = (minute / amount) * amount;
-                return dateTime.withMinute(periodMinute).withSecond(0).withNano(0);
-
-            case "H": // 小时
-                int hour = dateTime.getHour();
-                int periodHour = (hour / amount) * amount;
-                return dateTime.withHour(periodHour).withMinute(0).withSecond(0).withNano(0);
-
-            case "D": // 天
-                return dateTime.withHour(0).withMinute(0).withSecond(0).withNano(0);
-
-            case "W": // 周
-                // 计算本周的周一
-                return dateTime.with(DayOfWeek.MONDAY).withHour(0).withMinute(0).withSecond(0).withNano(0);
-
-            case "M": // 月
-                return dateTime.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
-
-            default:
-                return dateTime.withSecond(0).withNano(0);
-        }
+        return KlinePeriodUtil.getPeriodStartTime(dateTime, interval);
     }
 
     /**
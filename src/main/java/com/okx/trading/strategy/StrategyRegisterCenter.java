@@ -15,8 +15,8 @@ import org.ta4j.core.rules.OrRule;
 import org.ta4j.core.rules.StopLossRule;
 import org.ta4j.core.rules.TrailingStopLossRule;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import static com.okx.trading.constant.IndicatorInfo.*;
@@ -27,8 +27,8 @@ public class StrategyRegisterCenter {
 
     private static BacktestParameterConfig backtestParameterConfig = BeanHolder.getBacktestParameterConfig();
 
-    // 策略创建函数映射
-    public static final Map<String, Function<BarSeries, Strategy>> strategyCreators = new HashMap<>();
+    // 策略创建函数映射，动态策略会被并行编译的任务注册
+    public static final Map<String, Function<BarSeries, Strategy>> strategyCreators = new ConcurrentHashMap<>();
 
     /**
      * 创建策略
@@ -39,7 +39,7 @@ public class StrategyRegisterCenter {
      * @return 策略对象
      */
     public static Strategy createStrategy(BarSeries series, String strategyType) {
-        Function<BarSeries, Strategy> strategyCreator = strategyCreators.get(strategyType);
+        Function<BarSeries, Strategy> strategyCreator = strategyType == null ? null : strategyCreators.get(strategyType);
 
         if (strategyCreator == null) {
             throw new IllegalArgumentException("不支持的策略类型: " + strategyType);
@@ -21,6 +21,13 @@ public class BacktestDataGenerator {
     private static final Logger log = LoggerFactory.getLogger(BacktestDataGenerator.class);
     private static final Random random = new Random();
 
+    /**
+     * 设置随机种子，相同种子和参数生成相同的K线数据，用于基准测试和回放
+     */
+    public static void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
     /**
      * 根据趋势类型生成模拟K线数据
      *
@@ -0,0 +1,153 @@
+package com.okx.trading.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 限制并发数的虚拟线程执行器
+ * <p>
+ * 每个任务一个虚拟线程，先获取信号量再执行，同时执行的任务数不超过 maxConcurrency，
+ * 其余任务阻塞在信号量上等待，相当于固定线程池的任务队列，但等待中的任务只占用很少的内存。
+ * 用于阻塞在 OkHttp、JDBC、Redis、SMTP 上的任务，并发上限按下游能承受的连接数设置。
+ * <p>
+ * 等待信号量时不响应中断。shutdownNow 停止接收新任务，还在等待许可的任务不再执行，作为返回值交还调用方；
+ * 正在执行的任务不会被中断，执行完后线程结束——阻塞在网络或JDBC调用上的任务被中断可能留下状态不一致的连接。
+ */
+public class BoundedVirtualThreadExecutor extends AbstractExecutorService {
+
+    private final String name;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final ExecutorService delegate;
+
+    /**
+     * 已提交、尚未取得许可的任务，取得许可时移除；shutdownNow 移除的任务不再执行
+     */
+    private final Set<Task> queued = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * @param name           线程名称前缀
+     * @param maxConcurrency 同时执行的最大任务数
+     */
+    public BoundedVirtualThreadExecutor(String name, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("并发上限必须大于0: " + maxConcurrency);
+        }
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Task task = new Task(command);
+        queued.add(task);
+        try {
+            delegate.execute(task);
+        } catch (RuntimeException e) {
+            queued.remove(task);
+            throw e;
+        }
+        submitted.increment();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        delegate.shutdown();
+        List<Runnable> notStarted = new ArrayList<>();
+        for (Task task : queued) {
+            if (queued.remove(task)) {
+                notStarted.add(task.command);
+            }
+        }
+        return notStarted;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * 执行器统计：并发上限、执行中、等待中、已提交和已完成的任务数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrency", maxConcurrency);
+        stats.put("active", maxConcurrency - permits.availablePermits());
+        stats.put("waiting", waiting.get());
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", completed.sum());
+        return stats;
+    }
+
+    /**
+     * 在自己的虚拟线程中等待许可后执行提交的任务
+     */
+    private final class Task implements Runnable {
+
+        private final Runnable command;
+
+        private Task(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            waiting.incrementAndGet();
+            permits.acquireUninterruptibly();
+            waiting.decrementAndGet();
+            // 等待期间被 shutdownNow 取走的任务不再执行
+            boolean started = queued.remove(this);
+            try {
+                if (started) {
+                    command.run();
+                }
+            } finally {
+                permits.release();
+                if (started) {
+                    completed.increment();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.okx.trading.util;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存中的 Java 编译器
+ * <p>
+ * 源代码和编译出的字节码都只在内存中，不写临时文件。classpath 在创建时设置一次，
+ * 标准文件管理器在多次编译间复用，已打开的 jar 不会重复扫描。
+ * 标准文件管理器不是线程安全的，编译方法按实例串行执行，并行编译时每个线程使用各自的实例。
+ * <p>
+ * 一次可以编译多份源代码，字节码和错误信息按源代码分别归属。
+ */
+public class InMemoryJavaCompiler {
+
+    private final JavaCompiler compiler;
+    private final StandardJavaFileManager standardFileManager;
+    private final List<String> options;
+
+    /**
+     * @param compiler  系统 Java 编译器
+     * @param classpath 编译使用的 classpath 条目
+     * @param options   额外的编译选项，如 -proc:none
+     */
+    public InMemoryJavaCompiler(JavaCompiler compiler, List<String> classpath, List<String> options) throws IOException {
+        this.compiler = compiler;
+        this.standardFileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        List<File> files = new ArrayList<>(classpath.size());
+        for (String entry : classpath) {
+            files.add(new File(entry));
+        }
+        this.standardFileManager.setLocation(StandardLocation.CLASS_PATH, files);
+        this.options = List.copyOf(options);
+    }
+
+    /**
+     * 编译一组源代码
+     *
+     * @param sources 类的全名 -> 源代码
+     * @return 编译结果，包含每份源代码生成的全部类（含内部类）的字节码和诊断信息
+     */
+    public synchronized CompilationResult compile(Map<String, String> sources) {
+        List<JavaFileObject> units = new ArrayList<>(sources.size());
+        for (Map.Entry<String, String> entry : sources.entrySet()) {
+            units.add(new SourceFile(entry.getKey(), entry.getValue()));
+        }
+        Map<String, Map<String, byte[]>> classes = new HashMap<>();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        // 不关闭转发管理器，否则会关闭复用的标准文件管理器
+        ClassOutputManager fileManager = new ClassOutputManager(standardFileManager, classes);
+        boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, units).call();
+        return new CompilationResult(success, classes, diagnostics.getDiagnostics());
+    }
+
+    /**
+     * 编译结果
+     */
+    public static final class CompilationResult {
+        private final boolean success;
+        private final Map<String, Map<String, byte[]>> classes;
+        private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+        private CompilationResult(boolean success, Map<String, Map<String, byte[]>> classes,
+                                  List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+            this.success = success;
+            this.classes = classes;
+            this.diagnostics = diagnostics;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        /**
+         * 全部源代码生成的类，类的全名 -> 字节码
+         */
+        public Map<String, byte[]> getClasses() {
+            Map<String, byte[]> all = new HashMap<>();
+            classes.values().forEach(all::putAll);
+            return all;
+        }
+
+        /**
+         * 指定源代码生成的类，类的全名 -> 字节码；编译失败时 javac 不生成任何类
+         */
+        public Map<String, byte[]> getClasses(String sourceName) {
+            return classes.getOrDefault(sourceName, Collections.emptyMap());
+        }
+
+        /**
+         * 有编译错误的源代码
+         */
+        public Set<String> getFailedSources() {
+            Set<String> failed = new HashSet<>();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getSource() instanceof SourceFile source) {
+                    failed.add(source.className);
+                }
+            }
+            return failed;
+        }
+
+        public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
+            return diagnostics;
+        }
+
+        /**
+         * 指定源代码的错误信息，每行一个错误
+         */
+        public String formatErrors(String className) {
+            StringBuilder errorMessage = new StringBuilder("编译失败:\n");
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+                if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                    continue;
+                }
+                if (className != null && diagnostic.getSource() instanceof SourceFile source
+                        && !className.equals(source.className)) {
+                    continue;
+                }
+                errorMessage.append(String.format("Line %d, Column %d: %s\n",
+                        diagnostic.getLineNumber(), diagnostic.getColumnNumber(), diagnostic.getMessage(null)));
+            }
+            return errorMessage.toString();
+        }
+    }
+
+    /**
+     * 从字节码加载类的类加载器，找不到的类委托给父加载器
+     */
+    public static class BytecodeClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        public BytecodeClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+            super(parent);
+            this.classes = new ConcurrentHashMap<>(classes);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.remove(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String className;
+        private final String source;
+
+        private SourceFile(String className, String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.className = className;
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+        private final String className;
+        private final Map<String, byte[]> output;
+
+        private ClassFile(String className, Map<String, byte[]> output) {
+            super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.className = className;
+            this.output = output;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    output.put(className, toByteArray());
+                }
+            };
+        }
+    }
+
+    private static final class ClassOutputManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, Map<String, byte[]>> output;
+
+        private ClassOutputManager(StandardJavaFileManager fileManager, Map<String, Map<String, byte[]>> output) {
+            super(fileManager);
+            this.output = output;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+            if (kind == JavaFileObject.Kind.CLASS) {
+                // sibling 是生成该类的源代码，按源代码归属字节码
+                String sourceName = sibling instanceof SourceFile source ? source.className : "";
+                return new ClassFile(className, output.computeIfAbsent(sourceName, key -> new HashMap<>()));
+            }
+            return super.getJavaFileForOutput(location, className, kind, sibling);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.okx.trading.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * K线周期对齐工具类
+ * 与OKX的K线对齐方式一致（UTC+8）：分钟和小时周期按整点倍数对齐，日线从0点开始，周线从周一开始，月线从1号开始
+ */
+public class KlinePeriodUtil {
+
+    private KlinePeriodUtil() {
+    }
+
+    /**
+     * 根据时间和间隔计算所在周期的开始时间
+     *
+     * @param dateTime 时间
+     * @param interval K线间隔（如1m, 5m, 1H, 1D等）
+     * @return 周期开始时间
+     */
+    public static LocalDateTime getPeriodStartTime(LocalDateTime dateTime, String interval) {
+        if (dateTime == null || interval == null) {
+            return dateTime;
+        }
+
+        String unit = getUnit(interval);
+        int amount = getAmount(interval);
+
+        switch (unit) {
+            case "m": // 分钟
+                int minute = dateTime.getMinute();
+                int periodMinute = (minute / amount) * amount;
+                return dateTime.withMinute(periodMinute).withSecond(0).withNano(0);
+
+            case "H": // 小时
+                int hour = dateTime.getHour();
+                int periodHour = (hour / amount) * amount;
+                return dateTime.withHour(periodHour).withMinute(0).withSecond(0).withNano(0);
+
+            case "D": // 天
+                return dateTime.withHour(0).withMinute(0).withSecond(0).withNano(0);
+
+            case "W": // 周
+                // 计算本周的周一
+                return dateTime.with(DayOfWeek.MONDAY).withHour(0).withMinute(0).withSecond(0).withNano(0);
+
+            case "M": // 月
+                return dateTime.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+
+            default:
+                return dateTime.withSecond(0).withNano(0);
+        }
+    }
+
+    /**
+     * 计算周期的结束时间，即下一个周期的开始时间，与OKX REST接口的收盘时间一致
+     *
+     * @param periodStart 周期开始时间
+     * @param interval    K线间隔
+     * @return 周期结束时间
+     */
+    public static LocalDateTime getPeriodEndTime(LocalDateTime periodStart, String interval) {
+        String unit = getUnit(interval);
+        int amount = getAmount(interval);
+
+        switch (unit) {
+            case "m":
+                return periodStart.plusMinutes(amount);
+            case "H":
+                return periodStart.plusHours(amount);
+            case "D":
+                return periodStart.plusDays(amount);
+            case "W":
+                return periodStart.plusWeeks(amount);
+            case "M":
+                return periodStart.plusMonths(amount);
+            default:
+                return periodStart.plusMinutes(1);
+        }
+    }
+
+    /**
+     * 计算最近一个已经完成的周期的开始时间
+     *
+     * @param now      当前时间
+     * @param interval K线间隔
+     * @return 最近完整周期的开始时间
+     */
+    public static LocalDateTime getLastCompletePeriodStart(LocalDateTime now, String interval) {
+        String unit = getUnit(interval);
+        int amount = Integer.parseInt(interval.substring(0, interval.length() - 1));
+
+        switch (unit) {
+            case "m": // 分钟
+                // 对齐到最近的完整分钟周期
+                int currentMinute = now.getMinute();
+                int alignedMinute = (currentMinute / amount) * amount;
+                return now.withMinute(alignedMinute).withSecond(0).withNano(0).minusMinutes(amount);
+
+            case "H": // 小时
+                // 对齐到最近的完整小时周期
+                int currentHour = now.getHour();
+                int alignedHour = (currentHour / amount) * amount;
+                return now.withHour(alignedHour).withMinute(0).withSecond(0).withNano(0).minusHours(amount);
+
+            case "D": // 天
+                // 对齐到最近的完整天周期 (UTC 0点开始)
+                return now.toLocalDate().atStartOfDay().minusDays(1);
+
+            case "W": // 周
+                // 对齐到最近的完整周周期 (周一开始)
+                LocalDate currentDate = now.toLocalDate();
+                LocalDate monday = currentDate.with(DayOfWeek.MONDAY);
+                return monday.atStartOfDay().minusWeeks(1);
+
+            case "M": // 月
+                // 对齐到最近的完整月周期 (月初开始)
+                return now.toLocalDate().withDayOfMonth(1).atStartOfDay().minusMonths(1);
+
+            default:
+                // 默认返回当前时间的分钟对齐
+                return now.withSecond(0).withNano(0).minusMinutes(1);
+        }
+    }
+
+    /**
+     * 判断目标周期能否由1分钟K线聚合得到：分钟周期需能整除60，小时周期需能整除24
+     */
+    public static boolean isAggregatableFromMinute(String interval) {
+        if (interval == null || interval.length() < 2) {
+            return false;
+        }
+        String unit = getUnit(interval);
+        int amount = getAmount(interval);
+        switch (unit) {
+            case "m":
+                return amount > 1 && 60 % amount == 0;
+            case "H":
+                return 24 % amount == 0;
+            case "D":
+            case "W":
+            case "M":
+                return amount == 1;
+            default:
+                return false;
+        }
+    }
+
+    private static String getUnit(String interval) {
+        return interval.substring(interval.length() - 1);
+    }
+
+    private static int getAmount(String interval) {
+        try {
+            return Integer.parseInt(interval.substring(0, interval.length() - 1));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+}
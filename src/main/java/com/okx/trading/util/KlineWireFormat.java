@@ -0,0 +1,333 @@
+package com.okx.trading.util;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.model.market.Candlestick;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Kafka K线消息的线上格式
+ * <p>
+ * 消息头 {@link #SCHEMA_HEADER} 标明负载格式：
+ * <ul>
+ *     <li>{@link #SCHEMA_BINARY_V2}：紧凑二进制记录，见 {@link #encodeBinary(Candlestick)}；{@link #SCHEMA_BINARY_V1} 的旧记录仍可解码</li>
+ *     <li>{@link #SCHEMA_OKX_JSON}：OKX WebSocket 原始JSON，与 data-warehouse 写入的格式一致；没有消息头时也按此格式解析</li>
+ * </ul>
+ * 二进制记录 v2：版本(1) 标志(1，bit0=已确认，bit1~7=开/高/低/收/成交量/成交量币/成交额是否非空) 开盘时间毫秒(varint)
+ * 价格小数位(1) 开盘价(zigzag varint) 最高/最低/收盘相对开盘价的差值(zigzag varint)
+ * 成交量/成交量币/成交额 各为 小数位(1) + 未缩放值(zigzag varint)，之后是 交易对 和 周期（长度varint + UTF-8）。
+ * 开高低收共用一个小数位，空字段不占空间。
+ */
+public class KlineWireFormat {
+
+    public static final String SCHEMA_HEADER = "kline-schema";
+    public static final String SCHEMA_BINARY_V1 = "okx-kline-bin/1";
+    public static final String SCHEMA_BINARY_V2 = "okx-kline-bin/2";
+    public static final String SCHEMA_OKX_JSON = "okx-kline-json/1";
+
+    /**
+     * 生产者配置项：binary 或 json
+     */
+    public static final String WIRE_FORMAT_CONFIG = "kline.wire-format";
+    public static final String WIRE_FORMAT_BINARY = "binary";
+    public static final String WIRE_FORMAT_JSON = "json";
+
+    static final byte BINARY_VERSION_1 = 1;
+    static final byte BINARY_VERSION = 2;
+    private static final int FLAG_CONFIRMED = 1;
+    private static final byte NULL_SCALE = Byte.MIN_VALUE;
+    private static final int PRICE_FIELDS = 4;
+    private static final int DECIMAL_FIELDS = 7;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    /**
+     * long可表示的最大有效位数，超出时按此精度舍入
+     */
+    private static final MathContext LONG_PRECISION = new MathContext(18, RoundingMode.HALF_EVEN);
+
+    private static final ZoneId ZONE_ID = ZoneId.of("UTC+8");
+
+    private KlineWireFormat() {
+    }
+
+    // ==================== 二进制 ====================
+
+    public static byte[] encodeBinary(Candlestick candlestick) {
+        byte[] symbol = candlestick.getSymbol().getBytes(StandardCharsets.UTF_8);
+        byte[] interval = candlestick.getIntervalVal().getBytes(StandardCharsets.UTF_8);
+        BigDecimal[] values = {
+                candlestick.getOpen(), candlestick.getHigh(), candlestick.getLow(), candlestick.getClose(),
+                candlestick.getVolume(), candlestick.getVolCcy(), candlestick.getQuoteVolume()
+        };
+
+        int flags = candlestick.getState() == 1 ? FLAG_CONFIRMED : 0;
+        for (int i = 0; i < DECIMAL_FIELDS; i++) {
+            if (values[i] != null) {
+                flags |= 1 << (i + 1);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(3 + MAX_VARINT_BYTES * (DECIMAL_FIELDS + 3) + DECIMAL_FIELDS
+                + symbol.length + interval.length);
+        buffer.put(BINARY_VERSION);
+        buffer.put((byte) flags);
+        putVarLong(buffer, candlestick.getOpenTime().atZone(ZONE_ID).toInstant().toEpochMilli());
+
+        // 开高低收共用小数位，高低收按相对开盘价的差值写入
+        int priceScale = priceScale(values);
+        buffer.put((byte) priceScale);
+        long base = 0;
+        for (int i = 0; i < PRICE_FIELDS; i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            long unscaled = values[i].setScale(priceScale, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+            putVarLong(buffer, zigzag(i == 0 ? unscaled : unscaled - base));
+            if (i == 0) {
+                base = unscaled;
+            }
+        }
+        for (int i = PRICE_FIELDS; i < DECIMAL_FIELDS; i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            BigDecimal value = fitLong(values[i].stripTrailingZeros());
+            buffer.put((byte) value.scale());
+            putVarLong(buffer, zigzag(value.unscaledValue().longValueExact()));
+        }
+        putString(buffer, symbol);
+        putString(buffer, interval);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    public static Candlestick decodeBinary(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte version = buffer.get();
+        if (version == BINARY_VERSION_1) {
+            return decodeBinaryV1(buffer);
+        }
+        if (version != BINARY_VERSION) {
+            throw new IllegalArgumentException("不支持的K线二进制版本: " + version);
+        }
+        int flags = buffer.get() & 0xFF;
+        long openTime = getVarLong(buffer);
+
+        BigDecimal[] values = new BigDecimal[DECIMAL_FIELDS];
+        int priceScale = buffer.get();
+        long base = 0;
+        for (int i = 0; i < PRICE_FIELDS; i++) {
+            if ((flags & (1 << (i + 1))) == 0) {
+                continue;
+            }
+            long unscaled = unzigzag(getVarLong(buffer));
+            if (i == 0) {
+                base = unscaled;
+            } else {
+                unscaled += base;
+            }
+            values[i] = BigDecimal.valueOf(unscaled, priceScale);
+        }
+        for (int i = PRICE_FIELDS; i < DECIMAL_FIELDS; i++) {
+            if ((flags & (1 << (i + 1))) == 0) {
+                continue;
+            }
+            int scale = buffer.get();
+            values[i] = BigDecimal.valueOf(unzigzag(getVarLong(buffer)), scale);
+        }
+        String symbol = getString(buffer, (int) getVarLong(buffer));
+        String interval = getString(buffer, (int) getVarLong(buffer));
+        return candlestick(symbol, interval, openTime, values, (flags & FLAG_CONFIRMED) != 0);
+    }
+
+    /**
+     * v1 定长记录：开盘时间(8) 七个小数各为 未缩放值(long 8) + 小数位(1)，交易对和周期长度各1字节
+     */
+    private static Candlestick decodeBinaryV1(ByteBuffer buffer) {
+        byte flags = buffer.get();
+        long openTime = buffer.getLong();
+        BigDecimal[] values = new BigDecimal[DECIMAL_FIELDS];
+        for (int i = 0; i < DECIMAL_FIELDS; i++) {
+            long unscaled = buffer.getLong();
+            byte scale = buffer.get();
+            values[i] = scale == NULL_SCALE ? null : BigDecimal.valueOf(unscaled, scale);
+        }
+        String symbol = getString(buffer, buffer.get() & 0xFF);
+        String interval = getString(buffer, buffer.get() & 0xFF);
+        return candlestick(symbol, interval, openTime, values, (flags & FLAG_CONFIRMED) != 0);
+    }
+
+    private static Candlestick candlestick(String symbol, String interval, long openTime,
+                                           BigDecimal[] values, boolean confirmed) {
+        return Candlestick.builder()
+                .symbol(symbol)
+                .intervalVal(interval)
+                .channel("candle" + interval)
+                .openTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(openTime), ZONE_ID))
+                .open(values[0])
+                .high(values[1])
+                .low(values[2])
+                .close(values[3])
+                .volume(values[4])
+                .volCcy(values[5])
+                .quoteVolume(values[6])
+                .state(confirmed ? 1 : 0)
+                .build();
+    }
+
+    /**
+     * 开高低收共用的小数位：取各价格去掉末尾0后的最大小数位，超出long范围时逐位降低精度
+     */
+    private static int priceScale(BigDecimal[] values) {
+        int scale = 0;
+        for (int i = 0; i < PRICE_FIELDS; i++) {
+            if (values[i] != null) {
+                scale = Math.max(scale, fitLong(values[i].stripTrailingZeros()).scale());
+            }
+        }
+        while (scale > 0 && !fitsAll(values, scale)) {
+            scale--;
+        }
+        return Math.min(scale, Byte.MAX_VALUE);
+    }
+
+    private static boolean fitsAll(BigDecimal[] values, int scale) {
+        for (int i = 0; i < PRICE_FIELDS; i++) {
+            // 差值编码需要留出一位
+            if (values[i] != null && values[i].setScale(scale, RoundingMode.HALF_EVEN).unscaledValue().bitLength() > 62) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static BigDecimal fitLong(BigDecimal value) {
+        if (value.unscaledValue().bitLength() > 63) {
+            value = value.round(LONG_PRECISION).stripTrailingZeros();
+        }
+        if (value.scale() < 0 || value.scale() > Byte.MAX_VALUE) {
+            value = value.setScale(Math.max(0, Math.min(Byte.MAX_VALUE, value.scale())), RoundingMode.HALF_EVEN);
+        }
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint 过长");
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        putVarLong(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ==================== OKX 原始JSON ====================
+
+    /**
+     * 编码为 OKX WebSocket 原始格式：{"arg":{"channel":"candle1m","instId":"BTC-USDT"},"data":[[ts,o,h,l,c,vol,volCcy,volCcyQuote,confirm]]}
+     */
+    public static byte[] encodeOkxJson(Candlestick candlestick) {
+        JSONObject arg = new JSONObject(true);
+        arg.put("channel", "candle" + candlestick.getIntervalVal());
+        arg.put("instId", candlestick.getSymbol());
+
+        JSONArray row = new JSONArray();
+        row.add(String.valueOf(candlestick.getOpenTime().atZone(ZONE_ID).toInstant().toEpochMilli()));
+        row.add(plain(candlestick.getOpen()));
+        row.add(plain(candlestick.getHigh()));
+        row.add(plain(candlestick.getLow()));
+        row.add(plain(candlestick.getClose()));
+        row.add(plain(candlestick.getVolume()));
+        row.add(plain(candlestick.getVolCcy()));
+        row.add(plain(candlestick.getQuoteVolume()));
+        row.add(String.valueOf(candlestick.getState()));
+
+        JSONArray data = new JSONArray();
+        data.add(row);
+
+        JSONObject message = new JSONObject(true);
+        message.put("arg", arg);
+        message.put("data", data);
+        return message.toJSONString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解析 OKX WebSocket 原始格式，只取data中的第一条K线
+     *
+     * @return 消息缺少必要字段时返回null
+     */
+    public static Candlestick decodeOkxJson(byte[] data) {
+        JSONObject message = JSON.parseObject(new String(data, StandardCharsets.UTF_8));
+        JSONObject arg = message.getJSONObject("arg");
+        if (arg == null || arg.getString("channel") == null || arg.getString("instId") == null) {
+            return null;
+        }
+        JSONArray dataArray = message.getJSONArray("data");
+        if (dataArray == null || dataArray.isEmpty()) {
+            return null;
+        }
+        JSONArray row = dataArray.getJSONArray(0);
+        if (row == null || row.size() < 9) {
+            return null;
+        }
+
+        String channel = arg.getString("channel");
+        String interval = channel.replace("candle", "");
+        return Candlestick.builder()
+                .symbol(arg.getString("instId"))
+                .intervalVal(interval)
+                .channel(channel)
+                .openTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(row.getLongValue(0)), ZONE_ID))
+                .open(BigDecimalUtil.safeGen(row.getString(1)))
+                .high(BigDecimalUtil.safeGen(row.getString(2)))
+                .low(BigDecimalUtil.safeGen(row.getString(3)))
+                .close(BigDecimalUtil.safeGen(row.getString(4)))
+                .volume(BigDecimalUtil.safeGen(row.getString(5)))
+                .volCcy(BigDecimalUtil.safeGen(row.getString(6)))
+                .quoteVolume(BigDecimalUtil.safeGen(row.getString(7)))
+                .state("1".equals(row.getString(8)) ? 1 : 0)
+                .build();
+    }
+
+    private static String plain(BigDecimal value) {
+        return value == null ? "" : value.toPlainString();
+    }
+}
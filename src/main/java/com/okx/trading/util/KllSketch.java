@@ -0,0 +1,249 @@
+package com.okx.trading.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * KLL 分位数草图
+ * <p>
+ * 按层保存样本，第 h 层每个样本代表 2^h 个原始值。某层超过容量时排序后隔一个取一个提升到上一层，
+ * 总内存约为 O(k)，与样本总数无关；两个草图可以逐层合并。
+ * 尚未发生压缩时所有样本都在第0层，分位数与对排序后全部样本做线性插值的结果完全一致。
+ * <p>
+ * 非线程安全，调用方负责同步。
+ */
+public class KllSketch {
+
+    /**
+     * 默认精度参数，k=200 时分位数的秩误差约为 1.65%
+     */
+    public static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+    private final int k;
+    private final List<double[]> levels = new ArrayList<>();
+    private final List<Integer> sizes = new ArrayList<>();
+    private long count;
+    private int retained;
+    // 各层容量，层数变化时重新计算
+    private int[] capacities = new int[0];
+    private int totalCapacity;
+    // 每层压缩时交替保留奇数位和偶数位，避免系统性偏差
+    private boolean keepOdd;
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    public KllSketch(int k) {
+        this.k = Math.max(8, k);
+        addLevel();
+    }
+
+    /**
+     * 加入一个值
+     */
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        append(0, value);
+        count++;
+        compressIfNeeded();
+    }
+
+    /**
+     * 合并另一个草图，被合并的草图不变
+     */
+    public void merge(KllSketch other) {
+        while (levels.size() < other.levels.size()) {
+            addLevel();
+        }
+        for (int h = 0; h < other.levels.size(); h++) {
+            double[] items = other.levels.get(h);
+            int size = other.sizes.get(h);
+            for (int i = 0; i < size; i++) {
+                append(h, items[i]);
+            }
+        }
+        count += other.count;
+        compressIfNeeded();
+    }
+
+    /**
+     * 原始值的个数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * 草图中保存的样本个数
+     */
+    public int getRetained() {
+        return retained;
+    }
+
+    /**
+     * 估算分位数，按秩 q*(n-1) 在相邻两个值之间线性插值
+     *
+     * @param q 0到1之间的分位
+     * @return 分位数，草图为空时返回NaN
+     */
+    public double quantile(double q) {
+        return quantiles(q)[0];
+    }
+
+    /**
+     * 一次排序估算多个分位数
+     *
+     * @param qs 0到1之间的分位
+     * @return 与 qs 一一对应的分位数，草图为空时全部为NaN
+     */
+    public double[] quantiles(double... qs) {
+        double[] result = new double[qs.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int index = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            double[] items = levels.get(h);
+            int size = sizes.get(h);
+            for (int i = 0; i < size; i++) {
+                values[index] = items[i];
+                weights[index] = 1L << h;
+                index++;
+            }
+        }
+        sortTogether(values, weights);
+
+        long total = 0;
+        for (long weight : weights) {
+            total += weight;
+        }
+        for (int i = 0; i < qs.length; i++) {
+            double rank = Math.max(0, Math.min(1, qs[i])) * (total - 1);
+            long lowerRank = (long) Math.floor(rank);
+            long upperRank = (long) Math.ceil(rank);
+            double lower = valueAtRank(values, weights, lowerRank);
+            if (upperRank == lowerRank) {
+                result[i] = lower;
+            } else {
+                double upper = valueAtRank(values, weights, upperRank);
+                result[i] = lower + (upper - lower) * (rank - lowerRank);
+            }
+        }
+        return result;
+    }
+
+    private static double valueAtRank(double[] values, long[] weights, long rank) {
+        long cumulative = 0;
+        for (int i = 0; i < values.length; i++) {
+            cumulative += weights[i];
+            if (rank < cumulative) {
+                return values[i];
+            }
+        }
+        return values[values.length - 1];
+    }
+
+    private void addLevel() {
+        levels.add(new double[8]);
+        sizes.add(0);
+        capacities = new int[levels.size()];
+        totalCapacity = 0;
+        for (int h = 0; h < capacities.length; h++) {
+            capacities[h] = capacity(h);
+            totalCapacity += capacities[h];
+        }
+    }
+
+    private void append(int level, double value) {
+        double[] items = levels.get(level);
+        int size = sizes.get(level);
+        if (size == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+            levels.set(level, items);
+        }
+        items[size] = value;
+        sizes.set(level, size + 1);
+        retained++;
+    }
+
+    /**
+     * 第 h 层的容量，越低的层容量越小，最高层容量为 k
+     */
+    private int capacity(int level) {
+        int depth = levels.size() - 1 - level;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void compressIfNeeded() {
+        while (retained >= totalCapacity) {
+            boolean compacted = false;
+            for (int h = 0; h < levels.size(); h++) {
+                if (sizes.get(h) >= capacities[h]) {
+                    compact(h);
+                    compacted = true;
+                    break;
+                }
+            }
+            if (!compacted) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 压缩第 h 层：排序后隔一个取一个提升到 h+1 层，个数为奇数时留下一个
+     */
+    private void compact(int level) {
+        if (level + 1 == levels.size()) {
+            addLevel();
+        }
+        double[] items = levels.get(level);
+        int size = sizes.get(level);
+        Arrays.sort(items, 0, size);
+        double leftover = 0;
+        boolean hasLeftover = (size & 1) == 1;
+        if (hasLeftover) {
+            leftover = items[size - 1];
+            size--;
+        }
+        int offset = keepOdd ? 1 : 0;
+        keepOdd = !keepOdd;
+        for (int i = offset; i < size; i += 2) {
+            append(level + 1, items[i]);
+        }
+        retained -= sizes.get(level);
+        sizes.set(level, 0);
+        if (hasLeftover) {
+            append(level, leftover);
+        }
+    }
+
+    private static void sortTogether(double[] values, long[] weights) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sortedValues = new double[values.length];
+        long[] sortedWeights = new long[weights.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, values.length);
+        System.arraycopy(sortedWeights, 0, weights, 0, weights.length);
+    }
+}
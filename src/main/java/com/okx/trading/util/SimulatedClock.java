@@ -0,0 +1,44 @@
+package com.okx.trading.util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * 可手动推进的时钟
+ * 回放历史行情时由回放线程设置为当前事件的时间，策略管理器和模拟下单读取到的都是回放时间
+ */
+public class SimulatedClock extends Clock {
+
+    private final ZoneId zone;
+    private volatile Instant instant;
+
+    public SimulatedClock(Instant instant, ZoneId zone) {
+        this.instant = instant;
+        this.zone = zone;
+    }
+
+    /**
+     * 设置当前时间，回放时间只向前推进
+     */
+    public void setInstant(Instant instant) {
+        if (instant.isAfter(this.instant)) {
+            this.instant = instant;
+        }
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new SimulatedClock(instant, zone);
+    }
+
+    @Override
+    public Instant instant() {
+        return instant;
+    }
+}
@@ -0,0 +1,188 @@
+package com.okx.trading.util;
+
+import java.util.Arrays;
+
+/**
+ * 行情到下单的追踪上下文
+ * <p>
+ * 在收到 WebSocket 消息帧或 Kafka 批次时开始，随 K线对象经过分发、策略判断、交易线程，直到下单请求收到响应，
+ * 各阶段记录 System.nanoTime()。一条K线分发给多个策略时，每个策略复制一份；
+ * 同一时刻只有一个线程持有并写入追踪，交出后（交易线程、下单回调）不再访问。
+ */
+public final class TickTrace {
+
+    /**
+     * 追踪阶段，按先后顺序排列
+     */
+    public enum Stage {
+        /** 收到消息帧或 Kafka 批次 */
+        RECEIVED,
+        /** K线解析完成 */
+        PARSED,
+        /** 开始处理某个策略 */
+        DISPATCHED,
+        /** 策略判断完成 */
+        EVALUATED,
+        /** 交易线程开始执行 */
+        EXECUTING,
+        /** 下单请求收到响应 */
+        ACKED
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    /**
+     * 当前线程正在处理的 WebSocket 消息帧的接收时间，消息处理器在同一线程中同步执行
+     */
+    private static final ThreadLocal<long[]> FRAME_RECEIVED = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * 交易线程正在执行的追踪，下单时由订单发送方取走，在收到下单响应后结束追踪
+     */
+    private static final ThreadLocal<TickTrace> CURRENT = new ThreadLocal<>();
+
+    private final String source;
+    private final String symbol;
+    private final String interval;
+    private final String strategyCode;
+    private final long startMillis;
+    private final long[] stageNanos;
+    private boolean handedOff;
+
+    private TickTrace(String source, String symbol, String interval, String strategyCode, long startMillis, long[] stageNanos) {
+        this.source = source;
+        this.symbol = symbol;
+        this.interval = interval;
+        this.strategyCode = strategyCode;
+        this.startMillis = startMillis;
+        this.stageNanos = stageNanos;
+    }
+
+    /**
+     * 记录当前线程收到消息帧的时间
+     */
+    public static void markFrameReceived() {
+        FRAME_RECEIVED.get()[0] = System.nanoTime();
+    }
+
+    /**
+     * 把追踪绑定到当前线程，下单调用链中无需逐层传递
+     */
+    public static void bind(TickTrace trace) {
+        CURRENT.set(trace);
+    }
+
+    /**
+     * 取走当前线程绑定的追踪，之后由调用方负责结束追踪
+     *
+     * @return 追踪，未绑定或已被取走时返回null
+     */
+    public static TickTrace takeCurrent() {
+        TickTrace trace = CURRENT.get();
+        if (trace != null) {
+            CURRENT.remove();
+        }
+        return trace;
+    }
+
+    /**
+     * 以当前线程收到消息帧的时间开始追踪，并记录解析完成
+     */
+    public static TickTrace fromCurrentFrame(String symbol, String interval) {
+        long received = FRAME_RECEIVED.get()[0];
+        return start("ws", symbol, interval, received != 0 ? received : System.nanoTime());
+    }
+
+    /**
+     * 开始追踪，并记录解析完成
+     *
+     * @param source        ws 或 kafka
+     * @param receivedNanos 收到消息的 System.nanoTime()
+     */
+    public static TickTrace start(String source, String symbol, String interval, long receivedNanos) {
+        long[] stageNanos = new long[STAGES.length];
+        long now = System.nanoTime();
+        stageNanos[Stage.RECEIVED.ordinal()] = receivedNanos;
+        stageNanos[Stage.PARSED.ordinal()] = now;
+        long startMillis = System.currentTimeMillis() - (now - receivedNanos) / 1_000_000;
+        return new TickTrace(source, symbol, interval, null, startMillis, stageNanos);
+    }
+
+    /**
+     * 复制一份给指定策略，并记录开始处理该策略
+     */
+    public TickTrace forStrategy(String strategyCode) {
+        TickTrace trace = new TickTrace(source, symbol, interval, strategyCode, startMillis, Arrays.copyOf(stageNanos, stageNanos.length));
+        trace.mark(Stage.DISPATCHED);
+        return trace;
+    }
+
+    public void mark(Stage stage) {
+        stageNanos[stage.ordinal()] = System.nanoTime();
+    }
+
+    public boolean isMarked(Stage stage) {
+        return stageNanos[stage.ordinal()] != 0;
+    }
+
+    /**
+     * 相邻两个已记录阶段之间的耗时
+     *
+     * @return 耗时纳秒，任一阶段未记录时返回 -1
+     */
+    public long nanosBetween(Stage from, Stage to) {
+        long start = stageNanos[from.ordinal()];
+        long end = stageNanos[to.ordinal()];
+        return start == 0 || end == 0 ? -1 : end - start;
+    }
+
+    /**
+     * 从收到消息到最后一个已记录阶段的耗时
+     */
+    public long totalNanos() {
+        return stageNanos[lastStage().ordinal()] - stageNanos[Stage.RECEIVED.ordinal()];
+    }
+
+    public Stage lastStage() {
+        for (int i = STAGES.length - 1; i > 0; i--) {
+            if (stageNanos[i] != 0) {
+                return STAGES[i];
+            }
+        }
+        return Stage.RECEIVED;
+    }
+
+    /**
+     * 交给交易线程，之后由交易线程结束追踪
+     */
+    public void handOff() {
+        handedOff = true;
+    }
+
+    public boolean isHandedOff() {
+        return handedOff;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public String getStrategyCode() {
+        return strategyCode;
+    }
+
+    /**
+     * 收到消息时的系统时间（毫秒）
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+}
@@ -0,0 +1,92 @@
+package com.okx.trading.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流器
+ * 按固定速率补充令牌，允许不超过容量的突发请求
+ */
+public class TokenBucket {
+
+    private final String name;
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param name            令牌桶名称，用于日志与监控
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param capacity        令牌桶容量（允许的最大突发请求数）
+     */
+    public TokenBucket(String name, double permitsPerSecond, double capacity) {
+        if (permitsPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("令牌桶速率和容量必须大于0: " + name);
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 阻塞获取一个令牌
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = reserve()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * 尝试获取一个令牌，不阻塞
+     *
+     * @return 是否获取成功
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 获取当前可用令牌数
+     */
+    public synchronized double availableTokens() {
+        refill();
+        return tokens;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 尝试扣减一个令牌
+     *
+     * @return 0表示已获取，否则为需要等待的纳秒数
+     */
+    private synchronized long reserve() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = now;
+        }
+    }
+}
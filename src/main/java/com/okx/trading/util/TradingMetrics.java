@@ -0,0 +1,132 @@
+package com.okx.trading.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易热点路径的监控指标
+ * <p>
+ * 指标注册在 Micrometer 全局注册表上，Spring Boot 启动后会把 Prometheus 注册表加入全局注册表，
+ * 非 Spring 管理的类（如 WebSocket 分片）也能直接记录；单元测试中没有具体注册表时记录为空操作。
+ * 带标签的指标按标签值缓存，热点路径上只有一次 Map 查找。
+ */
+public final class TradingMetrics {
+
+    private static final MeterRegistry REGISTRY = Metrics.globalRegistry;
+
+    private static final Timer WS_PARSE = Timer.builder("okx.ws.parse")
+            .description("WebSocket消息JSON解析耗时")
+            .publishPercentileHistogram()
+            .register(REGISTRY);
+
+    private static final Timer KLINE_DISPATCH = Timer.builder("okx.strategy.kline.dispatch")
+            .description("一条K线推送分发到全部实时策略的耗时")
+            .publishPercentileHistogram()
+            .register(REGISTRY);
+
+    private static final DistributionSummary KLINE_FANOUT = DistributionSummary.builder("okx.strategy.kline.fanout")
+            .description("一条K线推送分发到的实时策略数")
+            .register(REGISTRY);
+
+    private static final Map<String, Counter> WS_FRAMES = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> WS_DISPATCH = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> STRATEGY_EVALUATION = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> ORDER_ROUND_TRIP = new ConcurrentHashMap<>();
+    private static final Map<String, DistributionSummary> JPA_BATCH = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> BACKTEST = new ConcurrentHashMap<>();
+
+    private TradingMetrics() {
+    }
+
+    /**
+     * WebSocket 收到一帧消息
+     *
+     * @param channel 频道，控制消息（ping、登录、订阅确认等）为 control
+     */
+    public static void wsFrame(String channel) {
+        WS_FRAMES.computeIfAbsent(tagValue(channel), c -> Counter.builder("okx.ws.frames")
+                .description("WebSocket收到的消息帧数")
+                .tag("channel", c)
+                .register(REGISTRY)).increment();
+    }
+
+    public static void recordWsParse(long nanos) {
+        WS_PARSE.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * WebSocket 消息交给频道处理器的耗时
+     */
+    public static void recordWsDispatch(String channel, long nanos) {
+        WS_DISPATCH.computeIfAbsent(tagValue(channel), c -> Timer.builder("okx.ws.dispatch")
+                .description("WebSocket消息处理器耗时")
+                .tag("channel", c)
+                .publishPercentileHistogram()
+                .register(REGISTRY)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 一条K线推送的分发耗时和分发到的策略数
+     */
+    public static void recordKlineDispatch(int fanout, long nanos) {
+        KLINE_FANOUT.record(fanout);
+        KLINE_DISPATCH.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 单个实时策略处理一条K线（更新BarSeries并判断信号）的耗时
+     */
+    public static void recordStrategyEvaluation(String strategyCode, long nanos) {
+        STRATEGY_EVALUATION.computeIfAbsent(tagValue(strategyCode), s -> Timer.builder("okx.strategy.evaluation")
+                .description("实时策略处理一条K线的耗时")
+                .tag("strategy", s)
+                .register(REGISTRY)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 订单请求从发出到收到响应的耗时
+     *
+     * @param channel ws 或 rest
+     * @param op      order、batch-orders、cancel-order 等
+     */
+    public static void recordOrderRoundTrip(String channel, String op, long nanos) {
+        ORDER_ROUND_TRIP.computeIfAbsent(channel + "|" + op, key -> Timer.builder("okx.order.roundtrip")
+                .description("订单请求往返耗时")
+                .tag("channel", tagValue(channel))
+                .tag("op", tagValue(op))
+                .publishPercentileHistogram()
+                .register(REGISTRY)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * JPA 批量保存的条数
+     */
+    public static void recordJpaBatch(String entity, int size) {
+        JPA_BATCH.computeIfAbsent(tagValue(entity), e -> DistributionSummary.builder("okx.jpa.batch.size")
+                .description("JPA批量保存的条数")
+                .tag("entity", e)
+                .register(REGISTRY)).record(size);
+    }
+
+    /**
+     * 单个策略一次回测的耗时
+     */
+    public static void recordBacktest(String strategyCode, boolean success, long nanos) {
+        BACKTEST.computeIfAbsent(strategyCode + "|" + success, key -> Timer.builder("okx.backtest.duration")
+                .description("单个策略回测耗时")
+                .tag("strategy", tagValue(strategyCode))
+                .tag("success", String.valueOf(success))
+                .register(REGISTRY)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String tagValue(String value) {
+        return value == null ? "unknown" : value;
+    }
+}
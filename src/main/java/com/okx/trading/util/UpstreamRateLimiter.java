@@ -0,0 +1,123 @@
+package com.okx.trading.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 上游接口限流器
+ * 为每个上游（OKX、Tushare）以及每个接口维护独立的令牌桶，
+ * 一次请求需要同时拿到上游桶和接口桶的令牌
+ */
+@Slf4j
+@Component
+public class UpstreamRateLimiter {
+
+    public static final String UPSTREAM_OKX = "okx";
+    public static final String UPSTREAM_TUSHARE = "tushare";
+    public static final String ENDPOINT_OKX_HISTORY_CANDLES = "okx:history-candles";
+    public static final String ENDPOINT_OKX_CANDLES = "okx:candles";
+    public static final String ENDPOINT_TUSHARE_KLINE = "tushare:kline";
+    public static final String ENDPOINT_OKX_ORDER = "okx:order";
+    public static final String ENDPOINT_OKX_BATCH_ORDERS = "okx:batch-orders";
+    public static final String ENDPOINT_OKX_CANCEL_ORDER = "okx:cancel-order";
+
+    @Value("${okx.rate-limit.okx-per-second:20}")
+    private double okxPerSecond = 20;
+
+    @Value("${okx.rate-limit.okx-history-candles-per-second:10}")
+    private double okxHistoryCandlesPerSecond = 10;
+
+    @Value("${okx.rate-limit.okx-candles-per-second:20}")
+    private double okxCandlesPerSecond = 20;
+
+    @Value("${okx.rate-limit.okx-order-per-second:30}")
+    private double okxOrderPerSecond = 30;
+
+    @Value("${okx.rate-limit.okx-batch-orders-per-second:30}")
+    private double okxBatchOrdersPerSecond = 30;
+
+    @Value("${okx.rate-limit.okx-cancel-order-per-second:30}")
+    private double okxCancelOrderPerSecond = 30;
+
+    @Value("${okx.rate-limit.tushare-per-second:3}")
+    private double tusharePerSecond = 3;
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        register(UPSTREAM_OKX, okxPerSecond);
+        register(ENDPOINT_OKX_HISTORY_CANDLES, okxHistoryCandlesPerSecond);
+        register(ENDPOINT_OKX_CANDLES, okxCandlesPerSecond);
+        register(ENDPOINT_OKX_ORDER, okxOrderPerSecond);
+        register(ENDPOINT_OKX_BATCH_ORDERS, okxBatchOrdersPerSecond);
+        register(ENDPOINT_OKX_CANCEL_ORDER, okxCancelOrderPerSecond);
+        register(UPSTREAM_TUSHARE, tusharePerSecond);
+        register(ENDPOINT_TUSHARE_KLINE, tusharePerSecond);
+        log.info("上游限流器初始化完成: {}", buckets.keySet());
+    }
+
+    /**
+     * 注册或替换一个令牌桶，容量与每秒速率相同（OKX按2秒窗口限流，允许1秒的突发）
+     */
+    public void register(String key, double permitsPerSecond) {
+        buckets.put(key, new TokenBucket(key, permitsPerSecond, Math.max(1, permitsPerSecond)));
+    }
+
+    /**
+     * 获取历史K线请求的令牌：股票走Tushare，加密货币走OKX history-candles
+     *
+     * @param symbol 交易对或股票代码
+     */
+    public void acquireHistoryKline(String symbol) throws InterruptedException {
+        if (isStock(symbol)) {
+            acquire(UPSTREAM_TUSHARE, ENDPOINT_TUSHARE_KLINE);
+        } else {
+            acquire(UPSTREAM_OKX, ENDPOINT_OKX_HISTORY_CANDLES);
+        }
+    }
+
+    /**
+     * 依次获取多个令牌桶的令牌，未注册的桶直接放行
+     */
+    public void acquire(String... keys) throws InterruptedException {
+        for (String key : keys) {
+            TokenBucket bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.acquire();
+            }
+        }
+    }
+
+    /**
+     * 尝试获取一个令牌桶的令牌，不阻塞，未注册的桶直接放行
+     *
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(String key) {
+        TokenBucket bucket = buckets.get(key);
+        return bucket == null || bucket.tryAcquire();
+    }
+
+    /**
+     * 获取各令牌桶当前可用的令牌数
+     */
+    public Map<String, Double> getAvailableTokens() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        buckets.forEach((key, bucket) -> result.put(key, bucket.availableTokens()));
+        return result;
+    }
+
+    /**
+     * 判断是否为股票代码（格式：XXXXXX.SZ 或 XXXXXX.SH）
+     */
+    public static boolean isStock(String symbol) {
+        return symbol != null && symbol.matches("^\\d{6}\\.(SZ|SH)$");
+    }
+}
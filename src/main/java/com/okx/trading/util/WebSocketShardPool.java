@@ -0,0 +1,444 @@
+package com.okx.trading.util;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * WebSocket分片连接池
+ * <p>
+ * 同一个频道URL建立多条连接，订阅按 instId 一致性哈希分配到固定分片，
+ * 同一交易对的K线、标记价格等始终走同一条连接。每个分片独立心跳和重连，
+ * 重连后只重新订阅本分片记录的主题，其他分片不受影响。
+ * <p>
+ * 重新订阅在连接建立时立即发送，多个参数合并为一条订阅消息；每个主题记录发送时间，
+ * 收到交易所的 subscribe 确认后移除，超时未确认的主题在连接检查时重发。
+ */
+public class WebSocketShardPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketShardPool.class);
+
+    /**
+     * 每个分片在哈希环上的虚拟节点数，保证交易对分布均匀
+     */
+    private static final int VIRTUAL_NODES = 64;
+
+    /**
+     * 重新订阅时每条消息携带的参数个数，交易所限制单条消息不超过64KB
+     */
+    static final int SUBSCRIBE_BATCH_SIZE = 100;
+
+    /**
+     * 订阅发出后等待确认的时间，超时后在连接检查时重发
+     */
+    static final long ACK_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * 分片断线重连成功的回调
+     */
+    public interface ReconnectListener {
+        /**
+         * @param shardIndex     分片序号
+         * @param disconnectedAt 断线时间（毫秒时间戳）
+         * @param topics         分片上记录的订阅参数，回调返回后才会重新订阅
+         */
+        void onReconnected(int shardIndex, long disconnectedAt, List<JSONObject> topics);
+    }
+
+    private final String name;
+    private final String url;
+    private final OkHttpClient okHttpClient;
+    private final Consumer<String> messageHandler;
+    private final ScheduledExecutorService reconnectScheduler;
+    private final ReconnectListener reconnectListener;
+
+    private final Shard[] shards;
+    private final TreeMap<Long, Shard> ring = new TreeMap<>();
+    private final AtomicBoolean shuttingDown = new AtomicBoolean(false);
+
+    /**
+     * @param name               连接池名称，用于日志
+     * @param url                WebSocket地址
+     * @param shardCount         分片数量
+     * @param okHttpClient       WebSocket使用的HTTP客户端
+     * @param messageHandler     所有分片收到的消息统一交给该处理器
+     * @param reconnectScheduler 重连调度器
+     * @param reconnectListener  分片断线重连成功后回调
+     */
+    public WebSocketShardPool(String name, String url, int shardCount, OkHttpClient okHttpClient,
+                              Consumer<String> messageHandler, ScheduledExecutorService reconnectScheduler,
+                              ReconnectListener reconnectListener) {
+        this.name = name;
+        this.url = url;
+        this.okHttpClient = okHttpClient;
+        this.messageHandler = messageHandler;
+        this.reconnectScheduler = reconnectScheduler;
+        this.reconnectListener = reconnectListener;
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i);
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                ring.put(hash(i + "#" + v), shards[i]);
+            }
+        }
+    }
+
+    /**
+     * 建立所有分片连接
+     */
+    public void connectAll() {
+        logger.info("{}连接池初始化，分片数: {}", name, shards.length);
+        for (Shard shard : shards) {
+            shard.connect();
+        }
+    }
+
+    /**
+     * 订阅主题，已连接时立即发送，未连接时在分片连接建立后随其他主题一起订阅
+     */
+    public void subscribe(JSONObject arg) {
+        Shard shard = shardFor(arg.getString("instId"));
+        shard.topics.put(arg.toJSONString(), arg);
+        if (shard.connected.get()) {
+            shard.sendSubscribe(List.of(arg));
+        }
+    }
+
+    /**
+     * 取消订阅主题，并从分片的主题记录中移除
+     */
+    public void unsubscribe(JSONObject arg) {
+        Shard shard = shardFor(arg.getString("instId"));
+        String key = arg.toJSONString();
+        shard.topics.remove(key);
+        shard.unacked.remove(key);
+        if (shard.connected.get()) {
+            shard.send(buildMessage("unsubscribe", List.of(arg)));
+        }
+    }
+
+    /**
+     * 向所有已连接分片发送ping
+     */
+    public void ping() {
+        for (Shard shard : shards) {
+            if (shard.connected.get() && !shard.send("ping")) {
+                logger.warn("{}分片#{}发送ping失败，将尝试重连", name, shard.index);
+                shard.scheduleReconnect();
+            }
+        }
+    }
+
+    /**
+     * 检查所有分片，未连接或超过空闲时间没有消息的分片单独重连，已连接分片重发超时未确认的订阅
+     *
+     * @param maxIdleMillis 有订阅的分片允许的最长无消息时间
+     */
+    public void checkAndReconnect(long maxIdleMillis) {
+        checkAndReconnect(maxIdleMillis, System.currentTimeMillis());
+    }
+
+    /**
+     * @param now 检查时间（毫秒时间戳）
+     */
+    void checkAndReconnect(long maxIdleMillis, long now) {
+        for (Shard shard : shards) {
+            if (!shard.connected.get()) {
+                logger.warn("{}分片#{}连接检测失败，尝试重连", name, shard.index);
+                shard.scheduleReconnect();
+            } else if (!shard.topics.isEmpty() && now - shard.lastMessageTime.get() > maxIdleMillis) {
+                // 没有订阅的分片本来就不会收到推送，不基于消息时间重连
+                logger.warn("{}分片#{}超过 {} 秒没有消息，尝试重连", name, shard.index, maxIdleMillis / 1000);
+                shard.scheduleReconnect();
+            } else {
+                shard.resendUnacked(now);
+            }
+        }
+    }
+
+    /**
+     * 关闭所有分片连接，关闭后不再重连
+     */
+    public void close() {
+        shuttingDown.set(true);
+        for (Shard shard : shards) {
+            WebSocket socket = shard.socket;
+            if (socket != null) {
+                try {
+                    socket.close(1000, "Application shutting down");
+                } catch (Exception e) {
+                    logger.warn("关闭{}分片#{}失败: {}", name, shard.index, e.getMessage());
+                }
+            }
+        }
+        logger.info("已关闭{}连接池", name);
+    }
+
+    /**
+     * 交易对所在的分片序号
+     */
+    public int shardIndexOf(String instId) {
+        return shardFor(instId).index;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * 各分片连接状态、订阅数、最后消息时间和重连次数
+     */
+    public Map<String, Object> getStats() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Shard shard : shards) {
+            Map<String, Object> shardStats = new LinkedHashMap<>();
+            shardStats.put("connected", shard.connected.get());
+            shardStats.put("topics", shard.topics.size());
+            shardStats.put("unacked", shard.unacked.size());
+            shardStats.put("acked", shard.acked.sum());
+            shardStats.put("resent", shard.resent.sum());
+            shardStats.put("lastMessageSecondsAgo", (now - shard.lastMessageTime.get()) / 1000);
+            shardStats.put("reconnects", shard.reconnects.sum());
+            stats.put("shard-" + shard.index, shardStats);
+        }
+        return stats;
+    }
+
+    private Shard shardFor(String instId) {
+        if (instId == null || shards.length == 1) {
+            return shards[0];
+        }
+        SortedMap<Long, Shard> tail = ring.tailMap(hash(instId));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    private static long hash(String key) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(key.getBytes(StandardCharsets.UTF_8));
+        return crc32.getValue();
+    }
+
+    private static String buildMessage(String op, List<JSONObject> args) {
+        JSONObject message = new JSONObject();
+        message.put("op", op);
+        message.put("args", args);
+        return message.toJSONString();
+    }
+
+    /**
+     * 单个分片连接
+     */
+    private final class Shard {
+        private final int index;
+        private final Map<String, JSONObject> topics = new ConcurrentHashMap<>();
+        // 已发送未确认的订阅，值为发送时间
+        private final Map<String, Long> unacked = new ConcurrentHashMap<>();
+        private final AtomicBoolean connected = new AtomicBoolean(false);
+        private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+        private final AtomicBoolean everConnected = new AtomicBoolean(false);
+        private final AtomicInteger retryCount = new AtomicInteger(0);
+        private final AtomicLong lastMessageTime = new AtomicLong(System.currentTimeMillis());
+        private final AtomicLong disconnectedAt = new AtomicLong(0);
+        private final LongAdder reconnects = new LongAdder();
+        private final LongAdder acked = new LongAdder();
+        private final LongAdder resent = new LongAdder();
+        private volatile WebSocket socket;
+
+        private Shard(int index) {
+            this.index = index;
+        }
+
+        private void connect() {
+            try {
+                Request request = new Request.Builder().url(url).build();
+                socket = okHttpClient.newWebSocket(request, new ShardListener());
+            } catch (Exception e) {
+                logger.error("创建{}分片#{}连接失败", name, index, e);
+                markDisconnected();
+                scheduleReconnect();
+            }
+        }
+
+        private boolean send(String text) {
+            WebSocket current = socket;
+            try {
+                return current != null && current.send(text);
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        private void markDisconnected() {
+            if (connected.getAndSet(false)) {
+                disconnectedAt.set(System.currentTimeMillis());
+            }
+        }
+
+        /**
+         * 发送订阅，多个参数按 {@link #SUBSCRIBE_BATCH_SIZE} 合并到一条消息中，并记录待确认
+         */
+        private void sendSubscribe(List<JSONObject> args) {
+            long now = System.currentTimeMillis();
+            for (int from = 0; from < args.size(); from += SUBSCRIBE_BATCH_SIZE) {
+                List<JSONObject> batch = args.subList(from, Math.min(from + SUBSCRIBE_BATCH_SIZE, args.size()));
+                for (JSONObject arg : batch) {
+                    unacked.put(arg.toJSONString(), now);
+                }
+                send(buildMessage("subscribe", batch));
+            }
+        }
+
+        /**
+         * 收到交易所的订阅确认
+         */
+        private void onAck(JSONObject arg) {
+            if (arg != null && unacked.remove(arg.toJSONString()) != null) {
+                acked.increment();
+            }
+        }
+
+        private void resendUnacked(long now) {
+            List<JSONObject> expired = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : unacked.entrySet()) {
+                JSONObject arg = topics.get(entry.getKey());
+                if (arg == null) {
+                    unacked.remove(entry.getKey());
+                } else if (now - entry.getValue() > ACK_TIMEOUT_MILLIS) {
+                    expired.add(arg);
+                }
+            }
+            if (!expired.isEmpty()) {
+                logger.warn("{}分片#{}有 {} 个订阅超时未确认，重新发送", name, index, expired.size());
+                resent.add(expired.size());
+                sendSubscribe(expired);
+            }
+        }
+
+        /**
+         * 安排本分片重连，延迟随连续失败次数递增，最长20秒
+         */
+        private void scheduleReconnect() {
+            if (shuttingDown.get() || !reconnecting.compareAndSet(false, true)) {
+                return;
+            }
+            markDisconnected();
+            int retry = retryCount.getAndIncrement();
+            long delaySeconds = Math.min(20, 1L << Math.min(retry, 5));
+            try {
+                reconnectScheduler.schedule(() -> {
+                    reconnecting.set(false);
+                    if (shuttingDown.get()) {
+                        return;
+                    }
+                    WebSocket old = socket;
+                    if (old != null) {
+                        try {
+                            old.close(1000, "Reconnecting");
+                        } catch (Exception e) {
+                            logger.debug("关闭{}分片#{}旧连接失败: {}", name, index, e.getMessage());
+                        }
+                    }
+                    reconnects.increment();
+                    logger.info("{}分片#{}重连尝试 #{}", name, index, retry);
+                    connect();
+                }, delaySeconds, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                reconnecting.set(false);
+                logger.warn("无法提交{}分片#{}重连任务,线程池可能已关闭: {}", name, index, e.getMessage());
+            }
+        }
+
+        private final class ShardListener extends WebSocketListener {
+
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                if (webSocket != socket) {
+                    return;
+                }
+                logger.info("{}分片#{}连接成功", name, index);
+                lastMessageTime.set(System.currentTimeMillis());
+                retryCount.set(0);
+                List<JSONObject> args = new ArrayList<>(topics.values());
+                // 先通知断线重连，回调方可以在推送恢复前做好补齐缺口的准备
+                if (everConnected.getAndSet(true) && reconnectListener != null) {
+                    try {
+                        reconnectListener.onReconnected(index, disconnectedAt.get(), args);
+                    } catch (Exception e) {
+                        logger.error("{}分片#{}重连回调失败", name, index, e);
+                    }
+                }
+                unacked.clear();
+                connected.set(true);
+                sendSubscribe(args);
+                if (!args.isEmpty()) {
+                    logger.info("{}分片#{}重新订阅 {} 个主题", name, index, args.size());
+                }
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                lastMessageTime.set(System.currentTimeMillis());
+                if ("ping".equals(text)) {
+                    webSocket.send("pong");
+                    return;
+                }
+                if (text.startsWith("{\"event\":\"subscribe\"")) {
+                    try {
+                        onAck(JSON.parseObject(text).getJSONObject("arg"));
+                    } catch (Exception e) {
+                        logger.debug("{}分片#{}解析订阅确认失败: {}", name, index, text);
+                    }
+                }
+                messageHandler.accept(text);
+            }
+
+            @Override
+            public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+                // 旧连接关闭过程中的回调不影响当前连接
+                if (webSocket != socket) {
+                    return;
+                }
+                logger.error("{}分片#{}连接失败: {}", name, index, t.getMessage());
+                markDisconnected();
+                scheduleReconnect();
+            }
+
+            @Override
+            public void onClosed(WebSocket webSocket, int code, String reason) {
+                if (webSocket != socket) {
+                    return;
+                }
+                logger.info("{}分片#{}连接关闭: {}, {}", name, index, code, reason);
+                markDisconnected();
+                if (code != 1000) {
+                    scheduleReconnect();
+                }
+            }
+        }
+    }
+}
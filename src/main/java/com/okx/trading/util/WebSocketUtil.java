@@ -20,6 +20,7 @@ import jakarta.annotation.PreDestroy;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
@@ -41,9 +42,14 @@ public class WebSocketUtil {
     private final ApplicationEventPublisher applicationEventPublisher;
 
     private WebSocket publicWebSocket;
-    private WebSocket bussinessWebSocket;
     private WebSocket privateWebSocket;
 
+    // 业务频道按交易对分片的连接池
+    private WebSocketShardPool businessPool;
+
+    @Value("${okx.api.ws.business-shards:4}")
+    private int businessShards = 4;
+
     private final Map<String, Consumer<JSONObject>> messageHandlers = new ConcurrentHashMap<>();
     private final ScheduledExecutorService pingScheduler;
     private final ScheduledExecutorService reconnectScheduler;
@@ -60,22 +66,18 @@ public class WebSocketUtil {
     // 连接状态标志
     private final AtomicBoolean publicConnected = new AtomicBoolean(false);
     private final AtomicBoolean privateConnected = new AtomicBoolean(false);
-    private final AtomicBoolean bussinessConnected = new AtomicBoolean(false);
 
     // 重连计数器 - 持久化重试状态
     private final AtomicInteger publicRetryCount = new AtomicInteger(0);
     private final AtomicInteger privateRetryCount = new AtomicInteger(0);
-    private final AtomicInteger businessRetryCount = new AtomicInteger(0);
 
     // 最后接收消息时间，用于检测连接活跃度
     private final AtomicLong lastPublicMessageTime = new AtomicLong(System.currentTimeMillis());
     private final AtomicLong lastPrivateMessageTime = new AtomicLong(System.currentTimeMillis());
-    private final AtomicLong lastBusinessMessageTime = new AtomicLong(System.currentTimeMillis());
 
     // 重连锁，防止并发重连
     private final Object publicReconnectLock = new Object();
     private final Object privateReconnectLock = new Object();
-    private final Object businessReconnectLock = new Object();
 
     // 添加静态Logger以解决编译问题
     private static final Logger logger = org.slf4j.LoggerFactory.getLogger(WebSocketUtil.class);
@@ -124,6 +126,11 @@ public class WebSocketUtil {
      */
     @PostConstruct
     public void init() {
+        if (okxApiConfig.isWebSocketMode()) {
+            // 连接池先创建，连接建立前的订阅会记录在分片上，连接后统一订阅
+            businessPool = new WebSocketShardPool("业务频道", okxApiConfig.getWs().getBussinessChannel(), businessShards,
+                    okHttpClient, this::handleMessage, reconnectScheduler, this::onBusinessShardReconnected);
+        }
         CompletableFuture.runAsync(() -> {
             try {
                 if (okxApiConfig.isWebSocketMode()) {
@@ -141,7 +148,7 @@ public class WebSocketUtil {
 
                     // 连接业务频道
                     try {
-                        connectBussinessChannel();
+                        connectBusinessPool();
                     } catch (Exception e) {
                         logger.error("连接业务频道失败: {}", e.getMessage(), e);
                     }
@@ -187,9 +194,8 @@ public class WebSocketUtil {
         }
 
         try {
-            if (bussinessWebSocket != null) {
-                bussinessWebSocket.close(1000, "Application shutting down");
-                logger.info("已关闭业务频道WebSocket连接");
+            if (businessPool != null) {
+                businessPool.close();
             }
         } catch (Exception e) {
             logger.warn("关闭业务频道WebSocket失败: {}", e.getMessage());
@@ -241,59 +247,33 @@ public class WebSocketUtil {
     }
 
     /**
-     * 连接bussiness频道
+     * 连接业务频道连接池，K线等按交易对的订阅分散到多条连接上
      */
-    private void connectBussinessChannel() {
-        CompletableFuture.runAsync(() -> {
-            try {
-                Request request = new Request.Builder()
-                        .url(okxApiConfig.getWs().getBussinessChannel())
-                        .build();
-
-                bussinessWebSocket = okHttpClient.newWebSocket(request, new WebSocketListener() {
-                    @Override
-                    public void onOpen(WebSocket webSocket, Response response) {
-                        logger.info("业务频道WebSocket连接成功");
-                        bussinessConnected.set(true);
-                        lastBusinessMessageTime.set(System.currentTimeMillis());
-
-                        // 重连成功，重置重试计数器
-                        businessRetryCount.set(0);
-
-                        // 恢复业务频道的操作
-                        restoreBusinessOperations();
-                    }
-
-                    @Override
-                    public void onMessage(WebSocket webSocket, String text) {
-                        lastBusinessMessageTime.set(System.currentTimeMillis());
-                        handleMessage(text);
-                    }
-
-                    @Override
-                    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
-                        logger.error("业务频道WebSocket连接失败", t);
-                        bussinessConnected.set(false);
-                        // 尝试重连
-                        scheduleBusinessReconnect();
-                    }
+    private void connectBusinessPool() {
+        businessPool.connectAll();
+    }
 
-                    @Override
-                    public void onClosed(WebSocket webSocket, int code, String reason) {
-                        logger.info("业务频道WebSocket连接关闭: {}, {}", code, reason);
-                        bussinessConnected.set(false);
-                        // 如果不是应用主动关闭，尝试重连
-                        if (code != 1000) {
-                            scheduleBusinessReconnect();
-                        }
-                    }
-                });
-            } catch (Exception e) {
-                logger.error("创建业务频道WebSocket连接失败", e);
-                bussinessConnected.set(false);
-                scheduleBusinessReconnect();
+    /**
+     * 业务频道分片重连成功，在分片重新订阅之前同步发布事件，
+     * 事件携带断线时间和分片上的订阅，用于补齐断线期间缺失的K线
+     */
+    private void onBusinessShardReconnected(int shardIndex, long disconnectedAt, List<JSONObject> topics) {
+        try {
+            if (applicationEventPublisher != null && !isShuttingDown.get()) {
+                logger.info("发布WebSocket业务频道重连事件，分片#{}，订阅 {} 个", shardIndex, topics.size());
+                applicationEventPublisher.publishEvent(new WebSocketReconnectEvent(this, WebSocketReconnectEvent.ReconnectType.BUSINESS,
+                        shardIndex, disconnectedAt, topics));
             }
-        }, websocketConnectScheduler);
+        } catch (Exception e) {
+            logger.error("发布WebSocket业务频道重连事件失败", e);
+        }
+    }
+
+    /**
+     * 业务频道各分片状态
+     */
+    public Map<String, Object> getBusinessShardStats() {
+        return businessPool != null ? businessPool.getStats() : Map.of();
     }
 
     /**
@@ -555,16 +535,9 @@ public class WebSocketUtil {
                 }
             }
 
-            // 检查业务频道连接活跃度 - 业务频道不强制要求频繁ping
-            if (bussinessWebSocket != null && bussinessConnected.get()) {
-                // 业务频道可能长时间没有消息，所以不基于消息时间触发重连
-                try {
-                    bussinessWebSocket.send("ping");
-//                    debugLog("发送业务频道ping消息");
-                } catch (Exception e) {
-                    logger.warn("发送业务频道ping消息失败，将尝试重连", e);
-                    scheduleBusinessReconnect();
-                }
+            // 检查业务频道连接活跃度 - 每个分片独立ping，失败只重连该分片
+            if (businessPool != null) {
+                businessPool.ping();
             }
 
             // 检查私有频道连接活跃度 - 私有频道也不强制要求频繁ping
@@ -588,9 +561,12 @@ public class WebSocketUtil {
      */
     @Async("klineHandleScheduler")
     private void handleMessage(String message) {
+        // 消息处理器在当前线程同步执行，K线处理器以此作为行情到下单追踪的起点
+        TickTrace.markFrameReceived();
         try {
             // 处理简单的ping-pong响应
             if ("ping".equals(message)) {
+                TradingMetrics.wsFrame("control");
                 if (publicWebSocket != null) {
                     publicWebSocket.send("pong");
                 }
@@ -603,16 +579,22 @@ public class WebSocketUtil {
 
             if ("pong".equals(message)) {
 //                debugLog("收到简单pong响应");
+                TradingMetrics.wsFrame("control");
                 return;
             }
 
             JSONObject jsonMessage;
+            long parseStart = System.nanoTime();
             try {
                 jsonMessage = JSON.parseObject(message);
             } catch (Exception e) {
                 logger.warn("无法解析WebSocket消息为JSON: {}", message);
                 return;
             }
+            TradingMetrics.recordWsParse(System.nanoTime() - parseStart);
+            JSONObject frameArg = jsonMessage.getJSONObject("arg");
+            // 订阅确认等事件消息也带 arg，按控制消息统计
+            TradingMetrics.wsFrame(frameArg != null && !jsonMessage.containsKey("event") ? frameArg.getString("channel") : "control");
 
             // 处理错误消息
             if (jsonMessage.containsKey("event") && "error".equals(jsonMessage.getString("event"))) {
@@ -660,8 +642,9 @@ public class WebSocketUtil {
                     privateConnected.set(true);
                     // 登录成功后恢复私有频道的订阅
                     restorePrivateOperations();
-                    // 自动订阅账户余额更新
+                    // 自动订阅账户余额和订单更新
                     subscribeToBalanceUpdates();
+                    subscribeToOrderUpdates();
                 } else {
                     // 登录失败
                     String code = jsonMessage.getString("code");
@@ -705,8 +688,9 @@ public class WebSocketUtil {
                     privateConnected.set(true);
                     // 登录成功后恢复私有频道的订阅
                     restorePrivateOperations();
-                    // 自动订阅账户余额更新
+                    // 自动订阅账户余额和订单更新
                     subscribeToBalanceUpdates();
+                    subscribeToOrderUpdates();
                 }
                 return;
             }
@@ -722,7 +706,9 @@ public class WebSocketUtil {
             }
 
             if (topic != null && messageHandlers.containsKey(topic)) {
+                long dispatchStart = System.nanoTime();
                 messageHandlers.get(topic).accept(jsonMessage);
+                TradingMetrics.recordWsDispatch(topic, System.nanoTime() - dispatchStart);
             } else {
                 debugLog("收到未处理的WebSocket消息: {}", message);
             }
@@ -799,7 +785,8 @@ public class WebSocketUtil {
         JSONObject arg = new JSONObject();
         arg.put("channel", topic);
         if (topic.equals("orders")) {
-            arg.put("instType", "SPOT");
+            // 现货和合约订单都需要推送
+            arg.put("instType", "ANY");
         }
 
         JSONObject[] args = new JSONObject[]{arg};
@@ -924,6 +911,17 @@ public class WebSocketUtil {
      * @param arg 订阅参数对象
      */
     public void subscribePublicTopicWithArgs(JSONObject arg, String... symbols) {
+        if (symbols != null && symbols.length > 0) {
+            // 业务频道由分片连接池记录订阅，未连接的分片在连接建立后自行订阅
+            if (businessPool == null) {
+                logger.warn("业务频道WebSocket未启用，忽略订阅，参数: {}", arg);
+                return;
+            }
+            businessPool.subscribe(arg);
+            debugLog("订阅业务频道主题，分片#{}，参数: {}", businessPool.shardIndexOf(arg.getString("instId")), arg);
+            return;
+        }
+
         // 创建订阅消息
         JSONObject subscribeMessage = new JSONObject();
         subscribeMessage.put("op", "subscribe");
@@ -935,47 +933,23 @@ public class WebSocketUtil {
         String key = "custom:" + arg.toJSONString();
         publicSubscribedTopics.add(key);
 
-        WebSocket targetSocket;
-        ConcurrentLinkedQueue<PendingOperation> targetQueue;
-
-        if (symbols != null && symbols.length > 0) {
-            targetSocket = bussinessWebSocket;
-            if (!bussinessConnected.get() || targetSocket == null) {
-                // 如果未连接，加入待执行队列
-                PendingOperation operation = new PendingOperation(
-                        "业务频道自定义订阅: " + key,
-                        () -> {
-                            if (bussinessWebSocket != null) {
-                                bussinessWebSocket.send(subscribeMessage.toJSONString());
-                                logger.info("恢复订阅业务频道自定义主题，参数: {}", arg);
-                            } else {
-                                throw new OkxApiException("业务频道WebSocket未连接");
-                            }
-                        }
-                );
-                publicPendingOperations.offer(operation);
-                logger.info("添加待执行的业务频道自定义订阅，参数: {}", arg);
-                return;
-            }
-        } else {
-            targetSocket = publicWebSocket;
-            if (!publicConnected.get() || targetSocket == null) {
-                // 如果未连接，加入待执行队列
-                PendingOperation operation = new PendingOperation(
-                        "公共频道自定义订阅: " + key,
-                        () -> {
-                            if (publicWebSocket != null) {
-                                publicWebSocket.send(subscribeMessage.toJSONString());
-//                                logger.info("恢复订阅公共频道自定义主题，参数: {}", arg);
-                            } else {
-                                throw new OkxApiException("公共频道WebSocket未连接");
-                            }
+        WebSocket targetSocket = publicWebSocket;
+        if (!publicConnected.get() || targetSocket == null) {
+            // 如果未连接，加入待执行队列
+            PendingOperation operation = new PendingOperation(
+                    "公共频道自定义订阅: " + key,
+                    () -> {
+                        if (publicWebSocket != null) {
+                            publicWebSocket.send(subscribeMessage.toJSONString());
+//                            logger.info("恢复订阅公共频道自定义主题，参数: {}", arg);
+                        } else {
+                            throw new OkxApiException("公共频道WebSocket未连接");
                         }
-                );
-                publicPendingOperations.offer(operation);
-                logger.info("添加待执行的公共频道自定义订阅，参数: {}", arg);
-                return;
-            }
+                    }
+            );
+            publicPendingOperations.offer(operation);
+            logger.info("添加待执行的公共频道自定义订阅，参数: {}", arg);
+            return;
         }
 
         // 直接发送
@@ -989,7 +963,15 @@ public class WebSocketUtil {
      * @param arg 取消订阅参数对象
      */
     public void unsubscribePublicTopicWithArgs(JSONObject arg, String... symbols) {
-        if (publicWebSocket == null || bussinessWebSocket == null) {
+        if (symbols != null && symbols.length > 0) {
+            if (businessPool != null) {
+                businessPool.unsubscribe(arg);
+                logger.info("取消订阅业务频道主题，参数: {}", arg);
+            }
+            return;
+        }
+
+        if (publicWebSocket == null) {
             logger.warn("公共频道WebSocket未连接，无法取消订阅");
             return;
         }
@@ -1004,21 +986,12 @@ public class WebSocketUtil {
         String key = "custom:" + arg.toJSONString();
         publicSubscribedTopics.remove(key);
 
-        WebSocket targetSocket;
-        if (symbols != null && symbols.length > 0) {
-            targetSocket = bussinessWebSocket;
-            if (!bussinessConnected.get()) {
-                return;
-            }
-        } else {
-            targetSocket = publicWebSocket;
-            if (!publicConnected.get()) {
-                return;
-            }
+        if (!publicConnected.get()) {
+            return;
         }
 
         // 直接发送
-        targetSocket.send(unsubscribeMessage.toJSONString());
+        publicWebSocket.send(unsubscribeMessage.toJSONString());
         logger.info("取消订阅公共频道主题，参数: {}", arg);
     }
 
@@ -1042,9 +1015,9 @@ public class WebSocketUtil {
             CompletableFuture.runAsync(() -> {
                 logger.info("开始恢复公共频道订阅，共 {} 个待执行操作", publicPendingOperations.size());
 
-            // 如果两个连接都已经就绪，才开始恢复操作
-            if (!publicConnected.get() || !bussinessConnected.get()) {
-                logger.info("公共频道连接尚未就绪，等待所有连接建立后再恢复");
+            // 业务频道订阅由分片连接池各自恢复，这里只需要公共频道就绪
+            if (!publicConnected.get()) {
+                logger.info("公共频道连接尚未就绪，等待连接建立后再恢复");
                 return;
             }
 
@@ -1188,44 +1161,6 @@ public class WebSocketUtil {
         }
     }
 
-    /**
-     * 恢复业务频道的操作
-     */
-    private void restoreBusinessOperations() {
-        // 检查应用是否正在关闭
-        if (isShuttingDown.get()) {
-            logger.info("应用正在关闭,跳过恢复业务频道操作");
-            return;
-        }
-
-        // 检查线程池是否已关闭
-        if (reconnectScheduler.isShutdown() || reconnectScheduler.isTerminated()) {
-            logger.warn("重连调度器已关闭,无法恢复业务频道操作");
-            return;
-        }
-
-        try {
-            CompletableFuture.runAsync(() -> {
-            logger.info("开始恢复业务频道操作");
-
-            if (!bussinessConnected.get()) {
-                logger.info("业务频道连接尚未就绪，等待连接建立后再恢复");
-                return;
-            }
-
-            // 目前业务频道没有特定的待执行操作队列
-            // 可以在这里添加业务频道相关的恢复逻辑
-            logger.info("业务频道操作恢复完成");
-
-            // 发布WebSocket重连事件（已在调用处处理）
-        }, reconnectScheduler);
-        } catch (RejectedExecutionException e) {
-            logger.warn("无法提交恢复业务频道操作任务,线程池可能已关闭: {}", e.getMessage());
-        } catch (Exception e) {
-            logger.error("恢复业务频道操作失败", e);
-        }
-    }
-
     /**
      * 检查私有WebSocket是否已连接
      *
@@ -1235,6 +1170,13 @@ public class WebSocketUtil {
         return privateWebSocket != null;
     }
 
+    /**
+     * 私有频道是否已登录，可以发送下单等请求
+     */
+    public boolean isPrivateChannelReady() {
+        return privateConnected.get() && privateWebSocket != null;
+    }
+
     /**
      * 检查公共WebSocket是否已连接
      *
@@ -1265,24 +1207,9 @@ public class WebSocketUtil {
                 }
             }
 
-            // 检查业务频道连接状态 - 业务频道容忍度更高
-            if (!bussinessConnected.get() || bussinessWebSocket == null) {
-                // 如果连接状态为false或WebSocket为null，才认为需要重连
-                // 不基于消息时间判断，因为业务频道可能长时间没有消息
-                logger.warn("业务频道连接检测失败，状态: {}, WebSocket: {}, 最后消息时间: {} 秒前",
-                        bussinessConnected.get(),
-                        bussinessWebSocket != null ? "存在" : "null",
-                        (currentTime - lastBusinessMessageTime.get()) / 1000);
-
-                if (!isCurrentlyReconnecting("business")) {
-                    scheduleBusinessReconnect();
-                }
-            } else if (currentTime - lastBusinessMessageTime.get() > 300000) {
-                // 只有超过5分钟没有消息时才基于消息时间重连
-                logger.warn("业务频道超过5分钟没有消息，尝试重连");
-                if (!isCurrentlyReconnecting("business")) {
-                    scheduleBusinessReconnect();
-                }
+            // 检查业务频道各分片 - 只重连有问题的分片，超过5分钟没有消息才基于消息时间重连
+            if (businessPool != null) {
+                businessPool.checkAndReconnect(300000);
             }
 
             // 检查私有频道连接状态 - 私有频道容忍度更高
@@ -1377,107 +1304,6 @@ public class WebSocketUtil {
         }
     }
 
-    /**
-     * 安排业务频道重连 - 优化版本
-     */
-    private void scheduleBusinessReconnect() {
-        // 检查应用是否正在关闭
-        if (isShuttingDown.get()) {
-            logger.info("应用正在关闭,跳过业务频道重连");
-            return;
-        }
-
-        // 检查线程池是否已关闭
-        if (reconnectScheduler.isShutdown() || reconnectScheduler.isTerminated()) {
-            logger.warn("重连调度器已关闭,无法安排业务频道重连");
-            return;
-        }
-
-        if (isCurrentlyReconnecting("business")) {
-            debugLog("业务频道已在重连中，跳过本次重连请求");
-            return;
-        }
-
-        markReconnectStart("business");
-
-        try {
-            reconnectScheduler.submit(() -> {
-            try {
-                int currentRetry = businessRetryCount.getAndIncrement();
-
-                // 优化重连延迟策略：更快的初始重连，渐进式增加延迟
-                long delaySeconds;
-                if (currentRetry == 0) {
-                    delaySeconds = 1; // 首次重连立即执行
-                } else if (currentRetry <= 3) {
-                    delaySeconds = currentRetry * 2; // 2, 4, 6秒
-                } else if (currentRetry <= 10) {
-                    delaySeconds = 10; // 保持10秒
-                } else {
-                    delaySeconds = 20; // 最大20秒，而不是30秒
-                    businessRetryCount.set(10); // 限制最大重试次数
-                }
-
-                debugLog("业务频道重连尝试 #{}, 延迟 {} 秒", currentRetry, delaySeconds);
-
-                if (delaySeconds > 1) {
-                    Thread.sleep(delaySeconds * 1000);
-                }
-
-                if (bussinessWebSocket != null) {
-                    try {
-                        bussinessWebSocket.close(1000, "Reconnecting");
-                    } catch (Exception e) {
-                        debugLog("关闭旧业务频道连接失败: {}", e.getMessage());
-                    }
-                }
-
-                connectBussinessChannel();
-
-                // 检查重连是否成功 - 缩短等待时间
-                Thread.sleep(3000); // 等待3秒检查连接状态
-                if (bussinessConnected.get()) {
-                    // 重连成功，重置重试计数器
-                    businessRetryCount.set(0);
-                    logger.info("业务频道重连成功");
-
-                    // 恢复业务频道的操作（如果有）
-                    restoreBusinessOperations();
-
-                    // 发布业务频道重连事件
-                    try {
-                        if (applicationEventPublisher != null) {
-                            logger.info("发布WebSocket业务频道重连事件");
-                            applicationEventPublisher.publishEvent(new WebSocketReconnectEvent(this, WebSocketReconnectEvent.ReconnectType.BUSINESS));
-                        }
-                    } catch (Exception e) {
-                        logger.error("发布WebSocket业务频道重连事件失败", e);
-                    }
-                } else {
-                    // 如果重连失败，继续安排下一次重试
-                    logger.warn("业务频道重连失败，将安排下一次重试");
-                    markReconnectEnd("business"); // 先结束当前重连标记
-                    scheduleBusinessReconnect(); // 再安排下一次重连
-                    return;
-                }
-            } catch (Exception e) {
-                logger.error("重连业务频道失败", e);
-                markReconnectEnd("business");
-                scheduleBusinessReconnect();
-                return;
-            } finally {
-                markReconnectEnd("business");
-            }
-        });
-        } catch (RejectedExecutionException e) {
-            logger.warn("无法提交业务频道重连任务,线程池可能已关闭: {}", e.getMessage());
-            markReconnectEnd("business");
-        } catch (Exception e) {
-            logger.error("安排业务频道重连失败", e);
-            markReconnectEnd("business");
-        }
-    }
-
     /**
      * 安排公共频道重连 - 优化版本
      */
@@ -1578,4 +1404,17 @@ public class WebSocketUtil {
             logger.error("订阅账户余额更新失败", e);
         }
     }
+
+    /**
+     * 自动订阅订单更新
+     * 下单后的成交、撤销和拒绝由orders频道推送，登录成功和重连时重新订阅
+     */
+    private void subscribeToOrderUpdates() {
+        try {
+            logger.info("自动订阅订单更新");
+            subscribePrivateTopic("orders");
+        } catch (Exception e) {
+            logger.error("订阅订单更新失败", e);
+        }
+    }
 }
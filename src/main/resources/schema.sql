@@ -142,6 +142,25 @@ create table candlestick_history
  trades       bigint          null,
  volume       decimal(30, 15) null);
 
+create table backfill_checkpoint
+(id           bigint auto_increment primary key,
+ symbol       varchar(20)  not null,
+ interval_val varchar(10)  not null,
+ start_time   datetime     not null,
+ end_time     datetime     not null,
+ cursor_time  datetime     not null,
+ priority     varchar(20)  not null,
+ status       varchar(20)  not null,
+ attempts     int          null,
+ saved_count  bigint       null,
+ last_error   varchar(500) null,
+ create_time  datetime     null,
+ update_time  datetime     null) comment '历史数据回填检查点' collate = utf8mb4_unicode_ci;
+
+create index idx_backfill_status on backfill_checkpoint (status);
+
+create index idx_backfill_symbol_interval on backfill_checkpoint (symbol, interval_val);
+
 create table fund_data
 (id               bigint auto_increment primary key,
  record_time      datetime(6)    not null,
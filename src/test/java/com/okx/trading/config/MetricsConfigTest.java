@@ -0,0 +1,84 @@
+package com.okx.trading.config;
+
+import com.okx.trading.util.BoundedVirtualThreadExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 监控指标配置测试
+ * 运行统计中的数值项注册为 Gauge 并随统计变化，线程池暴露队列长度
+ */
+public class MetricsConfigTest {
+
+    @Test
+    public void testStatsBoundAsGauges() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AtomicLong requests = new AtomicLong(3);
+        MetricsConfig.bindStats(registry, "okx.test", () -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("requests", requests.get());
+            stats.put("connected", true);
+            stats.put("mode", "ws");
+            return stats;
+        });
+
+        assertEquals(3.0, registry.get("okx.test.requests").gauge().value());
+        assertEquals(1.0, registry.get("okx.test.connected").gauge().value());
+        assertNull(registry.find("okx.test.mode").gauge());
+        requests.set(7);
+        assertEquals(7.0, registry.get("okx.test.requests").gauge().value());
+    }
+
+    @Test
+    public void testShardStatsTaggedByShard() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shard-0", Map.of("topics", 10, "connected", true));
+        stats.put("shard-1", Map.of("topics", 4, "connected", false));
+        MetricsConfig.bindShardStats(registry, "okx.ws.shard", () -> stats);
+
+        assertEquals(10.0, registry.get("okx.ws.shard.topics").tag("shard", "shard-0").gauge().value());
+        assertEquals(4.0, registry.get("okx.ws.shard.topics").tag("shard", "shard-1").gauge().value());
+        assertEquals(0.0, registry.get("okx.ws.shard.connected").tag("shard", "shard-1").gauge().value());
+    }
+
+    @Test
+    public void testExecutorQueueDepth() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            new MetricsConfig().executorServiceMetrics(Map.of("testExecutor", executor)).bindTo(registry);
+            executor.submit(() -> {
+                Thread.sleep(200);
+                return null;
+            });
+            executor.submit(() -> { });
+            assertEquals(1.0, registry.get("executor.queued").tag("name", "testExecutor").gauge().value());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testVirtualExecutorStatsTaggedByName() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor("test-io", 4);
+        try {
+            new MetricsConfig().executorServiceMetrics(Map.of("ioExecutor", executor)).bindTo(registry);
+
+            assertEquals(4.0, registry.get("okx.executor.virtual.maxConcurrency").tag("name", "ioExecutor").gauge().value());
+            assertEquals(0.0, registry.get("okx.executor.virtual.waiting").tag("name", "ioExecutor").gauge().value());
+            assertNull(registry.find("executor.queued").tag("name", "ioExecutor").gauge());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.okx.trading.listener;
+
+import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.adapter.CandlestickBarSeriesConverter;
+import com.okx.trading.event.WebSocketReconnectEvent;
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.model.entity.RealTimeStrategyEntity;
+import com.okx.trading.model.market.Candlestick;
+import com.okx.trading.service.HistoricalDataService;
+import com.okx.trading.service.PortfolioSnapshotService;
+import com.okx.trading.strategy.RealTimeStrategyManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.BaseStrategy;
+import org.ta4j.core.rules.BooleanRule;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 断线缺口补齐测试
+ * 补齐期间的推送暂存，缺失的K线按时间顺序先交给策略，再处理暂存的推送；补齐完成后推送直接分发
+ */
+public class WebSocketReconnectEventListenerTest {
+
+    private static final String SYMBOL = "BTC-USDT";
+    private static final String INTERVAL = "1m";
+    private static final ZoneId ZONE_ID = ZoneId.of("UTC+8");
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private HistoricalDataService historicalDataService;
+    private PortfolioSnapshotService portfolioSnapshotService;
+    private RealTimeStrategyManager manager;
+    private WebSocketReconnectEventListener listener;
+    private final List<Runnable> gapFillTasks = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        historicalDataService = mock(HistoricalDataService.class);
+        when(historicalDataService.getIntervalMinutes(INTERVAL)).thenReturn(1L);
+        portfolioSnapshotService = mock(PortfolioSnapshotService.class);
+
+        // 系统时钟远离2024年的K线，不在交易时间窗口内，分发只更新BarSeries
+        manager = new RealTimeStrategyManager(null, null, historicalDataService, null, null,
+                null, null, null, null, null, null, null, null, null);
+        ReflectionTestUtils.setField(manager, "portfolioSnapshotService", portfolioSnapshotService);
+        BarSeries series = new CandlestickBarSeriesConverter().convert(List.of(entity(0, "100")), SYMBOL);
+        manager.getRunningBarSeries().put(SYMBOL + "_" + INTERVAL, series);
+        RealTimeStrategyEntity state = new RealTimeStrategyEntity();
+        state.setId(1L);
+        state.setStrategyCode("GAP_TEST");
+        state.setSymbol(SYMBOL);
+        state.setInterval(INTERVAL);
+        state.setStrategy(new BaseStrategy(BooleanRule.FALSE, BooleanRule.FALSE));
+        manager.getRunningStrategies().put(state.getId(), state);
+
+        // 补齐任务暂存，由测试决定执行时机
+        ExecutorService gapFillExecutor = mock(ExecutorService.class);
+        doAnswer(invocation -> gapFillTasks.add(invocation.getArgument(0))).when(gapFillExecutor).execute(any(Runnable.class));
+        listener = new WebSocketReconnectEventListener(null, manager, historicalDataService, gapFillExecutor);
+        ReflectionTestUtils.setField(listener, "klineKafkaEnabled", true);
+    }
+
+    @Test
+    public void testMissedCandlesDispatchedBeforeBufferedPushes() {
+        // 历史接口返回的K线乱序
+        when(historicalDataService.fetchAndSaveHistoryWithIntegrityCheck(eq(SYMBOL), eq(INTERVAL), anyString(), anyString()))
+                .thenReturn(List.of(entity(3, "103"), entity(1, "101"), entity(2, "102")));
+        listener.handleWebSocketReconnect(reconnectEvent());
+        assertEquals(1, gapFillTasks.size());
+
+        // 补齐任务执行前收到的推送只暂存，不交给策略
+        manager.handleNewKlineData(SYMBOL, INTERVAL, push(3, "103.5"));
+        manager.handleNewKlineData(SYMBOL, INTERVAL, push(4, "104"));
+        verify(portfolioSnapshotService, never()).onPriceUpdate(anyString(), any());
+
+        gapFillTasks.get(0).run();
+
+        InOrder inOrder = inOrder(portfolioSnapshotService);
+        for (String close : List.of("101", "102", "103", "103.5", "104")) {
+            inOrder.verify(portfolioSnapshotService).onPriceUpdate(SYMBOL, new BigDecimal(close));
+        }
+        inOrder.verifyNoMoreInteractions();
+        // 缺失的K线都没有被较晚的推送挡掉，暂存的同周期推送覆盖补齐的K线
+        BarSeries series = manager.getRunningBarSeries().get(SYMBOL + "_" + INTERVAL);
+        assertEquals(5, series.getBarCount());
+        assertEquals(new BigDecimal("103.5"), series.getBar(3).getClosePrice().bigDecimalValue());
+        assertEquals(new BigDecimal("104"), series.getLastBar().getClosePrice().bigDecimalValue());
+    }
+
+    @Test
+    public void testPushesDispatchedDirectlyAfterGapFill() {
+        when(historicalDataService.fetchAndSaveHistoryWithIntegrityCheck(eq(SYMBOL), eq(INTERVAL), anyString(), anyString()))
+                .thenReturn(List.of(entity(1, "101")));
+        listener.handleWebSocketReconnect(reconnectEvent());
+        gapFillTasks.get(0).run();
+        verify(portfolioSnapshotService).onPriceUpdate(SYMBOL, new BigDecimal("101"));
+
+        manager.handleNewKlineData(SYMBOL, INTERVAL, push(2, "102"));
+
+        verify(portfolioSnapshotService).onPriceUpdate(SYMBOL, new BigDecimal("102"));
+        BarSeries series = manager.getRunningBarSeries().get(SYMBOL + "_" + INTERVAL);
+        assertEquals(3, series.getBarCount());
+        assertEquals(new BigDecimal("102"), series.getLastBar().getClosePrice().bigDecimalValue());
+    }
+
+    private static WebSocketReconnectEvent reconnectEvent() {
+        JSONObject arg = new JSONObject();
+        arg.put("channel", "candle" + INTERVAL);
+        arg.put("instId", SYMBOL);
+        long disconnectedAt = START.plusSeconds(90).atZone(ZONE_ID).toInstant().toEpochMilli();
+        return new WebSocketReconnectEvent(WebSocketReconnectEventListenerTest.class,
+                WebSocketReconnectEvent.ReconnectType.BUSINESS, 0, disconnectedAt, List.of(arg));
+    }
+
+    /**
+     * START 之后第 minute 分钟的已收盘K线
+     */
+    private static CandlestickEntity entity(int minute, String close) {
+        BigDecimal price = new BigDecimal(close);
+        return CandlestickEntity.builder()
+                .symbol(SYMBOL)
+                .intervalVal(INTERVAL)
+                .openTime(START.plusMinutes(minute))
+                .closeTime(START.plusMinutes(minute + 1))
+                .open(price)
+                .high(price)
+                .low(price)
+                .close(price)
+                .volume(BigDecimal.ONE)
+                .quoteVolume(price)
+                .build();
+    }
+
+    private static Candlestick push(int minute, String close) {
+        BigDecimal price = new BigDecimal(close);
+        return Candlestick.builder()
+                .symbol(SYMBOL)
+                .channel("candle" + INTERVAL)
+                .intervalVal(INTERVAL)
+                .openTime(START.plusMinutes(minute))
+                .open(price)
+                .high(price)
+                .low(price)
+                .close(price)
+                .volume(BigDecimal.ONE)
+                .quoteVolume(price)
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.entity.BackfillCheckpointEntity;
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.repository.BackfillCheckpointRepository;
+import com.okx.trading.service.BackfillSchedulerService.BackfillPriority;
+import com.okx.trading.service.HistoricalDataService;
+import com.okx.trading.service.TushareApiService;
+import com.okx.trading.util.UpstreamRateLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 回填调度器测试
+ * 使用 OkxApiMockServiceImpl 作为本地的OKX替身，分页请求走模拟服务自身按 history-candles 规则生成K线的实现
+ */
+public class BackfillSchedulerServiceImplTest {
+
+    private OkxApiMockServiceImpl okxApiService;
+    private HistoricalDataService historicalDataService;
+    private BackfillCheckpointRepository checkpointRepository;
+    private UpstreamRateLimiter rateLimiter;
+    private ScheduledExecutorService retryScheduler;
+    private BackfillSchedulerServiceImpl scheduler;
+
+    @BeforeEach
+    public void setUp() {
+        okxApiService = spy(new OkxApiMockServiceImpl());
+        historicalDataService = mock(HistoricalDataService.class);
+        when(historicalDataService.getIntervalMinutes("1m")).thenReturn(1L);
+
+        AtomicLong ids = new AtomicLong();
+        checkpointRepository = mock(BackfillCheckpointRepository.class);
+        when(checkpointRepository.save(any())).thenAnswer(inv -> {
+            BackfillCheckpointEntity entity = inv.getArgument(0);
+            if (entity.getId() == null) {
+                entity.setId(ids.incrementAndGet());
+            }
+            return entity;
+        });
+
+        rateLimiter = new UpstreamRateLimiter();
+        rateLimiter.init();
+
+        retryScheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler = newScheduler(2);
+        scheduler.start();
+    }
+
+    private BackfillSchedulerServiceImpl newScheduler(int workers) {
+        BackfillSchedulerServiceImpl created = new BackfillSchedulerServiceImpl(okxApiService, mock(TushareApiService.class),
+                historicalDataService, checkpointRepository, rateLimiter, Executors.newFixedThreadPool(workers), retryScheduler);
+        ReflectionTestUtils.setField(created, "workers", workers);
+        ReflectionTestUtils.setField(created, "retryBaseDelayMs", 50L);
+        return created;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.stop();
+        retryScheduler.shutdownNow();
+    }
+
+    @Test
+    public void testBackfillWalksRangeInPages() throws Exception {
+        List<CandlestickEntity> savedCandles = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> savedCandles.addAll(inv.getArgument(0))).when(historicalDataService).saveHistoricalData(anyList());
+        LocalDateTime end = LocalDateTime.now().withSecond(0).withNano(0);
+        LocalDateTime start = end.minusMinutes(250);
+
+        long saved = scheduler.submit("BTC-USDT", "1m", start, end, BackfillPriority.RESEARCH).get(10, TimeUnit.SECONDS);
+
+        // 250分钟按每页100条分为3页，[start, end) 每分钟一根，没有缺口也没有重复
+        verify(okxApiService, times(3)).getHistoryKlineData(eq("BTC-USDT"), eq("1m"), anyLong(), anyLong(), eq(100));
+        assertEquals(250L, saved);
+        Set<LocalDateTime> openTimes = savedCandles.stream().map(CandlestickEntity::getOpenTime).collect(Collectors.toSet());
+        assertEquals(250, savedCandles.size());
+        assertEquals(250, openTimes.size());
+        assertTrue(openTimes.contains(start));
+        // 分页边界的K线
+        assertTrue(openTimes.contains(start.plusMinutes(100)));
+        assertTrue(openTimes.contains(start.plusMinutes(200)));
+        assertTrue(openTimes.contains(end.minusMinutes(1)));
+        assertFalse(openTimes.contains(end));
+        verify(checkpointRepository, atLeastOnce()).save(argThat(c ->
+                BackfillCheckpointEntity.STATUS_COMPLETED.equals(c.getStatus()) && end.equals(c.getCursorTime())));
+    }
+
+    @Test
+    public void testFailedPageIsRetried() throws Exception {
+        doThrow(new RuntimeException("Deadlock found when trying to get lock"))
+                .doNothing()
+                .when(historicalDataService).saveHistoricalData(anyList());
+
+        LocalDateTime end = LocalDateTime.now().withSecond(0).withNano(0);
+        scheduler.submit("ETH-USDT", "1m", end.minusMinutes(50), end, BackfillPriority.LIVE_WARMUP).get(10, TimeUnit.SECONDS);
+
+        verify(okxApiService, times(2)).getHistoryKlineData(eq("ETH-USDT"), eq("1m"), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testHigherPriorityTasksRunFirst() throws Exception {
+        List<String> savedOrder = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> {
+            List<CandlestickEntity> page = inv.getArgument(0);
+            return savedOrder.add(page.get(0).getSymbol());
+        }).when(historicalDataService).saveHistoricalData(anyList());
+
+        // 单个工作线程，任务全部入队后再启动，按优先级和提交顺序出队
+        BackfillSchedulerServiceImpl single = newScheduler(1);
+        LocalDateTime end = LocalDateTime.now().withSecond(0).withNano(0);
+        try {
+            List<CompletableFuture<Long>> futures = List.of(
+                    single.submit("RESEARCH-1", "1m", end.minusMinutes(250), end, BackfillPriority.RESEARCH),
+                    single.submit("GAP-1", "1m", end.minusMinutes(50), end, BackfillPriority.GAP_FILL),
+                    single.submit("RESEARCH-2", "1m", end.minusMinutes(50), end, BackfillPriority.RESEARCH),
+                    single.submit("WARMUP-1", "1m", end.minusMinutes(150), end, BackfillPriority.LIVE_WARMUP));
+            single.start();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        } finally {
+            single.stop();
+        }
+
+        // 预热任务的两页都在研究回填之前，同优先级按提交顺序
+        assertEquals(List.of("WARMUP-1", "WARMUP-1", "GAP-1", "RESEARCH-1", "RESEARCH-1", "RESEARCH-1", "RESEARCH-2"),
+                savedOrder);
+    }
+
+    @Test
+    public void testRetryDelayIsBoundedWithJitter() {
+        for (int attempt = 1; attempt <= 30; attempt++) {
+            long delay = scheduler.computeRetryDelay(attempt);
+            long cap = Math.min(60000, 50L << Math.min(attempt - 1, 20));
+            assertTrue(delay >= cap / 2 && delay <= cap, "attempt " + attempt + " delay " + delay);
+        }
+    }
+}
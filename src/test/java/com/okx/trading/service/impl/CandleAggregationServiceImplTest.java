@@ -0,0 +1,179 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.repository.CandlestickRepository;
+import com.okx.trading.service.CandleArchiveService;
+import com.okx.trading.service.RedisCacheService;
+import com.okx.trading.util.KlinePeriodUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 1分钟K线聚合测试
+ */
+public class CandleAggregationServiceImplTest {
+
+    @Test
+    public void testAggregateFifteenMinutes() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 6, 9, 0);
+        // 9:00 ~ 9:37，最后一个15分钟周期不完整
+        List<CandlestickEntity> minutes = minuteCandles(start, 38);
+
+        List<CandlestickEntity> result = CandleAggregationServiceImpl.aggregateMinuteCandles(minutes, "BTC-USDT", "15m");
+
+        assertEquals(2, result.size());
+        CandlestickEntity first = result.get(0);
+        assertEquals(start, first.getOpenTime());
+        assertEquals(start.plusMinutes(15), first.getCloseTime());
+        assertEquals(0, new BigDecimal("100").compareTo(first.getOpen()));
+        assertEquals(0, new BigDecimal("114.5").compareTo(first.getClose()));
+        assertEquals(0, new BigDecimal("115").compareTo(first.getHigh()));
+        assertEquals(0, new BigDecimal("99").compareTo(first.getLow()));
+        assertEquals(0, new BigDecimal("15").compareTo(first.getVolume()));
+        assertEquals(Long.valueOf(30), first.getTrades());
+        assertEquals(start.plusMinutes(15), result.get(1).getOpenTime());
+    }
+
+    @Test
+    public void testGapMakesPeriodIncomplete() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 6, 0, 0);
+        List<CandlestickEntity> minutes = minuteCandles(start, 120);
+        minutes.remove(70);
+
+        List<CandlestickEntity> result = CandleAggregationServiceImpl.aggregateMinuteCandles(minutes, "BTC-USDT", "1H");
+
+        assertEquals(1, result.size());
+        assertEquals(start, result.get(0).getOpenTime());
+    }
+
+    @Test
+    public void testAlignmentMatchesLastCompletePeriod() {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 8, 13, 47, 12);
+        for (String interval : new String[]{"5m", "15m", "30m", "1H", "2H", "4H", "12H", "1D", "1W", "1M"}) {
+            LocalDateTime lastComplete = KlinePeriodUtil.getLastCompletePeriodStart(now, interval);
+            LocalDateTime currentPeriod = KlinePeriodUtil.getPeriodStartTime(now, interval);
+            assertEquals(lastComplete, KlinePeriodUtil.getPeriodStartTime(lastComplete, interval), interval);
+            assertEquals(currentPeriod, KlinePeriodUtil.getPeriodEndTime(lastComplete, interval), interval);
+            assertTrue(KlinePeriodUtil.isAggregatableFromMinute(interval), interval);
+        }
+        assertFalse(KlinePeriodUtil.isAggregatableFromMinute("1m"));
+        assertFalse(KlinePeriodUtil.isAggregatableFromMinute("7m"));
+        assertFalse(KlinePeriodUtil.isAggregatableFromMinute("5H"));
+    }
+
+    @Test
+    public void testDeriveMissingReadsOnlyMissingRuns() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 6, 9, 0);
+        CandlestickRepository repository = repositoryWith(minuteCandles(start, 120));
+        CandleAggregationServiceImpl service = newService(repository);
+
+        // 9:00、9:15 相邻，10:30 单独成段，中间已有的周期不读取
+        List<CandlestickEntity> derived = service.deriveMissing("BTC-USDT", "15m",
+                List.of(start.plusMinutes(90), start, start.plusMinutes(15)));
+
+        assertEquals(List.of(start, start.plusMinutes(15), start.plusMinutes(90)),
+                derived.stream().map(CandlestickEntity::getOpenTime).collect(Collectors.toList()));
+        verify(repository).findBySymbolAndIntervalAndOpenTimeBetweenOrderByOpenTimeAsc(
+                "BTC-USDT", "1m", start, start.plusMinutes(29));
+        verify(repository).findBySymbolAndIntervalAndOpenTimeBetweenOrderByOpenTimeAsc(
+                "BTC-USDT", "1m", start.plusMinutes(90), start.plusMinutes(104));
+        verify(repository, times(2)).findBySymbolAndIntervalAndOpenTimeBetweenOrderByOpenTimeAsc(
+                anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    public void testIncrementalAggregationWaitsForPeriodToFinish() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 6, 9, 0);
+        List<CandlestickEntity> minutes = minuteCandles(start, 20);
+        CandlestickRepository repository = repositoryWith(minutes);
+        CandleAggregationServiceImpl service = newService(repository);
+
+        // 9:10 保存的分钟K线属于未结束的9:00周期，不读取也不聚合
+        setClock(service, start.plusMinutes(10).plusSeconds(30));
+        service.onMinuteCandlesSaved(minutes.subList(0, 10));
+        verify(repository, never()).findBySymbolAndIntervalAndOpenTimeBetweenOrderByOpenTimeAsc(
+                anyString(), anyString(), eq(start), any());
+
+        // 9:15 之后9:00周期结束，聚合一次
+        setClock(service, start.plusMinutes(15).plusSeconds(5));
+        service.onMinuteCandlesSaved(minutes.subList(10, 15));
+        // 9:16 的批次不再重复聚合9:00周期，也不读取未结束的9:15周期
+        setClock(service, start.plusMinutes(16).plusSeconds(5));
+        service.onMinuteCandlesSaved(minutes.subList(15, 16));
+
+        verify(repository, times(1)).findBySymbolAndIntervalAndOpenTimeBetweenOrderByOpenTimeAsc(
+                "BTC-USDT", "1m", start, start.plusMinutes(14));
+        verify(repository, never()).findBySymbolAndIntervalAndOpenTimeBetweenOrderByOpenTimeAsc(
+                anyString(), anyString(), eq(start.plusMinutes(15)), any());
+        verify(repository, times(1)).saveAll(argThat(candles -> {
+            List<CandlestickEntity> list = (List<CandlestickEntity>) candles;
+            return list.size() == 1 && list.get(0).getOpenTime().equals(start);
+        }));
+    }
+
+    private static CandlestickRepository repositoryWith(List<CandlestickEntity> minutes) {
+        CandlestickRepository repository = mock(CandlestickRepository.class);
+        when(repository.findBySymbolAndIntervalAndOpenTimeBetweenOrderByOpenTimeAsc(anyString(), eq("1m"), any(), any()))
+                .thenAnswer(invocation -> {
+                    LocalDateTime from = invocation.getArgument(2);
+                    LocalDateTime to = invocation.getArgument(3);
+                    return minutes.stream()
+                            .filter(candle -> !candle.getOpenTime().isBefore(from) && !candle.getOpenTime().isAfter(to))
+                            .collect(Collectors.toList());
+                });
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        return repository;
+    }
+
+    private static CandleAggregationServiceImpl newService(CandlestickRepository repository) {
+        // 增量聚合任务在调用线程上直接执行
+        ExecutorService executor = mock(ExecutorService.class);
+        when(executor.submit(any(Runnable.class))).thenAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        });
+        CandleAggregationServiceImpl service = new CandleAggregationServiceImpl(repository,
+                mock(CandleArchiveService.class), mock(RedisCacheService.class), executor);
+        ReflectionTestUtils.setField(service, "incrementalIntervals", "15m");
+        service.init();
+        return service;
+    }
+
+    private static void setClock(CandleAggregationServiceImpl service, LocalDateTime now) {
+        ZoneId zone = ZoneId.systemDefault();
+        ReflectionTestUtils.setField(service, "clock", Clock.fixed(now.atZone(zone).toInstant(), zone));
+    }
+
+    private static List<CandlestickEntity> minuteCandles(LocalDateTime start, int count) {
+        List<CandlestickEntity> candles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BigDecimal open = BigDecimal.valueOf(100 + i);
+            candles.add(CandlestickEntity.builder()
+                    .symbol("BTC-USDT")
+                    .intervalVal("1m")
+                    .openTime(start.plusMinutes(i))
+                    .closeTime(start.plusMinutes(i + 1))
+                    .open(open)
+                    .high(open.add(BigDecimal.ONE))
+                    .low(open.subtract(BigDecimal.ONE))
+                    .close(open.add(new BigDecimal("0.5")))
+                    .volume(BigDecimal.ONE)
+                    .trades(2L)
+                    .build());
+        }
+        return candles;
+    }
+}
@@ -0,0 +1,140 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.adapter.CandlestickBarSeriesConverter;
+import com.okx.trading.model.entity.CandlestickEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ta4j.core.Bar;
+import org.ta4j.core.BarSeries;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * K线列式归档测试
+ * 归档按十进制精确保存价格，读出的 BarSeries 与从MySQL读取后转换的结果一致
+ */
+public class CandleArchiveServiceImplTest {
+
+    @TempDir
+    Path archiveDir;
+
+    @Test
+    public void testRoundTripAcrossMonths() {
+        CandleArchiveServiceImpl archive = new CandleArchiveServiceImpl(archiveDir.toString());
+
+        // 跨越月份边界的1分钟K线，乱序且包含重复
+        LocalDateTime start = LocalDateTime.of(2024, 1, 31, 23, 0);
+        List<CandlestickEntity> candles = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            candles.add(candle(start.plusMinutes(i), 100 + i));
+        }
+        Collections.shuffle(candles);
+        candles.add(candle(start.plusMinutes(5), 105));
+        archive.append(candles);
+
+        LocalDateTime end = start.plusMinutes(119);
+        assertEquals(120, archive.count("BTC-USDT", "1m", start, end));
+
+        BarSeries series = archive.loadBarSeries("BTC-USDT", "1m", start, end, "BTC-USDT_1m");
+        assertEquals(120, series.getBarCount());
+        for (int i = 0; i < series.getBarCount(); i++) {
+            assertEquals(100 + i, series.getBar(i).getClosePrice().doubleValue(), 1e-9);
+        }
+
+        // 子区间读取包含两端
+        List<CandlestickEntity> loaded = archive.loadCandles("BTC-USDT", "1m", start.plusMinutes(50), start.plusMinutes(69));
+        assertEquals(20, loaded.size());
+        assertEquals(start.plusMinutes(50), loaded.get(0).getOpenTime());
+        assertEquals(0, new BigDecimal("169").compareTo(loaded.get(19).getClose()));
+    }
+
+    @Test
+    public void testArchiveMatchesDatabaseConversion() {
+        CandleArchiveServiceImpl archive = new CandleArchiveServiceImpl(archiveDir.toString());
+
+        // double 无法精确表示的价格和成交量，以及MySQL DECIMAL(30,15) 读出的尾随零
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 0, 0);
+        String[] prices = {"43123.123456789012345", "0.000000012345678", "0.1", "67000.000000000000000", "1E+5"};
+        List<CandlestickEntity> candles = new ArrayList<>();
+        for (int i = 0; i < prices.length; i++) {
+            BigDecimal price = new BigDecimal(prices[i]);
+            candles.add(CandlestickEntity.builder()
+                    .symbol("BTC-USDT")
+                    .intervalVal("1m")
+                    .openTime(start.plusMinutes(i))
+                    .closeTime(start.plusMinutes(i).plusSeconds(59))
+                    .open(price)
+                    .high(price.add(new BigDecimal("0.000000000000001")))
+                    .low(price.subtract(new BigDecimal("0.3")))
+                    .close(price.add(new BigDecimal("0.000000000000007")))
+                    .volume(new BigDecimal("12345.678901234567890"))
+                    .build());
+        }
+        archive.append(candles);
+
+        LocalDateTime end = start.plusMinutes(prices.length - 1);
+        BarSeries archived = archive.loadBarSeries("BTC-USDT", "1m", start, end, "BTC-USDT_1m");
+        BarSeries converted = new CandlestickBarSeriesConverter().convert(candles, "BTC-USDT_1m");
+
+        assertEquals(prices.length, archived.getBarCount());
+        assertEquals(converted.getBarCount(), archived.getBarCount());
+        for (int i = 0; i < converted.getBarCount(); i++) {
+            Bar expected = converted.getBar(i);
+            Bar actual = archived.getBar(i);
+            assertEquals(expected.getTimePeriod(), actual.getTimePeriod());
+            assertEquals(expected.getEndTime(), actual.getEndTime());
+            assertEquals(expected.getOpenPrice(), actual.getOpenPrice());
+            assertEquals(expected.getHighPrice(), actual.getHighPrice());
+            assertEquals(expected.getLowPrice(), actual.getLowPrice());
+            assertEquals(expected.getClosePrice(), actual.getClosePrice());
+            assertEquals(expected.getVolume(), actual.getVolume());
+            assertEquals(expected.getAmount(), actual.getAmount());
+        }
+
+        List<CandlestickEntity> loaded = archive.loadCandles("BTC-USDT", "1m", start, end);
+        for (int i = 0; i < candles.size(); i++) {
+            assertEquals(0, candles.get(i).getHigh().compareTo(loaded.get(i).getHigh()));
+            assertEquals(0, candles.get(i).getClose().compareTo(loaded.get(i).getClose()));
+        }
+    }
+
+    @Test
+    public void testDailyBarsUseDaySlots() {
+        CandleArchiveServiceImpl archive = new CandleArchiveServiceImpl(archiveDir.toString());
+        LocalDateTime start = LocalDateTime.of(2024, 2, 1, 0, 0);
+        List<CandlestickEntity> candles = new ArrayList<>();
+        for (int i = 0; i < 29; i++) {
+            candles.add(candle(start.plusDays(i), 1000 + i, "1D"));
+        }
+        archive.append(candles);
+
+        assertEquals(29, archive.count("BTC-USDT", "1D", start, start.plusDays(28)));
+        assertEquals(0, archive.count("BTC-USDT", "1m", start, start.plusDays(28)));
+    }
+
+    private static CandlestickEntity candle(LocalDateTime openTime, double close) {
+        return candle(openTime, close, "1m");
+    }
+
+    private static CandlestickEntity candle(LocalDateTime openTime, double close, String interval) {
+        BigDecimal price = BigDecimal.valueOf(close);
+        return CandlestickEntity.builder()
+                .symbol("BTC-USDT")
+                .intervalVal(interval)
+                .openTime(openTime)
+                .closeTime(openTime.plusSeconds(59))
+                .open(price)
+                .high(price)
+                .low(price)
+                .close(price)
+                .volume(BigDecimal.ONE)
+                .build();
+    }
+}
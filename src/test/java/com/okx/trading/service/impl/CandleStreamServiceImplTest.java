@@ -0,0 +1,91 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.service.CandleStreamService.StreamFormat;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * K线流式导入导出格式测试
+ */
+public class CandleStreamServiceImplTest {
+
+    @Test
+    public void testRoundTripAllFormats() throws IOException {
+        List<CandlestickEntity> candles = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 8, 0);
+        for (int i = 0; i < 3; i++) {
+            candles.add(CandlestickEntity.builder()
+                    .symbol(i < 2 ? "BTC-USDT" : "ETH-USDT")
+                    .intervalVal("1m")
+                    .openTime(start.plusMinutes(i))
+                    .closeTime(i == 1 ? null : start.plusMinutes(i).plusSeconds(59))
+                    .open(new BigDecimal("62000.123456789012345"))
+                    .high(new BigDecimal("62010.5"))
+                    .low(new BigDecimal("61990.000000000000000"))
+                    .close(new BigDecimal("62005.1"))
+                    .volume(new BigDecimal("12.345"))
+                    .quoteVolume(i == 2 ? null : new BigDecimal("765432.1"))
+                    .trades(i == 0 ? null : 42L)
+                    .build());
+        }
+
+        for (StreamFormat format : StreamFormat.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            CandleStreamServiceImpl.CandleWriter writer = CandleStreamServiceImpl.createWriter(format, out);
+            for (CandlestickEntity candle : candles) {
+                writer.write(candle);
+            }
+            writer.finish();
+
+            CandleStreamServiceImpl.CandleReader reader = CandleStreamServiceImpl.createReader(
+                    format, new ByteArrayInputStream(out.toByteArray()));
+            for (CandlestickEntity expected : candles) {
+                CandlestickEntity actual = reader.next();
+                assertNotNull(actual, format.name());
+                assertEquals(expected.getSymbol(), actual.getSymbol(), format.name());
+                assertEquals(expected.getIntervalVal(), actual.getIntervalVal(), format.name());
+                assertEquals(expected.getOpenTime(), actual.getOpenTime(), format.name());
+                assertEquals(expected.getCloseTime(), actual.getCloseTime(), format.name());
+                assertDecimalEquals(expected.getOpen(), actual.getOpen());
+                assertDecimalEquals(expected.getLow(), actual.getLow());
+                assertDecimalEquals(expected.getQuoteVolume(), actual.getQuoteVolume());
+                assertEquals(expected.getTrades(), actual.getTrades(), format.name());
+            }
+            assertNull(reader.next(), format.name());
+        }
+    }
+
+    @Test
+    public void testTruncatedBinaryIsRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CandleStreamServiceImpl.CandleWriter writer = CandleStreamServiceImpl.createWriter(StreamFormat.BINARY, out);
+        writer.write(CandlestickEntity.builder().symbol("BTC-USDT").intervalVal("1m")
+                .openTime(LocalDateTime.of(2024, 1, 1, 0, 0)).close(BigDecimal.ONE).build());
+        writer.finish();
+        byte[] bytes = out.toByteArray();
+        byte[] truncated = java.util.Arrays.copyOf(bytes, bytes.length - 1);
+
+        CandleStreamServiceImpl.CandleReader reader = CandleStreamServiceImpl.createReader(
+                StreamFormat.BINARY, new ByteArrayInputStream(truncated));
+        assertNotNull(reader.next());
+        assertThrows(IOException.class, reader::next);
+    }
+
+    private static void assertDecimalEquals(BigDecimal expected, BigDecimal actual) {
+        if (expected == null) {
+            assertNull(actual);
+        } else {
+            assertEquals(0, expected.compareTo(actual));
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.entity.BacktestSummaryEntity;
+import com.okx.trading.model.entity.IndicatorDistributionEntity;
+import com.okx.trading.repository.BacktestSummaryRepository;
+import com.okx.trading.repository.IndicatorDistributionRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 指标分布评分测试
+ * 快照评分与实体原有评分逻辑一致，评分只在首次加载时查询数据库；
+ * 启动或全量重建后保存的回测汇总增量更新草图并保存为新版本，新版本在事务提交后才用于评分
+ */
+public class IndicatorDistributionServiceImplTest {
+
+    private static final IndicatorDistributionEntity.IndicatorType[] TYPES = IndicatorDistributionEntity.IndicatorType.values();
+
+    @Test
+    public void testSnapshotMatchesEntityScoring() {
+        Random random = new Random(7);
+        List<IndicatorDistributionEntity> distributions = distributions(random, 33);
+        // 分位数有相等值和缺失值的情况
+        distributions.get(0).setP40(distributions.get(0).getP30());
+        distributions.get(0).setP50(distributions.get(0).getP30());
+        distributions.get(1).setP60(null);
+
+        IndicatorDistributionSnapshot snapshot = IndicatorDistributionSnapshot.of(distributions);
+        assertEquals(3L, snapshot.getVersion());
+        for (IndicatorDistributionEntity distribution : distributions) {
+            List<BigDecimal> values = new ArrayList<>();
+            values.add(null);
+            values.add(distribution.getP20());
+            values.add(distribution.getP50());
+            values.add(distribution.getP90());
+            for (int i = 0; i < 200; i++) {
+                values.add(BigDecimal.valueOf(random.nextGaussian() * 3));
+            }
+            for (BigDecimal value : values) {
+                assertEquals(distribution.calculateScore(value), snapshot.score(distribution.getIndicatorName(), value), 1e-12,
+                        distribution.getIndicatorName() + "=" + value);
+            }
+        }
+        assertTrue(Double.isNaN(snapshot.score("unknown", BigDecimal.ONE)));
+    }
+
+    @Test
+    public void testScoringLoadsSnapshotOnce() {
+        IndicatorDistributionRepository repository = mock(IndicatorDistributionRepository.class);
+        List<IndicatorDistributionEntity> distributions = distributions(new Random(1), 33);
+        when(repository.findByIsCurrentTrue()).thenReturn(distributions);
+        IndicatorDistributionServiceImpl service = new IndicatorDistributionServiceImpl(mock(BacktestSummaryRepository.class), repository);
+
+        Map<String, BigDecimal> values = indicatorValues(distributions);
+        for (int i = 0; i < 100; i++) {
+            Map<String, Double> scores = service.calculateIndicatorScores(values);
+            assertEquals(33, scores.size());
+        }
+        assertEquals(4.0, service.calculateIndicatorScore("unknown", BigDecimal.ONE));
+
+        verify(repository, times(1)).findByIsCurrentTrue();
+        verify(repository, never()).findByIndicatorNameAndIsCurrentTrue(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIncrementalUpdateAfterRebuild() {
+        BacktestSummaryRepository backtestRepository = mock(BacktestSummaryRepository.class);
+        IndicatorDistributionRepository repository = mock(IndicatorDistributionRepository.class);
+        List<BacktestSummaryEntity> backtests = IntStream.rangeClosed(1, 9)
+                .mapToObj(i -> backtest(i))
+                .collect(Collectors.toList());
+        when(backtestRepository.streamWithTrades()).thenReturn(backtests.stream());
+        when(repository.findMaxVersion()).thenReturn(null, 1L);
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        IndicatorDistributionServiceImpl service = new IndicatorDistributionServiceImpl(backtestRepository, repository);
+        EntityManager entityManager = mock(EntityManager.class);
+        ReflectionTestUtils.setField(service, "entityManager", entityManager);
+
+        // 全量重建之前的回测不做增量更新
+        service.recordBacktestSummary(backtest(100));
+        service.publishIncrementalDistributions();
+        verify(repository, never()).saveAll(anyList());
+
+        List<IndicatorDistributionEntity> rebuilt = service.updateIndicatorDistributions();
+        IndicatorDistributionEntity totalReturn = find(rebuilt, "totalReturn");
+        assertEquals(9, totalReturn.getSampleCount());
+        assertEquals(0, new BigDecimal("5").compareTo(totalReturn.getP50()));
+        assertEquals(0, new BigDecimal("5").compareTo(totalReturn.getAvgValue()));
+        verify(entityManager, times(9)).detach(any());
+
+        // 没有交易的回测不计入分布
+        BacktestSummaryEntity noTrades = backtest(1000);
+        noTrades.setNumberOfTrades(0);
+        service.recordBacktestSummary(noTrades);
+        service.recordBacktestSummary(backtest(10));
+        service.recordBacktestSummary(backtest(11));
+        service.publishIncrementalDistributions();
+        // 没有新样本时不再保存
+        service.publishIncrementalDistributions();
+
+        ArgumentCaptor<List<IndicatorDistributionEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository, times(2)).saveAll(captor.capture());
+        IndicatorDistributionEntity updated = find(captor.getValue(), "totalReturn");
+        assertEquals(2L, updated.getVersion());
+        assertEquals(11, updated.getSampleCount());
+        assertEquals(0, new BigDecimal("11").compareTo(updated.getMaxValue()));
+        assertEquals(0, new BigDecimal("6").compareTo(updated.getP50()));
+        assertEquals(2L, service.getDistributionStatistics().get("snapshotVersion"));
+        verify(backtestRepository, never()).findAll();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSketchesRebuiltOnStartup() {
+        BacktestSummaryRepository backtestRepository = mock(BacktestSummaryRepository.class);
+        IndicatorDistributionRepository repository = mock(IndicatorDistributionRepository.class);
+        when(backtestRepository.streamWithTrades()).thenReturn(IntStream.rangeClosed(1, 9).mapToObj(i -> backtest(i)));
+        when(repository.findMaxVersion()).thenReturn(4L);
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        IndicatorDistributionServiceImpl service = new IndicatorDistributionServiceImpl(backtestRepository, repository);
+        ReflectionTestUtils.setField(service, "entityManager", mock(EntityManager.class));
+
+        // 重启后不需要先全量更新，新保存的回测直接计入分布
+        service.onApplicationReady();
+        verify(repository, never()).saveAll(anyList());
+        service.recordBacktestSummary(backtest(10));
+        service.publishIncrementalDistributions();
+
+        ArgumentCaptor<List<IndicatorDistributionEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(captor.capture());
+        IndicatorDistributionEntity totalReturn = find(captor.getValue(), "totalReturn");
+        assertEquals(5L, totalReturn.getVersion());
+        assertEquals(10, totalReturn.getSampleCount());
+        assertEquals(0, new BigDecimal("10").compareTo(totalReturn.getMaxValue()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSamplesRecordedDuringRebuildAreReplayed() {
+        BacktestSummaryRepository backtestRepository = mock(BacktestSummaryRepository.class);
+        IndicatorDistributionRepository repository = mock(IndicatorDistributionRepository.class);
+        IndicatorDistributionServiceImpl service = new IndicatorDistributionServiceImpl(backtestRepository, repository);
+        ReflectionTestUtils.setField(service, "entityManager", mock(EntityManager.class));
+        when(backtestRepository.findMaxId()).thenReturn(9L);
+        // 游标读取期间提交了10和11，游标还读到了10
+        when(backtestRepository.streamWithTrades()).thenAnswer(invocation -> IntStream.rangeClosed(1, 10)
+                .mapToObj(i -> backtest(i))
+                .peek(backtest -> {
+                    if (backtest.getId() == 3L) {
+                        service.recordBacktestSummary(backtest(10));
+                        service.recordBacktestSummary(backtest(11));
+                    }
+                }));
+        when(repository.findMaxVersion()).thenReturn(4L);
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service.onApplicationReady();
+        service.publishIncrementalDistributions();
+
+        // 重建期间保存的回测补入新草图，游标已读到的不重复计入
+        ArgumentCaptor<List<IndicatorDistributionEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(captor.capture());
+        IndicatorDistributionEntity totalReturn = find(captor.getValue(), "totalReturn");
+        assertEquals(11, totalReturn.getSampleCount());
+        assertEquals(0, new BigDecimal("11").compareTo(totalReturn.getMaxValue()));
+    }
+
+    @Test
+    public void testSnapshotReplacedAfterCommit() {
+        BacktestSummaryRepository backtestRepository = mock(BacktestSummaryRepository.class);
+        IndicatorDistributionRepository repository = mock(IndicatorDistributionRepository.class);
+        when(backtestRepository.streamWithTrades()).thenReturn(IntStream.rangeClosed(1, 9).mapToObj(i -> backtest(i)));
+        when(repository.findByIsCurrentTrue()).thenReturn(distributions(new Random(1), 33));
+        when(repository.findMaxVersion()).thenReturn(3L);
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        IndicatorDistributionServiceImpl service = new IndicatorDistributionServiceImpl(backtestRepository, repository);
+        ReflectionTestUtils.setField(service, "entityManager", mock(EntityManager.class));
+        assertEquals(3L, service.currentSnapshot().getVersion());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.updateIndicatorDistributions();
+            // 提交之前评分仍使用旧版本
+            assertEquals(3L, service.currentSnapshot().getVersion());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(4L, service.currentSnapshot().getVersion());
+    }
+
+    /**
+     * 同一快照重复评分结果不变
+     */
+    @Test
+    public void testRepeatedScoringIsStable() {
+        List<IndicatorDistributionEntity> distributions = distributions(new Random(3), 33);
+        IndicatorDistributionSnapshot snapshot = IndicatorDistributionSnapshot.of(distributions);
+        Map<String, BigDecimal> values = indicatorValues(distributions);
+
+        double first = scoreAll(snapshot, values);
+        assertTrue(first > 0);
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(first, scoreAll(snapshot, values));
+        }
+    }
+
+    private static BacktestSummaryEntity backtest(int value) {
+        return BacktestSummaryEntity.builder()
+                .id((long) value)
+                .totalReturn(BigDecimal.valueOf(value))
+                .sharpeRatio(BigDecimal.valueOf(value).negate())
+                .numberOfTrades(value)
+                .build();
+    }
+
+    private static IndicatorDistributionEntity find(List<IndicatorDistributionEntity> distributions, String indicatorName) {
+        return distributions.stream()
+                .filter(d -> indicatorName.equals(d.getIndicatorName()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static double scoreAll(IndicatorDistributionSnapshot snapshot, Map<String, BigDecimal> values) {
+        double total = 0;
+        for (Map.Entry<String, BigDecimal> entry : values.entrySet()) {
+            total += snapshot.score(entry.getKey(), entry.getValue());
+        }
+        return total;
+    }
+
+    private static Map<String, BigDecimal> indicatorValues(List<IndicatorDistributionEntity> distributions) {
+        Map<String, BigDecimal> values = new HashMap<>();
+        for (IndicatorDistributionEntity distribution : distributions) {
+            values.put(distribution.getIndicatorName(), distribution.getP60());
+        }
+        return values;
+    }
+
+    private static List<IndicatorDistributionEntity> distributions(Random random, int count) {
+        List<IndicatorDistributionEntity> distributions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BigDecimal[] p = new BigDecimal[9];
+            double value = random.nextGaussian();
+            for (int j = 0; j < p.length; j++) {
+                value += random.nextDouble();
+                p[j] = BigDecimal.valueOf(value);
+            }
+            IndicatorDistributionEntity distribution = new IndicatorDistributionEntity();
+            distribution.setIndicatorName("indicator" + i);
+            distribution.setIndicatorType(TYPES[i % TYPES.length]);
+            distribution.setVersion(3L);
+            distribution.setP10(p[0]);
+            distribution.setP20(p[1]);
+            distribution.setP30(p[2]);
+            distribution.setP40(p[3]);
+            distribution.setP50(p[4]);
+            distribution.setP60(p[5]);
+            distribution.setP70(p[6]);
+            distribution.setP80(p[7]);
+            distribution.setP90(p[8]);
+            distributions.add(distribution);
+        }
+        return distributions;
+    }
+}
@@ -0,0 +1,154 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.entity.StrategyInfoEntity;
+import com.okx.trading.service.StrategyInfoService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.BaseBarSeriesBuilder;
+import org.ta4j.core.Strategy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 动态策略编译测试
+ * 在内存中编译并缓存字节码，相同源代码重启后不再调用 javac，缓存键包含应用和 ta4j 的构建指纹；
+ * 批量编译时出错的源代码不影响同批其他源代码
+ */
+public class JavaCompilerDynamicStrategyServiceTest {
+
+    private static final String STRATEGY_CODE = String.join("\n",
+            "public class CachedSmaTestStrategy {",
+            "    public static Strategy create(BarSeries series) {",
+            "        ClosePriceIndicator close = new ClosePriceIndicator(series);",
+            "        SMAIndicator sma = new SMAIndicator(close, 5);",
+            "        return new BaseStrategy(new CrossedUpIndicatorRule(close, sma), new CrossedDownIndicatorRule(close, sma));",
+            "    }",
+            "}");
+
+    @TempDir
+    Path cacheDir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCompiledBytecodeReusedAcrossRestarts() throws Exception {
+        StrategyInfoEntity entity = StrategyInfoEntity.builder().strategyCode("CACHED_SMA_TEST").build();
+
+        JavaCompilerDynamicStrategyService first = newService();
+        Function<BarSeries, Strategy> compiled = first.compileAndLoadStrategy(STRATEGY_CODE, entity);
+        assertNotNull(compiled.apply(new BaseBarSeriesBuilder().withName("test").build()));
+        assertEquals(1L, first.getCompileStats().get("compilations"));
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(1, files.count());
+        }
+
+        // 模拟重启：新实例直接加载缓存的字节码
+        JavaCompilerDynamicStrategyService restarted = newService();
+        Function<BarSeries, Strategy> cached = restarted.compileAndLoadStrategy(STRATEGY_CODE, entity);
+        assertNotNull(cached.apply(new BaseBarSeriesBuilder().withName("test").build()));
+        Map<String, Object> stats = restarted.getCompileStats();
+        assertEquals(0L, stats.get("compilations"));
+        assertEquals(1L, stats.get("cacheHits"));
+
+        // 已加载策略的缓存不会被清理
+        restarted.cleanup();
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(1, files.count());
+        }
+        restarted.removeStrategy("CACHED_SMA_TEST");
+        restarted.cleanup();
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testCacheKeyIncludesBuildFingerprint() {
+        // ta4j 所在的 jar 带版本号，应用或 ta4j 换版本后缓存键随之变化
+        assertTrue(StrategyBytecodeStore.fingerprint(BarSeries.class).contains("ta4j"));
+        assertEquals(StrategyBytecodeStore.hash(STRATEGY_CODE), StrategyBytecodeStore.hash(STRATEGY_CODE));
+        assertNotEquals(StrategyBytecodeStore.hash(STRATEGY_CODE, "21|1.0@app.jar|0.18@ta4j-core-0.18.jar"),
+                StrategyBytecodeStore.hash(STRATEGY_CODE, "21|1.0@app.jar|0.19@ta4j-core-0.19.jar"));
+    }
+
+    @Test
+    public void testCompileErrorReported() {
+        StrategyInfoEntity entity = StrategyInfoEntity.builder().strategyCode("BROKEN_TEST").build();
+        String broken = STRATEGY_CODE.replace("CachedSmaTestStrategy", "BrokenTestStrategy")
+                .replace("new SMAIndicator(close, 5)", "new SMAIndicator(close, \"5\")");
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> newService().compileAndLoadStrategy(broken, entity));
+        assertTrue(e.getMessage().contains("编译失败"), e.getMessage());
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(0, files.count());
+        } catch (Exception io) {
+            fail(io);
+        }
+    }
+
+    @Test
+    public void testBatchCompileIsolatesFailures() {
+        List<StrategyInfoEntity> strategies = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            strategies.add(strategy("BATCH_" + i, STRATEGY_CODE.replace("CachedSmaTestStrategy", "BatchTestStrategy" + i)
+                    .replace("new SMAIndicator(close, 5)", "new SMAIndicator(close, " + (i + 2) + ")")));
+        }
+        // 与第0个类名相同，需要放到另一个批次
+        strategies.add(strategy("BATCH_DUPLICATE", STRATEGY_CODE.replace("CachedSmaTestStrategy", "BatchTestStrategy0")));
+        strategies.add(strategy("BATCH_BROKEN", STRATEGY_CODE.replace("CachedSmaTestStrategy", "BatchBrokenStrategy")
+                .replace("new SMAIndicator(close, 5)", "new SMAIndicator(close, \"5\")")));
+        strategies.add(strategy("BATCH_NO_CLASS", "// 没有类"));
+
+        JavaCompilerDynamicStrategyService service = newService();
+        ReflectionTestUtils.setField(service, "compileBatchSize", 4);
+        Map<String, String> errors = service.compileAndLoadStrategies(strategies);
+
+        assertEquals(Set.of("BATCH_BROKEN", "BATCH_NO_CLASS"), errors.keySet());
+        assertTrue(errors.get("BATCH_BROKEN").contains("编译失败"), errors.get("BATCH_BROKEN"));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(service.isStrategyLoaded("BATCH_" + i));
+            assertNotNull(service.getCompiledStrategy("BATCH_" + i).apply(new BaseBarSeriesBuilder().withName("test").build()));
+        }
+        assertTrue(service.isStrategyLoaded("BATCH_DUPLICATE"));
+        assertFalse(service.isStrategyLoaded("BATCH_BROKEN"));
+        // 7份源代码分两批编译，出错批次中正常的源代码最多再编译一次
+        long compilations = (Long) service.getCompileStats().get("compilations");
+        assertTrue(compilations >= 2 && compilations <= 4, "compilations=" + compilations);
+
+        // 重启后全部命中缓存
+        JavaCompilerDynamicStrategyService restarted = newService();
+        assertEquals(errors.keySet(), restarted.compileAndLoadStrategies(strategies).keySet());
+        assertEquals(6L, restarted.getCompileStats().get("cacheHits"));
+        assertEquals(1L, restarted.getCompileStats().get("compiledUnits"));
+    }
+
+    private static StrategyInfoEntity strategy(String strategyCode, String sourceCode) {
+        return StrategyInfoEntity.builder().strategyCode(strategyCode).sourceCode(sourceCode).build();
+    }
+
+    private JavaCompilerDynamicStrategyService newService() {
+        JavaCompilerDynamicStrategyService service = new JavaCompilerDynamicStrategyService(mock(StrategyInfoService.class), executor);
+        ReflectionTestUtils.setField(service, "bytecodeCacheDir", cacheDir.toString());
+        return service;
+    }
+}
@@ -0,0 +1,154 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.adapter.KlineKafkaDeserializer;
+import com.okx.trading.adapter.KlineKafkaSerializer;
+import com.okx.trading.model.market.Candlestick;
+import com.okx.trading.util.KlineWireFormat;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * K线批量消费合并与 Kafka 消息格式测试
+ */
+public class KlineKafkaConsumerServiceImplTest {
+
+    private static final long T0 = 1712188800000L;
+
+    private final KlineKafkaDeserializer deserializer = new KlineKafkaDeserializer();
+
+    @Test
+    public void testCoalescesPerCandleKeepingBarCloses() {
+        List<ConsumerRecord<String, Candlestick>> records = new ArrayList<>();
+        long offset = 0;
+        records.add(record(offset++, "BTC-USDT", "1m", T0, "100", "0"));
+        records.add(record(offset++, "ETH-USDT", "1m", T0, "10", "0"));
+        records.add(record(offset++, "BTC-USDT", "1m", T0, "101", "1"));
+        records.add(record(offset++, "BTC-USDT", "1m", T0 + 60_000, "102", "0"));
+        records.add(record(offset++, "BTC-USDT", "1m", T0 + 60_000, "103", "0"));
+        records.add(new ConsumerRecord<>("okx-kline-data", 0, offset++, "BTC-USDT_1m", null));
+        records.add(record(offset++, "BTC-USDT", "5m", T0, "99", "0"));
+
+        List<Candlestick> result = new KlineKafkaConsumerServiceImpl().decodeLatest(records);
+
+        assertEquals(4, result.size());
+        assertEquals("ETH-USDT", result.get(0).getSymbol());
+        // 上一根K线的确认数据被保留
+        assertEquals(0, new BigDecimal("101").compareTo(result.get(1).getClose()));
+        assertEquals(1, result.get(1).getState());
+        assertEquals(0, new BigDecimal("103").compareTo(result.get(2).getClose()));
+        assertEquals("5m", result.get(3).getIntervalVal());
+    }
+
+    @Test
+    public void testRoundTripBothWireFormats() {
+        Candlestick candle = candle();
+        for (String format : new String[]{KlineWireFormat.WIRE_FORMAT_BINARY, KlineWireFormat.WIRE_FORMAT_JSON}) {
+            RecordHeaders headers = new RecordHeaders();
+            byte[] bytes = serializer(format).serialize("okx-kline-data", headers, candle);
+            Candlestick decoded = deserializer.deserialize("okx-kline-data", headers, bytes);
+
+            assertEquals(candle.getSymbol(), decoded.getSymbol(), format);
+            assertEquals(candle.getIntervalVal(), decoded.getIntervalVal(), format);
+            assertEquals(candle.getOpenTime(), decoded.getOpenTime(), format);
+            assertEquals(0, candle.getClose().compareTo(decoded.getClose()), format);
+            assertEquals(0, candle.getVolCcy().compareTo(decoded.getVolCcy()), format);
+            assertEquals(0, candle.getQuoteVolume().compareTo(decoded.getQuoteVolume()), format);
+            assertEquals(candle.getState(), decoded.getState(), format);
+        }
+
+        // 没有消息头时按 data-warehouse 的 OKX 原始JSON解析
+        Candlestick legacy = deserializer.deserialize("okx-kline-data",
+                message("SOL-USDT", "1H", T0, "150", "1").getBytes(StandardCharsets.UTF_8));
+        assertEquals("SOL-USDT", legacy.getSymbol());
+        assertEquals("1H", legacy.getIntervalVal());
+
+        // 坏消息返回null而不是抛出异常
+        RecordHeaders binaryHeaders = new RecordHeaders();
+        binaryHeaders.add(KlineWireFormat.SCHEMA_HEADER, KlineWireFormat.SCHEMA_BINARY_V2.getBytes(StandardCharsets.UTF_8));
+        assertNull(deserializer.deserialize("okx-kline-data", binaryHeaders, new byte[]{9, 0, 0}));
+    }
+
+    /**
+     * 二进制记录不超过同一K线JSON的一半，逐字段解码后与原K线一致
+     * 编解码耗时的对比见 jmh 压测
+     */
+    @Test
+    public void testBinaryEncodingSizeAndFields() {
+        Candlestick candle = candle();
+        RecordHeaders binaryHeaders = new RecordHeaders();
+        byte[] json = serializer(KlineWireFormat.WIRE_FORMAT_JSON).serialize("t", new RecordHeaders(), candle);
+        byte[] binary = serializer(KlineWireFormat.WIRE_FORMAT_BINARY).serialize("t", binaryHeaders, candle);
+
+        assertTrue(binary.length * 2 <= json.length, "二进制消息应不超过JSON的一半: " + binary.length + " vs " + json.length);
+
+        Candlestick decoded = deserializer.deserialize("t", binaryHeaders, binary);
+        assertEquals(candle.getSymbol(), decoded.getSymbol());
+        assertEquals(candle.getIntervalVal(), decoded.getIntervalVal());
+        assertEquals(candle.getOpenTime(), decoded.getOpenTime());
+        assertEquals(0, candle.getOpen().compareTo(decoded.getOpen()));
+        assertEquals(0, candle.getHigh().compareTo(decoded.getHigh()));
+        assertEquals(0, candle.getLow().compareTo(decoded.getLow()));
+        assertEquals(0, candle.getClose().compareTo(decoded.getClose()));
+        assertEquals(0, candle.getVolume().compareTo(decoded.getVolume()));
+        assertEquals(0, candle.getVolCcy().compareTo(decoded.getVolCcy()));
+        assertEquals(0, candle.getQuoteVolume().compareTo(decoded.getQuoteVolume()));
+        assertEquals(candle.getState(), decoded.getState());
+
+        // 空字段不占空间，解码后仍为空
+        candle.setVolCcy(null);
+        candle.setClose(new BigDecimal("0.00001234"));
+        Candlestick partial = deserializer.deserialize("t", binaryHeaders,
+                serializer(KlineWireFormat.WIRE_FORMAT_BINARY).serialize("t", new RecordHeaders(), candle));
+        assertNull(partial.getVolCcy());
+        assertEquals(0, candle.getClose().compareTo(partial.getClose()));
+        assertEquals(0, candle.getHigh().compareTo(partial.getHigh()));
+        assertEquals(0, candle.getQuoteVolume().compareTo(partial.getQuoteVolume()));
+    }
+
+    private static KlineKafkaSerializer serializer(String format) {
+        KlineKafkaSerializer serializer = new KlineKafkaSerializer();
+        serializer.configure(Collections.singletonMap(KlineWireFormat.WIRE_FORMAT_CONFIG, format), false);
+        return serializer;
+    }
+
+    private static Candlestick candle() {
+        return Candlestick.builder()
+                .symbol("BTC-USDT")
+                .intervalVal("1m")
+                .openTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(T0), ZoneId.of("UTC+8")))
+                .open(new BigDecimal("67000.1"))
+                .high(new BigDecimal("68000.25"))
+                .low(new BigDecimal("66500.0"))
+                .close(new BigDecimal("67500.5"))
+                .volume(new BigDecimal("1234.56789"))
+                .volCcy(new BigDecimal("83456789.1234"))
+                .quoteVolume(new BigDecimal("83456789.1234"))
+                .state(1)
+                .build();
+    }
+
+    private ConsumerRecord<String, Candlestick> record(long offset, String symbol, String interval,
+                                                       long ts, String close, String confirm) {
+        Candlestick value = deserializer.deserialize("okx-kline-data",
+                message(symbol, interval, ts, close, confirm).getBytes(StandardCharsets.UTF_8));
+        return new ConsumerRecord<>("okx-kline-data", 0, offset, symbol + "_" + interval, value);
+    }
+
+    private static String message(String symbol, String interval, long ts, String close, String confirm) {
+        return "{\"arg\":{\"channel\":\"candle" + interval + "\",\"instId\":\"" + symbol + "\"},"
+                + "\"data\":[[\"" + ts + "\",\"" + close + "\",\"" + close + "\",\"" + close + "\",\"" + close
+                + "\",\"1\",\"" + close + "\",\"" + close + "\",\"" + confirm + "\"]]}";
+    }
+}
@@ -0,0 +1,184 @@
+package com.okx.trading.service.impl;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.okx.trading.model.entity.CandlestickEntity;
+import com.okx.trading.model.market.Candlestick;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Sorted Set K线缓存测试
+ * RedisTemplate 由内存中的有序集合模拟，写入脚本的效果按脚本命令模拟：
+ * 同一开盘时间的K线被替换，按开盘时间范围读取包含边界，超过上限时裁剪最旧的K线
+ */
+public class KlineSortedSetCacheServiceImplTest {
+
+    private static final ZoneId ZONE_ID = ZoneId.of("UTC+8");
+    private static final String KEY = "kline:zset:BTC-USDT:1m";
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    /**
+     * 缓存Key -> (score -> member)，同一score只保留一个member
+     */
+    private final Map<String, TreeMap<Double, String>> zsets = new HashMap<>();
+    private final Map<String, Long> ttls = new HashMap<>();
+    private final List<String> scripts = new ArrayList<>();
+    private KlineSortedSetCacheServiceImpl cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+        ZSetOperations<String, String> zSetOperations = mock(ZSetOperations.class);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(redisTemplate.opsForSet()).thenReturn(mock(SetOperations.class));
+
+        // KEYS[1]=缓存Key，ARGV[1]=最大保留条数，ARGV[2]=过期毫秒，之后为 (score, member) 对
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            scripts.add(((RedisScript<?>) invocation.getArgument(0)).getScriptAsString());
+            String key = ((List<String>) invocation.getArgument(1)).get(0);
+            Object[] argv = (Object[]) invocation.getRawArguments()[2];
+            TreeMap<Double, String> zset = zsets.computeIfAbsent(key, k -> new TreeMap<>());
+            for (int i = 2; i < argv.length; i += 2) {
+                zset.put(Double.valueOf((String) argv[i]), (String) argv[i + 1]);
+            }
+            int maxSize = Integer.parseInt((String) argv[0]);
+            while (maxSize > 0 && zset.size() > maxSize) {
+                zset.pollFirstEntry();
+            }
+            ttls.put(key, Long.valueOf((String) argv[1]));
+            return (long) (argv.length - 2) / 2;
+        });
+        when(zSetOperations.zCard(anyString())).thenAnswer(invocation ->
+                (long) zset(invocation.getArgument(0)).size());
+        when(zSetOperations.range(anyString(), eq(0L), eq(-1L))).thenAnswer(invocation ->
+                new LinkedHashSet<>(zset(invocation.getArgument(0)).values()));
+        when(zSetOperations.reverseRange(anyString(), eq(0L), anyLong())).thenAnswer(invocation ->
+                zset(invocation.getArgument(0)).descendingMap().values().stream()
+                        .limit((long) invocation.getArgument(2) + 1)
+                        .collect(Collectors.toCollection(LinkedHashSet::new)));
+        when(zSetOperations.rangeByScore(anyString(), anyDouble(), anyDouble())).thenAnswer(invocation ->
+                new LinkedHashSet<>(zset(invocation.getArgument(0))
+                        .subMap(invocation.getArgument(1), true, invocation.getArgument(2), true).values()));
+        when(zSetOperations.rangeByScore(anyString(), anyDouble(), anyDouble(), anyLong(), anyLong())).thenAnswer(invocation ->
+                zset(invocation.getArgument(0))
+                        .subMap(invocation.getArgument(1), true, invocation.getArgument(2), true).values().stream()
+                        .skip(invocation.getArgument(3))
+                        .limit(invocation.getArgument(4))
+                        .collect(Collectors.toCollection(LinkedHashSet::new)));
+
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        cache = new KlineSortedSetCacheServiceImpl(redisTemplate, objectMapper, mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    public void testUpsertReplacesBarWithSameOpenTime() {
+        assertEquals(3, cache.batchCacheKlineData(List.of(candle(0, "100"), candle(1, "101"), candle(2, "102"))));
+
+        // 同一开盘时间的K线再次推送，替换原值而不是新增一条
+        assertTrue(cache.cacheKlineData(candle(1, "111")));
+
+        List<CandlestickEntity> cached = cache.getKlineData("BTC-USDT", "1m", 3);
+        assertEquals(List.of(START, START.plusMinutes(1), START.plusMinutes(2)), openTimes(cached));
+        assertEquals(0, new BigDecimal("111").compareTo(cached.get(1).getClose()));
+        assertEquals(3, zsets.get(KEY).size());
+        assertEquals(Duration.ofHours(24).toMillis(), ttls.get(KEY));
+
+        // 脚本先按score删除旧值再写入，保证同一开盘时间只有一条
+        String script = scripts.get(scripts.size() - 1);
+        assertTrue(script.indexOf("ZREMRANGEBYSCORE") < script.indexOf("ZADD"));
+    }
+
+    @Test
+    public void testRangeReadIncludesBoundaries() {
+        List<Candlestick> candles = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            candles.add(candle(i, String.valueOf(100 + i)));
+        }
+        cache.batchCacheKlineData(candles);
+
+        // 起止时间都包含
+        assertEquals(minutes(2, 3, 4, 5),
+                openTimes(cache.getHistoricalKlineData("BTC-USDT", "1m", millis(2), millis(5), null)));
+        // 边界之间没有K线时为空
+        assertTrue(cache.getHistoricalKlineData("BTC-USDT", "1m", millis(2) + 1, millis(3) - 1, null).isEmpty());
+        // limit 从起始时间开始计数
+        assertEquals(minutes(2, 3),
+                openTimes(cache.getHistoricalKlineData("BTC-USDT", "1m", millis(2), millis(5), 2)));
+        // 不指定起止时间时读取全部
+        assertEquals(10, cache.getHistoricalKlineData("BTC-USDT", "1m", null, null, null).size());
+        // 最新的K线按时间倒序
+        assertEquals(minutes(9, 8, 7), openTimes(cache.getLatestKlineData("BTC-USDT", "1m", 3)));
+    }
+
+    @Test
+    public void testTrimmedToMaxSize() {
+        ReflectionTestUtils.setField(cache, "maxSize", 5);
+        List<Candlestick> candles = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            candles.add(candle(i, String.valueOf(100 + i)));
+        }
+        // 缺少开盘时间的K线跳过
+        Candlestick invalid = candle(0, "1");
+        invalid.setOpenTime(null);
+        candles.add(invalid);
+
+        assertEquals(8, cache.batchCacheKlineData(candles));
+        assertEquals(minutes(3, 4, 5, 6, 7), openTimes(cache.getKlineData("BTC-USDT", "1m", 5)));
+        // 裁剪后数量不足阈值
+        assertTrue(cache.getKlineData("BTC-USDT", "1m", 6).isEmpty());
+
+        // 新K线写入后继续裁剪最旧的一条
+        cache.cacheKlineData(candle(8, "108"));
+        assertEquals(minutes(4, 5, 6, 7, 8), openTimes(cache.getKlineData("BTC-USDT", "1m", 5)));
+    }
+
+    private TreeMap<Double, String> zset(String key) {
+        return zsets.getOrDefault(key, new TreeMap<>());
+    }
+
+    private static Candlestick candle(int minute, String close) {
+        return Candlestick.builder()
+                .symbol("BTC-USDT")
+                .intervalVal("1m")
+                .openTime(START.plusMinutes(minute))
+                .open(new BigDecimal("100"))
+                .high(new BigDecimal(close).max(new BigDecimal("100")))
+                .low(new BigDecimal(close).min(new BigDecimal("100")))
+                .close(new BigDecimal(close))
+                .volume(BigDecimal.ONE)
+                .state(1)
+                .build();
+    }
+
+    private static long millis(int minute) {
+        return START.plusMinutes(minute).atZone(ZONE_ID).toInstant().toEpochMilli();
+    }
+
+    private static List<LocalDateTime> minutes(int... minutes) {
+        return Arrays.stream(minutes).mapToObj(START::plusMinutes).collect(Collectors.toList());
+    }
+
+    private static List<LocalDateTime> openTimes(List<CandlestickEntity> candles) {
+        return candles.stream().map(CandlestickEntity::getOpenTime).collect(Collectors.toList());
+    }
+}
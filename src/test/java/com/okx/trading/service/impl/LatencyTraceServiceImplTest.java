@@ -0,0 +1,71 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.util.TickTrace;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 行情到下单延迟追踪测试
+ * 各阶段按交易对和策略分别统计，未到达的阶段不计数，慢追踪按阈值保留
+ */
+public class LatencyTraceServiceImplTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStagesRecordedPerSymbolAndStrategy() {
+        LatencyTraceServiceImpl service = new LatencyTraceServiceImpl();
+        TickTrace tick = TickTrace.start("ws", "BTC-USDT", "1m", System.nanoTime() - 2_000_000);
+
+        // 触发交易的策略走完全部阶段
+        TickTrace traded = tick.forStrategy("SMA");
+        traded.mark(TickTrace.Stage.EVALUATED);
+        traded.mark(TickTrace.Stage.EXECUTING);
+        traded.mark(TickTrace.Stage.ACKED);
+        service.record(traded);
+        // 未触发交易的策略只到策略判断
+        TickTrace evaluated = tick.forStrategy("RSI");
+        evaluated.mark(TickTrace.Stage.EVALUATED);
+        service.record(evaluated);
+
+        List<Map<String, Object>> all = service.getPercentiles(null, null);
+        assertEquals(2, all.size());
+
+        List<Map<String, Object>> sma = service.getPercentiles("BTC-USDT", "SMA");
+        assertEquals(1, sma.size());
+        Map<String, Object> stages = (Map<String, Object>) sma.get(0).get("stages");
+        assertEquals(1L, ((Map<String, Object>) stages.get("order")).get("count"));
+        Map<String, Object> total = (Map<String, Object>) stages.get("total");
+        assertTrue((Double) total.get("p99Us") >= 2000, total.toString());
+
+        Map<String, Object> rsiStages = (Map<String, Object>) service.getPercentiles(null, "RSI").get(0).get("stages");
+        assertEquals(1L, ((Map<String, Object>) rsiStages.get("evaluate")).get("count"));
+        assertEquals(0L, ((Map<String, Object>) rsiStages.get("order")).get("count"));
+        assertTrue(service.getPercentiles("ETH-USDT", null).isEmpty());
+    }
+
+    @Test
+    public void testSlowTracesBounded() {
+        LatencyTraceServiceImpl service = new LatencyTraceServiceImpl();
+        ReflectionTestUtils.setField(service, "slowThresholdMs", 1L);
+        ReflectionTestUtils.setField(service, "slowTraceCapacity", 2);
+
+        service.record(TickTrace.start("kafka", "BTC-USDT", "1m", System.nanoTime()).forStrategy("FAST"));
+        for (int i = 0; i < 3; i++) {
+            service.record(TickTrace.start("kafka", "BTC-USDT", "1m", System.nanoTime() - 5_000_000).forStrategy("SLOW" + i));
+        }
+
+        List<Map<String, Object>> slowTraces = service.getSlowTraces();
+        assertEquals(2, slowTraces.size());
+        assertEquals("SLOW2", slowTraces.get(0).get("strategyCode"));
+        assertEquals("DISPATCHED", slowTraces.get(0).get("lastStage"));
+
+        service.reset();
+        assertTrue(service.getSlowTraces().isEmpty());
+        assertTrue(service.getPercentiles(null, null).isEmpty());
+    }
+}
@@ -0,0 +1,136 @@
+package com.okx.trading.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 订单审计日志测试
+ * 记录只入队，由写线程批量写入固定列的CSV和完整字段的jsonl，旧表头的CSV改名后重新写
+ */
+public class OrderAuditServiceImplTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService writerExecutor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void tearDown() {
+        writerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testRecordsWrittenWithStableSchema() throws Exception {
+        OrderAuditServiceImpl audit = start("csv,jsonl", 10000);
+
+        // 两条订单字段不同，CSV列保持不变
+        assertTrue(audit.record(order("c1", "filled", "1,5")));
+        JSONObject second = order("c2", "canceled", "2");
+        second.put("newField", "x");
+        second.remove("fee");
+        assertTrue(audit.record(second));
+        audit.shutdown();
+
+        String day = LocalDate.now(ZoneId.of("UTC+8")).toString();
+        List<String> csv = Files.readAllLines(tempDir.resolve("orders_" + day + ".csv"), StandardCharsets.UTF_8);
+        assertEquals(3, csv.size());
+        assertEquals(String.join(",", OrderAuditServiceImpl.CSV_COLUMNS), csv.get(0));
+        int columns = OrderAuditServiceImpl.CSV_COLUMNS.size();
+        assertEquals(columns - 1, csv.get(2).chars().filter(c -> c == ',').count());
+        assertTrue(csv.get(1).contains("\"1,5\""));
+
+        List<String> jsonl = Files.readAllLines(tempDir.resolve("orders_" + day + ".jsonl"), StandardCharsets.UTF_8);
+        assertEquals(2, jsonl.size());
+        JSONObject parsed = JSON.parseObject(jsonl.get(1));
+        assertEquals("x", parsed.getString("newField"));
+        assertTrue(parsed.containsKey("auditTime"));
+
+        assertEquals(2L, audit.getStats().get("written"));
+        assertEquals(0L, audit.getStats().get("dropped"));
+    }
+
+    @Test
+    public void testLegacyCsvHeaderRotated() throws Exception {
+        // 旧版本按订单字段生成的表头
+        String day = LocalDate.now(ZoneId.of("UTC+8")).toString();
+        Path file = tempDir.resolve("orders_" + day + ".csv");
+        Files.write(file, "clOrdId,state\nc0,live\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(tempDir.resolve("orders_" + day + ".legacy-1.csv"), new byte[]{1});
+
+        OrderAuditServiceImpl audit = start("csv", 10000);
+        assertTrue(audit.record(order("c1", "filled", "1")));
+        audit.shutdown();
+
+        List<String> csv = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, csv.size());
+        assertEquals(String.join(",", OrderAuditServiceImpl.CSV_COLUMNS), csv.get(0));
+        List<String> legacy = Files.readAllLines(tempDir.resolve("orders_" + day + ".legacy-2.csv"), StandardCharsets.UTF_8);
+        assertEquals(List.of("clOrdId,state", "c0,live"), legacy);
+
+        // 表头一致时继续追加
+        audit = start("csv", 10000);
+        assertTrue(audit.record(order("c2", "filled", "1")));
+        audit.shutdown();
+        assertEquals(3, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void testFullQueueDropsInsteadOfBlocking() {
+        // 写线程被占用，队列容量1，第二条记录立即丢弃
+        ExecutorService busy = Executors.newSingleThreadExecutor();
+        try {
+            busy.execute(() -> {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            OrderAuditServiceImpl audit = new OrderAuditServiceImpl(busy);
+            ReflectionTestUtils.setField(audit, "auditDir", tempDir.toString());
+            ReflectionTestUtils.setField(audit, "queueCapacity", 1);
+            audit.init();
+
+            assertTrue(audit.record(order("c1", "filled", "1")));
+            assertFalse(audit.record(order("c2", "filled", "1")));
+            assertEquals(1L, audit.getStats().get("dropped"));
+        } finally {
+            busy.shutdownNow();
+        }
+    }
+
+    private OrderAuditServiceImpl start(String formats, int capacity) {
+        OrderAuditServiceImpl audit = new OrderAuditServiceImpl(writerExecutor);
+        ReflectionTestUtils.setField(audit, "auditDir", tempDir.toString());
+        ReflectionTestUtils.setField(audit, "formats", formats);
+        ReflectionTestUtils.setField(audit, "queueCapacity", capacity);
+        audit.init();
+        return audit;
+    }
+
+    private static JSONObject order(String clOrdId, String state, String fee) {
+        JSONObject order = new JSONObject();
+        order.put("clOrdId", clOrdId);
+        order.put("ordId", "9" + clOrdId);
+        order.put("instId", "BTC-USDT");
+        order.put("side", "buy");
+        order.put("state", state);
+        order.put("fee", fee);
+        return order;
+    }
+}
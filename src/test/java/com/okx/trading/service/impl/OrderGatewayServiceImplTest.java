@@ -0,0 +1,222 @@
+package com.okx.trading.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.config.OkxApiConfig;
+import com.okx.trading.util.UpstreamRateLimiter;
+import com.okx.trading.util.WebSocketUtil;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单网关测试
+ * WebSocket请求按id匹配响应，私有频道未就绪时回退到REST，窗口内的单笔下单合并为批量下单，
+ * 限流时批量窗口推迟发送而不阻塞批量线程，撤单不占用下单令牌
+ */
+public class OrderGatewayServiceImplTest {
+
+    private WebSocketUtil webSocketUtil;
+    private ExecutorService restExecutor;
+    private ScheduledExecutorService batchScheduler;
+    private final List<String> restBodies = new CopyOnWriteArrayList<>();
+    private UpstreamRateLimiter rateLimiter;
+    private OrderGatewayServiceImpl gateway;
+
+    @BeforeEach
+    public void setUp() {
+        webSocketUtil = mock(WebSocketUtil.class);
+        restExecutor = Executors.newSingleThreadExecutor();
+        batchScheduler = Executors.newSingleThreadScheduledExecutor();
+
+        // 拦截器直接返回REST响应，不访问网络
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(chain -> {
+            Buffer buffer = new Buffer();
+            chain.request().body().writeTo(buffer);
+            restBodies.add(buffer.readUtf8());
+            return new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create("{\"code\":\"0\",\"msg\":\"\",\"data\":[{\"ordId\":\"9\",\"sCode\":\"0\"}]}",
+                            MediaType.get("application/json")))
+                    .build();
+        }).build();
+
+        OkxApiConfig config = new OkxApiConfig();
+        config.setBaseUrl("https://www.okx.com");
+        config.setApiKey("key");
+        config.setSecretKey("secret");
+        config.setPassphrase("pass");
+
+        rateLimiter = new UpstreamRateLimiter();
+        rateLimiter.init();
+
+        gateway = new OrderGatewayServiceImpl(webSocketUtil, client, config, rateLimiter, restExecutor, batchScheduler);
+        ReflectionTestUtils.setField(gateway, "requestTimeoutMs", 300L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        restExecutor.shutdownNow();
+        batchScheduler.shutdownNow();
+    }
+
+    @Test
+    public void testPipelinedRequestsMatchedById() throws Exception {
+        ReflectionTestUtils.setField(gateway, "batchEnabled", false);
+        when(webSocketUtil.isPrivateChannelReady()).thenReturn(true);
+
+        List<CompletableFuture<JSONObject>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(gateway.placeOrder(arg("c" + i), false));
+        }
+        assertEquals(3, gateway.getStats().get("inFlight"));
+
+        ArgumentCaptor<String> sent = ArgumentCaptor.forClass(String.class);
+        verify(webSocketUtil, times(3)).sendPrivateRequest(sent.capture());
+
+        // 倒序响应，每个请求仍拿到自己的回执
+        for (int i = 2; i >= 0; i--) {
+            JSONObject request = JSON.parseObject(sent.getAllValues().get(i));
+            JSONObject wsArg = request.getJSONArray("args").getJSONObject(0);
+            assertFalse(wsArg.containsKey("instId"));
+            assertEquals(1001, wsArg.getIntValue("instIdCode"));
+
+            gateway.onResponse(JSON.parseObject("{\"id\":\"" + request.getString("id") + "\",\"op\":\"order\",\"code\":\"0\","
+                    + "\"data\":[{\"clOrdId\":\"" + wsArg.getString("clOrdId") + "\",\"sCode\":\"0\"}]}"));
+        }
+        for (int i = 0; i < 3; i++) {
+            JSONObject response = futures.get(i).get(1, TimeUnit.SECONDS);
+            assertEquals("c" + i, response.getJSONArray("data").getJSONObject(0).getString("clOrdId"));
+        }
+        assertEquals(0, gateway.getStats().get("inFlight"));
+    }
+
+    @Test
+    public void testOrdersInWindowCoalescedIntoBatch() throws Exception {
+        when(webSocketUtil.isPrivateChannelReady()).thenReturn(true);
+        ReflectionTestUtils.setField(gateway, "batchWindowMs", 100L);
+
+        List<CompletableFuture<JSONObject>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(gateway.placeOrder(arg("c" + i), false));
+        }
+
+        ArgumentCaptor<String> sent = ArgumentCaptor.forClass(String.class);
+        verify(webSocketUtil, timeout(1000).times(1)).sendPrivateRequest(sent.capture());
+        JSONObject request = JSON.parseObject(sent.getValue());
+        assertEquals("batch-orders", request.getString("op"));
+        assertEquals(3, request.getJSONArray("args").size());
+
+        // 批量回执部分失败，按clOrdId拆分给各自的调用方
+        gateway.onResponse(JSON.parseObject("{\"id\":\"" + request.getString("id") + "\",\"op\":\"batch-orders\",\"code\":\"2\","
+                + "\"data\":[{\"clOrdId\":\"c2\",\"sCode\":\"0\"},{\"clOrdId\":\"c1\",\"sCode\":\"51008\",\"sMsg\":\"余额不足\"},"
+                + "{\"clOrdId\":\"c0\",\"sCode\":\"0\"}]}"));
+
+        JSONObject rejected = futures.get(1).get(1, TimeUnit.SECONDS);
+        assertEquals("1", rejected.getString("code"));
+        assertEquals("c1", rejected.getJSONArray("data").getJSONObject(0).getString("clOrdId"));
+        for (int i : new int[]{0, 2}) {
+            JSONObject response = futures.get(i).get(1, TimeUnit.SECONDS);
+            assertEquals("0", response.getString("code"));
+            assertEquals("c" + i, response.getJSONArray("data").getJSONObject(0).getString("clOrdId"));
+        }
+        assertEquals(1L, gateway.getStats().get("batches"));
+        assertEquals(3L, gateway.getStats().get("batchedOrders"));
+    }
+
+    @Test
+    public void testUnansweredRequestTimesOut() {
+        when(webSocketUtil.isPrivateChannelReady()).thenReturn(true);
+
+        CompletableFuture<JSONObject> future = gateway.placeOrder(arg("c1"), false);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertEquals(1L, gateway.getStats().get("timeouts"));
+        assertEquals(0, gateway.getStats().get("inFlight"));
+    }
+
+    @Test
+    public void testFallsBackToRestWhenDisconnected() throws Exception {
+        when(webSocketUtil.isPrivateChannelReady()).thenReturn(false);
+
+        JSONObject response = gateway.placeBatchOrders(List.of(arg("c1"), arg("c2")), true).get(2, TimeUnit.SECONDS);
+
+        assertEquals("0", response.getString("code"));
+        verify(webSocketUtil, never()).sendPrivateRequest(anyString());
+        assertEquals(1, restBodies.size());
+        // REST 使用instId，并去掉只用于WebSocket的字段
+        JSONObject restArg = JSON.parseArray(restBodies.get(0)).getJSONObject(1);
+        assertEquals("BTC-USDT", restArg.getString("instId"));
+        assertFalse(restArg.containsKey("instIdCode"));
+        assertFalse(restArg.containsKey("simulated"));
+    }
+
+    @Test
+    public void testThrottledWindowRequeuedWithoutBlockingScheduler() throws Exception {
+        when(webSocketUtil.isPrivateChannelReady()).thenReturn(true);
+        ReflectionTestUtils.setField(gateway, "batchWindowMs", 50L);
+        rateLimiter.register(UpstreamRateLimiter.ENDPOINT_OKX_ORDER, 1);
+
+        gateway.placeOrder(arg("c1"), false);
+        verify(webSocketUtil, timeout(1000).times(1)).sendPrivateRequest(anyString());
+
+        // 令牌已用完，第二个窗口推迟到后续窗口，批量线程仍可执行其他任务
+        gateway.placeOrder(arg("c2"), false);
+        Thread.sleep(150);
+        assertTrue((Long) gateway.getStats().get("throttledBatches") > 0);
+        assertTrue(batchScheduler.submit(() -> true).get(100, TimeUnit.MILLISECONDS));
+        verify(webSocketUtil, times(1)).sendPrivateRequest(anyString());
+
+        // 令牌补充后发送
+        verify(webSocketUtil, timeout(2000).times(2)).sendPrivateRequest(anyString());
+    }
+
+    @Test
+    public void testCancelUsesOwnRateLimit() {
+        ReflectionTestUtils.setField(gateway, "batchEnabled", false);
+        when(webSocketUtil.isPrivateChannelReady()).thenReturn(true);
+        rateLimiter.register(UpstreamRateLimiter.ENDPOINT_OKX_ORDER, 0.1);
+        assertTrue(rateLimiter.tryAcquire(UpstreamRateLimiter.ENDPOINT_OKX_ORDER));
+
+        // 下单令牌用完时撤单立即发送
+        JSONObject cancelArg = new JSONObject();
+        cancelArg.put("instId", "BTC-USDT");
+        cancelArg.put("ordId", "9");
+        gateway.cancelOrder(cancelArg, false);
+
+        ArgumentCaptor<String> sent = ArgumentCaptor.forClass(String.class);
+        verify(webSocketUtil, timeout(200).times(1)).sendPrivateRequest(sent.capture());
+        assertEquals("cancel-order", JSON.parseObject(sent.getValue()).getString("op"));
+        assertFalse(rateLimiter.tryAcquire(UpstreamRateLimiter.ENDPOINT_OKX_ORDER));
+    }
+
+    private static JSONObject arg(String clOrdId) {
+        JSONObject arg = new JSONObject();
+        arg.put("instId", "BTC-USDT");
+        arg.put("instIdCode", 1001);
+        arg.put("side", "buy");
+        arg.put("ordType", "market");
+        arg.put("sz", "10");
+        arg.put("clOrdId", clOrdId);
+        arg.put("simulated", "1");
+        return arg;
+    }
+}
@@ -0,0 +1,122 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.trade.Order;
+import com.okx.trading.model.trade.OrderHandle;
+import com.okx.trading.model.trade.OrderRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 订单生命周期跟踪测试
+ * 使用 OkxApiMockServiceImpl 作为本地的OKX替身，订单状态通过跟踪服务异步推送
+ */
+public class OrderTrackerServiceImplTest {
+
+    private OrderTrackerServiceImpl tracker;
+    private OkxApiMockServiceImpl okxApiService;
+
+    @BeforeEach
+    public void setUp() {
+        tracker = new OrderTrackerServiceImpl();
+        okxApiService = new OkxApiMockServiceImpl();
+        ReflectionTestUtils.setField(okxApiService, "orderTrackerService", tracker);
+        ReflectionTestUtils.setField(okxApiService, "orderFillTimeoutMs", 200L);
+    }
+
+    @Test
+    public void testMarketOrderCompletesOnFillPush() throws Exception {
+        OrderHandle handle = okxApiService.placeSpotOrder(request("MARKET", null));
+
+        // 下单立即返回，成交由推送完成
+        Order filled = handle.getResult().get(2, TimeUnit.SECONDS);
+        assertEquals("FILLED", filled.getStatus());
+        assertEquals(0, filled.getOrigQty().compareTo(filled.getExecutedQty()));
+        assertTrue(handle.getFirstFill().isDone());
+
+        assertSame(filled, handle.getSettled().get(1, TimeUnit.SECONDS));
+        assertEquals(0L, tracker.getStats().get("reconciled"));
+        assertEquals(0, tracker.getStats().get("pending"));
+    }
+
+    @Test
+    public void testCreateOrderReturnsOnAckWithoutWaitingForFill() throws Exception {
+        // 同步下单接口在下单回执后返回，成交推送随后到达
+        Order order = okxApiService.createSpotOrder(request("MARKET", null));
+        assertEquals("NEW", order.getStatus());
+        assertEquals(1, tracker.getStats().get("pending"));
+
+        waitUntil(() -> tracker.getStats().get("pending").equals(0));
+        assertEquals(0L, tracker.getStats().get("reconciled"));
+    }
+
+    @Test
+    public void testRestingLimitOrderCompletesOnCancel() throws Exception {
+        OrderHandle handle = okxApiService.placeSpotOrder(request("LIMIT", new BigDecimal("1")));
+        assertEquals("NEW", handle.getLatest().getStatus());
+        assertFalse(handle.isDone());
+
+        assertTrue(okxApiService.cancelOrder("BTC-USDT", handle.getLatest().getOrderId()));
+        Order canceled = handle.getResult().get(1, TimeUnit.SECONDS);
+        assertEquals("CANCELED", canceled.getStatus());
+        assertFalse(handle.getFirstFill().isDone());
+    }
+
+    @Test
+    public void testTimeoutReconcilesOffCallerThread() throws Exception {
+        // 限价单不会成交，下单立即返回，超时后在对账线程上按订单缓存对账，以挂单状态完成
+        Thread caller = Thread.currentThread();
+        Thread[] reconcileThread = new Thread[1];
+        OrderHandle handle = okxApiService.placeSpotOrder(request("LIMIT", new BigDecimal("1")));
+        CompletableFuture<Order> settledFuture = handle.getSettled()
+                .whenComplete((order, e) -> reconcileThread[0] = Thread.currentThread());
+        assertFalse(handle.getSettled().isDone());
+        assertEquals(0L, tracker.getStats().get("reconciled"));
+
+        Order settled = settledFuture.get(2, TimeUnit.SECONDS);
+        assertEquals("NEW", settled.getStatus());
+        assertNotSame(caller, reconcileThread[0]);
+        assertEquals(1L, tracker.getStats().get("reconciled"));
+        assertEquals(0, tracker.getStats().get("pending"));
+    }
+
+    @Test
+    public void testRejectAckCompletesHandle() throws Exception {
+        OrderHandle handle = tracker.track("c1", "BTC-USDT");
+        Order partial = Order.builder().clientOrderId("c1").status("PARTIALLY_FILLED")
+                .executedQty(new BigDecimal("0.1")).build();
+        assertFalse(tracker.onOrderUpdate(partial));
+        assertSame(partial, handle.getFirstFill().get(1, TimeUnit.SECONDS));
+        assertFalse(handle.isDone());
+
+        OrderHandle rejected = tracker.track("c2", "BTC-USDT");
+        Order ack = Order.builder().clientOrderId("c2").orderId("").sCode(51008).sMsg("余额不足").build();
+        assertTrue(tracker.onOrderUpdate(ack));
+        assertEquals("REJECTED", rejected.getResult().get(1, TimeUnit.SECONDS).getStatus());
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(5);
+        }
+    }
+
+    private static OrderRequest request(String type, BigDecimal price) {
+        return OrderRequest.builder()
+                .symbol("BTC-USDT")
+                .type(type)
+                .side("BUY")
+                .price(price)
+                .quantity(new BigDecimal("0.01"))
+                .build();
+    }
+}
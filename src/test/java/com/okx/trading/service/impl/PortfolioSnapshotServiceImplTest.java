@@ -0,0 +1,192 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.entity.RealTimeOrderEntity;
+import com.okx.trading.model.entity.RealTimeStrategyEntity;
+import com.okx.trading.model.market.Ticker;
+import com.okx.trading.repository.RealTimeOrderRepository;
+import com.okx.trading.service.OkxApiService;
+import com.okx.trading.strategy.RealTimeStrategyManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 持仓组合快照测试
+ * 启停、成交和行情推送增量更新的汇总与全量重建一致，读取快照不重新计算
+ */
+public class PortfolioSnapshotServiceImplTest {
+
+    private final Map<Long, RealTimeStrategyEntity> running = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private OkxApiService okxApiService;
+    private PortfolioSnapshotServiceImpl service;
+
+    @BeforeEach
+    public void setUp() {
+        RealTimeOrderRepository orderRepository = mock(RealTimeOrderRepository.class);
+        when(orderRepository.findByCreateTimeBetweenOrderByCreateTimeDesc(any(), any())).thenReturn(Arrays.asList(
+                order("SELL", "5", LocalDateTime.now()), order("BUY", null, LocalDateTime.now())));
+        RealTimeStrategyManager manager = mock(RealTimeStrategyManager.class);
+        when(manager.getAllRunningStrategies()).thenAnswer(invocation -> new ConcurrentHashMap<>(running));
+        okxApiService = mock(OkxApiService.class);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        service = new PortfolioSnapshotServiceImpl(orderRepository, manager, okxApiService, scheduler);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIncrementalAggregateMatchesResync() {
+        RealTimeStrategyEntity holding = strategy(1L, "BTC-USDT", 200.0, 0.0);
+        holding.setLastTradeType("BUY");
+        holding.setLastTradePrice(100.0);
+        holding.setLastTradeQuantity(2.0);
+        holding.setLastTradeAmount(200.0);
+        holding.setLastTradeTime(LocalDateTime.now().minusHours(1));
+        RealTimeStrategyEntity idle = strategy(2L, "ETH-USDT", 100.0, 10.0);
+        start(holding);
+        start(idle);
+        service.onPriceUpdate("BTC-USDT", new BigDecimal("110"));
+        service.publish();
+
+        Map<String, Object> statistics = (Map<String, Object>) service.getSnapshot().get("statistics");
+        assertDecimal("20", statistics.get("totalEstimatedProfit"));
+        assertDecimal("10", statistics.get("totalRealizedProfit"));
+        assertDecimal("300", statistics.get("totalInvestmentAmount"));
+        assertDecimal("200", statistics.get("totalHlodingInvestmentAmount"));
+        assertDecimal("30", statistics.get("totalProfit"));
+        assertEquals("10.0000%", statistics.get("totalProfitRate"));
+        assertEquals(1, statistics.get("holdingStrategiesCount"));
+        assertEquals(2, statistics.get("runningStrategiesCount"));
+        assertEquals(2, statistics.get("todaysingalCount"));
+        assertEquals(5.0, statistics.get("todayProfit"));
+        assertEquals(10.0, ((Map<String, Double>) statistics.get("profitByStrategySymbol")).get("ETH-USDT"));
+
+        List<Map<String, Object>> strategies = (List<Map<String, Object>>) service.getSnapshot().get("strategies");
+        assertEquals(1, strategies.size());
+        assertEquals(1L, strategies.get(0).get("strategyId"));
+        assertEquals("10.0000%", strategies.get(0).get("profitPercentage"));
+        assertEquals(1L, service.getStats().get("resyncs"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReadsReturnCachedSnapshotUntilPublish() {
+        RealTimeStrategyEntity holding = strategy(1L, "BTC-USDT", 100.0, 0.0);
+        holding.setLastTradeType("BUY");
+        holding.setLastTradePrice(100.0);
+        holding.setLastTradeQuantity(1.0);
+        start(holding);
+        service.onPriceUpdate("BTC-USDT", new BigDecimal("100"));
+        service.publish();
+
+        Map<String, Object> first = service.getSnapshot();
+        service.onPriceUpdate("BTC-USDT", new BigDecimal("120"));
+        assertSame(first, service.getSnapshot());
+        assertEquals(1L, service.getStats().get("snapshotBuilds"));
+
+        service.publish();
+        assertNotSame(first, service.getSnapshot());
+        assertDecimal("20", ((Map<String, Object>) service.getSnapshot().get("statistics")).get("totalEstimatedProfit"));
+
+        // 没有变化时不重新生成
+        service.publish();
+        assertEquals(2L, service.getStats().get("snapshotBuilds"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTradeAndRemoveAdjustAggregate() {
+        RealTimeStrategyEntity state = strategy(1L, "BTC-USDT", 100.0, 0.0);
+        state.setLastTradeType("BUY");
+        state.setLastTradePrice(100.0);
+        state.setLastTradeQuantity(1.0);
+        start(state);
+        service.onPriceUpdate("BTC-USDT", new BigDecimal("90"));
+        service.publish();
+
+        // 卖出后不再持仓，预估收益转为已实现收益
+        state.setLastTradeType("SELL");
+        state.setTotalProfit(-10.0);
+        service.onTrade(state, order("SELL", "-10", LocalDateTime.now()));
+        service.publish();
+        Map<String, Object> statistics = (Map<String, Object>) service.getSnapshot().get("statistics");
+        assertDecimal("0", statistics.get("totalEstimatedProfit"));
+        assertDecimal("-10", statistics.get("totalRealizedProfit"));
+        assertEquals(0, statistics.get("holdingStrategiesCount"));
+        assertEquals(3, statistics.get("todaysingalCount"));
+        assertEquals(-5.0, statistics.get("todayProfit"));
+
+        running.remove(1L);
+        service.onStrategyRemoved(1L);
+        service.publish();
+        statistics = (Map<String, Object>) service.getSnapshot().get("statistics");
+        assertEquals(0, statistics.get("runningStrategiesCount"));
+        assertDecimal("0", statistics.get("totalInvestmentAmount"));
+        assertTrue(((Map<String, Double>) statistics.get("profitByStrategySymbol")).isEmpty());
+        assertEquals(0, service.getStats().get("heldSymbols"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMissingPriceFetchedOnPublish() {
+        Ticker ticker = new Ticker();
+        ticker.setSymbol("SOL-USDT");
+        ticker.setLastPrice(new BigDecimal("55"));
+        when(okxApiService.getTicker("SOL-USDT")).thenReturn(ticker);
+        RealTimeStrategyEntity holding = strategy(3L, "SOL-USDT", 100.0, 0.0);
+        holding.setLastTradeType("BUY");
+        holding.setLastTradePrice(50.0);
+        holding.setLastTradeQuantity(2.0);
+        start(holding);
+
+        service.publish();
+
+        verify(okxApiService, times(1)).getTicker("SOL-USDT");
+        Map<String, Object> statistics = (Map<String, Object>) service.getSnapshot().get("statistics");
+        assertDecimal("10", statistics.get("totalEstimatedProfit"));
+        assertNotNull(service.subscribe());
+        assertEquals(1, service.getStats().get("subscribers"));
+    }
+
+    private void start(RealTimeStrategyEntity state) {
+        running.put(state.getId(), state);
+        service.onStrategyUpdated(state);
+    }
+
+    private static RealTimeStrategyEntity strategy(Long id, String symbol, Double tradeAmount, Double totalProfit) {
+        RealTimeStrategyEntity state = new RealTimeStrategyEntity("SMA", symbol, "1H", LocalDateTime.now(), tradeAmount, "均线策略" + id);
+        state.setId(id);
+        state.setTotalProfit(totalProfit);
+        return state;
+    }
+
+    private static RealTimeOrderEntity order(String side, String profit, LocalDateTime createTime) {
+        RealTimeOrderEntity order = new RealTimeOrderEntity();
+        order.setSide(side);
+        order.setProfit(profit != null ? new BigDecimal(profit) : null);
+        order.setCreateTime(createTime);
+        return order;
+    }
+
+    private static void assertDecimal(String expected, Object actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo((BigDecimal) actual), String.valueOf(actual));
+    }
+}
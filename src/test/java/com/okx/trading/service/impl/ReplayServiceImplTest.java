@@ -0,0 +1,176 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.adapter.CandlestickBarSeriesConverter;
+import com.okx.trading.model.dto.ReplayRequestDTO;
+import com.okx.trading.service.HistoricalDataService;
+import com.okx.trading.strategy.StrategyRegisterCenter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.ta4j.core.BaseStrategy;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import org.ta4j.core.indicators.helpers.OpenPriceIndicator;
+import org.ta4j.core.rules.OverIndicatorRule;
+import org.ta4j.core.rules.UnderIndicatorRule;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 行情回放测试
+ * 录制的1H K线帧阴阳交替，测试策略收阳线买入、收阴线卖出，回放经实时策略管理器和模拟下单产生交易日志。
+ * 消息帧和交易日志基准是 src/test/resources/replay 下提交的文件，复制到临时回放目录中使用
+ */
+public class ReplayServiceImplTest {
+
+    private static final String STRATEGY_CODE = "REPLAY_TEST";
+    private static final int WARMUP_BARS = 10;
+    private static final int REPLAY_BARS = 20;
+    private static final String FRAMES_FILE = "btc-1h.frames";
+    private static final String GOLDEN_FILE = "btc-1h.golden";
+
+    @TempDir
+    Path tempDir;
+
+    private ThreadPoolExecutor executorService;
+    private HistoricalDataService historicalDataService;
+    private ReplayServiceImpl replayService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        StrategyRegisterCenter.strategyCreators.put(STRATEGY_CODE, series -> new BaseStrategy(STRATEGY_CODE,
+                new OverIndicatorRule(new ClosePriceIndicator(series), new OpenPriceIndicator(series)),
+                new UnderIndicatorRule(new ClosePriceIndicator(series), new OpenPriceIndicator(series))));
+
+        executorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
+        historicalDataService = mock(HistoricalDataService.class);
+        when(historicalDataService.getIntervalMinutes(anyString())).thenReturn(60L);
+        replayService = new ReplayServiceImpl(new RealTimeOrderServiceImpl(), historicalDataService,
+                new CandlestickBarSeriesConverter(), null, null, null, executorService);
+        ReflectionTestUtils.setField(replayService, "replayDir", tempDir.toString());
+        ReflectionTestUtils.setField(replayService, "orderFillTimeoutMs", 1000L);
+
+        for (String fixture : List.of(FRAMES_FILE, GOLDEN_FILE)) {
+            try (InputStream in = getClass().getResourceAsStream("/replay/" + fixture)) {
+                Files.copy(in, tempDir.resolve(fixture));
+            }
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        StrategyRegisterCenter.strategyCreators.remove(STRATEGY_CODE);
+        executorService.shutdownNow();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReplayMatchesRecordedGolden() throws Exception {
+        ReplayRequestDTO request = request();
+        request.setGoldenFile(GOLDEN_FILE);
+        Map<String, Object> report = replayService.replay(request);
+
+        assertEquals((long) WARMUP_BARS + REPLAY_BARS, report.get("candles"));
+        assertEquals((long) REPLAY_BARS, report.get("dispatched"));
+        assertFalse(((List<Map<String, Object>>) report.get("latency")).isEmpty());
+
+        // 交易日志与提交的基准逐行一致，信号、成交价格、数量或手续费的任何变化都会导致不一致
+        Map<String, Object> golden = (Map<String, Object>) report.get("golden");
+        assertEquals(true, golden.get("matched"), String.valueOf(golden));
+        List<String> expected = Files.readAllLines(tempDir.resolve(GOLDEN_FILE), StandardCharsets.UTF_8);
+        assertEquals(expected, report.get("tradeLog"));
+    }
+
+    @Test
+    public void testUpdateGoldenWritesReplayTradeLog() throws Exception {
+        ReplayRequestDTO request = request();
+        request.setGoldenFile("updated/" + GOLDEN_FILE);
+        request.setUpdateGolden(true);
+        replayService.replay(request);
+
+        assertEquals(Files.readAllLines(tempDir.resolve(GOLDEN_FILE), StandardCharsets.UTF_8),
+                Files.readAllLines(tempDir.resolve("updated").resolve(GOLDEN_FILE), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRejectsFilesOutsideReplayDir() throws Exception {
+        Path outside = Files.createTempFile("replay-outside", ".golden");
+        try {
+            ReplayRequestDTO traversal = request();
+            traversal.setFramesFile("../" + tempDir.getFileName() + "/../" + FRAMES_FILE);
+            assertThrows(IllegalArgumentException.class, () -> replayService.replay(traversal));
+
+            // 回放目录以外的绝对路径既不能读取也不能覆盖
+            ReplayRequestDTO overwrite = request();
+            overwrite.setGoldenFile(outside.toString());
+            overwrite.setUpdateGolden(true);
+            assertThrows(IllegalArgumentException.class, () -> replayService.replay(overwrite));
+            assertEquals(0, Files.size(outside));
+        } finally {
+            Files.deleteIfExists(outside);
+        }
+    }
+
+    @Test
+    public void testTradesRunOnReplayExecutor() throws Exception {
+        Map<String, Object> report = replayService.replay(request());
+        int trades = (int) report.get("trades");
+        assertTrue(trades > 0);
+
+        // 每笔交易的下单和成交记录各在回放线程池中执行一次，回放不依赖节点的下单服务和交易线程池
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2L * trades, executorService.getCompletedTaskCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGoldenMismatchReportsFirstDifference() throws Exception {
+        Files.write(tempDir.resolve("changed.golden"),
+                Collections.singletonList("2024-01-01 00:59:59 " + STRATEGY_CODE + " BTC-USDT 1H SELL"), StandardCharsets.UTF_8);
+
+        ReplayRequestDTO request = request();
+        request.setGoldenFile("changed.golden");
+        Map<String, Object> golden = (Map<String, Object>) replayService.replay(request).get("golden");
+
+        assertEquals(false, golden.get("matched"));
+        assertEquals(1, golden.get("firstMismatchLine"));
+        assertEquals(1, golden.get("expectedTrades"));
+        assertNotNull(golden.get("actual"));
+    }
+
+    @Test
+    public void testWarmupCandlesAreNotDispatched() {
+        ReplayRequestDTO request = request();
+        request.setWarmupBars(WARMUP_BARS + REPLAY_BARS);
+        Map<String, Object> report = replayService.replay(request);
+
+        assertEquals(0L, report.get("dispatched"));
+        assertEquals(0, report.get("trades"));
+        assertEquals(0, report.get("strategies"));
+    }
+
+    private ReplayRequestDTO request() {
+        ReplayRequestDTO request = new ReplayRequestDTO();
+        request.setFramesFile(FRAMES_FILE);
+        request.setStrategyCodes(Collections.singletonList(STRATEGY_CODE));
+        request.setTradeAmount(1000.0);
+        request.setWarmupBars(WARMUP_BARS);
+        return request;
+    }
+}
@@ -0,0 +1,67 @@
+package com.okx.trading.service.impl;
+
+import com.okx.trading.model.market.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内存行情簿测试
+ * 未知和过期的交易对返回null，由调用方回退到REST
+ */
+public class TickerBookServiceImplTest {
+
+    private TickerBookServiceImpl book;
+
+    @BeforeEach
+    public void setUp() {
+        book = new TickerBookServiceImpl();
+        ReflectionTestUtils.setField(book, "maxAgeMs", 50L);
+        ReflectionTestUtils.setField(book, "allMaxAgeMs", 50L);
+    }
+
+    @Test
+    public void testFreshStaleAndUnknown() throws Exception {
+        assertNull(book.getFresh("BTC-USDT"));
+
+        book.update(ticker("BTC-USDT", "100", LocalDateTime.now()));
+        assertEquals(0, new BigDecimal("100").compareTo(book.getFresh("BTC-USDT").getLastPrice()));
+
+        Thread.sleep(80);
+        assertNull(book.getFresh("BTC-USDT"));
+        assertEquals(1L, book.getStats().get("hits"));
+        assertEquals(1L, book.getStats().get("stale"));
+        assertEquals(1L, book.getStats().get("misses"));
+    }
+
+    @Test
+    public void testFullSnapshotKeepsNewerPush() throws Exception {
+        assertNull(book.getAllIfFresh());
+
+        LocalDateTime now = LocalDateTime.now();
+        book.update(ticker("BTC-USDT", "101", now));
+        book.updateAll(List.of(ticker("BTC-USDT", "100", now.minusSeconds(1)), ticker("ETH-USDT", "10", now)));
+
+        List<Ticker> all = book.getAllIfFresh();
+        assertEquals(2, all.size());
+        assertEquals(0, new BigDecimal("101").compareTo(book.getFresh("BTC-USDT").getLastPrice()));
+
+        Thread.sleep(80);
+        assertNull(book.getAllIfFresh());
+    }
+
+    private static Ticker ticker(String symbol, String price, LocalDateTime timestamp) {
+        Ticker ticker = new Ticker();
+        ticker.setSymbol(symbol);
+        ticker.setChannel("tickers");
+        ticker.setLastPrice(new BigDecimal(price));
+        ticker.setTimestamp(timestamp);
+        return ticker;
+    }
+}
@@ -0,0 +1,264 @@
+package com.okx.trading.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.okx.trading.model.entity.RealTimeOrderEntity;
+import com.okx.trading.model.entity.RealTimeStrategyEntity;
+import com.okx.trading.repository.RealTimeOrderRepository;
+import com.okx.trading.repository.RealTimeStrategyRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+/**
+ * 交易写后日志测试
+ * 成交只写日志，批量写库后清空日志；未写库的记录在重启时恢复；
+ * 多次写库失败的记录移入死信文件，不阻塞其他记录
+ */
+public class TradeJournalServiceImplTest {
+
+    @TempDir
+    Path tempDir;
+
+    private RealTimeStrategyRepository strategyRepository;
+    private RealTimeOrderRepository orderRepository;
+    private final List<ScheduledExecutorService> schedulers = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        strategyRepository = mock(RealTimeStrategyRepository.class);
+        orderRepository = mock(RealTimeOrderRepository.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        schedulers.forEach(ScheduledExecutorService::shutdownNow);
+    }
+
+    @Test
+    public void testTradeIsJournaledThenFlushedInBatch() throws Exception {
+        TradeJournalServiceImpl journal = start();
+        RealTimeStrategyEntity running = strategy();
+        running.setLastTradeType("BUY");
+        running.setTotalTrades(1);
+        journal.recordTrade(running, order("o1"));
+        running.setLastTradeType("SELL");
+        running.setTotalTrades(2);
+        journal.recordTrade(running, order("o2"));
+
+        // 交易线程只写日志，不访问数据库
+        verifyNoInteractions(strategyRepository, orderRepository);
+        assertTrue(Files.size(journalFile()) > 0);
+
+        RealTimeStrategyEntity stored = strategy();
+        when(strategyRepository.findAllById(anyIterable())).thenReturn(List.of(stored));
+        assertEquals(2, journal.flush());
+
+        assertEquals("SELL", stored.getLastTradeType());
+        assertEquals(2, stored.getTotalTrades());
+        verify(strategyRepository, times(1)).saveAll(anyIterable());
+        ArgumentCaptor<Iterable<RealTimeOrderEntity>> orders = ArgumentCaptor.forClass(Iterable.class);
+        verify(orderRepository, times(1)).saveAll(orders.capture());
+        List<RealTimeOrderEntity> saved = new ArrayList<>();
+        orders.getValue().forEach(saved::add);
+        assertEquals(2, saved.size());
+        assertEquals(1L, saved.get(0).getStrategyId());
+        assertEquals(0, journal.getStats().get("pending"));
+        assertEquals(0, Files.size(journalFile()));
+    }
+
+    @Test
+    public void testUnflushedRecordsReplayedOnRestart() throws Exception {
+        TradeJournalServiceImpl journal = start();
+        // 数据库不可用，记录保留在日志中
+        when(strategyRepository.findAllById(anyIterable())).thenThrow(new RuntimeException("db down"));
+        RealTimeStrategyEntity running = strategy();
+        running.setLastTradeType("BUY");
+        running.setLastTradeTime(LocalDateTime.of(2024, 1, 1, 10, 0, 0));
+        journal.recordTrade(running, order("o1"));
+        assertEquals(0, journal.flush());
+
+        // 重启：先合并到从数据库读取的策略，再补写数据库，已写入的订单不重复插入
+        reset(strategyRepository);
+        RealTimeStrategyEntity stored = strategy();
+        when(strategyRepository.findAllById(anyIterable())).thenReturn(List.of(stored));
+        when(orderRepository.findByOrderId("o1")).thenReturn(order("o1"));
+        TradeJournalServiceImpl restarted = start();
+
+        assertEquals(1L, restarted.getStats().get("replayed"));
+        assertEquals("BUY", stored.getLastTradeType());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 10, 0, 0), stored.getLastTradeTime());
+        verify(orderRepository, never()).saveAll(anyIterable());
+        assertEquals(0, restarted.getStats().get("pending"));
+    }
+
+    @Test
+    public void testReconcileOverlaysPendingState() throws Exception {
+        TradeJournalServiceImpl journal = start();
+        RealTimeStrategyEntity running = strategy();
+        running.setLastTradeType("BUY");
+        running.setLastTradeQuantity(0.5);
+        journal.recordTrade(running, order("o1"));
+        running.setStatus("ERROR");
+        running.setIsActive(false);
+        journal.recordStatus(running);
+
+        RealTimeStrategyEntity stale = strategy();
+        journal.reconcile(stale);
+        assertEquals("BUY", stale.getLastTradeType());
+        assertEquals(0.5, stale.getLastTradeQuantity());
+        assertEquals("ERROR", stale.getStatus());
+        assertFalse(stale.getIsActive());
+        verify(strategyRepository, never()).save(any());
+    }
+
+    @Test
+    public void testReconcileAllOverlaysMatchingStrategies() throws Exception {
+        TradeJournalServiceImpl journal = start();
+        RealTimeStrategyEntity running = strategy();
+        running.setStatus("ERROR");
+        running.setIsActive(false);
+        journal.recordStatus(running);
+
+        RealTimeStrategyEntity stale = strategy();
+        RealTimeStrategyEntity other = strategy(2L);
+        other.setStatus("RUNNING");
+        other.setIsActive(true);
+        journal.reconcileAll(List.of(stale, other));
+        assertEquals("ERROR", stale.getStatus());
+        assertFalse(stale.getIsActive());
+        assertEquals("RUNNING", other.getStatus());
+        assertTrue(other.getIsActive());
+    }
+
+    @Test
+    public void testBadEntryMovedToDeadLetterWithoutBlockingBatch() throws Exception {
+        TradeJournalServiceImpl journal = start();
+        Map<Long, RealTimeStrategyEntity> stored = new HashMap<>();
+        when(strategyRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<RealTimeStrategyEntity> found = new ArrayList<>();
+            for (Object id : (Iterable<?>) invocation.getArgument(0)) {
+                found.add(stored.computeIfAbsent((Long) id, TradeJournalServiceImplTest::strategy));
+            }
+            return found;
+        });
+        List<String> savedOrderIds = new ArrayList<>();
+        when(orderRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            List<String> orderIds = new ArrayList<>();
+            ((Iterable<RealTimeOrderEntity>) invocation.getArgument(0)).forEach(order -> orderIds.add(order.getOrderId()));
+            if (orderIds.contains("bad")) {
+                throw new DataIntegrityViolationException("Duplicate entry 'bad' for key 'order_id'");
+            }
+            savedOrderIds.addAll(orderIds);
+            return invocation.getArgument(0);
+        });
+
+        RealTimeStrategyEntity first = strategy(1L);
+        RealTimeStrategyEntity second = strategy(2L);
+        first.setTotalTrades(1);
+        journal.recordTrade(first, order("o1"));
+        second.setTotalTrades(1);
+        journal.recordTrade(second, order("bad"));
+        first.setTotalTrades(2);
+        journal.recordTrade(first, order("o3"));
+
+        // 整批失败后逐条重试，只有违反约束的记录留下
+        assertEquals(2, journal.flush());
+        assertEquals(List.of("o1", "o3"), savedOrderIds);
+        assertEquals(2, stored.get(1L).getTotalTrades());
+        assertEquals(1, journal.getStats().get("pending"));
+
+        // 失败达到最大次数后移入死信文件，日志清空，之后的记录正常写入
+        assertEquals(0, journal.flush());
+        assertEquals(0, journal.flush());
+        assertEquals(0, journal.getStats().get("pending"));
+        assertEquals(1L, journal.getStats().get("deadLettered"));
+        assertEquals(0, Files.size(journalFile()));
+        List<String> deadLetters = Files.readAllLines(tempDir.resolve(TradeJournalServiceImpl.DEAD_LETTER_FILE));
+        assertEquals(1, deadLetters.size());
+        JSONObject deadLetter = JSON.parseObject(deadLetters.get(0));
+        assertEquals("bad", deadLetter.getJSONObject("order").getString("orderId"));
+        assertEquals(3, deadLetter.getIntValue("attempts"));
+        assertTrue(deadLetter.getString("error").contains("Duplicate entry"));
+
+        first.setTotalTrades(3);
+        journal.recordTrade(first, order("o4"));
+        assertEquals(1, journal.flush());
+        assertEquals(List.of("o1", "o3", "o4"), savedOrderIds);
+    }
+
+    @Test
+    public void testDatabaseOutageDoesNotDeadLetter() throws Exception {
+        TradeJournalServiceImpl journal = start();
+        when(strategyRepository.findAllById(anyIterable())).thenThrow(new DataAccessResourceFailureException("Communications link failure"));
+        journal.recordTrade(strategy(), order("o1"));
+        journal.recordTrade(strategy(), order("o2"));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, journal.flush());
+        }
+        assertEquals(2, journal.getStats().get("pending"));
+        assertEquals(0L, journal.getStats().get("deadLettered"));
+        assertFalse(Files.exists(tempDir.resolve(TradeJournalServiceImpl.DEAD_LETTER_FILE)));
+    }
+
+    private TradeJournalServiceImpl start() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        schedulers.add(scheduler);
+        TradeJournalServiceImpl journal = new TradeJournalServiceImpl(strategyRepository, orderRepository, scheduler);
+        ReflectionTestUtils.setField(journal, "journalDir", tempDir.toString());
+        // 测试中手动写库
+        ReflectionTestUtils.setField(journal, "flushIntervalMs", 60_000L);
+        journal.init();
+        return journal;
+    }
+
+    private Path journalFile() {
+        return tempDir.resolve(TradeJournalServiceImpl.JOURNAL_FILE);
+    }
+
+    private static RealTimeStrategyEntity strategy() {
+        return strategy(1L);
+    }
+
+    private static RealTimeStrategyEntity strategy(Long id) {
+        RealTimeStrategyEntity strategy = new RealTimeStrategyEntity();
+        strategy.setId(id);
+        strategy.setStrategyCode("SMA");
+        strategy.setSymbol("BTC-USDT");
+        strategy.setInterval("1m");
+        return strategy;
+    }
+
+    private static RealTimeOrderEntity order(String orderId) {
+        return RealTimeOrderEntity.builder()
+                .orderId(orderId)
+                .clientOrderId("c" + orderId)
+                .strategyCode("SMA")
+                .symbol("BTC-USDT")
+                .side("BUY")
+                .executedQty(new BigDecimal("0.5"))
+                .build();
+    }
+}
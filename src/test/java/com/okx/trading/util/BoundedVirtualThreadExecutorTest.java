@@ -0,0 +1,115 @@
+package com.okx.trading.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 限制并发数的虚拟线程执行器测试
+ * 任务运行在虚拟线程上，同时执行的任务数不超过上限，超出的任务等待后全部执行完；
+ * shutdownNow 交还等待中的任务，不中断执行中的任务
+ */
+public class BoundedVirtualThreadExecutorTest {
+
+    @Test
+    public void testConcurrencyBoundedBySemaphore() throws Exception {
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor("test-io", 3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            futures.add(executor.submit(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(10);
+                running.decrementAndGet();
+                return Thread.currentThread().isVirtual();
+            }));
+        }
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS));
+        }
+
+        assertTrue(peak.get() <= 3, "peak=" + peak.get());
+        // Future 在任务返回时完成，计数在释放许可之后更新，等线程结束后再读统计
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(30L, executor.getStats().get("submitted"));
+        assertEquals(30L, executor.getStats().get("completed"));
+        assertEquals(0, executor.getStats().get("active"));
+    }
+
+    @Test
+    public void testWaitingTasksReportedAndShutdownCompletesSubmitted() throws Exception {
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor("test-io", 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AtomicInteger done = new AtomicInteger();
+        executor.execute(done::incrementAndGet);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        while ((int) executor.getStats().get("waiting") < 1) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, executor.getStats().get("active"));
+
+        executor.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(done::incrementAndGet));
+        release.countDown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(1, done.get());
+    }
+
+    @Test
+    public void testShutdownNowReturnsWaitingTasksWithoutInterruptingRunning() throws Exception {
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor("test-io", 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        AtomicInteger done = new AtomicInteger();
+        Runnable waitingTask = done::incrementAndGet;
+        executor.execute(waitingTask);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        while ((int) executor.getStats().get("waiting") < 1) {
+            Thread.sleep(1);
+        }
+
+        // 等待许可的任务交还调用方，执行中的任务不被中断
+        assertEquals(List.of(waitingTask), executor.shutdownNow());
+        assertTrue(executor.isShutdown());
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(done::incrementAndGet));
+        release.countDown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+        assertEquals(0, done.get());
+        assertEquals(1L, executor.getStats().get("completed"));
+    }
+
+    @Test
+    public void testRejectsNonPositiveConcurrency() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedVirtualThreadExecutor("test-io", 0));
+    }
+}
@@ -0,0 +1,90 @@
+package com.okx.trading.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KLL分位数草图测试
+ * 未压缩时与精确分位数一致，大量样本时秩误差有界且内存不随样本数增长
+ */
+public class KllSketchTest {
+
+    private static final double[] QS = {0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9};
+
+    @Test
+    public void testExactBeforeCompaction() {
+        Random random = new Random(11);
+        KllSketch sketch = new KllSketch();
+        double[] values = new double[50];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian();
+            sketch.update(values[i]);
+        }
+        Arrays.sort(values);
+        for (double q : QS) {
+            assertEquals(exactQuantile(values, q), sketch.quantile(q), 1e-12);
+        }
+        assertEquals(values[0], sketch.quantile(0), 1e-12);
+        assertEquals(values[values.length - 1], sketch.quantile(1), 1e-12);
+        assertTrue(Double.isNaN(new KllSketch().quantile(0.5)));
+    }
+
+    @Test
+    public void testRankErrorBounded() {
+        Random random = new Random(5);
+        KllSketch sketch = new KllSketch();
+        int n = 200_000;
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextGaussian() * 10 + random.nextDouble();
+            sketch.update(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(n, sketch.getCount());
+        assertTrue(sketch.getRetained() < 1000, "retained=" + sketch.getRetained());
+        double[] estimates = sketch.quantiles(QS);
+        for (int i = 0; i < QS.length; i++) {
+            double rank = (double) lowerCount(values, estimates[i]) / n;
+            assertEquals(QS[i], rank, 0.03, "q=" + QS[i]);
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        Random random = new Random(9);
+        KllSketch left = new KllSketch();
+        KllSketch right = new KllSketch();
+        int n = 100_000;
+        double[] values = new double[n * 2];
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextDouble();
+            left.update(values[i]);
+            values[n + i] = 1 + random.nextDouble();
+            right.update(values[n + i]);
+        }
+        Arrays.sort(values);
+
+        left.merge(right);
+        assertEquals(2L * n, left.getCount());
+        assertEquals(n, right.getCount());
+        double median = left.quantile(0.5);
+        assertEquals(0.5, (double) lowerCount(values, median) / values.length, 0.03);
+    }
+
+    private static double exactQuantile(double[] sorted, double q) {
+        double rank = q * (sorted.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted[lower] + (sorted[upper] - sorted[lower]) * (rank - lower);
+    }
+
+    private static int lowerCount(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        return index >= 0 ? index : -index - 1;
+    }
+}
@@ -0,0 +1,118 @@
+package com.okx.trading.util;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebSocket分片连接池测试
+ * 同一交易对固定落在同一分片，未连接时的订阅记录在分片上等待连接后恢复；
+ * 连接建立时合并订阅，超时未确认的主题重发
+ */
+public class WebSocketShardPoolTest {
+
+    @Test
+    public void testConsistentShardAssignment() {
+        WebSocketShardPool pool = newPool(4);
+        WebSocketShardPool samePool = newPool(4);
+
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            String instId = "COIN" + i + "-USDT";
+            int shard = pool.shardIndexOf(instId);
+            assertEquals(shard, samePool.shardIndexOf(instId));
+            assertTrue(shard >= 0 && shard < 4);
+            used.add(shard);
+        }
+        assertEquals(4, used.size());
+        assertEquals(0, newPool(1).shardIndexOf("BTC-USDT"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTopicsTrackedPerShard() {
+        WebSocketShardPool pool = newPool(4);
+        JSONObject candle1m = arg("candle1m", "BTC-USDT");
+        pool.subscribe(candle1m);
+        pool.subscribe(arg("candle1H", "BTC-USDT"));
+        pool.subscribe(arg("candle1m", "BTC-USDT"));
+
+        String shardKey = "shard-" + pool.shardIndexOf("BTC-USDT");
+        Map<String, Object> shardStats = (Map<String, Object>) pool.getStats().get(shardKey);
+        assertEquals(2, shardStats.get("topics"));
+        assertEquals(false, shardStats.get("connected"));
+
+        pool.unsubscribe(candle1m);
+        shardStats = (Map<String, Object>) pool.getStats().get(shardKey);
+        assertEquals(1, shardStats.get("topics"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUnackedTopicResentAfterTimeout() {
+        OkHttpClient okHttpClient = mock(OkHttpClient.class);
+        WebSocket socket = mock(WebSocket.class);
+        when(socket.send(anyString())).thenReturn(true);
+        ArgumentCaptor<WebSocketListener> listener = ArgumentCaptor.forClass(WebSocketListener.class);
+        when(okHttpClient.newWebSocket(any(Request.class), listener.capture())).thenReturn(socket);
+
+        WebSocketShardPool pool = new WebSocketShardPool("测试", "wss://localhost/ws", 1, okHttpClient, message -> {
+        }, null, null);
+        JSONObject acked = arg("candle1m", "BTC-USDT");
+        JSONObject unacked = arg("candle1m", "ETH-USDT");
+        pool.subscribe(acked);
+        pool.subscribe(unacked);
+        pool.connectAll();
+
+        // 连接建立时两个主题合并为一条订阅消息，只有一个收到确认
+        long subscribedAt = System.currentTimeMillis();
+        listener.getValue().onOpen(socket, null);
+        listener.getValue().onMessage(socket, "{\"event\":\"subscribe\",\"arg\":" + acked.toJSONString() + ",\"connId\":\"a4d3ae55\"}");
+        ArgumentCaptor<String> sent = ArgumentCaptor.forClass(String.class);
+        verify(socket).send(sent.capture());
+        assertEquals(2, JSON.parseObject(sent.getValue()).getJSONArray("args").size());
+        Map<String, Object> shardStats = (Map<String, Object>) pool.getStats().get("shard-0");
+        assertEquals(1L, shardStats.get("acked"));
+        assertEquals(1, shardStats.get("unacked"));
+
+        // 未超时不重发
+        pool.checkAndReconnect(Long.MAX_VALUE, subscribedAt + WebSocketShardPool.ACK_TIMEOUT_MILLIS - 1000);
+        verify(socket, times(1)).send(anyString());
+
+        // 超时后只重发未确认的主题
+        pool.checkAndReconnect(Long.MAX_VALUE, System.currentTimeMillis() + WebSocketShardPool.ACK_TIMEOUT_MILLIS + 1);
+        verify(socket, times(2)).send(sent.capture());
+        JSONObject resent = JSON.parseObject(sent.getValue());
+        assertEquals("subscribe", resent.getString("op"));
+        assertEquals(1, resent.getJSONArray("args").size());
+        assertEquals("ETH-USDT", resent.getJSONArray("args").getJSONObject(0).getString("instId"));
+        shardStats = (Map<String, Object>) pool.getStats().get("shard-0");
+        assertEquals(1L, shardStats.get("resent"));
+    }
+
+    private static WebSocketShardPool newPool(int shards) {
+        return new WebSocketShardPool("测试", "wss://localhost/ws", shards, new OkHttpClient(), message -> {
+        }, null, null);
+    }
+
+    private static JSONObject arg(String channel, String instId) {
+        JSONObject arg = new JSONObject();
+        arg.put("channel", channel);
+        arg.put("instId", instId);
+        return arg;
+    }
+}